@@ -6,6 +6,7 @@ import org.junit.Test;
 import org.junit.experimental.runners.Enclosed;
 import org.junit.runner.RunWith;
 import org.wolm.catalog.catalog.MediaCatalog;
+import org.wolm.catalog.environment.RenderEnvironment;
 
 @RunWith(Enclosed.class)
 public class CatalogIT {
@@ -17,7 +18,7 @@ public class CatalogIT {
 			catalog.populateFromGoogleSpreadsheets();
 
 			assertThat(catalog.getSeries().size()).isGreaterThan(100);
-			assertThat(catalog.getMessages().size()).isGreaterThan(1000);
+			assertThat(catalog.getMessages(new RenderEnvironment()).size()).isGreaterThan(1000);
 		}
 
 		@Test
@@ -26,7 +27,7 @@ public class CatalogIT {
 			catalog.populateFromGoogleSpreadsheets();
 
 			assertThat(catalog.getSeries().size()).isGreaterThan(100);
-			assertThat(catalog.getMessages().size()).isGreaterThan(1000);
+			assertThat(catalog.getMessages(new RenderEnvironment()).size()).isGreaterThan(1000);
 		}
 	}
 
@@ -38,7 +39,22 @@ public class CatalogIT {
 			catalog.populateFromGoogleSpreadsheets();
 
 			assertThat(catalog.getSeries().size()).isGreaterThan(100);
-			assertThat(catalog.getMessages().size()).isGreaterThan(1000);
+			assertThat(catalog.getMessages(new RenderEnvironment()).size()).isGreaterThan(1000);
+		}
+	}
+
+	public static class BothCatalogs {
+
+		@Test
+		public void readTogether() throws Exception {
+			MediaCatalog wolCatalog = new MediaCatalog("WOL Series", "WOL Messages");
+			MediaCatalog tboCatalog = new MediaCatalog("TBO Series", "TBO Messages");
+			MediaCatalog.populateFromGoogleSpreadsheets(wolCatalog, tboCatalog);
+
+			assertThat(wolCatalog.getSeries().size()).isGreaterThan(100);
+			assertThat(wolCatalog.getMessages(new RenderEnvironment()).size()).isGreaterThan(1000);
+			assertThat(tboCatalog.getSeries().size()).isGreaterThan(100);
+			assertThat(tboCatalog.getMessages(new RenderEnvironment()).size()).isGreaterThan(1000);
 		}
 	}
 }
@@ -0,0 +1,124 @@
+package org.wolm.google;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gdata.data.ExtensionProfile;
+import com.google.gdata.data.spreadsheet.ListEntry;
+import com.google.gdata.data.spreadsheet.ListFeed;
+
+/**
+ * Benchmark comparing the heap held while reading a list feed by building the gdata {@link ListFeed}, which keeps
+ * every entry until the whole feed is parsed, with the rows of the feed streamed by {@link ListFeedReader}, which keeps
+ * only the values of the columns that are read.
+ * <p>
+ * The feed has 10,000 rows of 40 columns, 12 of which are read, like the media log with its production columns.
+ */
+public class ListFeedStreamingIT {
+	private static final int ROWS = 10_000;
+	private static final int COLUMNS = 40;
+	private static final int READ_COLUMNS = 12;
+
+	@Test
+	public void streamedRowsShouldHoldLessHeap() throws Exception {
+		byte[] feed = createFeed();
+		List<String> columnNames = new ArrayList<>();
+		for (int c = 0; c < READ_COLUMNS; c++)
+			columnNames.add(getName(c * COLUMNS / READ_COLUMNS));
+
+		// each read is made in its own method, so nothing else refers to what it holds when the heap is measured
+		long before = usedHeap();
+		ListFeed listFeed = parseFeed(feed);
+		long feedBytes = usedHeap() - before;
+		List<String> expected = getValues(listFeed, columnNames);
+		listFeed = null;
+
+		before = usedHeap();
+		List<String[]> rows = streamFeed(feed, columnNames);
+		long streamedBytes = usedHeap() - before;
+		List<String> values = new ArrayList<>();
+		for (String[] row : rows)
+			for (String value : row)
+				values.add(value);
+		assertThat(values).isEqualTo(expected);
+
+		System.out.println(String.format("Feed of %,d bytes, %,d rows", feed.length, ROWS));
+		System.out.println(String.format("gdata ListFeed, heap held:      %,d bytes", feedBytes));
+		System.out.println(String.format("Streamed %d columns, heap held: %,d bytes", READ_COLUMNS, streamedBytes));
+		System.out.println(String.format("Reduction:                      %,.1fx", (double) feedBytes / streamedBytes));
+
+		assertThat(streamedBytes).isLessThan(feedBytes);
+	}
+
+	private static ListFeed parseFeed(byte[] feed) throws Exception {
+		ListFeed listFeed = new ListFeed();
+		ExtensionProfile profile = new ExtensionProfile();
+		listFeed.declareExtensions(profile);
+		listFeed.parseAtom(profile, new ByteArrayInputStream(feed));
+		return listFeed;
+	}
+
+	private static List<String[]> streamFeed(byte[] feed, List<String> columnNames) throws Exception {
+		final List<String[]> rows = new ArrayList<>();
+		new ListFeedReader(columnNames).read(new ByteArrayInputStream(feed), new ListFeedReader.RowHandler() {
+			public void handleRow(String[] values) {
+				rows.add(values);
+			}
+		});
+		return rows;
+	}
+
+	private static List<String> getValues(ListFeed listFeed, List<String> columnNames) {
+		List<String> values = new ArrayList<>();
+		for (ListEntry entry : listFeed.getEntries())
+			for (String name : columnNames)
+				values.add(entry.getCustomElements().getValue(name));
+		return values;
+	}
+
+	/** @return Bytes of heap in use after collecting the garbage */
+	private static long usedHeap() throws InterruptedException {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	/** @return List feed shaped like the one Google sends */
+	private static byte[] createFeed() throws Exception {
+		StringBuilder xml = new StringBuilder();
+		xml.append("<?xml version='1.0' encoding='UTF-8'?>");
+		xml.append("<feed xmlns='http://www.w3.org/2005/Atom' xmlns:gsx='").append(ListFeedReader.EXTENDED_NAMESPACE)
+				.append("'><id>https://spreadsheets.google.com/feeds/list/key/od6/private/full</id>")
+				.append("<updated>2015-06-14T21:33:09.412Z</updated><title type='text'>Media Log</title>");
+		for (int r = 0; r < ROWS; r++) {
+			xml.append("<entry><id>https://spreadsheets.google.com/feeds/list/key/od6/private/full/r").append(r)
+					.append("</id><updated>2015-06-14T21:33:09.412Z</updated><title type='text'>")
+					.append(getValue(r, 0)).append("</title><content type='text'>").append(getName(1)).append(": ")
+					.append(getValue(r, 1)).append("</content>");
+			for (int c = 0; c < COLUMNS; c++)
+				xml.append("<gsx:").append(getName(c)).append('>').append(getValue(r, c)).append("</gsx:")
+						.append(getName(c)).append('>');
+			xml.append("</entry>");
+		}
+		xml.append("</feed>");
+		return xml.toString().getBytes("UTF-8");
+	}
+
+	private static String getName(int column) {
+		return "column" + column;
+	}
+
+	private static String getValue(int row, int column) {
+		return "Value of row " + row + " column " + column;
+	}
+}
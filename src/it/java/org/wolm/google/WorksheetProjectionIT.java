@@ -0,0 +1,110 @@
+package org.wolm.google;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gdata.data.spreadsheet.ListEntry;
+
+/**
+ * Benchmark comparing the heap kept by the rows of a worksheet read with all their columns (a list feed entry per row)
+ * with the rows read with only the columns the catalog reads, kept in columns of distinct values.
+ * <p>
+ * The worksheet has 10,000 rows of 40 columns, 12 of which are read, like the media log with its production columns.
+ */
+public class WorksheetProjectionIT {
+	private static final int ROWS = 10_000;
+	private static final int COLUMNS = 40;
+	private static final int PROJECTED_COLUMNS = 12;
+
+	@Test
+	public void projectedRowsShouldKeepLessHeap() throws Exception {
+		List<String> projectedNames = new ArrayList<>();
+		for (int c = 0; c < PROJECTED_COLUMNS; c++)
+			projectedNames.add(getName(c * COLUMNS / PROJECTED_COLUMNS));
+
+		// each set of rows is made in its own method, so nothing else refers to it when the heap is measured
+		long before = usedHeap();
+		List<GoogleRow> fullRows = createFullRows();
+		long fullBytes = usedHeap() - before;
+		List<String> expected = getValues(fullRows, projectedNames);
+		fullRows = null;
+
+		before = usedHeap();
+		List<GoogleRow> projectedRows = createProjectedRows(projectedNames);
+		long projectedBytes = usedHeap() - before;
+		assertThat(getValues(projectedRows, projectedNames)).isEqualTo(expected);
+
+		System.out.println(String.format("All %d columns, heap kept:          %,d bytes", COLUMNS, fullBytes));
+		System.out.println(String.format("Projected to %d columns, heap kept: %,d bytes", PROJECTED_COLUMNS,
+				projectedBytes));
+		System.out.println(String.format("Reduction:                          %,.1fx",
+				(double) fullBytes / projectedBytes));
+
+		assertThat(projectedBytes).isLessThan(fullBytes);
+	}
+
+	/** @return Rows with a list feed entry of all the columns */
+	private static List<GoogleRow> createFullRows() {
+		GoogleWorksheet worksheet = new GoogleWorksheet(null, (WorksheetSnapshot) null);
+		List<GoogleRow> rows = new ArrayList<>(ROWS);
+		for (int r = 0; r < ROWS; r++) {
+			ListEntry entry = new ListEntry();
+			for (int c = 0; c < COLUMNS; c++)
+				entry.getCustomElements().setValueLocal(getName(c), getValue(r, c));
+			rows.add(new GoogleRow(worksheet, entry));
+		}
+		return rows;
+	}
+
+	/** @return Rows with only the projected columns, kept the way the list feed is projected */
+	private static List<GoogleRow> createProjectedRows(List<String> projectedNames) {
+		List<String[]> values = new ArrayList<>(ROWS);
+		for (int r = 0; r < ROWS; r++) {
+			String[] projected = new String[PROJECTED_COLUMNS];
+			for (int c = 0; c < PROJECTED_COLUMNS; c++)
+				projected[c] = getValue(r, c * COLUMNS / PROJECTED_COLUMNS);
+			values.add(projected);
+		}
+		WorksheetSnapshot snapshot = WorksheetSnapshot.create("WOL Messages", "Media Log", null, projectedNames,
+				values);
+
+		GoogleWorksheet worksheet = new GoogleWorksheet(null, snapshot);
+		List<GoogleRow> rows = new ArrayList<>(ROWS);
+		for (int index = 0; index < ROWS; index++)
+			rows.add(new GoogleRow(worksheet, snapshot, index));
+		return rows;
+	}
+
+	private static List<String> getValues(List<GoogleRow> rows, List<String> columnNames) {
+		List<String> values = new ArrayList<>();
+		for (GoogleRow row : rows)
+			for (String name : columnNames)
+				values.add(row.getRawValue(name));
+		return values;
+	}
+
+	/** @return Bytes of heap in use after collecting the garbage */
+	private static long usedHeap() throws InterruptedException {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	private static String getName(int column) {
+		return "column" + column;
+	}
+
+	private static String getValue(int row, int column) {
+		// a few columns repeat values from row to row, like ministry and visibility
+		return column % 3 == 0 ? "Value " + (column + row % 4) : "Value of row " + row + " column " + column;
+	}
+}
@@ -0,0 +1,100 @@
+package org.wolm.series;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.wolm.message.Message;
+
+/**
+ * Benchmark comparing the message scan in {@link Series#discoverMessages(java.util.Collection)} with the
+ * {@link SeriesMessageIndex} on a synthetic catalog 10 times the size of the real one (~10,000 series and ~200,000
+ * messages).
+ * <p>
+ * The full scan is far too slow to run for every series at this size, so it is timed on a sample of the series and
+ * extrapolated.
+ */
+public class SeriesMessageIndexIT {
+	private static final int SCALE = 10;
+	private static final int SERIES_COUNT = 1_000 * SCALE;
+	private static final int MESSAGES_PER_SERIES = 12;
+	private static final int STAND_ALONE_COUNT = 8_000 * SCALE;
+	private static final int SCAN_SAMPLE = 100;
+
+	@Test
+	public void indexShouldBeFasterThanScan() {
+		List<String> titles = new ArrayList<>(SERIES_COUNT);
+		List<Message> messages = createCatalog(titles);
+		System.out.println("Synthetic catalog: " + titles.size() + " series, " + messages.size() + " messages");
+
+		// index every series
+		long start = System.nanoTime();
+		SeriesMessageIndex index = new SeriesMessageIndex(messages);
+		List<Series> indexed = new ArrayList<>(titles.size());
+		for (String title : titles) {
+			Series series = createSeries(title);
+			series.discoverMessages(index);
+			indexed.add(series);
+		}
+		long indexNanos = System.nanoTime() - start;
+
+		// scan a sample of the series
+		start = System.nanoTime();
+		for (int i = 0; i < SCAN_SAMPLE; i++) {
+			Series series = createSeries(titles.get(i));
+			series.discoverMessages(messages);
+			assertThat(series.getMessages()).isEqualTo(indexed.get(i).getMessages());
+		}
+		long scanNanos = (System.nanoTime() - start) * titles.size() / SCAN_SAMPLE;
+
+		System.out.println(String.format("Full scan (extrapolated): %,d ms", scanNanos / 1_000_000));
+		System.out.println(String.format("Index (measured):         %,d ms", indexNanos / 1_000_000));
+		System.out.println(String.format("Speedup:                  %,.0fx", (double) scanNanos / indexNanos));
+
+		assertThat(indexNanos).isLessThan(scanNanos);
+	}
+
+	private List<Message> createCatalog(List<String> titles) {
+		Random random = new Random(42);
+		List<Message> messages = new ArrayList<>();
+
+		for (int s = 0; s < SERIES_COUNT; s++) {
+			String title = "Series " + s;
+			titles.add(title);
+			for (int track = 1; track <= MESSAGES_PER_SERIES; track++) {
+				Message message = new Message();
+				message.setTitle(title + " message " + track);
+				// some messages are also in a second series, with mixed case like the real spreadsheet
+				if (random.nextInt(10) == 0) {
+					message.setSeries(Arrays.asList("Special " + random.nextInt(100), title.toUpperCase()));
+					message.setTrackNumbers(Arrays.asList(random.nextInt(20), track));
+				}
+				else {
+					message.setSeries(Arrays.asList(title));
+					message.setTrackNumbers(Arrays.asList(track));
+				}
+				messages.add(message);
+			}
+		}
+
+		for (int m = 0; m < STAND_ALONE_COUNT; m++) {
+			Message message = new Message();
+			message.setTitle("Stand alone " + m);
+			messages.add(message);
+		}
+
+		Collections.shuffle(messages, random);
+		return messages;
+	}
+
+	private Series createSeries(String title) {
+		Series series = new Series();
+		series.setTitle(title);
+		return series;
+	}
+}
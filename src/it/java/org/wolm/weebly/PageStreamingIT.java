@@ -0,0 +1,137 @@
+package org.wolm.weebly;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Benchmark comparing the bytes allocated to write a page the old way (content rendered into a {@link StringWriter},
+ * substituted into a copy of the page lines, then printed) with streaming the content through a {@link ChannelWriter}
+ * into a {@link CompiledPage}.
+ * <p>
+ * The page is a synthetic Weebly page of ~1,000 lines and the content is ~300 KB written in small pieces, the way
+ * Freemarker writes it.
+ */
+public class PageStreamingIT {
+	private static final int PAGE_LINES = 1_000;
+	private static final int CONTENT_PIECES = 20_000;
+	private static final int PAGES = 200;
+
+	@Test
+	public void streamingShouldAllocateLessThanSubstitution() throws Exception {
+		final List<String> lines = createPage();
+		final File file = File.createTempFile("page", ".html");
+		file.deleteOnExit();
+
+		Runnable substituted = new Runnable() {
+			public void run() {
+				try {
+					StringWriter content = new StringWriter();
+					writeContent(content);
+
+					Map<String, String> values = new HashMap<>();
+					values.put("Title", "Title");
+					values.put("Content", content.toString());
+
+					WeeblyPage page = new WeeblyPage(new ArrayList<>(lines));
+					page.substituteVariables(values);
+					try (PrintStream out = new PrintStream(new FileOutputStream(file), false, "UTF-8")) {
+						page.printPage(out);
+					}
+				}
+				catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+
+		final CompiledPage compiled = new WeeblyPage(lines).compile();
+		final Map<String, String> values = Collections.singletonMap("Title", "Title");
+		final Map<String, CompiledPage.StreamedValue> streamedValues = Collections
+				.<String, CompiledPage.StreamedValue> singletonMap("Content", new CompiledPage.StreamedValue() {
+					public void writeTo(Writer out) throws Exception {
+						writeContent(out);
+					}
+				});
+		Runnable streamed = new Runnable() {
+			public void run() {
+				try (ChannelWriter out = new ChannelWriter(FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING))) {
+					compiled.write(out, values, streamedValues);
+				}
+				catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+
+		substituted.run();
+		String substitutedPage = new String(Files.readAllBytes(file.toPath()), CompiledPage.CHARSET);
+		streamed.run();
+		String streamedPage = new String(Files.readAllBytes(file.toPath()), CompiledPage.CHARSET);
+		assertThat(streamedPage).isEqualTo(substitutedPage);
+
+		long substitutedBytes = measure(substituted);
+		long streamedBytes = measure(streamed);
+		System.out.println(String.format("Page size:             %,d bytes", file.length()));
+		System.out.println(String.format("Substituted, per page: %,d bytes allocated", substitutedBytes));
+		System.out.println(String.format("Streamed, per page:    %,d bytes allocated", streamedBytes));
+		System.out.println(String.format("Reduction:             %,.0fx", (double) substitutedBytes / streamedBytes));
+
+		assertThat(streamedBytes).isLessThan(substitutedBytes);
+	}
+
+	/** @return Average bytes allocated by the current thread to write one page, after a warm-up */
+	private long measure(Runnable writePage) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		for (int p = 0; p < PAGES; p++)
+			writePage.run();
+
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for (int p = 0; p < PAGES; p++)
+			writePage.run();
+		return (threads.getThreadAllocatedBytes(threadId) - before) / PAGES;
+	}
+
+	private List<String> createPage() {
+		List<String> lines = new ArrayList<>(PAGE_LINES);
+		lines.add("<html>");
+		lines.add("<head>");
+		lines.add("<title>${Title} - Word of Life Ministries</title>");
+		lines.add("<meta property='og:description' content='${Content}' />");
+		lines.add("</head>");
+		lines.add("<body>");
+		for (int l = lines.size(); l < PAGE_LINES - 3; l++)
+			lines.add("  <div class='wsite-" + l + "'><a href='http://www.wordoflifemn.org/'>Word of Life</a></div>");
+		lines.add("<div id='content'>${Content}</div>");
+		lines.add("</body>");
+		lines.add("</html>");
+		return lines;
+	}
+
+	private static void writeContent(Writer out) throws Exception {
+		for (int p = 0; p < CONTENT_PIECES; p++) {
+			out.write("<td>");
+			out.write("Caf\u00e9 ");
+			out.write("</td>");
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package org.wolm.aws;
+
+/**
+ * Number of requests that may be in flight at once, adapted to how the service responds (additive increase,
+ * multiplicative decrease). Each request that completes normally raises the limit by {@code 1/limit}, so the limit
+ * grows by about one for every round of requests. A request that is throttled, or whose latency is more than
+ * {@link #SLOW_FACTOR} times the fastest seen so far, halves the limit, at most once per round so that one slow burst
+ * does not collapse it. A request that fails for any other reason leaves the limit as it is.
+ * <p>
+ * Latency is measured per {@value #LATENCY_BLOCK_BYTES} bytes sent, so large and small requests can be compared.
+ *
+ * @author wolm
+ */
+public class AdaptiveConcurrencyLimit {
+	/** A request this many times slower than the fastest one means the service is congested */
+	static final double SLOW_FACTOR = 4.0;
+
+	/** Size latency is measured against */
+	static final long LATENCY_BLOCK_BYTES = 64 * 1024;
+
+	/**
+	 * How a request ended
+	 */
+	public enum Outcome {
+		/** The request succeeded */
+		completed,
+		/** The service asked us to slow down */
+		throttled,
+		/** The request failed for another reason, which says nothing about how busy the service is */
+		failed
+	};
+
+	private final int minLimit;
+	private final int maxLimit;
+
+	private double limit;
+	private int inFlight = 0;
+
+	/** Fastest latency per block seen, in nanoseconds */
+	private long fastestNanos = Long.MAX_VALUE;
+
+	private long completedCount = 0;
+	private long completedAtLastDecrease = 0;
+	private int decreaseCount = 0;
+	private int highestLimit;
+
+	/**
+	 * @param minLimit Lowest limit, at least 1
+	 * @param initialLimit Limit to start with
+	 * @param maxLimit Highest limit
+	 */
+	public AdaptiveConcurrencyLimit(int minLimit, int initialLimit, int maxLimit) {
+		super();
+		if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit)
+			throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max");
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.limit = initialLimit;
+		this.highestLimit = initialLimit;
+	}
+
+	/**
+	 * Waits until another request may start
+	 *
+	 * @throws InterruptedException
+	 */
+	public synchronized void acquire() throws InterruptedException {
+		while (inFlight >= getLimit())
+			wait();
+		inFlight++;
+	}
+
+	/**
+	 * Records a completed request and lets the next one start
+	 *
+	 * @param latencyNanos How long the request took
+	 * @param bytes Number of bytes the request sent
+	 * @param outcome How the request ended
+	 */
+	public synchronized void release(long latencyNanos, long bytes, Outcome outcome) {
+		inFlight--;
+		completedCount++;
+		notifyAll();
+		if (outcome == Outcome.failed) return;
+		boolean throttled = outcome == Outcome.throttled;
+
+		long blocks = Math.max(1, (bytes + LATENCY_BLOCK_BYTES - 1) / LATENCY_BLOCK_BYTES);
+		long nanosPerBlock = latencyNanos / blocks;
+		boolean slow = fastestNanos != Long.MAX_VALUE && nanosPerBlock > SLOW_FACTOR * fastestNanos;
+		if (!throttled) fastestNanos = Math.min(fastestNanos, nanosPerBlock);
+
+		if (throttled || slow) {
+			// one decrease per round of requests
+			if (completedCount - completedAtLastDecrease >= limit) {
+				limit = Math.max(minLimit, limit / 2);
+				completedAtLastDecrease = completedCount;
+				decreaseCount++;
+			}
+		}
+		else {
+			limit = Math.min(maxLimit, limit + 1 / limit);
+			highestLimit = Math.max(highestLimit, getLimit());
+		}
+	}
+
+	/** @return Number of requests that may be in flight */
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	/** @return Highest limit reached */
+	public synchronized int getHighestLimit() {
+		return highestLimit;
+	}
+
+	/** @return Number of times the limit was cut */
+	public synchronized int getDecreaseCount() {
+		return decreaseCount;
+	}
+}
@@ -1,17 +1,17 @@
 package org.wolm.aws;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import javax.annotation.Nonnull;
@@ -20,22 +20,12 @@ import javax.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateUtils;
 
-import com.amazonaws.auth.PropertiesFileCredentialsProvider;
-import com.amazonaws.regions.Region;
-import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.Bucket;
-import com.amazonaws.services.s3.model.CannedAccessControlList;
-import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
-import com.amazonaws.services.s3.model.GetObjectRequest;
-import com.amazonaws.services.s3.model.ListObjectsRequest;
-import com.amazonaws.services.s3.model.ObjectListing;
-import com.amazonaws.services.s3.model.PutObjectRequest;
-import com.amazonaws.services.s3.model.PutObjectResult;
-import com.amazonaws.services.s3.model.ResponseHeaderOverrides;
-import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
 
 /**
  * Helper for accessing Amazon's S3 content.
@@ -46,6 +36,8 @@ import com.amazonaws.services.s3.model.S3ObjectSummary;
  * <li>accessKey=
  * <li>secretKey=
  * </ul>
+ * The objects are read and written through an {@link ObjectStore}, which is S3 unless the singleton has been replaced
+ * with {@link #setInstance(AwsS3Helper)}.
  * 
  * @author wolm
  */
@@ -55,40 +47,75 @@ public class AwsS3Helper {
 		download, browser
 	};
 
+	/** How long a pre-signed URL works for */
+	private static final long SIGNED_URL_LIFETIME_MILLIS = 7 * DateUtils.MILLIS_PER_DAY;
+
 	/** singleton instance */
 	private static AwsS3Helper instance = null;
 
-	/** cached client */
-	private transient AmazonS3 s3Client;
+	/** where the objects are kept */
+	private final ObjectStore store;
 
 	/** cached map of buckets */
-	private transient Map<String, Bucket> bucketCache = new HashMap<>();
+	private transient Map<String, Bucket> bucketCache = new ConcurrentHashMap<>();
+
+	/** URLs signed so far */
+	private final SignedUrlCache signedUrls = new SignedUrlCache();
 
 	/** @return Singleton instance of the AWS S3 Helper */
-	public static AwsS3Helper instance() {
-		if (instance == null) instance = new AwsS3Helper();
+	public static synchronized AwsS3Helper instance() {
+		if (instance == null) instance = new AwsS3Helper(new S3ObjectStore());
 		return instance;
 	}
 
-	/** This is a singleton, so the constructor is private */
-	private AwsS3Helper() {
+	/**
+	 * Replaces the singleton, such as with one that keeps its objects in a local directory
+	 * 
+	 * @param helper New singleton. {@code null} to go back to S3
+	 */
+	public static synchronized void setInstance(@Nullable AwsS3Helper helper) {
+		instance = helper;
+	}
+
+	/**
+	 * @param file Local file
+	 * @return Hex MD5 of the file's content, which is the ETag S3 gives an object uploaded in one part
+	 * @throws IOException
+	 */
+	@Nonnull
+	public static String md5Hex(@Nonnull File file) throws IOException {
+		return BinaryUtils.toHex(Md5Utils.computeMD5Hash(file));
+	}
+
+	/**
+	 * Creates a helper that uses a specific client instead of the singleton's, such as a stand-in for testing
+	 * 
+	 * @param s3Client Client to use
+	 */
+	public AwsS3Helper(@Nonnull AmazonS3 s3Client) {
+		this(new S3ObjectStore(s3Client));
+	}
+
+	/**
+	 * Creates a helper that keeps its objects in a specific store
+	 * 
+	 * @param store Store to use
+	 */
+	public AwsS3Helper(@Nonnull ObjectStore store) {
 		super();
+		this.store = store;
 	}
 
+	/** @return Store the objects are kept in */
 	@Nonnull
-	private AmazonS3 getS3Client() {
-		if (s3Client == null) {
-			s3Client = new AmazonS3Client(
-					new PropertiesFileCredentialsProvider(System.getenv("HOME") + "/.wolm/aws.s3.properties"));
-			s3Client.setRegion(Region.getRegion(Regions.US_WEST_2));
-		}
-		return s3Client;
+	public ObjectStore getStore() {
+		return store;
 	}
 
 	/** @return All buckets in the S3 account */
 	@Nonnull
 	public List<Bucket> getBuckets() {
-		return getS3Client().listBuckets();
+		return store.listBuckets();
 	}
 
 	/**
@@ -97,7 +124,8 @@ public class AwsS3Helper {
 	 */
 	@Nullable
 	public Bucket getBucket(@Nonnull String bucketName) {
-		if (bucketCache.containsKey(bucketName)) return bucketCache.get(bucketName);
+		Bucket cached = bucketCache.get(bucketName);
+		if (cached != null) return cached;
 
 		for (Bucket bucket : getBuckets())
 			if (bucketName.equals(bucket.getName())) {
@@ -113,11 +141,10 @@ public class AwsS3Helper {
 	 * 
 	 * @param bucketName Name of the bucket to upload to
 	 * @param fileToUpload File to upload
-	 * @return Result of the upload
+	 * @throws IOException
 	 */
-	@Nonnull
-	public PutObjectResult uploadPublicFileToRoot(@Nonnull Bucket bucket, @Nonnull File fileToUpload) {
-		return uploadPublicFile(bucket.getName(), fileToUpload.getName(), fileToUpload);
+	public void uploadPublicFileToRoot(@Nonnull Bucket bucket, @Nonnull File fileToUpload) throws IOException {
+		uploadPublicFile(bucket, fileToUpload.getName(), fileToUpload);
 	}
 
 	/**
@@ -125,27 +152,36 @@ public class AwsS3Helper {
 	 * @param bucket Bucket to upload to
 	 * @param objectKey Key for the file to upload
 	 * @param fileToUpload File to upload
-	 * @return Result of the upload
+	 * @throws IOException
 	 */
-	@Nonnull
-	public PutObjectResult uploadPublicFile(@Nonnull Bucket bucket, @Nonnull String objectKey,
-			@Nonnull File fileToUpload) {
-		return uploadPublicFile(bucket.getName(), objectKey, fileToUpload);
+	public void uploadPublicFile(@Nonnull Bucket bucket, @Nonnull String objectKey, @Nonnull File fileToUpload)
+			throws IOException {
+		uploadPublicFile(bucket, objectKey, fileToUpload, null);
 	}
 
 	/**
-	 * Uploads a file to the bucket.
 	 * 
-	 * @param bucketName Name of the bucket to upload to
-	 * @param objectKey Key to use for the file contents
+	 * @param bucket Bucket to upload to
+	 * @param objectKey Key for the file to upload
 	 * @param fileToUpload File to upload
-	 * @return Result of the upload
+	 * @param metadata Optional headers to serve the object with, like its content type and encoding
+	 * @throws IOException
 	 */
-	@Nonnull
-	private PutObjectResult uploadPublicFile(@Nonnull String bucketName, @Nonnull String objectKey,
-			@Nonnull File fileToUpload) {
-		return getS3Client().putObject(new PutObjectRequest(bucketName, objectKey, fileToUpload)
-				.withCannedAcl(CannedAccessControlList.PublicRead));
+	public void uploadPublicFile(@Nonnull Bucket bucket, @Nonnull String objectKey, @Nonnull File fileToUpload,
+			@Nullable ObjectMetadata metadata) throws IOException {
+		store.put(bucket.getName(), objectKey, fileToUpload, metadata);
+	}
+
+	/**
+	 * Deletes objects from a bucket
+	 * 
+	 * @param bucket Bucket to delete from
+	 * @param objectKeys Keys of the objects to delete
+	 * @return Number of objects deleted
+	 * @throws IOException
+	 */
+	public int deleteObjects(@Nonnull Bucket bucket, @Nonnull List<String> objectKeys) throws IOException {
+		return store.delete(bucket.getName(), objectKeys);
 	}
 
 	/**
@@ -158,20 +194,25 @@ public class AwsS3Helper {
 	 */
 	public List<S3ObjectSummary> getObjectList(@Nonnull Bucket bucket, @Nullable String prefix,
 			@Nullable String regex) {
-		ListObjectsRequest request = new ListObjectsRequest().withBucketName(bucket.getName());
-		if (prefix != null) request.setPrefix(prefix);
-
-		Pattern pattern = null;
-		if (regex != null) pattern = Pattern.compile(regex);
-
 		List<S3ObjectSummary> summaries = new ArrayList<>();
-		for (S3ObjectSummary summary : getS3Client().listObjects(request).getObjectSummaries()) {
-			if (pattern == null || pattern.matcher(summary.getKey()).matches()) summaries.add(summary);
-		}
-
+		for (S3ObjectSummary summary : getObjects(bucket, prefix, regex))
+			summaries.add(summary);
 		return summaries;
 	}
 
+	/**
+	 * Lists the objects in a bucket lazily, one page at a time, so large listings can be processed as they arrive
+	 * 
+	 * @param bucket Bucket
+	 * @param prefix Optional prefix
+	 * @param regex Optional pattern to match. {@code null} to return everything
+	 * @return Every matching object, in key order
+	 */
+	public Iterable<S3ObjectSummary> getObjects(@Nonnull Bucket bucket, @Nullable String prefix,
+			@Nullable String regex) {
+		return store.list(bucket.getName(), prefix, regex == null ? null : Pattern.compile(regex));
+	}
+
 	/**
 	 * @param bucket
 	 * @param objectKey
@@ -179,35 +220,29 @@ public class AwsS3Helper {
 	 */
 	@Nullable
 	public S3ObjectSummary getObjectSummary(@Nonnull Bucket bucket, @Nonnull String objectKey) {
-		ObjectListing listObjects = getS3Client()
-				.listObjects(new ListObjectsRequest().withBucketName(bucket.getName()).withPrefix(objectKey));
-		for (S3ObjectSummary summary : listObjects.getObjectSummaries())
-			if (summary.getKey().equals(objectKey)) return summary;
-		return null;
+		return store.getSummary(bucket.getName(), objectKey);
+	}
+
+	/** @return URLs signed so far */
+	public SignedUrlCache getSignedUrlCache() {
+		return signedUrls;
 	}
 
 	/**
 	 * @param bucket
 	 * @param objectKey
-	 * @return A pre-signed URL for this object
+	 * @return A pre-signed URL for this object. The same URL is returned for the same object until it is close to
+	 * expiring
 	 */
 	public URL getSignedUrl(@Nonnull Bucket bucket, @Nonnull String objectKey, Disposition disposition) {
-		Date expiration = new Date(System.currentTimeMillis() + 7 * DateUtils.MILLIS_PER_DAY);
-
-		GeneratePresignedUrlRequest request = new GeneratePresignedUrlRequest(bucket.getName(), objectKey);
-		request.setExpiration(expiration);
-
-		switch (disposition) {
-		case browser:
-			// this is the default behavior
-			break;
-		case download:
-			ResponseHeaderOverrides overrides = new ResponseHeaderOverrides().withContentDisposition("attachment");
-			request.setResponseHeaders(overrides);
-			break;
-		}
-
-		return getS3Client().generatePresignedUrl(request);
+		long now = System.currentTimeMillis();
+		URL url = signedUrls.get(bucket.getName(), objectKey, disposition, now);
+		if (url != null) return url;
+
+		Date expiration = new Date(now + SIGNED_URL_LIFETIME_MILLIS);
+		url = store.sign(bucket.getName(), objectKey, disposition, expiration);
+		signedUrls.put(bucket.getName(), objectKey, disposition, url, expiration);
+		return url;
 	}
 
 	/**
@@ -229,11 +264,9 @@ public class AwsS3Helper {
 			if (key == null) return null;
 			key = URLDecoder.decode(key, "UTF-8");
 
-			URL signedUrl = getSignedUrl(bucket, key, disposition);
-			signedUrl = new URL(signedUrl.toString());
-			return signedUrl;
+			return getSignedUrl(bucket, key, disposition);
 		}
-		catch (MalformedURLException | UnsupportedEncodingException e) {
+		catch (UnsupportedEncodingException e) {
 		}
 		return null;
 	}
@@ -244,9 +277,9 @@ public class AwsS3Helper {
 	 * @param bucketName Bucket
 	 * @param key Object key
 	 * @return Input stream for the object. Caller must close()
+	 * @throws IOException
 	 */
-	public InputStream getContent(@Nonnull String bucketName, @Nonnull String key) {
-		S3Object object = getS3Client().getObject(new GetObjectRequest(bucketName, key));
-		return object.getObjectContent();
+	public InputStream getContent(@Nonnull String bucketName, @Nonnull String key) throws IOException {
+		return store.get(bucketName, key);
 	}
 }
@@ -0,0 +1,204 @@
+package org.wolm.aws;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.annotation.Nonnull;
+
+import org.wolm.catalog.App;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+/**
+ * Makes a gzipped copy of each page once, when it is rendered, so that the page is uploaded and served compressed. The
+ * copy is written next to the page as {@code <name>.gz} and is reused for as long as the page is not rewritten, so
+ * pages that did not change are not compressed again. Deflaters are pooled and reused across pages and threads.
+ * <p>
+ * The copy is uploaded under the key of the page with {@code Content-Encoding: gzip}, and the content type and cache
+ * control from {@link #getMetadata(File)}. The output is the same for the same page, so the ETag of an uploaded copy
+ * stays a stable MD5 of the copy.
+ *
+ * @author wolm
+ */
+public class GzipCompressor {
+	/** Suffix of the compressed copy of a file */
+	public static final String SUFFIX = ".gz";
+
+	/** How long browsers and proxies may keep a page before asking for it again */
+	public static final String DEFAULT_CACHE_CONTROL = "public, max-age=3600";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/** Gzip header: magic, deflate, no flags, no modification time, best compression, unknown OS */
+	private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 2, (byte) 0xff };
+
+	private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+
+	private final String cacheControl;
+
+	/** Compression of each type of page, by type */
+	private final Map<String, long[]> ratios = new TreeMap<>();
+
+	public GzipCompressor() {
+		this(DEFAULT_CACHE_CONTROL);
+	}
+
+	/**
+	 * @param cacheControl Cache-Control header to upload compressed files with
+	 */
+	public GzipCompressor(@Nonnull String cacheControl) {
+		super();
+		this.cacheControl = cacheControl;
+	}
+
+	/**
+	 * @param file Original file
+	 * @return File its compressed copy is written to
+	 */
+	@Nonnull
+	public static File getCompressedFile(@Nonnull File file) {
+		return new File(file.getPath() + SUFFIX);
+	}
+
+	/**
+	 * Compresses a file, unless its compressed copy is already up to date
+	 *
+	 * @param file File to compress
+	 * @param type Type of the file, for {@link #logSummary()}. Like the name of the template a page was rendered with
+	 * @return The compressed copy
+	 * @throws IOException
+	 */
+	@Nonnull
+	public File compress(@Nonnull File file, @Nonnull String type) throws IOException {
+		File compressed = getCompressed(file);
+		synchronized (ratios) {
+			long[] sizes = ratios.get(type);
+			if (sizes == null) ratios.put(type, sizes = new long[3]);
+			sizes[0]++;
+			sizes[1] += file.length();
+			sizes[2] += compressed.length();
+		}
+		return compressed;
+	}
+
+	/**
+	 * Gets the compressed copy of a file to upload, compressing the file first if it was not compressed when it was
+	 * rendered
+	 *
+	 * @param file Original file
+	 * @return The compressed copy
+	 * @throws IOException
+	 */
+	@Nonnull
+	public File getCompressed(@Nonnull File file) throws IOException {
+		File compressed = getCompressedFile(file);
+		if (!isUpToDate(file, compressed)) write(file, compressed);
+		return compressed;
+	}
+
+	/**
+	 * @param file Original file
+	 * @return Headers to upload the compressed copy of the file with
+	 */
+	@Nonnull
+	public ObjectMetadata getMetadata(@Nonnull File file) {
+		ObjectMetadata metadata = new ObjectMetadata();
+		metadata.setContentType(getContentType(file));
+		metadata.setContentEncoding("gzip");
+		metadata.setCacheControl(cacheControl);
+		return metadata;
+	}
+
+	/** Logs how well each type of page compressed */
+	public void logSummary() {
+		synchronized (ratios) {
+			for (Map.Entry<String, long[]> entry : ratios.entrySet()) {
+				long[] sizes = entry.getValue();
+				App.logInfo(String.format("Gzipped %d %s pages: %,d KB to %,d KB (%.1f%% of the original)",
+						sizes[0], entry.getKey(), sizes[1] / 1024, sizes[2] / 1024,
+						sizes[1] == 0 ? 100.0 : 100.0 * sizes[2] / sizes[1]));
+			}
+		}
+	}
+
+	/**
+	 * @param type Type of the files
+	 * @return Compressed size as a fraction of the original size, or 1 if no file of the type was compressed
+	 */
+	public double getRatio(@Nonnull String type) {
+		synchronized (ratios) {
+			long[] sizes = ratios.get(type);
+			return sizes == null || sizes[1] == 0 ? 1.0 : (double) sizes[2] / sizes[1];
+		}
+	}
+
+	/** @return {@code true} if the compressed copy was made from the file as it is now */
+	private static boolean isUpToDate(File file, File compressed) {
+		// the copy is given the modification time of the file it was made from
+		return compressed.isFile() && compressed.lastModified() == file.lastModified();
+	}
+
+	private void write(File file, File compressed) throws IOException {
+		Deflater deflater = deflaters.poll();
+		if (deflater == null) deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+
+		// write to a temporary file and move it into place, so an upload never sees a partial copy
+		File tempFile = new File(compressed.getParentFile(),
+				"." + compressed.getName() + "." + Thread.currentThread().getId() + ".tmp");
+		try {
+			CRC32 crc = new CRC32();
+			long size = 0;
+			try (InputStream in = Files.newInputStream(file.toPath());
+					OutputStream out = Files.newOutputStream(tempFile.toPath())) {
+				out.write(HEADER);
+
+				// the deflater is not ended when this stream is finished, so it can be used again
+				DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int count;
+				while ((count = in.read(buffer)) != -1) {
+					deflated.write(buffer, 0, count);
+					crc.update(buffer, 0, count);
+					size += count;
+				}
+				deflated.finish();
+
+				writeInt(out, crc.getValue());
+				writeInt(out, size);
+			}
+			Files.move(tempFile.toPath(), compressed.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			compressed.setLastModified(file.lastModified());
+		}
+		finally {
+			tempFile.delete();
+			deflater.reset();
+			deflaters.offer(deflater);
+		}
+	}
+
+	/** Writes the low 32 bits of a value, least significant byte first, as gzip does */
+	private static void writeInt(OutputStream out, long value) throws IOException {
+		for (int i = 0; i < 4; i++)
+			out.write((int) (value >> (8 * i)) & 0xff);
+	}
+
+	private static String getContentType(File file) {
+		String name = file.getName();
+		if (name.endsWith(".html")) return "text/html; charset=UTF-8";
+		String type = URLConnection.guessContentTypeFromName(name);
+		return type == null ? "application/octet-stream" : type;
+	}
+}
@@ -0,0 +1,234 @@
+package org.wolm.aws;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.wolm.aws.AwsS3Helper.Disposition;
+
+import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+/**
+ * Objects stored in a local directory instead of S3, so full builds can be run and profiled without a network. Every
+ * subdirectory of the root is a bucket, and every file in a bucket is an object whose key is its path relative to the
+ * bucket. A copy of a real bucket can be made with {@code aws s3 sync s3://<bucket> <root>/<bucket>}.
+ * <p>
+ * Objects are read through memory-mapped buffers, so reading an object copies nothing onto the heap but the bytes the
+ * caller asks for. Signed URLs are plain {@code file:} URLs. Only the content of an object is kept, not the headers it
+ * was stored with, so a page uploaded gzipped is stored gzipped.
+ *
+ * @author wolm
+ */
+public class LocalObjectStore implements ObjectStore {
+	/** Suffix of the files objects are written to before they replace the object */
+	private static final String TEMP_SUFFIX = ".store-tmp";
+
+	private final File root;
+
+	/**
+	 * @param root Directory holding one subdirectory per bucket
+	 */
+	public LocalObjectStore(@Nonnull File root) {
+		super();
+		this.root = root;
+	}
+
+	public File getRoot() {
+		return root;
+	}
+
+	@Override
+	public List<Bucket> listBuckets() {
+		List<Bucket> buckets = new ArrayList<>();
+		File[] dirs = root.listFiles();
+		if (dirs == null) return buckets;
+
+		Arrays.sort(dirs);
+		for (File dir : dirs)
+			if (dir.isDirectory()) buckets.add(new Bucket(dir.getName()));
+		return buckets;
+	}
+
+	@Override
+	public Iterable<S3ObjectSummary> list(String bucketName, String prefix, Pattern pattern) {
+		List<S3ObjectSummary> summaries = new ArrayList<>();
+		try {
+			collect(bucketName, getBucketDirectory(bucketName), "", prefix == null ? "" : prefix, pattern, summaries);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Cannot list the objects in " + getBucketDirectory(bucketName), e);
+		}
+		return summaries;
+	}
+
+	/** Adds the objects in a directory of a bucket to the list, in key order */
+	private void collect(String bucketName, File dir, String path, String prefix, Pattern pattern,
+			List<S3ObjectSummary> summaries) throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null) return;
+
+		// sorting by name with the separator appended to directories sorts the same way as the keys do
+		String[] names = new String[files.length];
+		for (int i = 0; i < files.length; i++)
+			names[i] = files[i].getName() + (files[i].isDirectory() ? "/" : "");
+		Arrays.sort(names);
+
+		for (String name : names) {
+			String key = path + name;
+			if (name.endsWith("/")) {
+				// only descend into directories that can hold keys with the prefix
+				if (key.startsWith(prefix) || prefix.startsWith(key))
+					collect(bucketName, new File(dir, name), key, prefix, pattern, summaries);
+				continue;
+			}
+			if (name.endsWith(TEMP_SUFFIX) || !key.startsWith(prefix)) continue;
+			if (pattern != null && !pattern.matcher(key).matches()) continue;
+
+			summaries.add(summarize(bucketName, key, new File(dir, name)));
+		}
+	}
+
+	@Override
+	@Nullable
+	public S3ObjectSummary getSummary(String bucketName, String key) {
+		File file = getFile(bucketName, key);
+		if (!file.isFile()) return null;
+
+		try {
+			return summarize(bucketName, key, file);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Cannot read " + file, e);
+		}
+	}
+
+	@Override
+	public InputStream get(String bucketName, String key) throws IOException {
+		File file = getFile(bucketName, key);
+		if (!file.isFile()) throw new FileNotFoundException("No object '" + key + "' in " + bucketName);
+		return new MappedInputStream(map(file));
+	}
+
+	@Override
+	public void put(String bucketName, String key, File file, ObjectMetadata metadata) throws IOException {
+		File object = getFile(bucketName, key);
+		object.getParentFile().mkdirs();
+
+		File tmpFile = new File(object.getParentFile(), object.getName() + TEMP_SUFFIX);
+		try {
+			try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+					FileChannel out = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE,
+							StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				long size = in.size();
+				for (long position = 0; position < size;)
+					position += in.transferTo(position, size - position, out);
+			}
+			Files.move(tmpFile.toPath(), object.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			tmpFile.delete();
+		}
+	}
+
+	@Override
+	public int delete(String bucketName, List<String> keys) throws IOException {
+		int deleted = 0;
+		for (String key : keys)
+			if (Files.deleteIfExists(getFile(bucketName, key).toPath())) deleted++;
+		return deleted;
+	}
+
+	@Override
+	public URL sign(String bucketName, String key, Disposition disposition, Date expiration) {
+		try {
+			return getFile(bucketName, key).toURI().toURL();
+		}
+		catch (MalformedURLException e) {
+			// impossible - file URIs are always valid URLs
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private File getBucketDirectory(String bucketName) {
+		return new File(root, bucketName);
+	}
+
+	private File getFile(String bucketName, String key) {
+		return new File(getBucketDirectory(bucketName), key);
+	}
+
+	private static S3ObjectSummary summarize(String bucketName, String key, File file) throws IOException {
+		S3ObjectSummary summary = new S3ObjectSummary();
+		summary.setBucketName(bucketName);
+		summary.setKey(key);
+		summary.setSize(file.length());
+		summary.setLastModified(new Date(file.lastModified()));
+		summary.setETag(AwsS3Helper.md5Hex(file));
+		return summary;
+	}
+
+	private static MappedByteBuffer map(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	/**
+	 * Reads a memory-mapped object
+	 */
+	private static class MappedInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		MappedInputStream(ByteBuffer buffer) {
+			super();
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) return 0;
+			if (!buffer.hasRemaining()) return -1;
+
+			int count = Math.min(len, buffer.remaining());
+			buffer.get(b, off, count);
+			return count;
+		}
+
+		@Override
+		public long skip(long n) {
+			int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+			buffer.position(buffer.position() + count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package org.wolm.aws;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.wolm.aws.AwsS3Helper.Disposition;
+
+import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+/**
+ * Storage for the buckets of objects the catalog reads and publishes. {@link AwsS3Helper} does all of its work through
+ * one of these, so the same build can run against S3 ({@link S3ObjectStore}) or against a local directory
+ * ({@link LocalObjectStore}).
+ *
+ * @author wolm
+ */
+public interface ObjectStore {
+
+	/** @return Every bucket in the store */
+	@Nonnull
+	List<Bucket> listBuckets();
+
+	/**
+	 * @param bucketName Name of the bucket
+	 * @param prefix Optional prefix. {@code null} to list the whole bucket
+	 * @param pattern Optional pattern the object keys must match. {@code null} to return everything
+	 * @return Every matching object, in key order. The ETag of each object is the MD5 of its content unless it was
+	 * uploaded in parts
+	 */
+	@Nonnull
+	Iterable<S3ObjectSummary> list(@Nonnull String bucketName, @Nullable String prefix, @Nullable Pattern pattern);
+
+	/**
+	 * @param bucketName Name of the bucket
+	 * @param key Object key
+	 * @return Information about the object, or {@code null} if there is no such object
+	 */
+	@Nullable
+	S3ObjectSummary getSummary(@Nonnull String bucketName, @Nonnull String key);
+
+	/**
+	 * @param bucketName Name of the bucket
+	 * @param key Object key
+	 * @return Content of the object. Caller must close()
+	 * @throws IOException if there is no such object or it cannot be read
+	 */
+	@Nonnull
+	InputStream get(@Nonnull String bucketName, @Nonnull String key) throws IOException;
+
+	/**
+	 * Stores a file as a publicly readable object, replacing any object with the same key
+	 *
+	 * @param bucketName Name of the bucket
+	 * @param key Object key
+	 * @param file File to store
+	 * @param metadata Optional headers to serve the object with, like its content type and encoding. {@code null} to
+	 * let the store decide
+	 * @throws IOException
+	 */
+	void put(@Nonnull String bucketName, @Nonnull String key, @Nonnull File file, @Nullable ObjectMetadata metadata)
+			throws IOException;
+
+	/**
+	 * @param bucketName Name of the bucket
+	 * @param keys Keys of the objects to delete. Keys with no object are ignored
+	 * @return Number of objects deleted
+	 * @throws IOException
+	 */
+	int delete(@Nonnull String bucketName, @Nonnull List<String> keys) throws IOException;
+
+	/**
+	 * @param bucketName Name of the bucket
+	 * @param key Object key
+	 * @param disposition How the browser should handle the object
+	 * @param expiration When the URL should stop working
+	 * @return URL that anyone can read the object with until the expiration
+	 */
+	@Nonnull
+	URL sign(@Nonnull String bucketName, @Nonnull String key, @Nonnull Disposition disposition,
+			@Nonnull Date expiration);
+}
@@ -0,0 +1,134 @@
+package org.wolm.aws;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+/**
+ * Every object in a bucket (or under a prefix), read lazily one page of up to 1,000 objects at a time. While the
+ * caller works through one page, the next page is already being fetched in the background.
+ * <p>
+ * Each iteration starts a new listing from the beginning, and the objects come back in key order.
+ *
+ * @author wolm
+ */
+public class PagedObjectListing implements Iterable<S3ObjectSummary> {
+	/** Fetches pages in the background. Daemon threads, so a listing that is not finished never keeps the app alive */
+	private static final ExecutorService prefetcher = Executors.newCachedThreadPool(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "S3 listing prefetch");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final AmazonS3 s3Client;
+	private final String bucketName;
+	private final String prefix;
+	private final Pattern pattern;
+
+	/**
+	 * @param s3Client Client to list the objects with
+	 * @param bucketName Name of the bucket
+	 * @param prefix Optional prefix. {@code null} to list the whole bucket
+	 * @param pattern Optional pattern the object keys must match. {@code null} to return everything
+	 */
+	public PagedObjectListing(@Nonnull AmazonS3 s3Client, @Nonnull String bucketName, @Nullable String prefix,
+			@Nullable Pattern pattern) {
+		super();
+		this.s3Client = s3Client;
+		this.bucketName = bucketName;
+		this.prefix = prefix;
+		this.pattern = pattern;
+	}
+
+	@Override
+	public Iterator<S3ObjectSummary> iterator() {
+		return new PageIterator();
+	}
+
+	/** Starts fetching the page that starts after the marker */
+	private Future<ObjectListing> fetch(@Nullable final String marker) {
+		return prefetcher.submit(new Callable<ObjectListing>() {
+			public ObjectListing call() throws Exception {
+				ListObjectsRequest request = new ListObjectsRequest().withBucketName(bucketName);
+				if (prefix != null) request.setPrefix(prefix);
+				if (marker != null) request.setMarker(marker);
+				return s3Client.listObjects(request);
+			}
+		});
+	}
+
+	private static ObjectListing waitFor(Future<ObjectListing> page) {
+		try {
+			return page.get();
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw new IllegalStateException("Cannot list the objects in S3", e.getCause());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while listing the objects in S3", e);
+		}
+	}
+
+	private class PageIterator implements Iterator<S3ObjectSummary> {
+		/** Page being fetched, or {@code null} once the last page has been fetched */
+		private Future<ObjectListing> nextPage = fetch(null);
+		private Iterator<S3ObjectSummary> current = null;
+		private S3ObjectSummary next = null;
+
+		@Override
+		public boolean hasNext() {
+			while (next == null) {
+				if (current != null && current.hasNext()) {
+					S3ObjectSummary summary = current.next();
+					if (pattern == null || pattern.matcher(summary.getKey()).matches()) next = summary;
+					continue;
+				}
+				if (nextPage == null) return false;
+
+				ObjectListing page = waitFor(nextPage);
+				List<S3ObjectSummary> summaries = page.getObjectSummaries();
+				nextPage = null;
+				if (page.isTruncated()) {
+					// the next marker is only set for listings with a delimiter, otherwise continue from the last key
+					String marker = page.getNextMarker();
+					if (marker == null && !summaries.isEmpty()) marker = summaries.get(summaries.size() - 1).getKey();
+					if (marker != null) nextPage = fetch(marker);
+				}
+				current = summaries.iterator();
+			}
+			return true;
+		}
+
+		@Override
+		public S3ObjectSummary next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			S3ObjectSummary summary = next;
+			next = null;
+			return summary;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
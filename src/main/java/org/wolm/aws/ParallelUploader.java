@@ -0,0 +1,164 @@
+package org.wolm.aws;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.wolm.aws.AdaptiveConcurrencyLimit.Outcome;
+import org.wolm.catalog.App;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+/**
+ * Uploads files to a bucket on several threads. The number of uploads in flight adapts to how S3 responds (see
+ * {@link AdaptiveConcurrencyLimit}) instead of being fixed. Throttled uploads are only tried again by the S3 client,
+ * which backs off between tries; an upload that is still throttled after that cuts the limit and fails. When done, the
+ * throughput is logged in MB/s and files/s.
+ *
+ * @author wolm
+ */
+public class ParallelUploader {
+	private final AwsS3Helper s3Helper;
+	private final Bucket bucket;
+	private final int maxConcurrency;
+	private final AdaptiveConcurrencyLimit limit;
+	private GzipCompressor compressor = null;
+
+	/**
+	 * @param s3Helper Helper to upload with
+	 * @param bucket Bucket to upload to
+	 * @param maxConcurrency Most uploads in flight at once
+	 */
+	public ParallelUploader(@Nonnull AwsS3Helper s3Helper, @Nonnull Bucket bucket, int maxConcurrency) {
+		super();
+		if (maxConcurrency < 1) throw new IllegalArgumentException("Concurrency must be at least 1");
+		this.s3Helper = s3Helper;
+		this.bucket = bucket;
+		this.maxConcurrency = maxConcurrency;
+		this.limit = new AdaptiveConcurrencyLimit(1, Math.min(4, maxConcurrency), maxConcurrency);
+	}
+
+	/** @return Most uploads in flight at once */
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/** @return Compressor whose copies are uploaded instead of the files, or {@code null} to upload the files as is */
+	@Nullable
+	public GzipCompressor getCompressor() {
+		return compressor;
+	}
+
+	public void setCompressor(@Nullable GzipCompressor compressor) {
+		this.compressor = compressor;
+	}
+
+	/** @return Limit the uploads run under */
+	public AdaptiveConcurrencyLimit getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Uploads files, logging the ones that cannot be uploaded
+	 *
+	 * @param files Files to upload
+	 * @param keys Key of each file
+	 * @return Files that were uploaded, in the order given
+	 */
+	@Nonnull
+	public List<File> upload(@Nonnull final List<File> files, @Nonnull final List<String> keys) {
+		List<File> uploaded = new ArrayList<>();
+		if (files.isEmpty()) return uploaded;
+
+		long start = System.nanoTime();
+		long bytes = 0;
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(maxConcurrency, files.size()));
+		try {
+			List<Future<Long>> uploads = new ArrayList<>();
+			for (int i = 0; i < files.size(); i++) {
+				final File file = files.get(i);
+				final String key = keys.get(i);
+				uploads.add(pool.submit(new Callable<Long>() {
+					public Long call() throws Exception {
+						return upload(file, key);
+					}
+				}));
+			}
+
+			for (int i = 0; i < uploads.size(); i++) {
+				try {
+					bytes += uploads.get(i).get();
+					File file = files.get(i);
+					uploaded.add(file);
+					App.logInfo("  Uploaded page " + (i + 1) + " of " + files.size() + ": " + file.getName()
+							+ " (concurrency " + limit.getLimit() + ")");
+				}
+				catch (Exception e) {
+					App.logError("Unable to upload " + files.get(i) + ": " + e.getMessage());
+				}
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		logThroughput(uploaded.size(), bytes, System.nanoTime() - start);
+		return uploaded;
+	}
+
+	/**
+	 * Logs how fast files were uploaded
+	 *
+	 * @param files Number of files uploaded
+	 * @param bytes Total size of the files
+	 * @param elapsedNanos How long the uploads took
+	 */
+	public void logThroughput(int files, long bytes, long elapsedNanos) {
+		double seconds = Math.max(1, elapsedNanos) / 1e9;
+		App.logInfo(String.format("Uploaded %d files (%.2f MB) in %.1f s: %.2f MB/s, %.1f files/s, "
+				+ "concurrency up to %d, cut %d times", files, bytes / 1e6, seconds, bytes / 1e6 / seconds,
+				files / seconds, limit.getHighestLimit(), limit.getDecreaseCount()));
+	}
+
+	/**
+	 * Uploads one file once the limit allows it. Safe to call from several threads
+	 *
+	 * @param file File to upload. Its compressed copy is uploaded instead if there is a compressor
+	 * @param key Key to upload it as
+	 * @return Number of bytes uploaded
+	 * @throws Exception if the file cannot be uploaded
+	 */
+	public long upload(@Nonnull File file, @Nonnull String key) throws Exception {
+		File body = compressor == null ? file : compressor.getCompressed(file);
+		ObjectMetadata metadata = compressor == null ? null : compressor.getMetadata(file);
+		limit.acquire();
+		long start = System.nanoTime();
+		Outcome outcome = Outcome.failed;
+		try {
+			s3Helper.uploadPublicFile(bucket, key, body, metadata);
+			outcome = Outcome.completed;
+			return body.length();
+		}
+		catch (AmazonServiceException e) {
+			if (isThrottled(e)) outcome = Outcome.throttled;
+			throw e;
+		}
+		finally {
+			limit.release(System.nanoTime() - start, body.length(), outcome);
+		}
+	}
+
+	private static boolean isThrottled(AmazonServiceException e) {
+		return e.getStatusCode() == 503 || RetryUtils.isThrottlingException(e);
+	}
+}
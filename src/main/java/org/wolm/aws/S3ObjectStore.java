@@ -0,0 +1,162 @@
+package org.wolm.aws;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.wolm.aws.AwsS3Helper.Disposition;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.PropertiesFileCredentialsProvider;
+import com.amazonaws.regions.Region;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.ResponseHeaderOverrides;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+/**
+ * Objects stored in Amazon S3.
+ * <p>
+ * Unless a client is given, the credentials are read from ~/.wolm/aws.s3.properties (see {@link AwsS3Helper}) when
+ * the store is first used. The client keeps a pool of connections alive between requests, large enough for every
+ * thread that lists, reads, signs and uploads at the same time.
+ *
+ * @author wolm
+ */
+public class S3ObjectStore implements ObjectStore {
+	/** Most keys S3 deletes in one multi-object delete request */
+	private static final int MAX_DELETE_KEYS = 1_000;
+
+	/** Default size of the connection pool */
+	public static final int DEFAULT_MAX_CONNECTIONS = 50;
+
+	/** How long an idle connection is kept open for the next request */
+	private static final long CONNECTION_MAX_IDLE_MILLIS = 60_000;
+
+	private final ClientConfiguration clientConfiguration;
+
+	/** cached client */
+	private AmazonS3 s3Client;
+
+	/** Creates a store that connects to S3 with the configured credentials and the default connection pool */
+	public S3ObjectStore() {
+		this(DEFAULT_MAX_CONNECTIONS);
+	}
+
+	/**
+	 * Creates a store that connects to S3 with the configured credentials
+	 *
+	 * @param maxConnections Most connections open to S3 at once
+	 */
+	public S3ObjectStore(int maxConnections) {
+		super();
+		if (maxConnections < 1) throw new IllegalArgumentException("There must be at least one connection");
+		this.clientConfiguration = new ClientConfiguration().withMaxConnections(maxConnections)
+				.withTcpKeepAlive(true).withConnectionMaxIdleMillis(CONNECTION_MAX_IDLE_MILLIS)
+				.withThrottledRetries(true);
+	}
+
+	/**
+	 * Creates a store that uses a specific client, such as a stand-in for testing
+	 *
+	 * @param s3Client Client to use
+	 */
+	public S3ObjectStore(@Nonnull AmazonS3 s3Client) {
+		super();
+		this.clientConfiguration = null;
+		this.s3Client = s3Client;
+	}
+
+	@Nonnull
+	private synchronized AmazonS3 getS3Client() {
+		if (s3Client == null) {
+			s3Client = new AmazonS3Client(
+					new PropertiesFileCredentialsProvider(System.getenv("HOME") + "/.wolm/aws.s3.properties"),
+					clientConfiguration);
+			s3Client.setRegion(Region.getRegion(Regions.US_WEST_2));
+		}
+		return s3Client;
+	}
+
+	@Override
+	public List<Bucket> listBuckets() {
+		return getS3Client().listBuckets();
+	}
+
+	@Override
+	public Iterable<S3ObjectSummary> list(String bucketName, String prefix, Pattern pattern) {
+		return new PagedObjectListing(getS3Client(), bucketName, prefix, pattern);
+	}
+
+	@Override
+	@Nullable
+	public S3ObjectSummary getSummary(String bucketName, String key) {
+		// keys are listed in order, so if the object exists it is the first one with its own key as the prefix
+		ObjectListing listObjects = getS3Client().listObjects(
+				new ListObjectsRequest().withBucketName(bucketName).withPrefix(key).withMaxKeys(1));
+		for (S3ObjectSummary summary : listObjects.getObjectSummaries())
+			if (summary.getKey().equals(key)) return summary;
+		return null;
+	}
+
+	@Override
+	public InputStream get(String bucketName, String key) {
+		return getS3Client().getObject(new GetObjectRequest(bucketName, key)).getObjectContent();
+	}
+
+	@Override
+	public void put(String bucketName, String key, File file, ObjectMetadata metadata) {
+		getS3Client().putObject(new PutObjectRequest(bucketName, key, file).withMetadata(metadata)
+				.withCannedAcl(CannedAccessControlList.PublicRead));
+	}
+
+	/** Deletes the objects with as few multi-object delete requests as possible */
+	@Override
+	public int delete(String bucketName, List<String> keys) {
+		int deleted = 0;
+		for (int start = 0; start < keys.size(); start += MAX_DELETE_KEYS) {
+			List<KeyVersion> batch = new ArrayList<>();
+			for (String key : keys.subList(start, Math.min(start + MAX_DELETE_KEYS, keys.size())))
+				batch.add(new KeyVersion(key));
+			deleted += getS3Client().deleteObjects(new DeleteObjectsRequest(bucketName).withKeys(batch))
+					.getDeletedObjects().size();
+		}
+		return deleted;
+	}
+
+	@Override
+	public URL sign(String bucketName, String key, Disposition disposition, Date expiration) {
+		GeneratePresignedUrlRequest request = new GeneratePresignedUrlRequest(bucketName, key);
+		request.setExpiration(expiration);
+
+		switch (disposition) {
+		case browser:
+			// this is the default behavior
+			break;
+		case download:
+			ResponseHeaderOverrides overrides = new ResponseHeaderOverrides().withContentDisposition("attachment");
+			request.setResponseHeaders(overrides);
+			break;
+		}
+
+		return getS3Client().generatePresignedUrl(request);
+	}
+}
@@ -0,0 +1,222 @@
+package org.wolm.aws;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.wolm.catalog.App;
+
+import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+/**
+ * Publishes a set of files to a bucket by sending only what differs from what the bucket already holds. The bucket is
+ * listed once, and a file is only uploaded if there is no object for it yet or the object's ETag is not the MD5 of the
+ * file. Files that were published before but are no longer part of the site, and that the caller names as retired,
+ * are then deleted with multi-object deletes. Nothing else in the bucket is ever deleted, since the bucket also holds
+ * objects this publisher did not put there.
+ * <p>
+ * Files are published flat, as {@code prefix/name}, or just {@code name} if there is no prefix. With a
+ * {@link GzipCompressor}, the compressed copy of each file is compared and uploaded instead.
+ *
+ * @author wolm
+ */
+public class S3Publisher {
+	private final AwsS3Helper s3Helper;
+	private final Bucket bucket;
+	private final String prefix;
+
+	private int concurrency = 16;
+	private GzipCompressor compressor = null;
+
+	/**
+	 * @param s3Helper Helper to access the bucket with
+	 * @param bucket Bucket to publish to
+	 * @param prefix Optional folder to publish into. {@code null} to publish to the root of the bucket
+	 */
+	public S3Publisher(@Nonnull AwsS3Helper s3Helper, @Nonnull Bucket bucket, @Nullable String prefix) {
+		super();
+		this.s3Helper = s3Helper;
+		this.bucket = bucket;
+		this.prefix = prefix;
+	}
+
+	/** @return Most files uploaded at the same time */
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	public void setConcurrency(int concurrency) {
+		if (concurrency < 1) throw new IllegalArgumentException("Concurrency must be at least 1");
+		this.concurrency = concurrency;
+	}
+
+	/** @return Compressor whose copies are published instead of the files, or {@code null} to publish the files */
+	@Nullable
+	public GzipCompressor getCompressor() {
+		return compressor;
+	}
+
+	public void setCompressor(@Nullable GzipCompressor compressor) {
+		this.compressor = compressor;
+	}
+
+	/**
+	 * @param file Local file
+	 * @return Key of the object the file is published as
+	 */
+	@Nonnull
+	public String getKey(@Nonnull File file) {
+		if (prefix == null) return file.getName();
+		return prefix + "/" + file.getName();
+	}
+
+	/**
+	 * Uploads new and changed files
+	 *
+	 * @param files Every file that should be in the bucket
+	 * @return What was published
+	 * @throws IOException if a file cannot be read
+	 */
+	@Nonnull
+	public Result publish(@Nonnull Collection<File> files) throws IOException {
+		return publish(files, Collections.<File> emptyList());
+	}
+
+	/**
+	 * Makes the bucket match the files: uploads new and changed files, and deletes the retired files
+	 *
+	 * @param files Every file that should be in the bucket
+	 * @param retired Files that were published before but are no longer part of the site. Their objects are deleted,
+	 * unless one of the files is published under the same key
+	 * @return What was published
+	 * @throws IOException if a file cannot be read, or the objects cannot be deleted
+	 */
+	@Nonnull
+	public Result publish(@Nonnull Collection<File> files, @Nonnull Collection<File> retired) throws IOException {
+		Map<String, S3ObjectSummary> remote = new HashMap<>();
+		for (S3ObjectSummary summary : s3Helper.getObjects(bucket, prefix == null ? null : prefix + "/", null))
+			remote.put(summary.getKey(), summary);
+		App.logInfo("Found " + remote.size() + " objects in the " + bucket.getName() + " S3 bucket");
+
+		Result result = new Result();
+		Set<String> published = new HashSet<>();
+		List<File> changed = new ArrayList<>();
+		for (File file : files) {
+			String key = getKey(file);
+			published.add(key);
+			S3ObjectSummary summary = remote.get(key);
+			File body = compressor == null ? file : compressor.getCompressed(file);
+			if (summary != null && AwsS3Helper.md5Hex(body).equals(getContentMd5(summary))) {
+				result.unchanged.add(file);
+				result.bytesSaved += body.length();
+			}
+			else {
+				changed.add(file);
+			}
+		}
+
+		upload(changed, result);
+
+		List<String> stale = new ArrayList<>();
+		for (File file : retired) {
+			String key = getKey(file);
+			if (published.contains(key)) continue;
+			if (remote.containsKey(key)) stale.add(key);
+			result.retired.add(file);
+		}
+		if (!stale.isEmpty()) {
+			App.logInfo("Deleting " + stale.size() + " pages that are no longer generated ...");
+			result.deletedCount = s3Helper.deleteObjects(bucket, stale);
+		}
+
+		App.logInfo("Published " + result.uploaded.size() + " changed files (" + formatBytes(result.bytesUploaded)
+				+ "), skipped " + result.unchanged.size() + " unchanged files (" + formatBytes(result.bytesSaved)
+				+ " saved), deleted " + result.deletedCount + " stale pages");
+		return result;
+	}
+
+	/** Uploads the files, adding the ones that were uploaded to the result */
+	private void upload(List<File> files, Result result) throws IOException {
+		App.logInfo("Uploading " + files.size() + " changed files, " + result.unchanged.size()
+				+ " are already up to date (" + formatBytes(result.bytesSaved) + " saved) ...");
+		List<String> keys = new ArrayList<>();
+		for (File file : files)
+			keys.add(getKey(file));
+
+		ParallelUploader uploader = new ParallelUploader(s3Helper, bucket, concurrency);
+		uploader.setCompressor(compressor);
+		for (File file : uploader.upload(files, keys)) {
+			result.uploaded.add(file);
+			result.bytesUploaded += compressor == null ? file.length() : compressor.getCompressed(file).length();
+		}
+	}
+
+	/**
+	 * @return MD5 of the object's content, or {@code null} if the ETag is not one. Objects uploaded in parts have an
+	 * ETag of the form {@code "<hash>-<parts>"}, which is never a match
+	 */
+	@Nullable
+	private static String getContentMd5(@Nonnull S3ObjectSummary summary) {
+		String etag = summary.getETag();
+		if (etag == null) return null;
+		etag = etag.replace("\"", "").toLowerCase();
+		return etag.indexOf('-') < 0 ? etag : null;
+	}
+
+	private static String formatBytes(long bytes) {
+		if (bytes < 1024) return bytes + " bytes";
+		return String.format("%,d KB", bytes / 1024);
+	}
+
+	/**
+	 * What a publish did
+	 */
+	public static class Result {
+		private final List<File> uploaded = new ArrayList<>();
+		private final List<File> unchanged = new ArrayList<>();
+		private final List<File> retired = new ArrayList<>();
+		private int deletedCount = 0;
+		private long bytesUploaded = 0;
+		private long bytesSaved = 0;
+
+		/** @return Files that were uploaded */
+		public List<File> getUploaded() {
+			return uploaded;
+		}
+
+		/** @return Files that were already in the bucket */
+		public List<File> getUnchanged() {
+			return unchanged;
+		}
+
+		/** @return Retired files that are no longer in the bucket, whether they were deleted now or were already gone */
+		public List<File> getRetired() {
+			return retired;
+		}
+
+		/** @return Number of pages deleted from the bucket */
+		public int getDeletedCount() {
+			return deletedCount;
+		}
+
+		public long getBytesUploaded() {
+			return bytesUploaded;
+		}
+
+		/** @return Size of the files that did not need to be uploaded */
+		public long getBytesSaved() {
+			return bytesSaved;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package org.wolm.aws;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.time.DateUtils;
+import org.wolm.aws.AwsS3Helper.Disposition;
+import org.wolm.catalog.App;
+
+/**
+ * Pre-signed URLs by bucket, object key and disposition, so an object that is linked from several pages is only signed
+ * once. A URL is handed out again only while it has at least {@link #MIN_REMAINING_MILLIS} left before it expires,
+ * so that a page rendered with it stays usable for at least that long.
+ *
+ * @author wolm
+ */
+public class SignedUrlCache {
+	/** Shortest time a URL from the cache is still valid for */
+	public static final long MIN_REMAINING_MILLIS = DateUtils.MILLIS_PER_DAY;
+
+	private final ConcurrentMap<List<Object>, Entry> entries = new ConcurrentHashMap<>();
+	private final AtomicInteger hitCount = new AtomicInteger();
+	private final AtomicInteger missCount = new AtomicInteger();
+
+	/**
+	 * @param now Current time in milliseconds
+	 * @return The signed URL for the object, or {@code null} if it has not been signed or will expire too soon
+	 */
+	@Nullable
+	public URL get(@Nonnull String bucketName, @Nonnull String key, @Nonnull Disposition disposition, long now) {
+		Entry entry = entries.get(Arrays.<Object> asList(bucketName, key, disposition));
+		if (entry == null || entry.expiration - now < MIN_REMAINING_MILLIS) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		return entry.url;
+	}
+
+	/**
+	 * @param url Signed URL for the object
+	 * @param expiration When the URL stops working
+	 */
+	public void put(@Nonnull String bucketName, @Nonnull String key, @Nonnull Disposition disposition,
+			@Nonnull URL url, @Nonnull Date expiration) {
+		entries.put(Arrays.<Object> asList(bucketName, key, disposition), new Entry(url, expiration.getTime()));
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/** @return Number of URLs found in the cache */
+	public int getHitCount() {
+		return hitCount.get();
+	}
+
+	/** @return Number of URLs that had to be signed */
+	public int getMissCount() {
+		return missCount.get();
+	}
+
+	public void logSummary() {
+		App.logInfo("Signed URLs: " + getMissCount() + " signed, " + getHitCount() + " reused");
+	}
+
+	private static class Entry {
+		private final URL url;
+		private final long expiration;
+
+		private Entry(URL url, long expiration) {
+			this.url = url;
+			this.expiration = expiration;
+		}
+	}
+}
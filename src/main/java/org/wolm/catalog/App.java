@@ -1,18 +1,19 @@
 package org.wolm.catalog;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 import org.wolm.aws.AwsS3Helper;
+import org.wolm.aws.GzipCompressor;
+import org.wolm.aws.LocalObjectStore;
+import org.wolm.aws.ParallelUploader;
+import org.wolm.aws.S3ObjectStore;
+import org.wolm.aws.S3Publisher;
 import org.wolm.catalog.catalog.BookletsPageRender;
 import org.wolm.catalog.catalog.MediaCatalog;
 import org.wolm.catalog.catalog.ResourcesPageRender;
@@ -29,9 +30,12 @@ import org.wolm.catalog.environment.VisibilityFilter;
 import org.wolm.message.Message;
 import org.wolm.prophesy.PropheciesPageRender;
 import org.wolm.prophesy.Prophecy;
+import org.wolm.prophesy.ProphecyCache;
 import org.wolm.prophesy.ProphecyCatalog;
 import org.wolm.series.Series;
 import org.wolm.series.SeriesHelper;
+import org.wolm.series.SeriesPageCache;
+import org.wolm.series.SeriesSummaryCache;
 import org.wolm.series.SeriesPageRender;
 
 import com.amazonaws.services.s3.model.Bucket;
@@ -60,7 +64,29 @@ public class App {
 	@Parameter(names = { "--do-upload" }, description = "Upload final files to S3.")
 	private boolean uploadToS3 = false;
 
-	private RenderEnvironment env = RenderEnvironment.instance();
+	@Parameter(names = { "--sync" }, description = "With --do-upload, upload the pages whose content differs from the "
+			+ "bucket (by ETag) and delete the uploaded pages that are no longer generated.")
+	private boolean syncWithBucket = false;
+
+	@Parameter(names = { "--no-gzip" }, description = "Upload pages uncompressed instead of gzipped.")
+	private boolean noGzip = false;
+
+	@Parameter(names = { "--offline" }, description = "Build the catalog from the last saved Google snapshot.")
+	private boolean offline = false;
+
+	@Parameter(names = { "--local-store" }, description = "Read and upload objects in this directory instead of S3, "
+			+ "with one subdirectory per bucket.")
+	private String localStoreDir = null;
+
+	@Parameter(names = { "--s3-connections" }, description = "Most HTTP connections kept open to S3.")
+	private int s3Connections = S3ObjectStore.DEFAULT_MAX_CONNECTIONS;
+
+	@Parameter(names = { "--max-uploads" }, description = "Most pages uploaded at the same time. The number of "
+			+ "uploads adapts to how S3 responds, up to this limit.")
+	private int maxUploads = 16;
+
+	@Parameter(names = { "--prophecy-downloads" }, description = "Number of prophecies to download at the same time.")
+	private int prophecyDownloads = 8;
 
 	private String wolS3BucketName = "wordoflife.mn.catalog";
 	// private String tboS3BucketName = "thebridgeoutreach.mn.catalog";
@@ -108,16 +134,26 @@ public class App {
 
 		app.init();
 
-		app.mediaCatalog();
-		app.prophecyCatalog();
+		app.build();
 
 		app.upload();
 	}
 
 	private void init() {
+		initObjectStore();
 		initRenderFactory();
 	}
 
+	private void initObjectStore() {
+		if (localStoreDir == null) {
+			AwsS3Helper.setInstance(new AwsS3Helper(new S3ObjectStore(s3Connections)));
+			return;
+		}
+
+		logInfo("Using the objects in '" + localStoreDir + "' instead of S3");
+		AwsS3Helper.setInstance(new AwsS3Helper(new LocalObjectStore(new File(localStoreDir))));
+	}
+
 	/**
 	 * Sets up the global render factory settings based on the configuration options
 	 * 
@@ -174,6 +210,20 @@ public class App {
 		this.prepareForUpload = upload;
 	}
 
+	/**
+	 * Determines whether the catalog should be read from local snapshots instead of from Google
+	 * 
+	 * @return <code>true</code> to read the snapshots saved by the last online build, <code>false</code> to read from
+	 * Google
+	 */
+	public boolean isOffline() {
+		return offline;
+	}
+
+	public void setOffline(boolean offline) {
+		this.offline = offline;
+	}
+
 	public String computeS3BucketName() {
 		return wolS3BucketName;
 	}
@@ -187,40 +237,183 @@ public class App {
 	}
 
 	/**
-	 * Generates the catalog of Word of Life Ministries media
+	 * Generates the media and prophecy catalogs. Every page is a task in one {@link BuildPlan}, so each page starts as
+	 * soon as the catalog it comes from and the Weebly page template are ready
 	 * 
-	 * @throws IOException
+	 * @throws Exception
 	 */
-	public void mediaCatalog() throws Exception {
+	public void build() throws Exception {
+		BuildPlan plan = new BuildPlan();
+
+		// every page is built from the same Weebly page, so read and compile it once before any page needs it
+		BuildPlan.Task<Void> template = plan.add("Weebly page template", new Callable<Void>() {
+			public Void call() throws Exception {
+				PageRender.getCompiledPage(RenderFactory.getWeeblyPageTemplateUrl());
+				return null;
+			}
+		});
+
+		planMediaCatalog(plan, template);
+		planProphecyCatalog(plan, template);
+
+		RenderFactory.setSeriesPageCache(new SeriesPageCache());
+		RenderFactory.setSeriesSummaryCache(new SeriesSummaryCache());
+		PageManifest manifest = PageManifest.load(new File(outputFileDir == null ? "." : outputFileDir));
+		RenderFactory.setPageManifest(manifest);
+		// what the manifest says is uploaded is only true of the bucket and folder it was uploaded to
+		if (doUpload()) manifest.setDestination(getS3Destination());
+		RenderFactory.setPageCompressor(doUpload() && !noGzip ? new GzipCompressor() : null);
+		RenderFactory.setPageUploadQueue(createPageUploadQueue(manifest));
+		try {
+			plan.run();
+
+			// every page of the site was just rendered, so anything else in the manifest is no longer part of it
+			for (File stale : manifest.pruneStalePages())
+				logInfo("Removed stale page " + stale.getName());
+		}
+		finally {
+			// wait for the pages uploaded during the build. Those that failed are uploaded again by upload()
+			PageUploadQueue uploads = RenderFactory.getPageUploadQueue();
+			RenderFactory.setPageUploadQueue(null);
+			if (uploads != null) uploads.finish();
+
+			plan.logSummary();
+			RenderFactory.getSeriesPageCache().logSummary();
+			RenderFactory.getSeriesSummaryCache().logSummary();
+			AwsS3Helper.instance().getSignedUrlCache().logSummary();
+			if (RenderFactory.getPageCompressor() != null) RenderFactory.getPageCompressor().logSummary();
+			logInfo("Rendered " + manifest.getRenderedCount() + " pages, " + manifest.getUnchangedCount()
+					+ " of them unchanged");
+			manifest.save();
+		}
 
-		logInfo("Downloading catalog from Google ...");
-		MediaCatalog catalog = new MediaCatalog("WOL Series", "WOL Messages");
-		catalog.populateFromGoogleSpreadsheets();
+		logInfo("Catalog file generation is complete");
+	}
 
-		// Word of Life
-		buildRecentMessages(catalog, "WOL", "Ask Pastor", "CORE");
-		buildRecentSeries(catalog, "WOL", "CORE");
-		// buildSeriesForYear("WOL", catalog, 2017, InclusionPolicy.startedWithin);
-		// buildSeriesForYear("WOL", catalog, 2017, InclusionPolicy.intersectingWith);
-		buildPublicCatalog("WOL", catalog);
-		buildHandoutsAndResources("WOL", catalog);
-		buildBooklets("WOL", catalog);
+	/**
+	 * Creates the queue that uploads pages while they are rendered, when uploading. Publishing with --sync compares
+	 * against the bucket after the build instead
+	 * 
+	 * @param manifest Manifest that records the uploads
+	 * @return The queue, or {@code null} if pages are not uploaded during the build
+	 * @throws Exception
+	 */
+	private PageUploadQueue createPageUploadQueue(PageManifest manifest) throws Exception {
+		if (!doUpload() || syncWithBucket) return null;
+
+		AwsS3Helper s3Helper = AwsS3Helper.instance();
+		Bucket catalogBucket = s3Helper.getBucket(computeS3BucketName());
+		if (catalogBucket == null)
+			throw new Exception("Cannot find the catalog bucket: '" + computeS3BucketName() + "'");
 
-		buildCovenantPartnerCatalog("WOL", catalog);
+		logInfo("Uploading pages to the " + computeS3BucketName() + " S3 bucket as they are rendered");
+		return new PageUploadQueue(createUploader(s3Helper, catalogBucket), getS3ObjectPrefix(), manifest,
+				PageUploadQueue.DEFAULT_CAPACITY);
+	}
+
+	/** @return Uploader for the pages of the catalog, which uploads their gzipped copies unless --no-gzip is given */
+	private ParallelUploader createUploader(AwsS3Helper s3Helper, Bucket catalogBucket) {
+		ParallelUploader uploader = new ParallelUploader(s3Helper, catalogBucket, maxUploads);
+		uploader.setCompressor(RenderFactory.getPageCompressor());
+		return uploader;
+	}
 
-		// The Bridge Outreach
-		buildPublicCatalog("TBO", catalog);
+	/**
+	 * Adds the tasks that generate the catalog of Word of Life Ministries media
+	 * 
+	 * @param plan Plan to add the tasks to
+	 * @param template Task that reads the Weebly page template
+	 */
+	private void planMediaCatalog(BuildPlan plan, BuildPlan.Task<?> template) {
+		final BuildPlan.Task<MediaCatalog> catalog = plan.add("media catalog", new Callable<MediaCatalog>() {
+			public MediaCatalog call() throws Exception {
+				return readMediaCatalog();
+			}
+		});
 
-		// C.O.R.E.
-		buildPublicCatalog("CORE", catalog);
+		// Word of Life
+		plan.add("recent messages (WOL)", new Callable<Void>() {
+			public Void call() throws Exception {
+				buildRecentMessages(catalog.get(), "WOL", "Ask Pastor", "CORE");
+				return null;
+			}
+		}, catalog, template);
+		plan.add("handouts and resources (WOL)", new Callable<Void>() {
+			public Void call() throws Exception {
+				buildHandoutsAndResources("WOL", catalog.get());
+				return null;
+			}
+		}, catalog, template);
+		plan.add("booklets (WOL)", new Callable<Void>() {
+			public Void call() throws Exception {
+				buildBooklets("WOL", catalog.get());
+				return null;
+			}
+		}, catalog, template);
+
+		// the catalogs below all write the pages of the series they list, and series.ftl themes a page by the ministry
+		// of the catalog that writes it. A shared page belongs to the first catalog that claims it, so they run one
+		// after another in the order they always have and a series in several of them gets the same page on every run
+		BuildPlan.Task<Void> seriesPages = plan.add("recent series (WOL)", new Callable<Void>() {
+			public Void call() throws Exception {
+				buildRecentSeries(catalog.get(), "WOL", "CORE");
+				return null;
+			}
+		}, catalog, template);
+		// buildSeriesForYear("WOL", catalog, 2017, InclusionPolicy.startedWithin);
+		// buildSeriesForYear("WOL", catalog, 2017, InclusionPolicy.intersectingWith);
+		seriesPages = planPublicCatalog(plan, "WOL", catalog, template, seriesPages);
+		seriesPages = plan.add("covenant partner catalog (WOL)", new Callable<Void>() {
+			public Void call() throws Exception {
+				buildCovenantPartnerCatalog("WOL", catalog.get());
+				return null;
+			}
+		}, catalog, template, seriesPages);
 
-		// Ask the Pastor
-		buildPublicCatalog("Ask Pastor", catalog);
+		// The Bridge Outreach, C.O.R.E., Ask the Pastor, Faith & Freedom
+		for (String ministry : new String[] { "TBO", "CORE", "Ask Pastor", "Faith-Freedom" })
+			seriesPages = planPublicCatalog(plan, ministry, catalog, template, seriesPages);
+	}
 
-		// Faith & Freedom
-		buildPublicCatalog("Faith-Freedom", catalog);
+	/**
+	 * Adds the task that generates the public catalog of a ministry
+	 * 
+	 * @param plan Plan to add the task to
+	 * @param ministry Ministry the catalog is for
+	 * @param catalog Task that reads the media catalog
+	 * @param template Task that reads the Weebly page template
+	 * @param previous Task that writes series pages before this one
+	 * @return The task
+	 */
+	private BuildPlan.Task<Void> planPublicCatalog(BuildPlan plan, final String ministry,
+			final BuildPlan.Task<MediaCatalog> catalog, BuildPlan.Task<?> template, BuildPlan.Task<?> previous) {
+		return plan.add("public catalog (" + ministry + ")", new Callable<Void>() {
+			public Void call() throws Exception {
+				buildPublicCatalog(ministry, catalog.get());
+				return null;
+			}
+		}, catalog, template, previous);
+	}
 
-		logInfo("Catalog file generation is complete");
+	/**
+	 * Reads the catalog of Word of Life Ministries media from Google, or from the local snapshots when offline
+	 * 
+	 * @return The catalog
+	 * @throws Exception
+	 */
+	private MediaCatalog readMediaCatalog() throws Exception {
+		MediaCatalog catalog = new MediaCatalog("WOL Series", "WOL Messages");
+		if (isOffline()) {
+			logInfo("Reading catalog from local snapshots ...");
+			long start = System.currentTimeMillis();
+			catalog.populateFromSnapshots();
+			logInfo("Read catalog in " + (System.currentTimeMillis() - start) + " ms");
+		}
+		else {
+			logInfo("Downloading catalog from Google ...");
+			catalog.populateFromGoogleSpreadsheets();
+		}
+		return catalog;
 	}
 
 	/**
@@ -270,20 +463,18 @@ public class App {
 		logInfo("Writing recent messages to '" + fileName + "' ...");
 
 		// prepare environment
-		env.clearFilters();
-		env.addFilter(new VisibilityFilter(AccessLevel.PUBLIC));
-		env.addFilter(new MinistryFilter().with(ministries));
-		env.addFilter(new RecentFilter().withDays(60));
-		env.addFilter(new BookletFilter(false));
+		RenderEnvironment env = new RenderEnvironment(new VisibilityFilter(AccessLevel.PUBLIC),
+				new MinistryFilter().with(ministries), new RecentFilter().withDays(60), new BookletFilter(false));
 
 		// find messages
-		Series recentMessages = catalog.getFilteredMessagesInASeries();
+		Series recentMessages = catalog.getFilteredMessagesInASeries(env);
 		recentMessages.setTitle("Recent Messages from " + computeMinistryName(ministries[0]));
 		recentMessages.setDescription("Recent messages from the last " + 60 + " days.");
 		recentMessages.sortMessages(Message.byDateDescending);
 
 		PageRender pageRender = new SeriesPageRender(recentMessages);
 		pageRender.setMinistry(ministries[0]);
+		pageRender.setEnvironment(env);
 		File outputFile = new File(outputFileDir, fileName);
 		pageRender.render(outputFile);
 	}
@@ -302,15 +493,12 @@ public class App {
 		logInfo("Writing recent series to '" + fileName + "' ...");
 
 		// prepare environment
-		env.clearFilters();
-		env.addFilter(new VisibilityFilter(AccessLevel.PUBLIC));
-		env.addFilter(new MinistryFilter().with(ministries));
-		env.addFilter(new RecentFilter().withDays(60));
-		env.addFilter(new BookletFilter(false));
+		RenderEnvironment env = new RenderEnvironment(new VisibilityFilter(AccessLevel.PUBLIC),
+				new MinistryFilter().with(ministries), new RecentFilter().withDays(60), new BookletFilter(false));
 
 		// find series
-		List<Series> series = catalog.getFilteredSeries();
-		series.addAll(catalog.getStandAloneMessagesInSeriesByMessage());
+		List<Series> series = catalog.getFilteredSeries(env);
+		series.addAll(catalog.getStandAloneMessagesInSeriesByMessage(env));
 		Collections.sort(series, Series.byTitle);
 
 		// build the page renderer
@@ -318,6 +506,7 @@ public class App {
 		pageRender.setTitle("Recent Series from " + computeMinistryName(ministries[0]));
 		//addCurrentSeriesPromo(catalog, (SeriesIndexWithPromoPageRender) pageRender);
 		pageRender.setMinistry(ministries[0]);
+		pageRender.setEnvironment(env);
 		File outputFile = new File(outputFileDir, fileName);
 		pageRender.render(outputFile);
 	}
@@ -338,29 +527,29 @@ public class App {
 		logInfo("Writing " + year + " series to '" + fileName + "' ...");
 
 		// prepare environment
-		env.clearFilters();
-		env.addFilter(new VisibilityFilter(AccessLevel.PUBLIC));
-		env.addFilter(new MinistryFilter().with(ministry));
+		RenderEnvironment env = new RenderEnvironment(new VisibilityFilter(AccessLevel.PUBLIC),
+				new MinistryFilter().with(ministry));
 		switch (inclusion) {
 		case entirelyWithin:
-			env.addFilter(new EntirelyWithinYearFilter(year));
+			env = env.with(new EntirelyWithinYearFilter(year));
 			break;
 		case intersectingWith:
-			env.addFilter(new IntersectingWithYearFilter(year));
+			env = env.with(new IntersectingWithYearFilter(year));
 			break;
 		case startedWithin:
-			env.addFilter(new StartedWithinYearFilter(year));
+			env = env.with(new StartedWithinYearFilter(year));
 			break;
 		}
 
 		// find series
-		List<Series> series = catalog.getFilteredSeries();
-		series.addAll(catalog.getStandAloneMessagesInSeriesByMessage());
+		List<Series> series = catalog.getFilteredSeries(env);
+		series.addAll(catalog.getStandAloneMessagesInSeriesByMessage(env));
 		Collections.sort(series, Series.byTitle);
 
 		PageRender pageRender = new SeriesIndexWithPromoPageRender(series);
 		pageRender.setTitle("Messages and Series from " + computeMinistryName(ministry) + " in " + year);
 		pageRender.setMinistry(ministry);
+		pageRender.setEnvironment(env);
 		if (year == new GregorianCalendar().get(Calendar.YEAR)) {
 			addCurrentSeriesPromo(catalog, (SeriesIndexWithPromoPageRender) pageRender);
 		}
@@ -373,21 +562,21 @@ public class App {
 		logInfo("Writing all public series to '" + fileName + "' ...");
 
 		// prepare environment
-		env.clearFilters();
-		env.addFilter(new VisibilityFilter(AccessLevel.PUBLIC));
-		env.addFilter(new MinistryFilter().with(ministry));
+		RenderEnvironment env = new RenderEnvironment(new VisibilityFilter(AccessLevel.PUBLIC),
+				new MinistryFilter().with(ministry));
 
 		// get all completed and in-progress series plus all stand-alone messages
-		List<Series> catalogSeries = catalog.getCompletedSeries();
-		catalogSeries.addAll(catalog.getInProgressSeries());
-		// catalogSeries.addAll(catalog.getStandAloneMessagesInSeriesByYear());
-		catalogSeries.addAll(catalog.getStandAloneMessagesInSeriesByMessage());
+		List<Series> catalogSeries = catalog.getCompletedSeries(env);
+		catalogSeries.addAll(catalog.getInProgressSeries(env));
+		// catalogSeries.addAll(catalog.getStandAloneMessagesInSeriesByYear(env));
+		catalogSeries.addAll(catalog.getStandAloneMessagesInSeriesByMessage(env));
 		catalogSeries = SeriesHelper.withoutDuplicates(catalogSeries);
 		Collections.sort(catalogSeries, Series.byTitle);
 
 		PageRender pageRender = new SeriesIndexPageRender(catalogSeries);
 		pageRender.setTitle(computeMinistryName(ministry) + " Catalog");
 		pageRender.setMinistry(ministry);
+		pageRender.setEnvironment(env);
 		((SeriesIndexPageRender) pageRender).setIndexDescription(getCatalogIndexDescription());
 		File outputFile = new File(outputFileDir, fileName);
 		pageRender.render(outputFile);
@@ -398,14 +587,14 @@ public class App {
 		logInfo("Writing handouts and resources to '" + fileName + "' ...");
 
 		// prepare environment
-		env.clearFilters();
-		env.addFilter(new VisibilityFilter(AccessLevel.PUBLIC));
-		env.addFilter(new MinistryFilter().with(ministry));
+		RenderEnvironment env = new RenderEnvironment(new VisibilityFilter(AccessLevel.PUBLIC),
+				new MinistryFilter().with(ministry));
 
-		List<NamedLink> resources = catalog.getHandoutsAndResources();
+		List<NamedLink> resources = catalog.getHandoutsAndResources(env);
 		PageRender pageRender = new ResourcesPageRender(resources);
 		pageRender.setTitle("Handouts and Resources");
 		pageRender.setMinistry(ministry);
+		pageRender.setEnvironment(env);
 		File outputFile = new File(outputFileDir, fileName);
 		pageRender.render(outputFile);
 	}
@@ -415,14 +604,14 @@ public class App {
 		logInfo("Writing booklets to '" + fileName + "' ...");
 
 		// prepare environment
-		env.clearFilters();
-		env.addFilter(new VisibilityFilter(AccessLevel.PUBLIC));
-		env.addFilter(new MinistryFilter().with());
+		RenderEnvironment env = new RenderEnvironment(new VisibilityFilter(AccessLevel.PUBLIC),
+				new MinistryFilter().with());
 
-		List<NamedLink> resources = catalog.getBooklets();
+		List<NamedLink> resources = catalog.getBooklets(env);
 		PageRender pageRender = new BookletsPageRender(resources);
 		pageRender.setTitle("Booklets");
 		pageRender.setMinistry(ministry);
+		pageRender.setEnvironment(env);
 		File outputFile = new File(outputFileDir, fileName);
 		pageRender.render(outputFile);
 	}
@@ -432,15 +621,14 @@ public class App {
 		logInfo("Writing all protected series to '" + fileName + "' ...");
 
 		// prepare environment
-		env.clearFilters();
-		env.addFilter(new VisibilityFilter(AccessLevel.PROTECTED));
-		env.addFilter(new MinistryFilter().with(ministry));
+		RenderEnvironment env = new RenderEnvironment(new VisibilityFilter(AccessLevel.PROTECTED),
+				new MinistryFilter().with(ministry));
 
 		// get all completed and in-progress series
-		List<Series> catalogSeries = catalog.getCompletedSeries();
-		catalogSeries.addAll(catalog.getInProgressSeries());
-		// catalogSeries.addAll(catalog.getStandAloneMessagesInSeriesByYear());
-		catalogSeries.addAll(catalog.getStandAloneMessagesInSeriesByMessage());
+		List<Series> catalogSeries = catalog.getCompletedSeries(env);
+		catalogSeries.addAll(catalog.getInProgressSeries(env));
+		// catalogSeries.addAll(catalog.getStandAloneMessagesInSeriesByYear(env));
+		catalogSeries.addAll(catalog.getStandAloneMessagesInSeriesByMessage(env));
 		catalogSeries = SeriesHelper.withoutDuplicates(catalogSeries);
 		Collections.sort(catalogSeries, Series.byTitle);
 
@@ -448,6 +636,7 @@ public class App {
 		pageRender.setTitle("Covenant Partner Catalog for " + computeMinistryName(ministry));
 		pageRender.setIndexDescription(getCovenantPartnerIndexDescription());
 		pageRender.setMinistry(ministry);
+		pageRender.setEnvironment(env);
 		File outputFile = new File(outputFileDir, fileName);
 		pageRender.render(outputFile);
 	}
@@ -466,22 +655,36 @@ public class App {
 	}
 
 	/**
-	 * Generates the catalog of Word of Life Ministries prophesies
+	 * Adds the tasks that generate the catalog of Word of Life Ministries prophesies
 	 * 
-	 * @throws IOException
+	 * @param plan Plan to add the tasks to
+	 * @param template Task that reads the Weebly page template
 	 */
-	public void prophecyCatalog() throws Exception {
-
-		logInfo("Downloading prophesies from AWS ...");
-		logIndent();
-		ProphecyCatalog catalog = new ProphecyCatalog("wordoflife.mn.prophecy", null);
-		catalog.populateFromAwsDocuments(computeS3BucketName(), outputFileDir);
-		logOutdent();
+	private void planProphecyCatalog(BuildPlan plan, BuildPlan.Task<?> template) {
+		final BuildPlan.Task<ProphecyCatalog> catalog = plan.add("prophecy catalog", new Callable<ProphecyCatalog>() {
+			public ProphecyCatalog call() throws Exception {
+				logInfo("Downloading prophesies from AWS ...");
+				logIndent();
+				try {
+					ProphecyCatalog catalog = new ProphecyCatalog("wordoflife.mn.prophecy", null);
+					catalog.setDownloadConcurrency(prophecyDownloads);
+					catalog.setCache(new ProphecyCache(ProphecyCache.DEFAULT_DIRECTORY));
+					catalog.populateFromAwsDocuments(computeS3BucketName(), outputFileDir);
+					return catalog;
+				}
+				finally {
+					logOutdent();
+				}
+			}
+		});
 
 		// Word of Life
-		buildProphecies("WOL", catalog);
-
-		logInfo("Prophecy file generation is complete");
+		plan.add("prophecies (WOL)", new Callable<Void>() {
+			public Void call() throws Exception {
+				buildProphecies("WOL", catalog.get());
+				return null;
+			}
+		}, catalog, template);
 	}
 
 	private void buildProphecies(String ministry, ProphecyCatalog catalog) throws Exception {
@@ -510,25 +713,66 @@ public class App {
 		if (catalogBucket == null)
 			throw new Exception("Cannot find the catalog bucket: '" + computeS3BucketName() + "'");
 
-		logInfo("Uploading all generated pages to the " + computeS3BucketName() + " S3 bucket ...");
-		List<Future<Boolean>> futures = new ArrayList<>();
-		ExecutorService pool = Executors.newFixedThreadPool(8);
-		for (File page : RenderFactory.getCreatedPages()) {
-			// new UploadFileToS3Callable(catalogBucket, getS3KeyForFile(page), page).call();
-			futures.add(pool.submit(new UploadFileToS3Callable(catalogBucket, getS3KeyForFile(page), page)));
+		PageManifest manifest = RenderFactory.getPageManifest();
+		if (syncWithBucket) {
+			syncWithBucket(s3Helper, catalogBucket, manifest);
+			return;
 		}
-		for (Future<Boolean> future : futures) {
-			try {
-				future.get();
-			}
-			catch (Exception e) {
-				logError("Unable to complete upload.");
-				e.printStackTrace();
+
+		// only upload pages whose content changed since they were last uploaded, or that could not be uploaded while
+		// they were rendered
+		List<File> pages = new ArrayList<>();
+		for (File page : RenderFactory.getCreatedPages())
+			if (manifest == null || manifest.needsUpload(page)) pages.add(page);
+
+		logInfo("Uploading " + pages.size() + " changed pages of " + RenderFactory.getCreatedPages().size()
+				+ " to the " + computeS3BucketName() + " S3 bucket ...");
+		List<String> keys = new ArrayList<>();
+		for (File page : pages)
+			keys.add(getS3KeyForFile(page));
+		for (File page : createUploader(s3Helper, catalogBucket).upload(pages, keys))
+			if (manifest != null) manifest.recordUpload(page);
+		if (manifest != null) manifest.save();
+
+		logInfo("Uploading complete");
+	}
+
+	/**
+	 * Makes the bucket match the pages that were created, comparing against the bucket itself instead of the record of
+	 * the last upload
+	 */
+	private void syncWithBucket(AwsS3Helper s3Helper, Bucket catalogBucket, PageManifest manifest) throws Exception {
+		logInfo("Publishing the changes in " + RenderFactory.getCreatedPages().size() + " pages to the "
+				+ computeS3BucketName() + " S3 bucket ...");
+		logIndent();
+		try {
+			S3Publisher publisher = new S3Publisher(s3Helper, catalogBucket, getS3ObjectPrefix());
+			publisher.setConcurrency(maxUploads);
+			publisher.setCompressor(RenderFactory.getPageCompressor());
+			// only pages this tool uploaded are deleted, since the bucket holds other pages as well
+			List<File> retired = manifest == null ? Collections.<File> emptyList() : manifest.getRetiredPages();
+			S3Publisher.Result result = publisher.publish(RenderFactory.getCreatedPages(), retired);
+
+			if (manifest != null) {
+				for (File page : result.getUploaded())
+					manifest.recordUpload(page);
+				for (File page : result.getUnchanged())
+					manifest.recordUpload(page);
+				for (File page : result.getRetired())
+					manifest.recordDeletion(page);
+				manifest.save();
 			}
 		}
-		pool.shutdown();
+		finally {
+			logOutdent();
+		}
+		logInfo("Publishing complete");
+	}
 
-		logInfo("Uploading complete");
+	/** @return Bucket and folder the pages are uploaded to */
+	private String getS3Destination() {
+		if (getS3ObjectPrefix() == null) return "s3://" + computeS3BucketName() + "/";
+		return "s3://" + computeS3BucketName() + "/" + getS3ObjectPrefix() + "/";
 	}
 
 	private String getS3KeyForFile(File file) {
@@ -539,56 +783,37 @@ public class App {
 	/*
 	 * Logging
 	 */
-	private static String logIndent = "";
+	/** Indentation of each thread's log, since builds run on several threads */
+	private static final ThreadLocal<String> logIndent = new ThreadLocal<String>() {
+		@Override
+		protected String initialValue() {
+			return "";
+		}
+	};
 
 	public static void logIndent() {
-		logIndent += "  ";
+		logIndent.set(logIndent.get() + "  ");
 	}
 
 	public static void logOutdent() {
-		if (logIndent.length() < 1) return;
-		logIndent = logIndent.substring(2);
+		if (logIndent.get().length() < 1) return;
+		logIndent.set(logIndent.get().substring(2));
 	}
 
 	public static void logDebug(String msg) {
-		if (instance == null || instance.isVerbose()) System.out.println(logIndent + msg);
+		if (instance == null || instance.isVerbose()) System.out.println(logIndent.get() + msg);
 	}
 
 	public static void logInfo(String msg) {
-		System.out.println(logIndent + msg);
+		System.out.println(logIndent.get() + msg);
 	}
 
 	public static void logWarn(String msg) {
-		System.out.println(logIndent + "WARNING: " + msg);
+		System.out.println(logIndent.get() + "WARNING: " + msg);
 	}
 
 	public static void logError(String msg) {
-		System.out.println(logIndent + "ERROR: " + msg);
-	}
-
-	/**
-	 * Uploads a file to a specific S3 bucket and object key
-	 * 
-	 * @author wolm
-	 */
-	private static class UploadFileToS3Callable implements Callable<Boolean> {
-		static final AwsS3Helper s3Helper = AwsS3Helper.instance();
-		final Bucket bucket;
-		final String key;
-		final File file;
-
-		public UploadFileToS3Callable(Bucket bucket, String key, File file) {
-			super();
-			this.bucket = bucket;
-			this.key = key;
-			this.file = file;
-		}
-
-		public Boolean call() throws Exception {
-			System.out.println("  Uploading page: " + file);
-			s3Helper.uploadPublicFile(bucket, key, file);
-			return Boolean.TRUE;
-		}
+		System.out.println(logIndent.get() + "ERROR: " + msg);
 	}
 
 	private String getCatalogIndexDescription() {
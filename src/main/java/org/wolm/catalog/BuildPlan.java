@@ -0,0 +1,263 @@
+package org.wolm.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A set of named build tasks, each of which declares the tasks whose results it needs. Running the plan starts every
+ * task on a work-stealing pool as soon as all of its inputs are finished, then reports how long each task took and
+ * which chain of tasks determined the total build time (the critical path).
+ * <p>
+ * Tasks can only depend on tasks that were added before them, so a plan can never contain a cycle.
+ *
+ * @author wolm
+ */
+public class BuildPlan {
+	private final List<Task<?>> tasks = new ArrayList<>();
+
+	/** Number of threads in the pool */
+	private final int parallelism;
+
+	/** Time the plan started running */
+	private long startMillis;
+	private long endMillis;
+
+	/** Counts down once for every task that finishes, fails or is skipped */
+	private CountDownLatch remaining;
+
+	/** First exception thrown by any task */
+	private volatile Exception failure;
+
+	public BuildPlan() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public BuildPlan(int parallelism) {
+		super();
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Adds a task to the plan
+	 *
+	 * @param name Name of the task, used for reporting
+	 * @param work Work to do. It can use {@link Task#get()} on any of its inputs
+	 * @param inputs Tasks that must finish before this one starts
+	 * @return The task, which later tasks can use as an input
+	 */
+	public <T> Task<T> add(@Nonnull String name, @Nonnull Callable<T> work, Task<?>... inputs) {
+		for (Task<?> input : inputs)
+			if (!tasks.contains(input)) {
+				throw new IllegalArgumentException("Input '" + input.getName() + "' of task '" + name
+						+ "' must be added to this plan first");
+			}
+
+		Task<T> task = new Task<>(name, work, Arrays.asList(inputs));
+		for (Task<?> input : inputs)
+			input.dependents.add(task);
+		tasks.add(task);
+		return task;
+	}
+
+	public List<Task<?>> getTasks() {
+		return Collections.unmodifiableList(tasks);
+	}
+
+	/**
+	 * Runs every task, each as soon as its inputs are ready. If a task fails, the tasks that depend on it are skipped,
+	 * but unrelated tasks still run.
+	 *
+	 * @throws Exception the first exception thrown by any task
+	 */
+	public void run() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			remaining = new CountDownLatch(tasks.size());
+			startMillis = System.currentTimeMillis();
+
+			for (Task<?> task : tasks)
+				if (task.inputs.isEmpty()) submit(pool, task);
+			remaining.await();
+
+			endMillis = System.currentTimeMillis();
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		if (failure != null) throw failure;
+	}
+
+	private void submit(final ForkJoinPool pool, final Task<?> task) {
+		pool.execute(new Runnable() {
+			public void run() {
+				boolean succeeded = task.execute(startMillis);
+				if (!succeeded && failure == null) failure = task.failure;
+				remaining.countDown();
+
+				for (Task<?> dependent : task.dependents) {
+					if (!succeeded) skip(dependent);
+					else if (dependent.waitingFor.decrementAndGet() == 0) submit(pool, dependent);
+				}
+			}
+		});
+	}
+
+	private void skip(Task<?> task) {
+		// a task with more than one failed input is only skipped once
+		if (task.waitingFor.getAndSet(-1) < 0) return;
+
+		task.skipped = true;
+		remaining.countDown();
+		for (Task<?> dependent : task.dependents)
+			skip(dependent);
+	}
+
+	/**
+	 * @return The tasks, first to last, whose finish times determined when the build finished. Each task in the path
+	 * is the input that finished last before the next task started
+	 */
+	public List<Task<?>> getCriticalPath() {
+		// on a tie prefer the later task, since it may depend on the earlier one but never the other way around
+		Task<?> last = null;
+		for (Task<?> task : tasks)
+			if (task.hasRun() && (last == null || task.endMillis >= last.endMillis)) last = task;
+
+		List<Task<?>> path = new ArrayList<>();
+		while (last != null) {
+			path.add(0, last);
+
+			Task<?> latestInput = null;
+			for (Task<?> input : last.inputs)
+				if (latestInput == null || input.endMillis > latestInput.endMillis) latestInput = input;
+			last = latestInput;
+		}
+		return path;
+	}
+
+	/**
+	 * Logs when each task started and finished, the total time compared to the time spent working, and the critical
+	 * path
+	 */
+	public void logSummary() {
+		long busyMillis = 0;
+		App.logInfo("Build plan timing:");
+		App.logIndent();
+		for (Task<?> task : tasks) {
+			if (!task.hasRun()) {
+				App.logInfo(String.format("%-40s %s", task.getName(), task.skipped ? "skipped" : "not run"));
+				continue;
+			}
+			App.logInfo(String.format("%-40s %7.2fs to %7.2fs %7.2fs%s", task.getName(), task.startMillis / 1000.0,
+					task.endMillis / 1000.0, task.getMillis() / 1000.0, task.failure == null ? "" : " FAILED"));
+			busyMillis += task.getMillis();
+		}
+		App.logOutdent();
+		App.logInfo(String.format("Build took %.2fs for %.2fs of work on %d threads",
+				(endMillis - startMillis) / 1000.0, busyMillis / 1000.0, parallelism));
+
+		List<String> path = new ArrayList<>();
+		for (Task<?> task : getCriticalPath())
+			path.add(String.format("%s (%.2fs)", task.getName(), task.getMillis() / 1000.0));
+		App.logInfo("Critical path: " + StringUtils.join(path, " -> "));
+	}
+
+	/**
+	 * One named task of a plan
+	 *
+	 * @param <T> Type of the result of the task
+	 */
+	public static class Task<T> {
+		private final String name;
+		private final Callable<T> work;
+		private final List<Task<?>> inputs;
+		private final List<Task<?>> dependents = new ArrayList<>();
+
+		/** Number of inputs that have not finished, or -1 once the task is skipped */
+		private final AtomicInteger waitingFor;
+
+		private volatile T result;
+		private volatile Exception failure;
+		private volatile boolean skipped;
+		/** Start and end of the task, relative to the start of the plan */
+		private volatile long startMillis = -1;
+		private volatile long endMillis = -1;
+
+		private Task(String name, Callable<T> work, List<Task<?>> inputs) {
+			super();
+			this.name = name;
+			this.work = work;
+			this.inputs = inputs;
+			this.waitingFor = new AtomicInteger(inputs.size());
+		}
+
+		/** @return {@code true} if the task succeeded */
+		private boolean execute(long planStartMillis) {
+			startMillis = System.currentTimeMillis() - planStartMillis;
+			try {
+				result = work.call();
+				return true;
+			}
+			catch (Throwable t) {
+				App.logError("Build task '" + name + "' failed: " + t);
+				failure = t instanceof Exception ? (Exception) t : new ExecutionException(t);
+				return false;
+			}
+			finally {
+				endMillis = System.currentTimeMillis() - planStartMillis;
+			}
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public List<Task<?>> getInputs() {
+			return Collections.unmodifiableList(inputs);
+		}
+
+		/**
+		 * @return Result of the task. Only valid once the task has finished, which is always the case for tasks that
+		 * have this one as an input
+		 */
+		public T get() {
+			return result;
+		}
+
+		/** @return {@code true} if the task ran, whether or not it succeeded */
+		public boolean hasRun() {
+			return endMillis >= 0;
+		}
+
+		/** @return When the task started, relative to the start of the plan, or -1 if it has not run */
+		public long getStartMillis() {
+			return startMillis;
+		}
+
+		/** @return When the task finished, relative to the start of the plan, or -1 if it has not run */
+		public long getEndMillis() {
+			return endMillis;
+		}
+
+		/** @return How long the task took, or 0 if it has not run */
+		public long getMillis() {
+			return hasRun() ? endMillis - startMillis : 0;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+}
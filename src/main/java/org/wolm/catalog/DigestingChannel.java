@@ -0,0 +1,76 @@
+package org.wolm.catalog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.annotation.Nonnull;
+
+import com.amazonaws.util.BinaryUtils;
+
+/**
+ * Channel that computes the SHA-256 hash of the bytes written through it. Hashing can be paused so that parts of a page
+ * that change on every render, like the render date, do not make the page look changed.
+ *
+ * @author wolm
+ */
+class DigestingChannel implements WritableByteChannel {
+	private final WritableByteChannel channel;
+	private final MessageDigest digest;
+	private long size = 0;
+	private boolean paused = false;
+
+	DigestingChannel(@Nonnull WritableByteChannel channel) {
+		super();
+		this.channel = channel;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			// every JVM must support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		int start = src.position();
+		int written = channel.write(src);
+		size += written;
+		if (!paused && written > 0) {
+			ByteBuffer hashed = src.duplicate();
+			hashed.position(start).limit(start + written);
+			digest.update(hashed);
+		}
+		return written;
+	}
+
+	/**
+	 * @param paused {@code true} to stop hashing the bytes that are written, {@code false} to start again
+	 */
+	void setPaused(boolean paused) {
+		this.paused = paused;
+	}
+
+	/** @return Number of bytes written, whether or not they were hashed */
+	long getSize() {
+		return size;
+	}
+
+	/** @return Hex SHA-256 hash of the bytes that were hashed. Only call this once, after the last write */
+	String getHash() {
+		return BinaryUtils.toHex(digest.digest());
+	}
+
+	@Override
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
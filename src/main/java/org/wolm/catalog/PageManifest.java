@@ -0,0 +1,312 @@
+package org.wolm.catalog;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.wolm.aws.GzipCompressor;
+
+/**
+ * Record of every page generated into an output directory: its size, the SHA-256 hash of its content, when that
+ * content was rendered, and the hash of the content last uploaded to the destination the manifest is for. The manifest
+ * is saved in the output directory as {@value #FILE_NAME} between runs, so that
+ * <ul>
+ * <li>pages whose content did not change keep their file and modification time
+ * <li>only pages whose content changed since the last upload are uploaded
+ * <li>pages that are no longer generated can be removed, and the ones that had been uploaded can be deleted from the
+ * destination without touching anything else there
+ * </ul>
+ * The hash leaves out the parts of a page that change on every render (see {@link PageRender}).
+ *
+ * @author wolm
+ */
+public class PageManifest {
+	public static final String FILE_NAME = ".page-manifest";
+
+	/** Starts the line of the saved manifest that holds the destination */
+	private static final String DESTINATION_LINE = "#destination\t";
+	/** Starts each line of the saved manifest that holds a retired page */
+	private static final String RETIRED_LINE = "#retired\t";
+
+	private final File directory;
+
+	/** Entries by path relative to the directory, sorted so the saved manifest is easy to compare */
+	private final Map<String, Entry> entries = new TreeMap<>();
+
+	/** Where the pages were uploaded to, or {@code null} if that is not known */
+	private String destination = null;
+
+	/** Pages that are no longer generated but are still uploaded to the destination, by path */
+	private final Set<String> retired = new TreeSet<>();
+
+	/** Pages rendered during this run */
+	private final Set<String> rendered = new HashSet<>();
+	private int unchangedCount = 0;
+
+	/**
+	 * Creates an empty manifest
+	 *
+	 * @param directory Output directory the pages are generated into
+	 */
+	public PageManifest(@Nonnull File directory) {
+		super();
+		this.directory = directory;
+	}
+
+	/**
+	 * Reads the manifest saved in an output directory
+	 *
+	 * @param directory Output directory the pages are generated into
+	 * @return The saved manifest, or an empty one if the directory has no manifest
+	 * @throws IOException
+	 */
+	public static PageManifest load(@Nonnull File directory) throws IOException {
+		PageManifest manifest = new PageManifest(directory);
+
+		File file = new File(directory, FILE_NAME);
+		if (!file.exists()) return manifest;
+
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(DESTINATION_LINE)) {
+					manifest.destination = line.substring(DESTINATION_LINE.length());
+					continue;
+				}
+				if (line.startsWith(RETIRED_LINE)) {
+					manifest.retired.add(line.substring(RETIRED_LINE.length()));
+					continue;
+				}
+				String[] fields = line.split("\t", -1);
+				if (fields.length != 5) {
+					App.logWarn("Ignoring bad line in page manifest: " + line);
+					continue;
+				}
+				Entry entry = new Entry(Long.parseLong(fields[1]), fields[2], Long.parseLong(fields[3]));
+				entry.uploadedHash = fields[4].isEmpty() ? null : fields[4];
+				manifest.entries.put(fields[0], entry);
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Saves the manifest in its output directory
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void save() throws IOException {
+		if (!directory.exists()) directory.mkdirs();
+
+		File file = new File(directory, FILE_NAME);
+		File tempFile = new File(directory, FILE_NAME + ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+			if (destination != null) {
+				writer.write(DESTINATION_LINE + destination);
+				writer.newLine();
+			}
+			for (String path : retired) {
+				writer.write(RETIRED_LINE + path);
+				writer.newLine();
+			}
+			for (Map.Entry<String, Entry> e : entries.entrySet()) {
+				Entry entry = e.getValue();
+				writer.write(e.getKey() + "\t" + entry.size + "\t" + entry.hash + "\t" + entry.renderMillis + "\t"
+						+ (entry.uploadedHash == null ? "" : entry.uploadedHash));
+				writer.newLine();
+			}
+		}
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/** @return Where the pages were uploaded to, or {@code null} if that is not known */
+	@Nullable
+	public synchronized String getDestination() {
+		return destination;
+	}
+
+	/**
+	 * Sets where the pages are uploaded to. If that is not where they were uploaded to before, no page counts as
+	 * uploaded anymore, and the retired pages are forgotten since they are not at this destination
+	 *
+	 * @param destination Bucket and folder the pages are uploaded to
+	 */
+	public synchronized void setDestination(@Nonnull String destination) {
+		if (destination.equals(this.destination)) return;
+
+		for (Entry entry : entries.values())
+			entry.uploadedHash = null;
+		retired.clear();
+		this.destination = destination;
+	}
+
+	/**
+	 * Records that a page was rendered. If its content changed, call {@link #recordWrite(File, long, String)} once the
+	 * page file has been written
+	 *
+	 * @param page Page file
+	 * @param size Size of the page in bytes
+	 * @param hash Hash of the page content
+	 * @return {@code true} if the page file already exists with this content, so it does not need to be rewritten
+	 */
+	public synchronized boolean recordRender(@Nonnull File page, long size, @Nonnull String hash) {
+		String path = getPath(page);
+		rendered.add(path);
+		retired.remove(path);
+
+		Entry entry = entries.get(path);
+		if (entry != null && entry.size == size && entry.hash.equals(hash) && page.length() == size) {
+			unchangedCount++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Records the new content of a page whose file has been written
+	 *
+	 * @param page Page file
+	 * @param size Size of the page in bytes
+	 * @param hash Hash of the page content
+	 */
+	public synchronized void recordWrite(@Nonnull File page, long size, @Nonnull String hash) {
+		String path = getPath(page);
+		Entry entry = entries.get(path);
+		Entry changed = new Entry(size, hash, System.currentTimeMillis());
+		if (entry != null) changed.uploadedHash = entry.uploadedHash;
+		entries.put(path, changed);
+	}
+
+	/**
+	 * @param page Page file
+	 * @return {@code true} if the page content is different from what was last uploaded, or the page is not in the
+	 * manifest
+	 */
+	public synchronized boolean needsUpload(@Nonnull File page) {
+		Entry entry = entries.get(getPath(page));
+		return entry == null || !entry.hash.equals(entry.uploadedHash);
+	}
+
+	/**
+	 * Records that the current content of a page was uploaded
+	 *
+	 * @param page Page file
+	 */
+	public synchronized void recordUpload(@Nonnull File page) {
+		Entry entry = entries.get(getPath(page));
+		if (entry != null) entry.uploadedHash = entry.hash;
+	}
+
+	/**
+	 * Records that a page was uploaded while it had some content. If the page has been rendered with different content
+	 * since, it still needs to be uploaded
+	 *
+	 * @param page Page file
+	 * @param hash Hash of the content that was uploaded, from {@link #getHash(File)}
+	 */
+	public synchronized void recordUpload(@Nonnull File page, @Nullable String hash) {
+		Entry entry = entries.get(getPath(page));
+		if (entry != null && entry.hash.equals(hash)) entry.uploadedHash = hash;
+	}
+
+	/**
+	 * @param page Page file
+	 * @return Hash of the page content, or {@code null} if the page is not in the manifest
+	 */
+	@Nullable
+	public synchronized String getHash(@Nonnull File page) {
+		Entry entry = entries.get(getPath(page));
+		return entry == null ? null : entry.hash;
+	}
+
+	/**
+	 * Deletes the pages in the manifest that were not rendered during this run, and removes them from the manifest.
+	 * Those that had been uploaded become {@link #getRetiredPages() retired}. Only call this after a complete build,
+	 * since every page not rendered is treated as no longer part of the site
+	 *
+	 * @return The pages that were removed
+	 */
+	public synchronized List<File> pruneStalePages() {
+		List<File> stale = new ArrayList<>();
+		for (String path : new ArrayList<>(entries.keySet())) {
+			if (rendered.contains(path)) continue;
+
+			File page = new File(directory, path);
+			if (page.exists() && !page.delete()) {
+				App.logWarn("Cannot delete stale page " + page);
+				continue;
+			}
+			GzipCompressor.getCompressedFile(page).delete();
+			if (entries.remove(path).uploadedHash != null) retired.add(path);
+			stale.add(page);
+		}
+		return stale;
+	}
+
+	/** @return Pages that are no longer generated, but were uploaded to the destination and not yet deleted there */
+	@Nonnull
+	public synchronized List<File> getRetiredPages() {
+		List<File> pages = new ArrayList<>();
+		for (String path : retired)
+			pages.add(new File(directory, path));
+		return pages;
+	}
+
+	/**
+	 * Records that a retired page is no longer at the destination
+	 *
+	 * @param page Page file
+	 */
+	public synchronized void recordDeletion(@Nonnull File page) {
+		retired.remove(getPath(page));
+	}
+
+	/** @return Number of pages rendered during this run whose content had not changed */
+	public synchronized int getUnchangedCount() {
+		return unchangedCount;
+	}
+
+	/** @return Number of pages rendered during this run */
+	public synchronized int getRenderedCount() {
+		return rendered.size();
+	}
+
+	/** @return Path of the page relative to the output directory, or its absolute path if it is somewhere else */
+	private String getPath(File page) {
+		String path = page.getAbsoluteFile().toURI().getPath();
+		String base = directory.getAbsoluteFile().toURI().getPath();
+		if (!base.endsWith("/")) base += "/";
+		return path.startsWith(base) ? path.substring(base.length()) : path;
+	}
+
+	private static class Entry {
+		private final long size;
+		private final String hash;
+		/** When this content was first rendered */
+		private final long renderMillis;
+		/** Hash of the content last uploaded, or {@code null} if the page was never uploaded */
+		private String uploadedHash;
+
+		private Entry(long size, String hash, long renderMillis) {
+			super();
+			this.size = size;
+			this.hash = hash;
+			this.renderMillis = renderMillis;
+		}
+	}
+}
@@ -1,15 +1,24 @@
 package org.wolm.catalog;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.annotation.Nonnull;
+
+import org.wolm.aws.GzipCompressor;
+import org.wolm.catalog.environment.RenderEnvironment;
+import org.wolm.weebly.ChannelWriter;
+import org.wolm.weebly.CompiledPage;
 import org.wolm.weebly.WeeblyPage;
 
 import freemarker.template.Configuration;
@@ -37,6 +46,9 @@ public abstract class PageRender {
 		// freemarkerConfig.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
 	}
 
+	/** Prepared Weebly page templates, compiled once per template URL and shared by every render */
+	private static final Map<URL, CompiledPage> compiledPageCache = new HashMap<>();
+
 	private final String templateName;
 	private final Map<String, Object> freemarkerDataModel = new HashMap<>();
 
@@ -45,6 +57,7 @@ public abstract class PageRender {
 		this.templateName = templateName;
 
 		addDataToModel("baseRef", RenderFactory.getBaseRef());
+		setEnvironment(new RenderEnvironment());
 	}
 
 	public String getTitle() {
@@ -63,6 +76,20 @@ public abstract class PageRender {
 		addDataToModel("ministry", ministry);
 	}
 
+	public RenderEnvironment getEnvironment() {
+		return (RenderEnvironment) getDataFromModel("env");
+	}
+
+	/**
+	 * Sets the environment whose filters decide which series and messages appear on the page. Templates see it as
+	 * {@code env}. Defaults to an environment without filters
+	 * 
+	 * @param env Environment of the build this page is part of
+	 */
+	public void setEnvironment(@Nonnull RenderEnvironment env) {
+		addDataToModel("env", env);
+	}
+
 	/**
 	 * Retrieves the current value of a model data element
 	 * 
@@ -90,26 +117,21 @@ public abstract class PageRender {
 	 * @throws Exception
 	 */
 	public void render(File outputFile) throws Exception {
-		WeeblyPage page = preparePage();
-
-		// get the content
-		Template freemarkerTemplate = freemarkerConfig.getTemplate(RenderFactory.getFullTemplateName(templateName));
-		Writer out = new StringWriter();
-		try {
-			freemarkerTemplate.process(freemarkerDataModel, out);
-		}
-		finally {
-			// closing a string writer does not have any effect, but do it for style
-			out.close();
-		}
+		CompiledPage page = preparePage();
+
+		// the content is generated straight into the page as it is written
+		final Template freemarkerTemplate = freemarkerConfig
+				.getTemplate(RenderFactory.getFullTemplateName(templateName));
+		Map<String, CompiledPage.StreamedValue> streamedContent = new HashMap<>();
+		streamedContent.put("Content", new CompiledPage.StreamedValue() {
+			public void writeTo(Writer out) throws Exception {
+				freemarkerTemplate.process(freemarkerDataModel, out);
+			}
+		});
 
 		Map<String, String> content = prepareContent();
-		content.put("Content", out.toString());
 		content.put("Title", (String) getDataFromModel("title"));
 
-		// insert the content
-		page.substituteVariables(content);
-
 		// write the page out
 		File dir = outputFile.getParentFile();
 		if (!dir.exists()) dir.mkdirs();
@@ -119,21 +141,98 @@ public abstract class PageRender {
 		if (!dir.isDirectory()) {
 			throw new IllegalStateException("Output directory '" + dir + "' already exists, but is not a directory.");
 		}
-		try (PrintStream outStream = new PrintStream(new FileOutputStream(outputFile))) {
-			page.printPage(outStream);
+		// write to a temporary file and move it into place, so builds running at the same time never see a partial page
+		File tempFile = new File(dir, "." + outputFile.getName() + "." + Thread.currentThread().getId() + ".tmp");
+		try {
+			final DigestingChannel channel = new DigestingChannel(FileChannel.open(tempFile.toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+
+			// the date changes on every render, so leave it out of the hash that tells whether the page changed
+			final String date = content.remove("Date");
+			if (date != null) {
+				streamedContent.put("Date", new CompiledPage.StreamedValue() {
+					public void writeTo(Writer out) throws Exception {
+						out.flush();
+						channel.setPaused(true);
+						out.write(date);
+						out.flush();
+						channel.setPaused(false);
+					}
+				});
+			}
+
+			try (ChannelWriter out = new ChannelWriter(channel)) {
+				page.write(out, content, streamedContent);
+			}
+
+			// keep the existing file, and its modification time, if the content did not change
+			PageManifest manifest = RenderFactory.getPageManifest();
+			if (manifest != null && manifest.recordRender(outputFile, channel.getSize(), channel.getHash())) {
+				App.logDebug("Page " + outputFile.getName() + " is unchanged");
+			}
+			else {
+				Files.move(tempFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+				if (manifest != null) manifest.recordWrite(outputFile, channel.getSize(), channel.getHash());
+			}
+		}
+		finally {
+			tempFile.delete();
 		}
 
+		// compress the page once, here, instead of on every upload
+		GzipCompressor compressor = RenderFactory.getPageCompressor();
+		if (compressor != null) compressor.compress(outputFile, templateName);
+
 		// register the page with the factory
 		RenderFactory.addCreatedPage(outputFile);
+
+		// start uploading the page while the rest of the site renders
+		PageUploadQueue uploads = RenderFactory.getPageUploadQueue();
+		if (uploads != null) uploads.submit(outputFile);
+	}
+
+	/**
+	 * Renders a template on its own, for a piece of a page that is rendered once and reused
+	 * 
+	 * @param templateName Name of the template, like "series-summaries"
+	 * @param model Data the template sees
+	 * @return The rendered template
+	 * @throws Exception
+	 */
+	protected static String renderFragment(@Nonnull String templateName, @Nonnull Map<String, Object> model)
+			throws Exception {
+		StringWriter out = new StringWriter();
+		freemarkerConfig.getTemplate(RenderFactory.getFullTemplateName(templateName)).process(model, out);
+		return out.toString();
 	}
 
-	protected WeeblyPage preparePage() throws Exception {
-		// read the Weebly template page
-		WeeblyPage page = new WeeblyPage(RenderFactory.getWeeblyPageTemplateUrl());
-		page.preparePageForRemoteHosting();
-		page.addTitleBreadcrumb("${Title}");
+	protected CompiledPage preparePage() throws Exception {
+		return getCompiledPage(RenderFactory.getWeeblyPageTemplateUrl());
+	}
 
-		return page;
+	/**
+	 * Gets the Weebly template page prepared for remote hosting, with a title bread-crumb for the page title. The page
+	 * is only read and prepared the first time it is needed
+	 * 
+	 * @param weeblyUrl URL of the Weebly template page
+	 * @return The prepared page, with slots for the Title, Content and Date
+	 * @throws Exception
+	 */
+	static CompiledPage getCompiledPage(@Nonnull URL weeblyUrl) throws Exception {
+		synchronized (compiledPageCache) {
+			CompiledPage compiled = compiledPageCache.get(weeblyUrl);
+			if (compiled == null) {
+				// read the Weebly template page
+				WeeblyPage page = new WeeblyPage(weeblyUrl);
+				page.preparePageForRemoteHosting();
+				page.addTitleBreadcrumb("${Title}");
+
+				compiled = page.compile();
+				compiledPageCache.put(weeblyUrl, compiled);
+			}
+			return compiled;
+		}
 	}
 
 	protected Map<String, String> prepareContent() {
@@ -0,0 +1,162 @@
+package org.wolm.catalog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.wolm.aws.ParallelUploader;
+
+/**
+ * Uploads pages while the rest of the site is still being rendered. Each finished page is put on a bounded queue that
+ * upload workers drain at the same time, so the network is busy during the render instead of after it. When the queue
+ * is full, the page that was just rendered waits for room, so rendering never gets far ahead of the uploads.
+ * <p>
+ * {@link #finish()} waits for the last upload and reports the pages that could not be uploaded. Pages whose upload is
+ * recorded in the {@link PageManifest} are not uploaded again by {@link App#upload()}.
+ *
+ * @author wolm
+ */
+public class PageUploadQueue {
+	/** Most pages waiting to be uploaded */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	/** Marks the end of the queue for the workers */
+	private static final Upload END = new Upload(null, null, null);
+
+	private final ParallelUploader uploader;
+	private final String prefix;
+	private final PageManifest manifest;
+
+	private final BlockingQueue<Upload> queue;
+	private final ExecutorService workers;
+	private final long start = System.nanoTime();
+
+	private final List<File> uploaded = new ArrayList<>();
+	private final List<File> failed = new ArrayList<>();
+	private long uploadedBytes = 0;
+	private boolean finished = false;
+
+	/**
+	 * Creates a queue and starts its workers
+	 *
+	 * @param uploader Uploader to upload the pages with
+	 * @param prefix Optional folder in the bucket to upload to
+	 * @param manifest Optional manifest to record the uploads in. Pages it says are already uploaded are skipped
+	 * @param capacity Most pages waiting to be uploaded
+	 */
+	public PageUploadQueue(@Nonnull ParallelUploader uploader, @Nullable String prefix,
+			@Nullable PageManifest manifest, int capacity) {
+		super();
+		this.uploader = uploader;
+		this.prefix = prefix;
+		this.manifest = manifest;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+
+		// the uploader limits how many uploads are in flight, so there is one worker for each upload it may allow
+		workers = Executors.newFixedThreadPool(uploader.getMaxConcurrency());
+		for (int i = 0; i < uploader.getMaxConcurrency(); i++) {
+			workers.submit(new Runnable() {
+				public void run() {
+					drain();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Queues a page that has been rendered, waiting for room if the queue is full
+	 *
+	 * @param page Page file
+	 * @throws InterruptedException
+	 */
+	public void submit(@Nonnull File page) throws InterruptedException {
+		synchronized (this) {
+			if (finished) throw new IllegalStateException("Upload queue is already finished");
+		}
+		if (manifest != null && !manifest.needsUpload(page)) return;
+
+		queue.put(new Upload(page, getKey(page), manifest == null ? null : manifest.getHash(page)));
+	}
+
+	/**
+	 * Waits for every queued page to be uploaded, and stops the workers
+	 *
+	 * @return Pages that could not be uploaded
+	 * @throws InterruptedException
+	 */
+	@Nonnull
+	public List<File> finish() throws InterruptedException {
+		synchronized (this) {
+			finished = true;
+		}
+		queue.put(END);
+		workers.shutdown();
+		while (!workers.awaitTermination(1, TimeUnit.MINUTES))
+			App.logInfo("Waiting for " + queue.size() + " queued pages to be uploaded ...");
+
+		synchronized (this) {
+			uploader.logThroughput(uploaded.size(), uploadedBytes, System.nanoTime() - start);
+			for (File page : failed)
+				App.logError("Unable to upload " + page + " while rendering");
+			return new ArrayList<>(failed);
+		}
+	}
+
+	/** @return Pages uploaded so far */
+	public synchronized List<File> getUploaded() {
+		return new ArrayList<>(uploaded);
+	}
+
+	/** Uploads queued pages until the end of the queue */
+	private void drain() {
+		try {
+			for (Upload upload = queue.take(); upload != END; upload = queue.take()) {
+				try {
+					long bytes = uploader.upload(upload.page, upload.key);
+					if (manifest != null) manifest.recordUpload(upload.page, upload.hash);
+					synchronized (this) {
+						uploaded.add(upload.page);
+						uploadedBytes += bytes;
+					}
+					App.logDebug("Uploaded page " + upload.page.getName() + " while rendering");
+				}
+				catch (Exception e) {
+					App.logWarn("Cannot upload " + upload.page.getName() + ": " + e.getMessage());
+					synchronized (this) {
+						failed.add(upload.page);
+					}
+				}
+			}
+			// leave the end for the other workers
+			queue.put(END);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private String getKey(File page) {
+		if (prefix == null) return page.getName();
+		return prefix + "/" + page.getName();
+	}
+
+	private static class Upload {
+		private final File page;
+		private final String key;
+		private final String hash;
+
+		private Upload(File page, String key, String hash) {
+			this.page = page;
+			this.key = key;
+			this.hash = hash;
+		}
+	}
+}
@@ -2,9 +2,14 @@ package org.wolm.catalog;
 
 import java.io.File;
 import java.net.URL;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.wolm.aws.GzipCompressor;
+import org.wolm.series.SeriesPageCache;
+import org.wolm.series.SeriesSummaryCache;
+
 /**
  * Factory to generate rendering objects
  * 
@@ -21,8 +26,23 @@ public class RenderFactory {
 	/** The base reference path for all internally referenced pages */
 	private static String baseRef = null;
 
-	/** List of all pages that have been created */
-	private static Set<File> createdPages = new HashSet<>();
+	/** List of all pages that have been created, by any thread */
+	private static Set<File> createdPages = Collections.synchronizedSet(new HashSet<File>());
+
+	/** Hashes of the pages in the output directory, or {@code null} to always write every page */
+	private static PageManifest pageManifest = null;
+
+	/** Makes the gzipped copy of each page that is uploaded, or {@code null} to upload pages uncompressed */
+	private static GzipCompressor pageCompressor = null;
+
+	/** Uploads pages as soon as they are rendered, or {@code null} to upload after the build */
+	private static PageUploadQueue pageUploadQueue = null;
+
+	/** Series pages rendered so far, so that each one is only rendered once */
+	private static SeriesPageCache seriesPageCache = new SeriesPageCache();
+
+	/** Series summaries rendered so far, so that each one is only rendered once for all the series indexes */
+	private static SeriesSummaryCache seriesSummaryCache = new SeriesSummaryCache();
 
 	/** Initialize the static fields */
 	static {
@@ -95,11 +115,51 @@ public class RenderFactory {
 	}
 
 	public static void setCreatedPages(Set<File> createdPages) {
-		RenderFactory.createdPages = createdPages;
+		RenderFactory.createdPages = Collections.synchronizedSet(createdPages);
 	}
 
 	public static void addCreatedPage(File createdPage) {
 		createdPages.add(createdPage);
 	}
 
+	public static SeriesPageCache getSeriesPageCache() {
+		return seriesPageCache;
+	}
+
+	public static void setSeriesPageCache(SeriesPageCache seriesPageCache) {
+		RenderFactory.seriesPageCache = seriesPageCache;
+	}
+
+	public static SeriesSummaryCache getSeriesSummaryCache() {
+		return seriesSummaryCache;
+	}
+
+	public static void setSeriesSummaryCache(SeriesSummaryCache seriesSummaryCache) {
+		RenderFactory.seriesSummaryCache = seriesSummaryCache;
+	}
+
+	public static PageManifest getPageManifest() {
+		return pageManifest;
+	}
+
+	public static void setPageManifest(PageManifest pageManifest) {
+		RenderFactory.pageManifest = pageManifest;
+	}
+
+	public static GzipCompressor getPageCompressor() {
+		return pageCompressor;
+	}
+
+	public static void setPageCompressor(GzipCompressor pageCompressor) {
+		RenderFactory.pageCompressor = pageCompressor;
+	}
+
+	public static PageUploadQueue getPageUploadQueue() {
+		return pageUploadQueue;
+	}
+
+	public static void setPageUploadQueue(PageUploadQueue pageUploadQueue) {
+		RenderFactory.pageUploadQueue = pageUploadQueue;
+	}
+
 }
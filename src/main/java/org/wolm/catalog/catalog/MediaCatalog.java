@@ -1,25 +1,38 @@
 package org.wolm.catalog.catalog;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nonnull;
 
-import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.commons.lang3.time.DateUtils;
 import org.wolm.catalog.App;
 import org.wolm.catalog.NamedLink;
+import org.wolm.catalog.environment.CatalogIndex;
 import org.wolm.catalog.environment.RenderEnvironment;
 import org.wolm.google.GoogleHelper;
 import org.wolm.google.GoogleRow;
 import org.wolm.google.GoogleSpreadsheet;
 import org.wolm.google.GoogleWorksheet;
+import org.wolm.google.RowSchema;
 import org.wolm.message.Message;
 import org.wolm.series.Series;
+import org.wolm.series.SeriesMessageIndex;
 
 /**
  * Definitions:
@@ -42,14 +55,125 @@ import org.wolm.series.Series;
  */
 
 public class MediaCatalog {
-	private RenderEnvironment env = RenderEnvironment.instance();
+	/** Columns of the message log, in the order they are set on each message */
+	static final RowSchema<Message> MESSAGE_COLUMNS = new RowSchema<Message>() //
+			.text("name", new RowSchema.Setter<Message, String>() {
+				public void set(Message msg, String value) {
+					msg.setTitle(value);
+				}
+			}).date("date", new RowSchema.Setter<Message, Date>() {
+				public void set(Message msg, Date value) {
+					msg.setDate(value);
+				}
+			}).list("seriesname", new RowSchema.Setter<Message, List<String>>() {
+				public void set(Message msg, List<String> values) {
+					msg.setSeries(values);
+				}
+			}).integers("track", new RowSchema.Setter<Message, List<Integer>>() {
+				public void set(Message msg, List<Integer> values) {
+					msg.setTrackNumbers(values);
+				}
+			}).text("description", new RowSchema.Setter<Message, String>() {
+				public void set(Message msg, String value) {
+					msg.setDescription(value);
+				}
+			}).text("resources", new RowSchema.Setter<Message, String>() {
+				public void set(Message msg, String value) {
+					msg.setResourcesAsString(value);
+				}
+			}).text("ministry", new RowSchema.Setter<Message, String>() {
+				public void set(Message msg, String value) {
+					msg.setMinistry(value);
+				}
+			}).text("type", new RowSchema.Setter<Message, String>() {
+				public void set(Message msg, String value) {
+					msg.setType(value);
+				}
+			}).text("visibility", new RowSchema.Setter<Message, String>() {
+				public void set(Message msg, String value) {
+					msg.setVisibilityAsString(value);
+				}
+			}).list("speaker", new RowSchema.Setter<Message, List<String>>() {
+				public void set(Message msg, List<String> values) {
+					msg.setSpeakers(values);
+				}
+			}).text("audiolink", new RowSchema.Setter<Message, String>() {
+				public void set(Message msg, String value) {
+					msg.setAudioLinkAsString(value);
+				}
+			}).text("videolink", new RowSchema.Setter<Message, String>() {
+				public void set(Message msg, String value) {
+					msg.setVideoLinkAsString(value);
+				}
+			});
+
+	/** Columns of the series log, in the order they are set on each series */
+	static final RowSchema<Series> SERIES_COLUMNS = new RowSchema<Series>() //
+			.text("name", new RowSchema.Setter<Series, String>() {
+				public void set(Series series, String value) {
+					series.setTitle(value);
+				}
+			}).text("webid", new RowSchema.Setter<Series, String>() {
+				public void set(Series series, String value) {
+					series.setId(value);
+				}
+			}).date("datestarted", new RowSchema.Setter<Series, Date>() {
+				public void set(Series series, Date value) {
+					series.setStartDate(value);
+				}
+			}).date("dateended", new RowSchema.Setter<Series, Date>() {
+				public void set(Series series, Date value) {
+					series.setEndDate(value);
+				}
+			}).number("messages", new RowSchema.Setter<Series, Long>() {
+				public void set(Series series, Long value) {
+					series.setMessageCount(value);
+				}
+			}).list("speaker", new RowSchema.Setter<Series, List<String>>() {
+				public void set(Series series, List<String> values) {
+					series.setSpeakers(values);
+				}
+			}).text("description", new RowSchema.Setter<Series, String>() {
+				public void set(Series series, String value) {
+					series.setDescription(value);
+				}
+			}).text("booklets", new RowSchema.Setter<Series, String>() {
+				public void set(Series series, String value) {
+					series.setBookletsAsString(value);
+				}
+			}).text("resources", new RowSchema.Setter<Series, String>() {
+				public void set(Series series, String value) {
+					series.setResourcesAsString(value);
+				}
+			}).text("visibility", new RowSchema.Setter<Series, String>() {
+				public void set(Series series, String value) {
+					series.setVisibilityAsString(value);
+				}
+			}).text("coverart", new RowSchema.Setter<Series, String>() {
+				public void set(Series series, String value) {
+					series.setCoverArtLinkAsString(value);
+				}
+			}).text("coverimage", new RowSchema.Setter<Series, String>() {
+				public void set(Series series, String value) {
+					series.setCoverImageLinkAsString(value);
+				}
+			});
 
 	private final String messageSpreadsheetName;
 	private List<Message> messages = new ArrayList<>();
 
+	/** Index of messages by the series they are in, built once all the messages are read */
+	private SeriesMessageIndex seriesMessageIndex = new SeriesMessageIndex();
+
 	private final String seriesSpreadsheetName;
 	private List<Series> series = new ArrayList<>();
 
+	/** Map of lower-cased series title to the first series with that title */
+	private final Map<String, Series> seriesByTitle = new HashMap<>();
+
+	/** Bit set index used to evaluate the filters, or {@code null} if the catalog changed since it was built */
+	private CatalogIndex index;
+
 	public MediaCatalog() {
 		this("WOL Series", "WOL Messages");
 	}
@@ -72,9 +196,18 @@ public class MediaCatalog {
 	}
 
 	/**
-	 * @return All messages that are visible under the current filters
+	 * @param env Environment whose filters decide what is visible
+	 * @return All messages that are visible under the filters of {@code env}
 	 */
-	public List<Message> getMessages() {
+	public List<Message> getMessages(@Nonnull RenderEnvironment env) {
+		BitSet included = index == null ? null : env.getIncludedMessages(index);
+		if (included != null) {
+			List<Message> visibleMessages = new ArrayList<>(included.cardinality());
+			for (int id = included.nextSetBit(0); id >= 0; id = included.nextSetBit(id + 1))
+				visibleMessages.add(index.getMessage(id));
+			return visibleMessages;
+		}
+
 		List<Message> visibleMessages = new ArrayList<>(messages.size());
 		for (Message message : messages)
 			if (env.shouldInclude(message)) visibleMessages.add(message);
@@ -83,6 +216,7 @@ public class MediaCatalog {
 
 	public void add(Message message) {
 		messages.add(message);
+		index = null;
 	}
 
 	/**
@@ -97,15 +231,22 @@ public class MediaCatalog {
 	 * @return Series with the name, or {@code null} if not found
 	 */
 	public Series getSeries(@Nonnull String seriesTitle) {
-		for (Series series : getSeries())
-			if (seriesTitle.equalsIgnoreCase(series.getTitle())) return series;
-		return null;
+		return seriesByTitle.get(seriesTitle.toLowerCase(Locale.ENGLISH));
 	}
 
 	/**
-	 * @return All series that are visible under the current visibility rules
+	 * @param env Environment whose filters decide what is visible
+	 * @return All series that are visible under the filters of {@code env}
 	 */
-	public List<Series> getFilteredSeries() {
+	public List<Series> getFilteredSeries(@Nonnull RenderEnvironment env) {
+		BitSet included = index == null ? null : env.getIncludedSeries(index);
+		if (included != null) {
+			List<Series> visibleSeries = new ArrayList<>(included.cardinality());
+			for (int id = included.nextSetBit(0); id >= 0; id = included.nextSetBit(id + 1))
+				visibleSeries.add(index.getSeries(id));
+			return visibleSeries;
+		}
+
 		List<Series> visibleSeries = new ArrayList<>(series.size());
 		for (Series s : series)
 			if (env.shouldInclude(s)) visibleSeries.add(s);
@@ -115,9 +256,10 @@ public class MediaCatalog {
 	/**
 	 * Creates an artificial series for all filtered messages
 	 * 
+	 * @param env Environment whose filters decide what is visible
 	 * @return List of filtered messages sorted chronologically
 	 */
-	public Series getFilteredMessagesInASeries() {
+	public Series getFilteredMessagesInASeries(@Nonnull RenderEnvironment env) {
 		// sort the messages by date
 		List<Message> orderedMessages = new ArrayList<>(messages);
 		Collections.sort(orderedMessages, Message.byDate);
@@ -128,7 +270,7 @@ public class MediaCatalog {
 
 		// add all the messages newer than the cutoff
 		for (Message message : orderedMessages) {
-			if (!env.shouldInclude(message)) continue;
+			if (!isIncluded(env, message)) continue;
 			series.addMessage(message);
 		}
 
@@ -137,6 +279,35 @@ public class MediaCatalog {
 
 	public void add(Series series) {
 		this.series.add(series);
+		index = null;
+
+		// remember the first series with each title
+		if (series.getTitle() == null) return;
+		String titleKey = series.getTitle().toLowerCase(Locale.ENGLISH);
+		if (!seriesByTitle.containsKey(titleKey)) seriesByTitle.put(titleKey, series);
+	}
+
+	/**
+	 * Freezes the messages and series into a {@link CatalogIndex} so the filters can be evaluated with bit set
+	 * operations instead of one message or series at a time. Adding a message or series drops the index, and changing
+	 * one of them requires building the index again.
+	 */
+	public void buildIndex() {
+		index = new CatalogIndex(messages, series);
+	}
+
+	/** @return {@code true} if the message should be included under the filters of {@code env} */
+	private boolean isIncluded(@Nonnull RenderEnvironment env, @Nonnull Message message) {
+		BitSet included = index == null ? null : env.getIncludedMessages(index);
+		int id = included == null ? -1 : index.getMessageId(message);
+		return id >= 0 ? included.get(id) : env.shouldInclude(message);
+	}
+
+	/** @return {@code true} if the series should be included under the filters of {@code env} */
+	private boolean isIncluded(@Nonnull RenderEnvironment env, @Nonnull Series series) {
+		BitSet included = index == null ? null : env.getIncludedSeries(index);
+		int id = included == null ? -1 : index.getSeriesId(series);
+		return id >= 0 ? included.get(id) : env.shouldInclude(series);
 	}
 
 	/**
@@ -145,191 +316,275 @@ public class MediaCatalog {
 	 * @throws Exception if anything goes wrong
 	 */
 	public void populateFromGoogleSpreadsheets() throws Exception {
-		GoogleHelper google = new GoogleHelper("org-wolm-catalog");
-
-		initMessages(google);
-		initSeries(google);
+		populateFromGoogleSpreadsheets(this);
+	}
 
+	/**
+	 * Reads several catalogs from the Google message archive at the same time, like
+	 * {@code populateFromGoogleSpreadsheets(wolCatalog, tboCatalog)}. The message and series logs of every catalog are
+	 * downloaded and parsed concurrently. Each catalog only waits for its own messages before wiring them to its series.
+	 * 
+	 * @param catalogs Catalogs to populate
+	 * @throws Exception if anything goes wrong
+	 */
+	public static void populateFromGoogleSpreadsheets(MediaCatalog... catalogs) throws Exception {
+		populate(new GoogleHelper("org-wolm-catalog"), catalogs);
 	}
 
 	/**
-	 * Reads the message logs and instantiates a list of all messages
+	 * Reads the entire catalog from the snapshots saved the last time the catalog was read from Google. Validates and
+	 * organizes the contents just like {@link #populateFromGoogleSpreadsheets()}
 	 * 
-	 * @param google Google Helper to use
-	 * @return A list of all messages read from the message logs
+	 * @throws Exception if there is no snapshot or anything else goes wrong
 	 */
-	private void initMessages(GoogleHelper google) throws Exception {
-		GoogleSpreadsheet spreadsheet = google.getSpreadsheet(messageSpreadsheetName);
-		if (spreadsheet == null)
-			throw new Exception("Cannot find spreadsheet called '" + messageSpreadsheetName + "' on Google.\n" //
-					+ "Reminder: you have to share the sheet with " //
-					+ "674258723045-lkoog528blgr1veujebv8chvj4tt6nfu@developer.gserviceaccount.com " //
-					+ "before it will be visible.");
+	public void populateFromSnapshots() throws Exception {
+		GoogleHelper google = new GoogleHelper("org-wolm-catalog");
+		google.setOffline(true);
 
-		GoogleWorksheet worksheet = spreadsheet.getWorksheet("Media Log");
-		if (worksheet == null) throw new Exception(
-				"Cannot find worksheet called 'Media Log' in the '" + messageSpreadsheetName + "' spreadsheet.");
-
-		List<String> columns = worksheet.getColumnNames();
-		for (String columnName : new String[] { "date", "name", "speaker", "audiolink", "videolink", "ministry", "type",
-				"visibility", "seriesname", "track", "description", "resources" })
-			if (!columns.contains(columnName)) {
-				throw new Exception(
-						"Cannot find column '" + columnName + "' in the spreadsheet '" + messageSpreadsheetName + "'");
-			}
+		populate(google, this);
+	}
 
-		// create message objects
-		for (GoogleRow row : worksheet.getRows()) {
-			Message msg = new Message();
-
-			// title/name
-			msg.setTitle(row.getValue("name"));
-
-			// date
-			msg.setDate(row.getDateValue("date"));
-
-			// series
-			String value = row.getValue("seriesname");
-			if (value != null) {
-				String[] seriesArray = value.split(";");
-				List<String> series = new ArrayList<>(seriesArray.length);
-				for (String s : seriesArray)
-					series.add(s.trim());
-				msg.setSeries(series);
+	/**
+	 * Reads the message and series logs of all the catalogs in parallel, then wires each catalog's messages to its
+	 * series
+	 * 
+	 * @param google Google Helper to use
+	 * @param catalogs Catalogs to populate
+	 * @throws Exception if anything goes wrong
+	 */
+	private static void populate(final GoogleHelper google, MediaCatalog... catalogs) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(2 * catalogs.length);
+		try {
+			final long phaseStart = System.currentTimeMillis();
+
+			// start reading every worksheet at once
+			List<WorksheetRead<List<Message>>> messageReads = new ArrayList<>(catalogs.length);
+			List<WorksheetRead<List<Series>>> seriesReads = new ArrayList<>(catalogs.length);
+			for (final MediaCatalog catalog : catalogs) {
+				messageReads.add(new WorksheetRead<List<Message>>(catalog.messageSpreadsheetName, phaseStart) {
+					List<Message> read() throws Exception {
+						return catalog.readMessages(google);
+					}
+				});
+				seriesReads.add(new WorksheetRead<List<Series>>(catalog.seriesSpreadsheetName, phaseStart) {
+					List<Series> read() throws Exception {
+						return catalog.readSeries(google);
+					}
+				});
 			}
-			value = row.getValue("track");
-			if (value != null) {
-				String[] trackArray = value.split(";");
-				List<Integer> tracks = new ArrayList<>(trackArray.length);
-				for (String s : trackArray)
-					tracks.add(NumberUtils.toInt(s.trim()));
-				msg.setTrackNumbers(tracks);
+			List<Future<List<Message>>> messageFutures = new ArrayList<>(catalogs.length);
+			List<Future<List<Series>>> seriesFutures = new ArrayList<>(catalogs.length);
+			for (int index = 0; index < catalogs.length; index++) {
+				messageFutures.add(pool.submit(messageReads.get(index)));
+				seriesFutures.add(pool.submit(seriesReads.get(index)));
 			}
 
-			// description
-			msg.setDescription(row.getValue("description"));
-
-			// resources
-			msg.setResourcesAsString(row.getValue("resources"));
+			// wire each catalog as soon as its own worksheets are read
+			for (int index = 0; index < catalogs.length; index++) {
+				catalogs[index].addMessages(waitFor(messageFutures.get(index)));
+				catalogs[index].addSeries(waitFor(seriesFutures.get(index)));
+				catalogs[index].buildIndex();
+			}
 
-			// ministry
-			msg.setMinistry(row.getValue("ministry"));
+			// report how much the reads overlapped
+			long busyMillis = 0;
+			List<WorksheetRead<?>> reads = new ArrayList<>();
+			reads.addAll(messageReads);
+			reads.addAll(seriesReads);
+			for (WorksheetRead<?> read : reads) {
+				if (read.name == null) continue;
+				App.logInfo(String.format("Read '%s' from %.2fs to %.2fs", read.name, read.startMillis / 1000.0,
+						read.endMillis / 1000.0));
+				busyMillis += read.endMillis - read.startMillis;
+			}
+			App.logInfo(String.format("Read all worksheets in %.2fs (%.2fs if read one at a time)",
+					(System.currentTimeMillis() - phaseStart) / 1000.0, busyMillis / 1000.0));
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
 
-			// type
-			msg.setType(row.getValue("type"));
+	/** Waits for a read to finish and passes along whatever it threw */
+	private static <T> T waitFor(Future<T> future) throws Exception {
+		try {
+			return future.get();
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+			throw e;
+		}
+	}
 
-			// visibility
-			msg.setVisibilityAsString(row.getValue("visibility"));
+	/**
+	 * Reads one worksheet in the background and remembers when it ran, relative to the start of the read phase
+	 */
+	private static abstract class WorksheetRead<T> implements Callable<T> {
+		/** Name of the spreadsheet being read */
+		final String name;
+		final long phaseStart;
+		volatile long startMillis;
+		volatile long endMillis;
+
+		WorksheetRead(String name, long phaseStart) {
+			super();
+			this.name = name;
+			this.phaseStart = phaseStart;
+		}
 
-			// speakers
-			value = row.getValue("speaker");
-			if (value != null) {
-				String[] speakerArray = value.split(";");
-				List<String> speakers = new ArrayList<>(speakerArray.length);
-				for (String s : speakerArray)
-					speakers.add(s.trim());
-				msg.setSpeakers(speakers);
+		public T call() throws Exception {
+			startMillis = System.currentTimeMillis() - phaseStart;
+			try {
+				return read();
 			}
-
-			// audio & video links
-			msg.setAudioLinkAsString(row.getValue("audiolink"));
-			msg.setVideoLinkAsString(row.getValue("videolink"));
-
-			/*
-			 * validate the message is ok to process
-			 */
-			if (!msg.isValid(System.out)) {
-				App.logWarn("Ignoring message due to preceeding problems");
-				continue;
+			finally {
+				endMillis = System.currentTimeMillis() - phaseStart;
 			}
-			msg.normalize();
-
-			add(msg);
 		}
+
+		abstract T read() throws Exception;
 	}
 
 	/**
-	 * Reads the series logs and instantiates a list of all series. Does not auto-wire the series to the messages
+	 * Finds a worksheet in a spreadsheet
 	 * 
 	 * @param google Google Helper to use
-	 * @return A list of all series read from the series log
+	 * @param spreadsheetName Name of the spreadsheet
+	 * @param worksheetName Name of the worksheet (tab)
+	 * @return The worksheet
+	 * @throws Exception if the spreadsheet or worksheet cannot be found
 	 */
-	private void initSeries(GoogleHelper google) throws Exception {
-		// must do messages first so we can record which messages go with each series
-		assert !getRawMessages().isEmpty();
-		if (seriesSpreadsheetName == null) return;
-
-		GoogleSpreadsheet spreadsheet = google.getSpreadsheet(seriesSpreadsheetName);
+	private GoogleWorksheet getWorksheet(GoogleHelper google, String spreadsheetName, String worksheetName)
+			throws Exception {
+		GoogleSpreadsheet spreadsheet = google.getSpreadsheet(spreadsheetName);
+		if (spreadsheet == null && google.isOffline())
+			throw new Exception("Cannot find a snapshot of the spreadsheet called '" + spreadsheetName + "'.\n" //
+					+ "Reminder: you have to build the catalog online once to create the snapshot.");
 		if (spreadsheet == null)
-			throw new Exception("Cannot find spreadsheet called '" + seriesSpreadsheetName + "' on Google.\n" //
+			throw new Exception("Cannot find spreadsheet called '" + spreadsheetName + "' on Google.\n" //
 					+ "Reminder: you have to share the sheet with " //
 					+ "674258723045-lkoog528blgr1veujebv8chvj4tt6nfu@developer.gserviceaccount.com " //
 					+ "before it will be visible.");
 
-		GoogleWorksheet worksheet = spreadsheet.getWorksheet("Series Log");
+		GoogleWorksheet worksheet = spreadsheet.getWorksheet(worksheetName);
 		if (worksheet == null) throw new Exception(
-				"Cannot find worksheet called 'Series Log' in the '" + seriesSpreadsheetName + "' spreadsheet.");
-
-		List<String> columns = worksheet.getColumnNames();
-		for (String columnName : new String[] { "name", "datestarted", "dateended", "messages", "speaker",
-				"description", "booklets", "resources", "visibility", "coverart", "coverimage", "webid" })
-			if (!columns.contains(columnName)) {
-				throw new Exception(
-						"Cannot find column '" + columnName + "' in the spreadsheet '" + seriesSpreadsheetName + "'");
-			}
+				"Cannot find worksheet called '" + worksheetName + "' in the '" + spreadsheetName + "' spreadsheet.");
 
-		// prepare unique ID validation
-		Set<String> seriesIds = new HashSet<>();
-
-		// create series objects
-		for (GoogleRow row : worksheet.getRows()) {
-			Series series = new Series();
+		if (worksheet.isSnapshot()) logSnapshotAge(spreadsheetName, worksheet);
+		return worksheet;
+	}
 
-			// title/name
-			series.setTitle(row.getValue("name"));
+	/** Reports how old the snapshot of a worksheet is, so nobody mistakes an old catalog for a current one */
+	private void logSnapshotAge(String spreadsheetName, GoogleWorksheet worksheet) {
+		Date revision = worksheet.getRevision();
+		if (revision == null) {
+			App.logWarn("Using snapshot of '" + spreadsheetName + "/" + worksheet.getTitle() + "' of unknown revision");
+			return;
+		}
 
-			try {
-				App.logDebug("Initializing series '" + series.getTitle() + "'...");
-				App.logIndent();
+		long days = (System.currentTimeMillis() - revision.getTime()) / DateUtils.MILLIS_PER_DAY;
+		String message = "Using snapshot of '" + spreadsheetName + "/" + worksheet.getTitle() + "' from revision "
+				+ revision + " (" + days + " day" + (days == 1 ? "" : "s") + " old)";
+		if (days > 7) App.logWarn(message);
+		else App.logInfo(message);
+	}
 
-				// unique id
-				series.setId(row.getValue("webid"));
+	/**
+	 * Reads the message logs and instantiates a list of all valid messages. Does not add them to the catalog, so this is
+	 * safe to run while the series logs are being read
+	 * 
+	 * @param google Google Helper to use
+	 * @return A list of all messages read from the message logs
+	 */
+	private List<Message> readMessages(GoogleHelper google) throws Exception {
+		GoogleWorksheet worksheet = getWorksheet(google, messageSpreadsheetName, "Media Log");
 
-				// date
-				series.setStartDate(row.getDateValue("datestarted"));
-				series.setEndDate(row.getDateValue("dateended"));
+		// only download the columns that are read, and make each message as soon as its row is read
+		worksheet.project(MESSAGE_COLUMNS.getColumnNames());
+		final RowSchema.Binder<Message> binder = MESSAGE_COLUMNS.bind(worksheet, messageSpreadsheetName);
 
-				// messages
-				series.setMessageCount(row.getLongValue("messages"));
+		// create message objects
+		final List<Message> messages = new ArrayList<>();
+		worksheet.readRows(new GoogleWorksheet.RowConsumer() {
+			public void accept(GoogleRow row) {
+				Message msg = new Message();
+				binder.bind(row, msg);
 
-				// speakers
-				String value = row.getValue("speaker");
-				if (value != null) {
-					String[] speakerArray = value.split(";");
-					List<String> speakers = new ArrayList<>(speakerArray.length);
-					for (String s : speakerArray)
-						speakers.add(s.trim());
-					series.setSpeakers(speakers);
+				/*
+				 * validate the message is ok to process
+				 */
+				if (!msg.isValid(System.out)) {
+					App.logWarn("Ignoring message due to preceeding problems");
+					return;
 				}
+				msg.normalize();
 
-				// description
-				series.setDescription(row.getValue("description"));
+				messages.add(msg);
+			}
+		});
 
-				// booklets
-				series.setBookletsAsString(row.getValue("booklets"));
+		return messages;
+	}
 
-				// resources
-				series.setResourcesAsString(row.getValue("resources"));
+	/**
+	 * Adds messages read from the message logs, and indexes all the messages by series so each series can find its
+	 * messages without a full scan
+	 * 
+	 * @param messages Messages to add
+	 */
+	private void addMessages(List<Message> messages) {
+		for (Message message : messages)
+			add(message);
 
-				// visibility
-				series.setVisibilityAsString(row.getValue("visibility"));
+		seriesMessageIndex = new SeriesMessageIndex(this.messages);
+	}
 
-				// cover
-				series.setCoverArtLinkAsString(row.getValue("coverart"));
-				series.setCoverImageLinkAsString(row.getValue("coverimage"));
+	/**
+	 * Reads the series logs and instantiates a list of all series. Does not auto-wire the series to the messages, so
+	 * this is safe to run while the message logs are being read
+	 * 
+	 * @param google Google Helper to use
+	 * @return A list of all series read from the series log
+	 */
+	private List<Series> readSeries(GoogleHelper google) throws Exception {
+		if (seriesSpreadsheetName == null) return Collections.emptyList();
+
+		GoogleWorksheet worksheet = getWorksheet(google, seriesSpreadsheetName, "Series Log");
+
+		// only download the columns that are read, and make each series as soon as its row is read
+		worksheet.project(SERIES_COLUMNS.getColumnNames());
+		final RowSchema.Binder<Series> binder = SERIES_COLUMNS.bind(worksheet, seriesSpreadsheetName);
+
+		// create series objects
+		final List<Series> serieses = new ArrayList<>();
+		worksheet.readRows(new GoogleWorksheet.RowConsumer() {
+			public void accept(GoogleRow row) {
+				Series series = new Series();
+				binder.bind(row, series);
+				serieses.add(series);
+			}
+		});
+
+		return serieses;
+	}
+
+	/**
+	 * Wires series read from the series logs to their messages, then validates and adds them. The messages must already
+	 * have been added
+	 * 
+	 * @param serieses Series to add
+	 */
+	private void addSeries(List<Series> serieses) {
+		// prepare unique ID validation
+		Set<String> seriesIds = new HashSet<>();
+
+		for (Series series : serieses) {
+			try {
+				App.logDebug("Initializing series '" + series.getTitle() + "'...");
+				App.logIndent();
 
 				// discover messages for this series
-				series.discoverMessages(messages);
+				series.discoverMessages(seriesMessageIndex);
 
 				/*
 				 * validate the series is ok to process
@@ -353,9 +608,10 @@ public class MediaCatalog {
 	 * Gets a list of all non-series messages and returns them wrapped in series. Each loose message is put into a
 	 * series of one message with the same name.
 	 * 
+	 * @param env Environment whose filters decide what is visible
 	 * @return List of series representing all loose, stand-alone messages oldest first
 	 */
-	public List<Series> getStandAloneMessagesInSeriesByMessage() {
+	public List<Series> getStandAloneMessagesInSeriesByMessage(@Nonnull RenderEnvironment env) {
 		List<Series> serieses = new ArrayList<>();
 
 		// sort the messages by date
@@ -369,7 +625,7 @@ public class MediaCatalog {
 			if (!message.isStandAlone()) continue;
 
 			// skip if not visible
-			if (!env.shouldInclude(message)) continue;
+			if (!isIncluded(env, message)) continue;
 
 			// create series
 			serieses.add(getStandAloneMessage(message));
@@ -401,12 +657,13 @@ public class MediaCatalog {
 	 * Gets a list of all non-series messages and returns them wrapped in series. Loose messages are gathered by year
 	 * and one series is returned per year.
 	 * 
+	 * @param env Environment whose filters decide what is visible
 	 * @return List of series representing all loose, stand-alone messages oldest first
 	 */
-	public List<Series> getStandAloneMessagesInSeriesByYear() {
+	public List<Series> getStandAloneMessagesInSeriesByYear(@Nonnull RenderEnvironment env) {
 		List<Series> allSeries = new ArrayList<>();
 		for (int year = 2000; year < 2030; year++) {
-			Series series = getStandAloneMessages(year);
+			Series series = getStandAloneMessages(env, year);
 			if (series.getMessageCount() > 0) allSeries.add(series);
 		}
 		return allSeries;
@@ -415,10 +672,11 @@ public class MediaCatalog {
 	/**
 	 * Gets all the messages from a given year as a series, but only if they are not in a series already
 	 * 
+	 * @param env Environment whose filters decide what is visible
 	 * @param year
 	 * @return
 	 */
-	public Series getStandAloneMessages(int year) {
+	public Series getStandAloneMessages(@Nonnull RenderEnvironment env, int year) {
 		// sort the messages by date
 		List<Message> orderedMessages = new ArrayList<>(messages);
 		Collections.sort(orderedMessages, Message.byDate);
@@ -437,7 +695,7 @@ public class MediaCatalog {
 
 			cal.setTime(message.getDate());
 			if (cal.get(Calendar.YEAR) != year) continue; // not the right year
-			if (!env.shouldInclude(message)) continue; // not the right visibility
+			if (!isIncluded(env, message)) continue; // not the right visibility
 			if (!message.getSeries().isEmpty()) continue; // already in a series
 			series.addMessage(message);
 		}
@@ -454,16 +712,17 @@ public class MediaCatalog {
 	/**
 	 * Gets a list of all series that are completed (have a non-<code>null</code> end date)
 	 * <p>
-	 * Honors the global minimum visibility
+	 * Honors the visibility of the environment
 	 * 
+	 * @param env Environment whose filters decide what is visible
 	 * @return List of all completed series, sorted in date order (oldest first)
 	 */
-	public List<Series> getCompletedSeries() {
+	public List<Series> getCompletedSeries(@Nonnull RenderEnvironment env) {
 		List<Series> serieses = new ArrayList<>();
 
-		for (Series series : getFilteredSeries()) {
+		for (Series series : getFilteredSeries(env)) {
 			if (series.getEndDate() == null) continue;
-			if (!env.shouldInclude(series)) continue;
+			if (!isIncluded(env, series)) continue;
 			if (series.isBooklet()) continue;
 			serieses.add(series);
 		}
@@ -475,16 +734,17 @@ public class MediaCatalog {
 	 * Gets a list of all series that are in progress (have a non-<code>null</code> start date but a {@code null} end
 	 * date)
 	 * <p>
-	 * Honors the global minimum visibility
+	 * Honors the visibility of the environment
 	 * 
+	 * @param env Environment whose filters decide what is visible
 	 * @return List of all in progress series, sorted in date order (oldest first)
 	 */
-	public List<Series> getInProgressSeries() {
+	public List<Series> getInProgressSeries(@Nonnull RenderEnvironment env) {
 		List<Series> serieses = new ArrayList<>();
 
-		for (Series series : getFilteredSeries()) {
+		for (Series series : getFilteredSeries(env)) {
 			if (series.getEndDate() != null) continue;
-			if (!env.shouldInclude(series)) continue;
+			if (!isIncluded(env, series)) continue;
 			if (series.isBooklet()) continue;
 			serieses.add(series);
 		}
@@ -496,16 +756,17 @@ public class MediaCatalog {
 	 * Finds all handouts (downloadable documents) or resources (links like YouTube or website) from any series, or
 	 * message. Does not include Booklets
 	 * 
+	 * @param env Environment whose filters decide what is visible
 	 * @return List of all resources
 	 */
-	public List<NamedLink> getHandoutsAndResources() {
+	public List<NamedLink> getHandoutsAndResources(@Nonnull RenderEnvironment env) {
 		List<NamedLink> resources = new ArrayList<>();
 
 		// find all resources
 
 		// find all resources from series, which will include messages in those series
-		for (Series series : getFilteredSeries()) {
-			if (!env.shouldInclude(series)) continue;
+		for (Series series : getFilteredSeries(env)) {
+			if (!isIncluded(env, series)) continue;
 			for (NamedLink resource : series.getResources(true)) {
 				// if (!resource.isDocumentForDownload()) continue;
 				resources.add(resource);
@@ -513,9 +774,9 @@ public class MediaCatalog {
 		}
 
 		// find resources from stand-alone messages that are not part of any series
-		for (Message message : getMessages()) {
+		for (Message message : getMessages(env)) {
 			if (!message.getSeries().isEmpty()) continue;
-			if (!env.shouldInclude(message)) continue;
+			if (!isIncluded(env, message)) continue;
 			for (NamedLink resource : message.getResources()) {
 				// if (!resource.isDocumentForDownload()) continue;
 				resources.add(resource);
@@ -523,7 +784,7 @@ public class MediaCatalog {
 		}
 
 		// remove those that are booklets
-		resources.removeAll(getBooklets());
+		resources.removeAll(getBooklets(env));
 
 		Collections.sort(resources, NamedLink.byTitleNameWithoutDate);
 		return resources;
@@ -534,9 +795,10 @@ public class MediaCatalog {
 	 * regardless of visibility of the series. However, if the series isn't visible, then the booklet link will not
 	 * cross-reference back to the series
 	 * 
+	 * @param env Environment whose filters decide what is visible
 	 * @return List of booklets
 	 */
-	public List<NamedLink> getBooklets() {
+	public List<NamedLink> getBooklets(@Nonnull RenderEnvironment env) {
 		List<NamedLink> booklets = new ArrayList<>();
 
 		// find booklets of all series, regardless of visibility
@@ -545,7 +807,7 @@ public class MediaCatalog {
 				if (!booklet.isDocumentForDownload()) continue;
 				// if the series is not visible, then break the reference back to it by converting it from a
 				// NamedResourceLink to just a NamedLink
-				if (!env.shouldInclude(series)) {
+				if (!isIncluded(env, series)) {
 					booklet = new NamedLink(booklet);
 				}
 				booklets.add(booklet);
@@ -558,6 +820,9 @@ public class MediaCatalog {
 
 	public void sortSeriesByDate() {
 		Collections.sort(series, Series.byDate);
+
+		// keep the ids in list order
+		if (index != null) buildIndex();
 	}
 
 	@Override
@@ -3,13 +3,16 @@ package org.wolm.catalog.catalog;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.wolm.catalog.App;
 import org.wolm.catalog.PageRender;
-import org.wolm.catalog.environment.RenderEnvironment;
+import org.wolm.catalog.RenderFactory;
 import org.wolm.series.Series;
 import org.wolm.series.SeriesPageRender;
+import org.wolm.series.SeriesSummaryCache;
 import org.wolm.series.SeriesUrlRender;
 
 public class SeriesIndexPageRender extends PageRender {
@@ -31,6 +34,31 @@ public class SeriesIndexPageRender extends PageRender {
 		addDataToModel("seriesList", seriesList);
 	}
 
+	/**
+	 * Puts the summary of each series in the list into the data model, in the order of the list. Summaries come from
+	 * the {@link SeriesSummaryCache}, so each one is only rendered once for every index and order it appears in
+	 * 
+	 * @throws Exception
+	 */
+	private void setSeriesSummaries() throws Exception {
+		final String ministry = getMinistry();
+		final String baseRef = RenderFactory.getBaseRef();
+		List<String> summaries = RenderFactory.getSeriesSummaryCache().getSummaries(getSeriesList(), ministry,
+				baseRef, new SeriesSummaryCache.Renderer() {
+					public List<String> render(List<Series> seriesList) throws Exception {
+						Summaries collected = new Summaries();
+						Map<String, Object> model = new HashMap<>();
+						model.put("seriesList", seriesList);
+						model.put("ministry", ministry);
+						model.put("baseRef", baseRef);
+						model.put("summaries", collected);
+						renderFragment("series-summaries", model);
+						return collected.list;
+					}
+				});
+		addDataToModel("seriesSummaries", summaries);
+	}
+
 	public String getIndexDescription() {
 		return (String) getDataFromModel("description");
 	}
@@ -62,12 +90,14 @@ public class SeriesIndexPageRender extends PageRender {
 
 			// render the default by title
 			setPageName(pageFile.getName());
+			setSeriesSummaries();
 			super.render(pageFile);
 
 			// render sorted by date ascending
 			List<Series> seriesList = new ArrayList<>(getSeriesList());
 			Collections.sort(seriesList, Series.byDate);
 			setSeriesList(seriesList);
+			setSeriesSummaries();
 			String pageName = pageFile.getName().replace(".html", "-09.html");
 			setPageName(pageName);
 			File renderFile = new File(pageFile.getParentFile(), pageName);
@@ -77,6 +107,7 @@ public class SeriesIndexPageRender extends PageRender {
 			seriesList = new ArrayList<>(getSeriesList());
 			Collections.sort(seriesList, Series.byDateDescending);
 			setSeriesList(seriesList);
+			setSeriesSummaries();
 			pageName = pageFile.getName().replace(".html", "-90.html");
 			setPageName(pageName);
 			renderFile = new File(pageFile.getParentFile(), pageName);
@@ -85,13 +116,19 @@ public class SeriesIndexPageRender extends PageRender {
 			// write out supporting files (i.e. all the series pages)
 			File pageDirectory = pageFile.getParentFile();
 			for (Series series : getSeriesList()) {
-				if (!RenderEnvironment.instance().shouldInclude(series)) {
+				if (!getEnvironment().shouldInclude(series)) {
 					App.logInfo("Filtering out series " + series.getTitle());
 					continue;
 				}
+				File seriesFile = new File(pageDirectory, new SeriesUrlRender(series).getFileName());
+				// catalogs overlap, so skip series pages that another catalog already claimed
+				if (!RenderFactory.getSeriesPageCache().claim(seriesFile, series, getMinistry(), getEnvironment())) {
+					App.logDebug("Series page " + seriesFile.getName() + " is already claimed");
+					continue;
+				}
 				SeriesPageRender seriesRender = new SeriesPageRender(series);
 				seriesRender.setMinistry(getMinistry());
-				File seriesFile = new File(pageDirectory, new SeriesUrlRender(series).getFileName());
+				seriesRender.setEnvironment(getEnvironment());
 				seriesRender.render(seriesFile);
 			}
 		}
@@ -99,4 +136,20 @@ public class SeriesIndexPageRender extends PageRender {
 			App.logOutdent();
 		}
 	}
+
+	/**
+	 * Collects the summaries that series-summaries.ftl renders
+	 */
+	public static class Summaries {
+		private final List<String> list = new ArrayList<>();
+
+		/**
+		 * @param summary Rendered summary of the next series
+		 * @return Nothing to write to the page
+		 */
+		public String add(String summary) {
+			list.add(summary);
+			return "";
+		}
+	}
 }
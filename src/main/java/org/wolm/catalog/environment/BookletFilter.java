@@ -1,11 +1,13 @@
 package org.wolm.catalog.environment;
 
+import java.util.BitSet;
+
 import javax.annotation.Nonnull;
 
 import org.wolm.message.Message;
 import org.wolm.series.Series;
 
-public class BookletFilter implements MediaCatalogFilter {
+public class BookletFilter implements IndexedFilter {
 	/** {@code true} to only include booklets, {@code false} to only include non-booklets */
 	private final boolean isBooklet;
 
@@ -31,4 +33,16 @@ public class BookletFilter implements MediaCatalogFilter {
 		return shouldInclude(series);
 	}
 
+	public BitSet getIncludedMessages(@Nonnull CatalogIndex index) {
+		return index.getAllMessages();
+	}
+
+	public BitSet getIncludedSeries(@Nonnull CatalogIndex index) {
+		if (isBooklet) return (BitSet) index.getBookletSeries().clone();
+
+		BitSet included = index.getAllSeries();
+		included.andNot(index.getBookletSeries());
+		return included;
+	}
+
 }
@@ -0,0 +1,250 @@
+package org.wolm.catalog.environment;
+
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.wolm.catalog.AccessLevel;
+import org.wolm.message.Message;
+import org.wolm.series.Series;
+
+/**
+ * Frozen view of the messages and series of a catalog that gives each one a dense integer id and pre-computes a
+ * {@link BitSet} of the ids for every ministry, type, visibility, booklet flag and year. Filters that implement
+ * {@link IndexedFilter} turn into a few bit set operations against this index instead of a walk over every message and
+ * series.
+ * <p>
+ * Ids are assigned in list order, so walking the set bits of a result visits the messages or series in the same order
+ * as the lists the index was built from.
+ * <p>
+ * The index does not notice changes to the messages or series it was built from; build a new one after changing them.
+ * Bit sets returned by the getters are shared and must not be modified.
+ *
+ * @author wolm
+ */
+public class CatalogIndex {
+	private static final BitSet EMPTY = new BitSet();
+
+	private final Message[] messages;
+	private final Series[] series;
+
+	private final Map<Message, Integer> messageIds = new IdentityHashMap<>();
+	private final Map<Series, Integer> seriesIds = new IdentityHashMap<>();
+
+	/** Every ministry and type used by a message, including messages only found in a series */
+	private final Set<String> ministries = new HashSet<>();
+	private final Set<String> types = new HashSet<>();
+
+	private final Map<String, BitSet> messagesByMinistry = new HashMap<>();
+	private final Map<String, BitSet> messagesByType = new HashMap<>();
+	private final Map<AccessLevel, BitSet> messagesByVisibility = new EnumMap<>(AccessLevel.class);
+	private final Map<Integer, BitSet> messagesByYear = new HashMap<>();
+
+	/** Series that contain at least one message with the ministry */
+	private final Map<String, BitSet> seriesByMinistry = new HashMap<>();
+	/** Series that contain at least one message with the type */
+	private final Map<String, BitSet> seriesByType = new HashMap<>();
+	private final Map<AccessLevel, BitSet> seriesByVisibility = new EnumMap<>(AccessLevel.class);
+	private final BitSet bookletSeries = new BitSet();
+	private final BitSet unfinishedSeries = new BitSet();
+	private final Map<Integer, BitSet> seriesByStartYear = new HashMap<>();
+	private final Map<Integer, BitSet> seriesByEndYear = new HashMap<>();
+	/** Series that contain at least one message from the year */
+	private final Map<Integer, BitSet> seriesByMessageYear = new HashMap<>();
+
+	public CatalogIndex(@Nonnull List<Message> messages, @Nonnull List<Series> series) {
+		super();
+		this.messages = messages.toArray(new Message[messages.size()]);
+		this.series = series.toArray(new Series[series.size()]);
+
+		Calendar cal = new GregorianCalendar();
+
+		for (int id = 0; id < this.messages.length; id++) {
+			Message message = this.messages[id];
+			messageIds.put(message, id);
+
+			if (message.getMinistry() != null) {
+				ministries.add(message.getMinistry());
+				getOrCreate(messagesByMinistry, message.getMinistry()).set(id);
+			}
+			if (message.getType() != null) {
+				types.add(message.getType());
+				getOrCreate(messagesByType, message.getType()).set(id);
+			}
+			getOrCreate(messagesByVisibility, effectiveVisibility(message.getVisibility())).set(id);
+			if (message.getDate() != null) getOrCreate(messagesByYear, yearOf(cal, message.getDate())).set(id);
+		}
+
+		for (int id = 0; id < this.series.length; id++) {
+			Series s = this.series[id];
+			seriesIds.put(s, id);
+
+			getOrCreate(seriesByVisibility, effectiveVisibility(s.getVisibility())).set(id);
+			if (s.isBooklet()) bookletSeries.set(id);
+			if (s.getEndDate() == null) unfinishedSeries.set(id);
+			if (s.getStartDate() != null) getOrCreate(seriesByStartYear, yearOf(cal, s.getStartDate())).set(id);
+			if (s.getEndDate() != null) getOrCreate(seriesByEndYear, yearOf(cal, s.getEndDate())).set(id);
+
+			for (Message message : s.getMessages()) {
+				if (message.getMinistry() != null) {
+					ministries.add(message.getMinistry());
+					getOrCreate(seriesByMinistry, message.getMinistry()).set(id);
+				}
+				if (message.getType() != null) {
+					types.add(message.getType());
+					getOrCreate(seriesByType, message.getType()).set(id);
+				}
+				if (message.getDate() != null) getOrCreate(seriesByMessageYear, yearOf(cal, message.getDate())).set(id);
+			}
+		}
+	}
+
+	private static <K> BitSet getOrCreate(Map<K, BitSet> map, K key) {
+		BitSet bits = map.get(key);
+		if (bits == null) {
+			bits = new BitSet();
+			map.put(key, bits);
+		}
+		return bits;
+	}
+
+	private static int yearOf(Calendar cal, Date date) {
+		cal.setTime(date);
+		return cal.get(Calendar.YEAR);
+	}
+
+	/** Visibility as the filters see it, where no visibility means private */
+	static AccessLevel effectiveVisibility(@Nullable AccessLevel visibility) {
+		return visibility == null ? AccessLevel.PRIVATE : visibility;
+	}
+
+	private static BitSet get(Map<?, BitSet> map, Object key) {
+		BitSet bits = map.get(key);
+		return bits == null ? EMPTY : bits;
+	}
+
+	public int getMessageCount() {
+		return messages.length;
+	}
+
+	public int getSeriesCount() {
+		return series.length;
+	}
+
+	public Message getMessage(int id) {
+		return messages[id];
+	}
+
+	public Series getSeries(int id) {
+		return series[id];
+	}
+
+	/**
+	 * @param message Message to look up
+	 * @return Id of the message, or {@code -1} if the message was not in the catalog when the index was built
+	 */
+	public int getMessageId(@Nonnull Message message) {
+		Integer id = messageIds.get(message);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param series Series to look up
+	 * @return Id of the series, or {@code -1} if the series was not in the catalog when the index was built
+	 */
+	public int getSeriesId(@Nonnull Series series) {
+		Integer id = seriesIds.get(series);
+		return id == null ? -1 : id;
+	}
+
+	/** @return New bit set with the ids of every message */
+	public BitSet getAllMessages() {
+		BitSet bits = new BitSet(messages.length);
+		bits.set(0, messages.length);
+		return bits;
+	}
+
+	/** @return New bit set with the ids of every series */
+	public BitSet getAllSeries() {
+		BitSet bits = new BitSet(series.length);
+		bits.set(0, series.length);
+		return bits;
+	}
+
+	/** @return Every ministry used by a message or by a message in a series */
+	public Set<String> getMinistries() {
+		return Collections.unmodifiableSet(ministries);
+	}
+
+	/** @return Every type used by a message or by a message in a series */
+	public Set<String> getTypes() {
+		return Collections.unmodifiableSet(types);
+	}
+
+	public BitSet getMessagesWithMinistry(String ministry) {
+		return get(messagesByMinistry, ministry);
+	}
+
+	public BitSet getMessagesWithType(String type) {
+		return get(messagesByType, type);
+	}
+
+	/** @return Messages with the visibility, where messages without a visibility are private */
+	public BitSet getMessagesWithVisibility(@Nonnull AccessLevel visibility) {
+		return get(messagesByVisibility, visibility);
+	}
+
+	public BitSet getMessagesInYear(int year) {
+		return get(messagesByYear, year);
+	}
+
+	/** @return Series with at least one message with the ministry */
+	public BitSet getSeriesWithMinistry(String ministry) {
+		return get(seriesByMinistry, ministry);
+	}
+
+	/** @return Series with at least one message with the type */
+	public BitSet getSeriesWithType(String type) {
+		return get(seriesByType, type);
+	}
+
+	/** @return Series with the visibility, where series without a visibility are private */
+	public BitSet getSeriesWithVisibility(@Nonnull AccessLevel visibility) {
+		return get(seriesByVisibility, visibility);
+	}
+
+	/** @return Series that are only a booklet (see {@link Series#isBooklet()}) */
+	public BitSet getBookletSeries() {
+		return bookletSeries;
+	}
+
+	/** @return Series without an end date */
+	public BitSet getUnfinishedSeries() {
+		return unfinishedSeries;
+	}
+
+	public BitSet getSeriesStartedInYear(int year) {
+		return get(seriesByStartYear, year);
+	}
+
+	public BitSet getSeriesEndedInYear(int year) {
+		return get(seriesByEndYear, year);
+	}
+
+	/** @return Series with at least one message from the year */
+	public BitSet getSeriesWithMessagesInYear(int year) {
+		return get(seriesByMessageYear, year);
+	}
+}
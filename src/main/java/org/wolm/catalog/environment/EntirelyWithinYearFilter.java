@@ -1,5 +1,7 @@
 package org.wolm.catalog.environment;
 
+import java.util.BitSet;
+
 import javax.annotation.Nonnull;
 
 import org.wolm.series.Series;
@@ -18,4 +20,14 @@ public class EntirelyWithinYearFilter extends YearFilter {
 				&& (series.getEndDate() == null || isDateInYear(series.getEndDate()));
 	}
 
+	@Override
+	public BitSet getIncludedSeries(@Nonnull CatalogIndex index) {
+		BitSet ended = (BitSet) index.getSeriesEndedInYear(getYear()).clone();
+		ended.or(index.getUnfinishedSeries());
+
+		BitSet included = (BitSet) index.getSeriesStartedInYear(getYear()).clone();
+		included.and(ended);
+		return included;
+	}
+
 }
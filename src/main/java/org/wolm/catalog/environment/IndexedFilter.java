@@ -0,0 +1,26 @@
+package org.wolm.catalog.environment;
+
+import java.util.BitSet;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link MediaCatalogFilter} that can also evaluate every message and series of a catalog at once, using the bit sets
+ * of a {@link CatalogIndex}. The results must agree with {@link #shouldInclude(org.wolm.message.Message)} and
+ * {@link #shouldInclude(org.wolm.series.Series)} for every message and series in the index.
+ *
+ * @author wolm
+ */
+public interface IndexedFilter extends MediaCatalogFilter {
+	/**
+	 * @param index Index of the catalog being filtered
+	 * @return New bit set with the ids of the messages that should be included. The caller may modify it
+	 */
+	public BitSet getIncludedMessages(@Nonnull CatalogIndex index);
+
+	/**
+	 * @param index Index of the catalog being filtered
+	 * @return New bit set with the ids of the series that should be included. The caller may modify it
+	 */
+	public BitSet getIncludedSeries(@Nonnull CatalogIndex index);
+}
@@ -1,5 +1,7 @@
 package org.wolm.catalog.environment;
 
+import java.util.BitSet;
+
 import javax.annotation.Nonnull;
 
 import org.wolm.message.Message;
@@ -26,4 +28,12 @@ public class IntersectingWithYearFilter extends YearFilter {
 		return false;
 	}
 
+	@Override
+	public BitSet getIncludedSeries(@Nonnull CatalogIndex index) {
+		BitSet included = (BitSet) index.getSeriesStartedInYear(getYear()).clone();
+		included.or(index.getSeriesEndedInYear(getYear()));
+		included.or(index.getSeriesWithMessagesInYear(getYear()));
+		return included;
+	}
+
 }
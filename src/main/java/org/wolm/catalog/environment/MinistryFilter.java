@@ -1,6 +1,7 @@
 package org.wolm.catalog.environment;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import javax.annotation.Nonnull;
@@ -19,7 +20,7 @@ import org.wolm.series.Series;
  * 
  * @author wolm
  */
-public class MinistryFilter implements MediaCatalogFilter {
+public class MinistryFilter implements IndexedFilter {
 	private List<String> includedMinistries = new ArrayList<>();
 	private List<String> excludedMinistries = new ArrayList<>();
 
@@ -42,13 +43,17 @@ public class MinistryFilter implements MediaCatalogFilter {
 	}
 
 	public boolean shouldInclude(@Nonnull Message message) {
-		if (message.getMinistry() == null) return false;
+		return isIncluded(message.getMinistry());
+	}
+
+	private boolean isIncluded(String ministry) {
+		if (ministry == null) return false;
 
 		// if there are included ministries then it must be one of them
-		if (!includedMinistries.isEmpty() && includedMinistries.contains(message.getMinistry())) return true;
+		if (!includedMinistries.isEmpty() && includedMinistries.contains(ministry)) return true;
 
 		// if there are excluded ministries then it must not be one of them
-		if (!excludedMinistries.isEmpty() && !excludedMinistries.contains(message.getMinistry())) return true;
+		if (!excludedMinistries.isEmpty() && !excludedMinistries.contains(ministry)) return true;
 
 		return false;
 	}
@@ -57,4 +62,18 @@ public class MinistryFilter implements MediaCatalogFilter {
 		return shouldInclude(message);
 	}
 
+	public BitSet getIncludedMessages(@Nonnull CatalogIndex index) {
+		BitSet included = new BitSet();
+		for (String ministry : index.getMinistries())
+			if (isIncluded(ministry)) included.or(index.getMessagesWithMinistry(ministry));
+		return included;
+	}
+
+	public BitSet getIncludedSeries(@Nonnull CatalogIndex index) {
+		BitSet included = new BitSet();
+		for (String ministry : index.getMinistries())
+			if (isIncluded(ministry)) included.or(index.getSeriesWithMinistry(ministry));
+		return included;
+	}
+
 }
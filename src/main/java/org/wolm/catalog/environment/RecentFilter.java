@@ -1,5 +1,6 @@
 package org.wolm.catalog.environment;
 
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -9,7 +10,7 @@ import javax.annotation.Nonnull;
 import org.wolm.message.Message;
 import org.wolm.series.Series;
 
-public class RecentFilter implements MediaCatalogFilter {
+public class RecentFilter implements IndexedFilter {
 	/** Earliest date we will accept as qualifying for "recent" */
 	private Date cutoff;
 
@@ -48,4 +49,20 @@ public class RecentFilter implements MediaCatalogFilter {
 		return shouldInclude(series);
 	}
 
+	/** Dates are not bucketed by the index finer than a year, so this compares the dates of every message */
+	public BitSet getIncludedMessages(@Nonnull CatalogIndex index) {
+		BitSet included = new BitSet(index.getMessageCount());
+		for (int id = 0; id < index.getMessageCount(); id++)
+			if (shouldInclude(index.getMessage(id))) included.set(id);
+		return included;
+	}
+
+	/** Dates are not bucketed by the index finer than a year, so this compares the end dates of every series */
+	public BitSet getIncludedSeries(@Nonnull CatalogIndex index) {
+		BitSet included = new BitSet(index.getSeriesCount());
+		for (int id = 0; id < index.getSeriesCount(); id++)
+			if (shouldInclude(index.getSeries(id))) included.set(id);
+		return included;
+	}
+
 }
@@ -1,6 +1,9 @@
 package org.wolm.catalog.environment;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 
 import javax.annotation.Nonnull;
@@ -10,44 +13,93 @@ import org.wolm.message.Message;
 import org.wolm.series.Series;
 
 /**
- * Defines the environment that we are currently rendering. This is a singleton global under the assumption that we
- * won't need multi-threaded rendering.
+ * Defines the environment that we are currently rendering, as an immutable list of filters. Each build creates its own
+ * environment and passes it to the catalog and the page renders, so several builds can render at the same time.
  * 
  * @author wolm
  */
 public class RenderEnvironment implements MediaCatalogFilter {
-	static private RenderEnvironment instance;
-
 	/**
 	 * List of filters to use to understand the current environment. Every filter must include a series or message in
 	 * order for the entire environment to include the series or message
 	 */
-	private final List<MediaCatalogFilter> filters = new ArrayList<>();
+	private final List<MediaCatalogFilter> filters;
+
+	/** Index the filters were last compiled against, and the messages and series they included */
+	private CatalogIndex compiledIndex;
+	private BitSet compiledMessages;
+	private BitSet compiledSeries;
 
-	// ||| kmurray - delete if not needed
-	//
-	// /** Minimum level of visibility that should be output */
-	// private AccessLevel minVisibility;
+	/**
+	 * Constructor
+	 * 
+	 * @param filters Filters that must all include a series or message for the environment to include it. No filters
+	 * includes everything
+	 */
+	public RenderEnvironment(MediaCatalogFilter... filters) {
+		this(Arrays.asList(filters));
+	}
 
-	private RenderEnvironment() {
+	private RenderEnvironment(List<MediaCatalogFilter> filters) {
 		super();
+		this.filters = Collections.unmodifiableList(new ArrayList<>(filters));
 	}
 
-	static public RenderEnvironment instance() {
-		if (instance == null) {
-			synchronized (RenderEnvironment.class) {
-				if (instance == null) instance = new RenderEnvironment();
-			}
-		}
-		return instance;
+	/**
+	 * @param filter Filter to add
+	 * @return A new environment with the filters of this one plus {@code filter}
+	 */
+	public RenderEnvironment with(MediaCatalogFilter filter) {
+		List<MediaCatalogFilter> newFilters = new ArrayList<>(filters);
+		newFilters.add(filter);
+		return new RenderEnvironment(newFilters);
+	}
+
+	public List<MediaCatalogFilter> getFilters() {
+		return filters;
+	}
+
+	/**
+	 * Evaluates every filter against every message in the index at once by and-ing together the bit sets from each
+	 * filter. The result is remembered until a different index is used.
+	 * 
+	 * @param index Index of the catalog being rendered
+	 * @return Ids of the messages that should be included, or {@code null} if some filter is not an
+	 * {@link IndexedFilter}. Must not be modified
+	 */
+	public synchronized BitSet getIncludedMessages(@Nonnull CatalogIndex index) {
+		return compile(index) ? compiledMessages : null;
 	}
 
-	public void addFilter(MediaCatalogFilter filter) {
-		filters.add(filter);
+	/**
+	 * Evaluates every filter against every series in the index at once by and-ing together the bit sets from each
+	 * filter. The result is remembered until a different index is used.
+	 * 
+	 * @param index Index of the catalog being rendered
+	 * @return Ids of the series that should be included, or {@code null} if some filter is not an
+	 * {@link IndexedFilter}. Must not be modified
+	 */
+	public synchronized BitSet getIncludedSeries(@Nonnull CatalogIndex index) {
+		return compile(index) ? compiledSeries : null;
 	}
 
-	public void clearFilters() {
-		filters.clear();
+	/** @return {@code true} if the filters are compiled against the index */
+	private boolean compile(@Nonnull CatalogIndex index) {
+		if (compiledIndex == index) return true;
+		for (MediaCatalogFilter filter : filters)
+			if (!(filter instanceof IndexedFilter)) return false;
+
+		BitSet messages = index.getAllMessages();
+		BitSet series = index.getAllSeries();
+		for (MediaCatalogFilter filter : filters) {
+			messages.and(((IndexedFilter) filter).getIncludedMessages(index));
+			series.and(((IndexedFilter) filter).getIncludedSeries(index));
+		}
+
+		compiledIndex = index;
+		compiledMessages = messages;
+		compiledSeries = series;
+		return true;
 	}
 
 	public boolean shouldInclude(@Nonnull Series series) {
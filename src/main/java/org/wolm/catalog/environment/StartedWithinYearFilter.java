@@ -1,5 +1,7 @@
 package org.wolm.catalog.environment;
 
+import java.util.BitSet;
+
 import javax.annotation.Nonnull;
 
 import org.wolm.series.Series;
@@ -16,4 +18,9 @@ public class StartedWithinYearFilter extends YearFilter {
 		return series.getStartDate() != null && isDateInYear(series.getStartDate());
 	}
 
+	@Override
+	public BitSet getIncludedSeries(@Nonnull CatalogIndex index) {
+		return (BitSet) index.getSeriesStartedInYear(getYear()).clone();
+	}
+
 }
@@ -1,6 +1,7 @@
 package org.wolm.catalog.environment;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import javax.annotation.Nonnull;
@@ -19,7 +20,7 @@ import org.wolm.series.Series;
  * 
  * @author wolm
  */
-public class TypeFilter implements MediaCatalogFilter {
+public class TypeFilter implements IndexedFilter {
 	private List<String> includedTypes = new ArrayList<>();
 	private List<String> excludedTypes = new ArrayList<>();
 
@@ -42,13 +43,17 @@ public class TypeFilter implements MediaCatalogFilter {
 	}
 
 	public boolean shouldInclude(@Nonnull Message message) {
-		if (message.getType() == null) return false;
+		return isIncluded(message.getType());
+	}
+
+	private boolean isIncluded(String type) {
+		if (type == null) return false;
 
 		// if there are included types then it must be one of them
-		if (!includedTypes.isEmpty() && includedTypes.contains(message.getType())) return true;
+		if (!includedTypes.isEmpty() && includedTypes.contains(type)) return true;
 
 		// if there are excluded types then it must not be one of them
-		if (!excludedTypes.isEmpty() && !excludedTypes.contains(message.getType())) return true;
+		if (!excludedTypes.isEmpty() && !excludedTypes.contains(type)) return true;
 
 		return false;
 	}
@@ -57,4 +62,18 @@ public class TypeFilter implements MediaCatalogFilter {
 		return shouldInclude(message);
 	}
 
+	public BitSet getIncludedMessages(@Nonnull CatalogIndex index) {
+		BitSet included = new BitSet();
+		for (String type : index.getTypes())
+			if (isIncluded(type)) included.or(index.getMessagesWithType(type));
+		return included;
+	}
+
+	public BitSet getIncludedSeries(@Nonnull CatalogIndex index) {
+		BitSet included = new BitSet();
+		for (String type : index.getTypes())
+			if (isIncluded(type)) included.or(index.getSeriesWithType(type));
+		return included;
+	}
+
 }
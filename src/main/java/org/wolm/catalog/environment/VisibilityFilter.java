@@ -1,5 +1,7 @@
 package org.wolm.catalog.environment;
 
+import java.util.BitSet;
+
 import javax.annotation.Nonnull;
 
 import org.wolm.catalog.AccessLevel;
@@ -15,7 +17,7 @@ import org.wolm.series.Series;
  * 
  * @author wolm
  */
-public class VisibilityFilter implements MediaCatalogFilter {
+public class VisibilityFilter implements IndexedFilter {
 
 	private final AccessLevel visibilityCriteria;
 
@@ -47,7 +49,17 @@ public class VisibilityFilter implements MediaCatalogFilter {
 		return !messageVis.isLessVisibleThan(seriesVis);
 	}
 
+	@Override
+	public BitSet getIncludedMessages(@Nonnull CatalogIndex index) {
+		return (BitSet) index.getMessagesWithVisibility(visibilityCriteria).clone();
+	}
+
+	@Override
+	public BitSet getIncludedSeries(@Nonnull CatalogIndex index) {
+		return (BitSet) index.getSeriesWithVisibility(visibilityCriteria).clone();
+	}
+
 	private AccessLevel computeEffectiveVisibility(@Nonnull AccessLevel visibility) {
-		return visibility == null ? AccessLevel.PRIVATE : visibility;
+		return CatalogIndex.effectiveVisibility(visibility);
 	}
 }
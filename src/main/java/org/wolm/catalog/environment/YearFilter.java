@@ -1,5 +1,6 @@
 package org.wolm.catalog.environment;
 
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -15,7 +16,7 @@ import org.wolm.series.Series;
  * 
  * @author wolm
  */
-public abstract class YearFilter implements MediaCatalogFilter {
+public abstract class YearFilter implements IndexedFilter {
 	/** Year being filtered on */
 	private final int year;
 
@@ -34,6 +35,16 @@ public abstract class YearFilter implements MediaCatalogFilter {
 		return shouldInclude(series);
 	}
 
+	public BitSet getIncludedMessages(@Nonnull CatalogIndex index) {
+		return (BitSet) index.getMessagesInYear(year).clone();
+	}
+
+	public abstract BitSet getIncludedSeries(@Nonnull CatalogIndex index);
+
+	protected int getYear() {
+		return year;
+	}
+
 	protected boolean isMessageInYear(@Nonnull Message message) {
 		return isDateInYear(message.getDate());
 	}
@@ -0,0 +1,204 @@
+package org.wolm.google;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reads typed values out of the text of worksheet cells. The scanners are written by hand so that reading a cell does
+ * not need a regular expression, a formatter or an exception for text that is not a value. They read what the catalog
+ * sheets hold: dates as {@code MM/dd/yyyy} or {@code yyyy-MM-dd}, read leniently in the default time zone like a date
+ * formatter reads them, and plain decimal numbers like {@code 42}, {@code -3} or {@code 12.5}.
+ * <p>
+ * All methods are static and safe to call from several threads.
+ *
+ * @author wolm
+ */
+public final class CellParser {
+	/** Most digits in a date field, so that a field never overflows an int */
+	private static final int MAX_DATE_FIELD_DIGITS = 9;
+
+	/** Calendar each thread converts dates with, so no calendar is created per cell */
+	private static final ThreadLocal<Calendar> calendars = new ThreadLocal<Calendar>() {
+		@Override
+		protected Calendar initialValue() {
+			Calendar calendar = Calendar.getInstance();
+			calendar.setLenient(true);
+			return calendar;
+		}
+	};
+
+	private CellParser() {
+		// static methods only
+	}
+
+	/**
+	 * Converts a date written as {@code MM/dd/yyyy} (one or more digits in each field) to {@code yyyy-MM-dd}
+	 *
+	 * @param value Cell text
+	 * @return The date as {@code yyyy-MM-dd}, or {@code null} if the text is not a date written that way
+	 */
+	@Nullable
+	public static String toYearMonthDay(@Nullable String value) {
+		int[] fields = scanDate(value, '/');
+		if (fields == null) return null;
+		int month = fields[0];
+		int day = fields[1];
+		int year = fields[2];
+
+		// only dates that are out of range need the calendar to roll them over
+		if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+			Calendar calendar = getCalendar(year, month, day);
+			year = calendar.get(Calendar.YEAR);
+			month = calendar.get(Calendar.MONTH) + 1;
+			day = calendar.get(Calendar.DAY_OF_MONTH);
+		}
+
+		StringBuilder out = new StringBuilder(10);
+		pad(out, year, 4).append('-');
+		pad(out, month, 2).append('-');
+		return pad(out, day, 2).toString();
+	}
+
+	/**
+	 * @param value Cell text
+	 * @return The date written as {@code yyyy-MM-dd} (one or more digits in each field) at midnight in the default time
+	 * zone, or {@code null} if the text is not a date written that way
+	 */
+	@Nullable
+	public static Date toDate(@Nullable String value) {
+		int[] fields = scanDate(value, '-');
+		if (fields == null) return null;
+
+		return getCalendar(fields[0], fields[1], fields[2]).getTime();
+	}
+
+	/**
+	 * @param value Cell text
+	 * @return The value as a long, truncating a decimal value. {@code null} if the text is not a number
+	 */
+	@Nullable
+	public static Long toLong(@Nullable String value) {
+		if (value == null) return null;
+		value = value.trim();
+
+		Long integer = scanLong(value);
+		if (integer != null) return integer;
+		return isDecimal(value) ? Long.valueOf((long) Double.parseDouble(value)) : null;
+	}
+
+	/**
+	 * @param value Cell text
+	 * @return The value as a double. {@code null} if the text is not a number
+	 */
+	@Nullable
+	public static Double toDouble(@Nullable String value) {
+		if (value == null) return null;
+		value = value.trim();
+
+		Long integer = scanLong(value);
+		if (integer != null) return Double.valueOf(integer.longValue());
+		return isDecimal(value) ? Double.valueOf(value) : null;
+	}
+
+	/**
+	 * Scans an integer of the digits 0 to 9, with an optional sign
+	 *
+	 * @return The integer, or {@code null} if the text is not an integer that fits in a long
+	 */
+	private static Long scanLong(String value) {
+		int length = value.length();
+		boolean negative = length > 0 && value.charAt(0) == '-';
+		int index = negative || (length > 0 && value.charAt(0) == '+') ? 1 : 0;
+		if (index == length) return null;
+
+		// accumulate as a negative number, which has room for Long.MIN_VALUE
+		long result = 0;
+		for (; index < length; index++) {
+			int digit = value.charAt(index) - '0';
+			if (digit < 0 || digit > 9 || result < (Long.MIN_VALUE + digit) / 10) return null;
+			result = result * 10 - digit;
+		}
+		if (negative) return result;
+		return result == Long.MIN_VALUE ? null : -result;
+	}
+
+	/**
+	 * Scans a date of three fields of digits separated by a separator, like {@code \d+/\d+/\d+}
+	 *
+	 * @return The three fields, or {@code null} if the text is not a date
+	 */
+	private static int[] scanDate(String value, char separator) {
+		if (value == null) return null;
+
+		int[] fields = new int[3];
+		int field = 0;
+		int digits = 0;
+		for (int index = 0; index < value.length(); index++) {
+			char c = value.charAt(index);
+			if (isDigit(c) && digits < MAX_DATE_FIELD_DIGITS) {
+				fields[field] = fields[field] * 10 + (c - '0');
+				digits++;
+			}
+			else if (c == separator && digits > 0 && field < 2) {
+				field++;
+				digits = 0;
+			}
+			else {
+				return null;
+			}
+		}
+		return field == 2 && digits > 0 ? fields : null;
+	}
+
+	/** @return {@code true} if the text is a decimal number with an optional sign, like {@code -12.5} or {@code .5} */
+	private static boolean isDecimal(String value) {
+		int length = value.length();
+		int index = length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+') ? 1 : 0;
+
+		int digits = 0;
+		for (; index < length && isDigit(value.charAt(index)); index++)
+			digits++;
+		if (index < length && value.charAt(index) == '.') {
+			for (index++; index < length && isDigit(value.charAt(index)); index++)
+				digits++;
+		}
+		return digits > 0 && index == length;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static int daysInMonth(int year, int month) {
+		switch (month) {
+		case 2:
+			return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	/** @return The calendar of this thread set leniently to a date, as a date formatter would set it */
+	private static Calendar getCalendar(int year, int month, int day) {
+		Calendar calendar = calendars.get();
+		calendar.setTimeZone(TimeZone.getDefault());
+		calendar.clear();
+		calendar.set(year, month - 1, day);
+		return calendar;
+	}
+
+	private static StringBuilder pad(StringBuilder out, int value, int width) {
+		String digits = Integer.toString(value);
+		for (int i = digits.length(); i < width; i++)
+			out.append('0');
+		return out.append(digits);
+	}
+}
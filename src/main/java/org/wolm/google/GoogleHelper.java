@@ -11,7 +11,9 @@ import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import javax.annotation.Nonnull;
@@ -36,10 +38,13 @@ import com.google.gdata.util.ServiceException;
  * To configure this by default, create a file ~/.wolm/google.properties that contains:
  * <ul>
  * <li>serviceAccountId=
+ * <li>spreadsheet.<i>name</i>= (optional, any number of them)
  * </ul>
  * The Service Account ID is the "Email address" of the service account from the
  * <a href="https://console.developers.google.com/project">Developers Console</a>. The spreadsheets must be shared with
- * this account
+ * this account. Spreadsheets are read through the Sheets API, and are found by name through the Drive API unless their
+ * ID is given by a {@code spreadsheet.} property, like {@code spreadsheet.WOL\ Messages=1AbC...}, which saves a round
+ * trip. {@link #setSheetsApi(boolean)} switches back to the old spreadsheet feeds.
  * <p>
  * The directory ~/.wolm must also contain the P12 key file for the service account
  * <p>
@@ -50,18 +55,34 @@ import com.google.gdata.util.ServiceException;
  * @author wolm
  */
 public class GoogleHelper {
+	/** Prefix of the properties that give the ID of a spreadsheet by its name */
+	private static final String SPREADSHEET_ID_PREFIX = "spreadsheet.";
+
 	private final String applicationName;
 	private final URL feedUrl;
 	private final JsonFactory JSON_FACTORY = new JacksonFactory();
 	private final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();
 
+	private final SheetsClient sheetsClient;
+
 	private SpreadsheetService service;
+	private Credential credential;
 	private String serviceAccountId;
 	private File p12KeyFile;
 
+	/** IDs of spreadsheets in the Sheets API by name, from the configuration */
+	private final Map<String, String> spreadsheetIds = new HashMap<>();
+
+	/** {@code true} to read spreadsheets from the local snapshots instead of from Google */
+	private boolean offline = false;
+
+	/** {@code true} to read spreadsheets through the Sheets API, {@code false} through the spreadsheet feeds */
+	private boolean sheetsApi = true;
+
 	public GoogleHelper(String applicationName) {
 		super();
 		this.applicationName = applicationName;
+		this.sheetsClient = new SheetsClient(applicationName);
 
 		configure();
 
@@ -83,6 +104,7 @@ public class GoogleHelper {
 	public void setServiceAccountId(String serviceAccountId) {
 		this.serviceAccountId = serviceAccountId;
 		service = null;
+		credential = null;
 	}
 
 	public File getP12KeyFile() {
@@ -92,14 +114,53 @@ public class GoogleHelper {
 	public void setP12KeyFile(File p12KeyFile) {
 		this.p12KeyFile = p12KeyFile;
 		service = null;
+		credential = null;
+	}
+
+	public boolean isOffline() {
+		return offline;
+	}
+
+	/**
+	 * Switches between reading spreadsheets from Google and reading them from the snapshots saved the last time they
+	 * were read from Google (see {@link WorksheetSnapshot})
+	 * 
+	 * @param offline {@code true} to read from snapshots, {@code false} to read from Google
+	 */
+	public void setOffline(boolean offline) {
+		this.offline = offline;
+	}
+
+	public boolean isSheetsApi() {
+		return sheetsApi;
 	}
 
-	/** @return The spreadsheet service installed with WOLM credentials */
-	SpreadsheetService getService() throws AuthenticationException {
+	/**
+	 * Switches between reading spreadsheets through the Sheets API, which reads a worksheet in one request, and through
+	 * the spreadsheet feeds
+	 * 
+	 * @param sheetsApi {@code true} for the Sheets API, {@code false} for the spreadsheet feeds
+	 */
+	public void setSheetsApi(boolean sheetsApi) {
+		this.sheetsApi = sheetsApi;
+	}
+
+	/** @return Client of the Sheets API */
+	SheetsClient getSheetsClient() {
+		return sheetsClient;
+	}
+
+	/**
+	 * Synchronized so worksheets can be read on several threads without authenticating more than once
+	 * 
+	 * @return The spreadsheet service installed with WOLM credentials
+	 */
+	synchronized SpreadsheetService getService() throws AuthenticationException {
 		try {
 			if (service == null) {
+				if (credential == null) credential = getOAuth2Credentials();
 				service = new SpreadsheetService(applicationName);
-				service.setOAuth2Credentials(getOAuth2Credentials());
+				service.setOAuth2Credentials(credential);
 			}
 			return service;
 		}
@@ -108,11 +169,46 @@ public class GoogleHelper {
 		}
 	}
 
+	/**
+	 * Gets an access token for reading without the spreadsheet service, refreshing it if it is about to expire.
+	 * Synchronized like {@link #getService()}
+	 * 
+	 * @return OAuth2 access token of the WOLM credentials
+	 */
+	synchronized String getAccessToken() throws AuthenticationException {
+		try {
+			if (credential == null) credential = getOAuth2Credentials();
+			Long expiresInSeconds = credential.getExpiresInSeconds();
+			if (credential.getAccessToken() == null || (expiresInSeconds != null && expiresInSeconds < 60))
+				credential.refreshToken();
+			return credential.getAccessToken();
+		}
+		catch (GeneralSecurityException | IOException e) {
+			throw new AuthenticationException("Unable to authenticate with Google due to: " + e.getMessage());
+		}
+	}
+
 	/** @return List of all spreadsheets that the user has access to */
 	@Nonnull
 	public List<GoogleSpreadsheet> getAllSpreadsheets() throws AuthenticationException, IOException, ServiceException {
+		if (isOffline()) {
+			List<String> titles = WorksheetSnapshot.getSpreadsheetTitles();
+			List<GoogleSpreadsheet> spreadsheets = new ArrayList<>(titles.size());
+			for (String title : titles)
+				spreadsheets.add(new GoogleSpreadsheet(this, title));
+			return spreadsheets;
+		}
+
 		isConfigured();
 
+		if (isSheetsApi()) {
+			List<SheetsClient.SpreadsheetFile> files = sheetsClient.findSpreadsheets(null, getAccessToken());
+			List<GoogleSpreadsheet> spreadsheets = new ArrayList<>(files.size());
+			for (SheetsClient.SpreadsheetFile file : files)
+				spreadsheets.add(new GoogleSpreadsheet(this, file));
+			return spreadsheets;
+		}
+
 		try {
 			SpreadsheetFeed feed = getService().getFeed(feedUrl, SpreadsheetFeed.class);
 			List<SpreadsheetEntry> entries = feed.getEntries();
@@ -138,8 +234,18 @@ public class GoogleHelper {
 	 */
 	@Nullable
 	public GoogleSpreadsheet getSpreadsheet(@Nonnull String name) throws IOException, ServiceException {
+		if (isOffline()) return WorksheetSnapshot.hasSnapshot(name) ? new GoogleSpreadsheet(this, name) : null;
+
 		isConfigured();
 
+		if (isSheetsApi()) {
+			String id = spreadsheetIds.get(name);
+			if (id != null) return new GoogleSpreadsheet(this, new SheetsClient.SpreadsheetFile(id, name, null));
+
+			List<SheetsClient.SpreadsheetFile> files = sheetsClient.findSpreadsheets(name, getAccessToken());
+			return files.isEmpty() ? null : new GoogleSpreadsheet(this, files.get(0));
+		}
+
 		SpreadsheetQuery query = new SpreadsheetQuery(feedUrl);
 		query.setTitleQuery(name);
 		query.setTitleExact(true);
@@ -161,6 +267,10 @@ public class GoogleHelper {
 				Properties properties = new Properties();
 				properties.load(reader);
 				setServiceAccountId(properties.getProperty("serviceAccountId"));
+				for (String key : properties.stringPropertyNames()) {
+					if (!key.startsWith(SPREADSHEET_ID_PREFIX)) continue;
+					spreadsheetIds.put(key.substring(SPREADSHEET_ID_PREFIX.length()), properties.getProperty(key));
+				}
 			}
 			catch (IOException e) {
 				// just ignore, the class must be manually configured
@@ -209,7 +319,9 @@ public class GoogleHelper {
 		builder.setTransport(HTTP_TRANSPORT);
 		builder.setJsonFactory(JSON_FACTORY);
 		builder.setServiceAccountId(getServiceAccountId());
-		builder.setServiceAccountScopes(Arrays.asList("https://spreadsheets.google.com/feeds"));
+		builder.setServiceAccountScopes(Arrays.asList("https://spreadsheets.google.com/feeds",
+				"https://www.googleapis.com/auth/spreadsheets.readonly",
+				"https://www.googleapis.com/auth/drive.metadata.readonly"));
 		builder.setServiceAccountPrivateKeyFromP12File(getP12KeyFile());
 		return builder.build();
 	}
@@ -1,35 +1,82 @@
 package org.wolm.google;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.google.gdata.data.spreadsheet.ListEntry;
 
 public class GoogleRow {
 	private final GoogleWorksheet worksheet;
 	private final ListEntry row;
-	private final SimpleDateFormat gregorianDateFormatter = new SimpleDateFormat("MM/dd/yyyy");
-	private final SimpleDateFormat yearMonthDayDateFormatter = new SimpleDateFormat("yyyy-MM-dd");
+	private final WorksheetSnapshot snapshot;
+	private final int snapshotRowIndex;
+
+	/** Values of the row in the order of the columns of the worksheet, <code>null</code> unless read from a stream */
+	private final String[] values;
 
 	public GoogleRow(@Nonnull GoogleWorksheet worksheet, @Nonnull ListEntry row) {
 		super();
 		this.worksheet = worksheet;
 		this.row = row;
+		this.snapshot = null;
+		this.snapshotRowIndex = -1;
+		this.values = null;
+	}
+
+	/**
+	 * Constructs a row that reads its values from a saved snapshot of the worksheet
+	 * 
+	 * @param worksheet Worksheet the row is in
+	 * @param snapshot Snapshot of the worksheet
+	 * @param rowIndex Base-0 index of the row in the snapshot
+	 */
+	public GoogleRow(@Nonnull GoogleWorksheet worksheet, @Nonnull WorksheetSnapshot snapshot, int rowIndex) {
+		super();
+		this.worksheet = worksheet;
+		this.row = null;
+		this.snapshot = snapshot;
+		this.snapshotRowIndex = rowIndex;
+		this.values = null;
+	}
+
+	/**
+	 * Constructs a row from values read from a stream, like {@link ListFeedReader}
+	 * 
+	 * @param worksheet Worksheet the row is in
+	 * @param values Values of the row in the order of {@link GoogleWorksheet#getColumnNames()}, <code>null</code> for
+	 * an empty cell
+	 */
+	GoogleRow(@Nonnull GoogleWorksheet worksheet, @Nonnull String[] values) {
+		super();
+		this.worksheet = worksheet;
+		this.row = null;
+		this.snapshot = null;
+		this.snapshotRowIndex = -1;
+		this.values = values;
 	}
 
 	public GoogleWorksheet getWorksheet() {
 		return worksheet;
 	}
 
+	/** @return The Google list entry for this row, <code>null</code> if the row was read from a snapshot */
+	@Nullable
 	public ListEntry getRow() {
 		return row;
 	}
 
 	public Set<String> getColumnNames() {
+		if (values != null) {
+			Set<String> names = new LinkedHashSet<>();
+			for (int index = 0; index < values.length; index++)
+				if (values[index] != null) names.add(worksheet.columnNames.get(index));
+			return names;
+		}
+		if (row == null) return snapshot.getColumnNames(snapshotRowIndex);
 		return row.getCustomElements().getTags();
 	}
 
@@ -38,17 +85,7 @@ public class GoogleRow {
 	}
 
 	public String getValue(String columnName) {
-		String value = row.getCustomElements().getValue(columnName);
-
-		if (value != null && columnName.indexOf("date") != -1 && value.matches("\\d+/\\d+/\\d+")) {
-			try {
-				value = convertDateToYearMonthDay(value);
-			}
-			catch (ParseException e) {
-				// ignore and just return the raw string below
-			}
-		}
-		return value;
+		return convertValue(columnName, getRawValue(columnName));
 	}
 
 	/**
@@ -57,27 +94,7 @@ public class GoogleRow {
 	 * <code>null</code> if the column data is not a number or the column cannot be found.
 	 */
 	public Long getLongValue(String columnName) {
-		String value = getValue(columnName);
-		if (value == null) return null;
-
-		// try as integer
-		try {
-			return Long.parseLong(value);
-		}
-		catch (NumberFormatException e) {
-			// ignore
-		}
-
-		// try as floating point
-		try {
-			return Long.valueOf((long) Double.parseDouble(value));
-		}
-		catch (NumberFormatException e) {
-			// ignore
-		}
-
-		// must not be a number
-		return null;
+		return CellParser.toLong(getValue(columnName));
 	}
 
 	/**
@@ -86,27 +103,7 @@ public class GoogleRow {
 	 * cannot be found.
 	 */
 	public Double getDoubleValue(String columnName) {
-		String value = getValue(columnName);
-		if (value == null) return null;
-
-		// try as integer
-		try {
-			return Double.valueOf(Long.parseLong(value));
-		}
-		catch (NumberFormatException e) {
-			// ignore
-		}
-
-		// try as floating point
-		try {
-			return Double.parseDouble(value);
-		}
-		catch (NumberFormatException e) {
-			// ignore
-		}
-
-		// must not be a number
-		return null;
+		return CellParser.toDouble(getValue(columnName));
 	}
 
 	/**
@@ -115,23 +112,39 @@ public class GoogleRow {
 	 * found.
 	 */
 	public Date getDateValue(String columnName) {
-		String value = getValue(columnName);
-		if (value == null) return null;
-
-		if (!value.matches("\\d+-\\d+-\\d+")) return null;
+		return CellParser.toDate(getValue(columnName));
+	}
 
-		try {
-			return yearMonthDayDateFormatter.parse(value);
-		}
-		catch (ParseException e) {
-			// ignore
+	/**
+	 * @param columnName Name of column to get
+	 * @return Value of the column exactly as Google returned it, without any conversion
+	 */
+	String getRawValue(String columnName) {
+		if (values != null) {
+			int index = worksheet.columnNames.indexOf(columnName);
+			return index < 0 ? null : values[index];
 		}
+		if (row == null) return snapshot.getValue(snapshotRowIndex, columnName);
+		return row.getCustomElements().getValue(columnName);
+	}
 
-		// must not be a number
-		return null;
+	/**
+	 * @param columnIndex Base-0 index of the column in {@link GoogleWorksheet#getColumnNames()}
+	 * @param columnName Name of the column
+	 * @return Value of the column exactly as Google returned it. Rows read from a snapshot or a stream are read by the
+	 * index of the column, other rows by its name
+	 */
+	String getRawValue(int columnIndex, String columnName) {
+		if (values != null) return values[columnIndex];
+		if (row == null) return snapshot.getValue(snapshotRowIndex, columnIndex);
+		return row.getCustomElements().getValue(columnName);
 	}
 
-	private String convertDateToYearMonthDay(String value) throws ParseException {
-		return yearMonthDayDateFormatter.format(gregorianDateFormatter.parse(value));
+	/** @return The value with dates in date columns converted from {@code MM/dd/yyyy} to {@code yyyy-MM-dd} */
+	static String convertValue(String columnName, String value) {
+		if (value == null || columnName.indexOf("date") == -1) return value;
+
+		String date = CellParser.toYearMonthDay(value);
+		return date == null ? value : date;
 	}
 }
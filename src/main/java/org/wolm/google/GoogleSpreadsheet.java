@@ -2,9 +2,11 @@ package org.wolm.google;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.google.gdata.data.spreadsheet.SpreadsheetEntry;
 import com.google.gdata.data.spreadsheet.WorksheetEntry;
@@ -15,6 +17,12 @@ public class GoogleSpreadsheet {
 	private final GoogleHelper helper;
 	private final SpreadsheetEntry spreadsheet;
 
+	/** Title of a spreadsheet read from snapshots, <code>null</code> when reading from Google */
+	private final String snapshotTitle;
+
+	/** Spreadsheet read through the Sheets API, <code>null</code> otherwise */
+	private final SheetsClient.SpreadsheetFile file;
+
 	// cached
 	private List<GoogleWorksheet> worksheets = null;
 
@@ -22,20 +30,73 @@ public class GoogleSpreadsheet {
 		super();
 		this.helper = helper;
 		this.spreadsheet = spreadsheet;
+		this.snapshotTitle = null;
+		this.file = null;
+	}
+
+	/**
+	 * Constructs a spreadsheet whose worksheets are read from saved snapshots instead of from Google
+	 * 
+	 * @param helper Helper that found the spreadsheet
+	 * @param title Title of the spreadsheet
+	 */
+	public GoogleSpreadsheet(@Nonnull GoogleHelper helper, @Nonnull String title) {
+		super();
+		this.helper = helper;
+		this.spreadsheet = null;
+		this.snapshotTitle = title;
+		this.file = null;
+	}
+
+	/**
+	 * Constructs a spreadsheet whose worksheets are read through the Sheets API
+	 * 
+	 * @param helper Helper that found the spreadsheet
+	 * @param file Spreadsheet found on the Drive
+	 */
+	public GoogleSpreadsheet(@Nonnull GoogleHelper helper, @Nonnull SheetsClient.SpreadsheetFile file) {
+		super();
+		this.helper = helper;
+		this.spreadsheet = null;
+		this.snapshotTitle = null;
+		this.file = file;
 	}
 
 	public GoogleHelper getHelper() {
 		return helper;
 	}
 
+	/**
+	 * @return The Google spreadsheet, <code>null</code> if this spreadsheet is read from snapshots or through the Sheets
+	 * API
+	 */
+	@Nullable
 	public SpreadsheetEntry getSpreadsheet() {
 		return spreadsheet;
 	}
 
 	public String getTitle() {
+		if (snapshotTitle != null) return snapshotTitle;
+		if (file != null) return file.getName();
 		return spreadsheet.getTitle().getPlainText();
 	}
 
+	/** @return ID of the spreadsheet in the Sheets API, <code>null</code> unless it is read through the Sheets API */
+	@Nullable
+	public String getSpreadsheetId() {
+		return file == null ? null : file.getId();
+	}
+
+	/**
+	 * @return When the spreadsheet was last changed on Google, <code>null</code> if unknown or read from snapshots
+	 */
+	@Nullable
+	public Date getRevision() {
+		if (file != null) return file.getModifiedTime();
+		if (spreadsheet == null || spreadsheet.getUpdated() == null) return null;
+		return new Date(spreadsheet.getUpdated().getValue());
+	}
+
 	/** Causes all caches to be dumped and new data is read from the server */
 	public void refresh() {
 		worksheets = null;
@@ -47,6 +108,21 @@ public class GoogleSpreadsheet {
 	 * @throws ServiceException
 	 */
 	public List<GoogleWorksheet> getWorksheets() throws IOException, ServiceException {
+		if (worksheets == null && snapshotTitle != null) {
+			List<String> titles = WorksheetSnapshot.getWorksheetTitles(snapshotTitle);
+			worksheets = new ArrayList<>(titles.size());
+			for (String title : titles) {
+				WorksheetSnapshot snapshot = WorksheetSnapshot.load(snapshotTitle, title);
+				if (snapshot != null) worksheets.add(new GoogleWorksheet(this, snapshot));
+			}
+		}
+		if (worksheets == null && file != null) {
+			SheetsClient sheets = helper.getSheetsClient();
+			List<String> titles = sheets.getSheetTitles(file.getId(), helper.getAccessToken());
+			worksheets = new ArrayList<>(titles.size());
+			for (String title : titles)
+				worksheets.add(new GoogleWorksheet(this, title));
+		}
 		if (worksheets == null) {
 			List<WorksheetEntry> entries = spreadsheet.getWorksheets();
 			worksheets = new ArrayList<>(entries.size());
@@ -60,11 +136,14 @@ public class GoogleSpreadsheet {
 
 	/**
 	 * @param name Title of a worksheet
-	 * @return The worksheet with the specified title, or <code>null</code> if no worksheet with that title is present
+	 * @return The worksheet with the specified title, or <code>null</code> if no worksheet with that title is present.
+	 * Through the Sheets API the worksheets are not listed first, so reading the worksheet is the only round trip,
+	 * and reading a worksheet that is not present fails instead
 	 * @throws IOException
 	 * @throws ServiceException
 	 */
 	public GoogleWorksheet getWorksheet(@Nonnull String name) throws IOException, ServiceException {
+		if (worksheets == null && file != null) return new GoogleWorksheet(this, name);
 		for (GoogleWorksheet worksheet : getWorksheets()) {
 			if (name.equals(worksheet.getTitle())) return worksheet;
 		}
@@ -4,16 +4,29 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.apache.commons.lang3.ObjectUtils;
+import org.wolm.catalog.App;
 
+import com.google.gdata.client.spreadsheet.CellQuery;
+import com.google.gdata.client.spreadsheet.ListQuery;
+import com.google.gdata.data.spreadsheet.Cell;
+import com.google.gdata.data.spreadsheet.CellEntry;
+import com.google.gdata.data.spreadsheet.CellFeed;
 import com.google.gdata.data.spreadsheet.ListEntry;
 import com.google.gdata.data.spreadsheet.ListFeed;
 import com.google.gdata.data.spreadsheet.WorksheetEntry;
@@ -21,18 +34,70 @@ import com.google.gdata.util.AuthenticationException;
 import com.google.gdata.util.ServiceException;
 
 public class GoogleWorksheet {
+	/**
+	 * Rough number of bytes of Atom XML Google sends for a row of the list feed, for each cell of a row of the list
+	 * feed, and for each cell of the cell feed, with short values. A cell of the cell feed is a whole entry
+	 */
+	private static final int LIST_ROW_BYTES = 770;
+	private static final int LIST_CELL_BYTES = 70;
+	private static final int CELL_BYTES = 830;
 
 	private final GoogleSpreadsheet spreadsheet;
 	private final WorksheetEntry worksheet;
 
+	/** Snapshot the rows are read from when working offline, <code>null</code> when reading from Google */
+	private final WorksheetSnapshot snapshot;
+
+	/** Title of a worksheet read through the Sheets API, <code>null</code> otherwise */
+	private final String sheetTitle;
+
+	/** Number of columns in the header of a worksheet read through the Sheets API */
+	private int sheetColumnCount = 0;
+
 	// cached
 	List<GoogleRow> rows = null;
 	List<String> columnNames = null;
 
+	/** Columns the cached rows were read for, <code>null</code> if they were read with all their columns */
+	Set<String> projection = null;
+
+	/** Base-1 numbers of the columns of the header row by name, read with the projection */
+	private Map<String, Integer> columnNumbers = null;
+
 	public GoogleWorksheet(GoogleSpreadsheet spreadsheet, WorksheetEntry worksheet) {
 		super();
 		this.spreadsheet = spreadsheet;
 		this.worksheet = worksheet;
+		this.snapshot = null;
+		this.sheetTitle = null;
+	}
+
+	/**
+	 * Constructs a worksheet that reads its rows from a saved snapshot instead of from Google
+	 * 
+	 * @param spreadsheet Spreadsheet the worksheet is in
+	 * @param snapshot Snapshot of the worksheet
+	 */
+	public GoogleWorksheet(GoogleSpreadsheet spreadsheet, WorksheetSnapshot snapshot) {
+		super();
+		this.spreadsheet = spreadsheet;
+		this.worksheet = null;
+		this.snapshot = snapshot;
+		this.sheetTitle = null;
+	}
+
+	/**
+	 * Constructs a worksheet that reads its rows through the Sheets API, with the header and the values in one request
+	 * 
+	 * @param spreadsheet Spreadsheet the worksheet is in, read through the Sheets API
+	 * @param title Title of the worksheet
+	 */
+	public GoogleWorksheet(@Nonnull GoogleSpreadsheet spreadsheet, @Nonnull String title) {
+		super();
+		this.spreadsheet = spreadsheet;
+		this.worksheet = null;
+		this.snapshot = null;
+		this.sheetTitle = title;
 	}
 
 	private GoogleHelper getHelper() {
@@ -43,38 +108,77 @@ public class GoogleWorksheet {
 		return spreadsheet;
 	}
 
+	/**
+	 * @return The Google worksheet, <code>null</code> if this worksheet was read from a snapshot or through the Sheets
+	 * API
+	 */
+	@Nullable
 	public WorksheetEntry getWorksheet() {
 		return worksheet;
 	}
 
+	/** @return <code>true</code> if the rows are read from a saved snapshot instead of from Google */
+	public boolean isSnapshot() {
+		return snapshot != null;
+	}
+
 	public String getTitle() {
+		if (snapshot != null) return snapshot.getWorksheetTitle();
+		if (sheetTitle != null) return sheetTitle;
 		return worksheet.getTitle().getPlainText();
 	}
 
 	public int getColumnCount() {
+		if (snapshot != null) return snapshot.getColumnNames().size();
+		if (sheetTitle != null) return sheetColumnCount;
 		return worksheet.getColCount();
 	}
 
 	public int getRowCount() {
+		if (snapshot != null) return snapshot.getRowCount();
+		if (sheetTitle != null) return rows == null ? 0 : rows.size();
 		return worksheet.getRowCount();
 	}
 
 	public boolean getCanEdit() {
+		if (snapshot != null || sheetTitle != null) return false;
 		return worksheet.getCanEdit();
 	}
 
+	/**
+	 * @return When the worksheet was last changed on Google. For a snapshot, this is the revision the snapshot was taken
+	 * from. <code>null</code> if unknown
+	 */
+	@Nullable
+	public Date getRevision() {
+		if (snapshot != null) return snapshot.getRevision();
+		if (sheetTitle != null) return spreadsheet.getRevision();
+		return worksheet.getUpdated() == null ? null : new Date(worksheet.getUpdated().getValue());
+	}
+
 	/** Causes all caches to be dumped and new data is read from the server */
 	public void refresh() {
 		rows = null;
 		columnNames = null;
+		projection = null;
+		columnNumbers = null;
 	}
 
 	public List<String> getColumnNames() throws IOException, ServiceException {
 		// use a column name cache for consistency, since Google's data is in a set, which is unordered. this way the
 		// ordering is undefined, but consistent
 		if (columnNames == null) {
-			if (!hasRow(0)) return Collections.emptyList();
-			columnNames = new ArrayList<>(getRow(0).getColumnNames());
+			if (snapshot != null) {
+				columnNames = new ArrayList<>(snapshot.getColumnNames());
+			}
+			else if (sheetTitle != null) {
+				// names the columns from the header
+				getRows();
+			}
+			else {
+				if (!hasRow(0)) return Collections.emptyList();
+				columnNames = new ArrayList<>(getRow(0).getColumnNames());
+			}
 		}
 		return columnNames;
 	}
@@ -109,6 +213,10 @@ public class GoogleWorksheet {
 	}
 
 	/**
+	 * Gets the rows of the worksheet, with only the columns of the last {@link #project(Collection)} if there was one.
+	 * Rows already read are returned as they are, {@link #refresh()} reads them again with all their columns. Rows
+	 * downloaded from Google are also saved as a snapshot so they can be read offline later.
+	 * 
 	 * @return List of row data for the worksheet
 	 * @throws AuthenticationException
 	 * @throws IOException
@@ -118,16 +226,279 @@ public class GoogleWorksheet {
 	@Nonnull
 	public List<GoogleRow> getRows() throws IOException, ServiceException {
 		if (rows == null) {
+			if (snapshot != null) {
+				rows = new ArrayList<>(snapshot.getRowCount());
+				for (int index = 0; index < snapshot.getRowCount(); index++)
+					rows.add(new GoogleRow(this, snapshot, index));
+				return rows;
+			}
+			if (sheetTitle != null) {
+				readSheet(projection);
+				return rows;
+			}
+			if (projection != null) {
+				readProjectedRows(null);
+				return rows;
+			}
+
 			URL listFeedUrl = worksheet.getListFeedUrl();
 			ListFeed listFeed = getHelper().getService().getFeed(listFeedUrl, ListFeed.class);
 			List<ListEntry> entries = listFeed.getEntries();
 			rows = new ArrayList<>(entries.size());
 			for (ListEntry entry : entries)
 				rows.add(new GoogleRow(this, entry));
+
+			saveSnapshot();
 		}
 		return rows;
 	}
 
+	/**
+	 * Gets the rows of the worksheet with only some of their columns, so the columns nobody reads are not downloaded
+	 * or kept. See {@link #project(Collection)} and {@link #readRows(RowConsumer)}
+	 *
+	 * @param columnNames Names of the columns to read, as the list feed names them
+	 * @return List of row data for the worksheet
+	 * @throws IOException
+	 * @throws ServiceException
+	 */
+	@Nonnull
+	public List<GoogleRow> getRows(@Nonnull Collection<String> columnNames) throws IOException, ServiceException {
+		project(columnNames);
+		return getRows();
+	}
+
+	/**
+	 * Handles each row of a worksheet as it is read
+	 */
+	public interface RowConsumer {
+		void accept(@Nonnull GoogleRow row);
+	}
+
+	/**
+	 * Limits the rows read next to some of the columns of the worksheet, so the columns nobody reads are not downloaded
+	 * or kept. The header row is read to find the columns, and columns that are not in the worksheet are left out of
+	 * {@link #getColumnNames()}. Rows read from a snapshot keep all the columns of the snapshot. Through the Sheets API
+	 * the header comes with the values, so the rows are read here, and the other columns are dropped as they are
+	 * parsed.
+	 *
+	 * @param columnNames Names of the columns to read, as the list feed names them
+	 * @return Names of the columns that will be read
+	 * @throws IOException
+	 * @throws ServiceException
+	 */
+	@Nonnull
+	public List<String> project(@Nonnull Collection<String> columnNames) throws IOException, ServiceException {
+		if (snapshot != null) return getColumnNames();
+		if (rows != null && (projection == null || projection.containsAll(columnNames))) return getColumnNames();
+		if (sheetTitle != null) {
+			// the header comes with the values, so the rows are read now
+			readSheet(columnNames);
+			return getColumnNames();
+		}
+
+		// find the columns in the header row
+		CellQuery headerQuery = new CellQuery(worksheet.getCellFeedUrl());
+		headerQuery.setMinimumRow(1);
+		headerQuery.setMaximumRow(1);
+		Map<String, Integer> headerNumbers = new HashMap<>();
+		Set<String> headerNames = new LinkedHashSet<>();
+		for (CellEntry entry : getHelper().getService().getFeed(headerQuery, CellFeed.class).getEntries()) {
+			String name = toColumnName(entry.getCell().getValue(), headerNames);
+			headerNames.add(name);
+			headerNumbers.put(name, entry.getCell().getCol());
+		}
+		List<String> projectedNames = new ArrayList<>();
+		for (String columnName : columnNames)
+			if (headerNumbers.containsKey(columnName) && !projectedNames.contains(columnName))
+				projectedNames.add(columnName);
+
+		rows = null;
+		this.columnNames = projectedNames;
+		columnNumbers = headerNumbers;
+		projection = new LinkedHashSet<>(columnNames);
+		return projectedNames;
+	}
+
+	/**
+	 * Reads the rows of the worksheet one at a time, with only the columns of the last {@link #project(Collection)},
+	 * or with all the columns if there was none. When only a few columns of a wide worksheet are read, only their
+	 * cells are downloaded through the cell feed, one range of adjacent columns at a time. Otherwise the list feed is
+	 * parsed as it is downloaded, and each row is handed to the consumer as soon as it is parsed, without building the
+	 * feed. Either way the values are then kept in columns of distinct values rather than as feed entries, and saved as
+	 * a snapshot with the columns that were read.
+	 * <p>
+	 * Like the list feed, the rows end at the first row without a value.
+	 *
+	 * @param consumer Handles each row
+	 * @throws IOException
+	 * @throws ServiceException
+	 */
+	public void readRows(@Nonnull RowConsumer consumer) throws IOException, ServiceException {
+		if (snapshot == null && projection != null && rows == null) {
+			readProjectedRows(consumer);
+			return;
+		}
+		for (GoogleRow row : getRows())
+			consumer.accept(row);
+	}
+
+	/**
+	 * Reads the projected columns, keeps the rows and saves them as a snapshot
+	 *
+	 * @param consumer Handles each row as it is read, <code>null</code> for none
+	 */
+	private void readProjectedRows(@Nullable final RowConsumer consumer) throws IOException, ServiceException {
+		final List<String[]> values;
+		if (shouldReadCells(getColumnCount(), columnNames.size())) {
+			values = readCells(columnNames, columnNumbers);
+			if (consumer != null) {
+				for (String[] row : values)
+					consumer.accept(new GoogleRow(this, row));
+			}
+		}
+		else {
+			values = new ArrayList<>();
+			ListFeedReader reader = new ListFeedReader(columnNames);
+			reader.read(worksheet.getListFeedUrl(), getHelper().getAccessToken(), new ListFeedReader.RowHandler() {
+				public void handleRow(String[] row) {
+					values.add(row);
+					if (consumer != null) consumer.accept(new GoogleRow(GoogleWorksheet.this, row));
+				}
+			});
+		}
+
+		WorksheetSnapshot projected = WorksheetSnapshot.create(spreadsheet == null ? "" : spreadsheet.getTitle(),
+				getTitle(), getRevision(), columnNames, values);
+		rows = new ArrayList<>(values.size());
+		for (int index = 0; index < values.size(); index++)
+			rows.add(new GoogleRow(this, projected, index));
+
+		saveSnapshot();
+	}
+
+	/**
+	 * Reads the header and the values of the worksheet through the Sheets API in one request, keeps the rows and saves
+	 * them as a snapshot
+	 *
+	 * @param columnNames Names of the columns to read, <code>null</code> for all of them
+	 */
+	private void readSheet(@Nullable Collection<String> columnNames) throws IOException, ServiceException {
+		Map<String, Collection<String>> columnsBySheet = new HashMap<>();
+		columnsBySheet.put(sheetTitle, columnNames);
+		SheetsClient.Values values = getHelper().getSheetsClient()
+				.batchGet(spreadsheet.getSpreadsheetId(), columnsBySheet, getHelper().getAccessToken()).get(sheetTitle);
+
+		WorksheetSnapshot read = WorksheetSnapshot.create(spreadsheet.getTitle(), sheetTitle, getRevision(),
+				values.getColumnNames(), values.getRows());
+		rows = new ArrayList<>(values.getRows().size());
+		for (int index = 0; index < values.getRows().size(); index++)
+			rows.add(new GoogleRow(this, read, index));
+		this.columnNames = new ArrayList<>(values.getColumnNames());
+		projection = columnNames == null ? null : new LinkedHashSet<>(columnNames);
+		sheetColumnCount = values.getColumnCount();
+
+		saveSnapshot();
+	}
+
+	/**
+	 * Reads the values of some columns through the cell feed, one range of adjacent columns at a time. The rows end
+	 * where the list feed ends them, at the first row without a value in any column, so the number of rows is asked of
+	 * the list feed rather than found from the columns that are read
+	 */
+	private List<String[]> readCells(List<String> projectedNames, Map<String, Integer> columnNumbers)
+			throws IOException, ServiceException {
+		int[] columns = new int[projectedNames.size()];
+		for (int index = 0; index < columns.length; index++)
+			columns[index] = columnNumbers.get(projectedNames.get(index));
+
+		int rowCount = getListFeedRowCount();
+		List<String[]> values = new ArrayList<>(rowCount);
+		for (int index = 0; index < rowCount; index++)
+			values.add(new String[columns.length]);
+		if (rowCount == 0) return values;
+
+		for (int[] range : getColumnRanges(columns)) {
+			CellQuery query = new CellQuery(worksheet.getCellFeedUrl());
+			query.setMinimumRow(2);
+			query.setMaximumRow(rowCount + 1);
+			query.setMinimumCol(range[0]);
+			query.setMaximumCol(range[1]);
+			for (CellEntry entry : getHelper().getService().getFeed(query, CellFeed.class).getEntries()) {
+				Cell cell = entry.getCell();
+				for (int index = 0; index < columns.length; index++)
+					if (columns[index] == cell.getCol()) values.get(cell.getRow() - 2)[index] = cell.getValue();
+			}
+		}
+		return values;
+	}
+
+	/** @return Number of rows the list feed has, asked for without downloading more than one of them */
+	private int getListFeedRowCount() throws IOException, ServiceException {
+		ListQuery query = new ListQuery(worksheet.getListFeedUrl());
+		query.setMaxResults(1);
+		return getHelper().getService().getFeed(query, ListFeed.class).getTotalResults();
+	}
+
+	/**
+	 * @param columnCount Number of columns in the worksheet
+	 * @param projectedCount Number of columns to read
+	 * @return <code>true</code> if reading the cells of the columns downloads less than reading the list feed
+	 */
+	static boolean shouldReadCells(int columnCount, int projectedCount) {
+		return projectedCount * CELL_BYTES < LIST_ROW_BYTES + columnCount * LIST_CELL_BYTES;
+	}
+
+	/**
+	 * @param columns Base-1 numbers of columns
+	 * @return First and last number of each range of adjacent columns, in order
+	 */
+	static List<int[]> getColumnRanges(int[] columns) {
+		int[] sorted = columns.clone();
+		Arrays.sort(sorted);
+
+		List<int[]> ranges = new ArrayList<>();
+		for (int column : sorted) {
+			int[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+			if (last != null && column <= last[1] + 1) last[1] = Math.max(last[1], column);
+			else ranges.add(new int[] { column, column });
+		}
+		return ranges;
+	}
+
+	/**
+	 * Names a column from its header the way the list feed does: lower case, with only letters, digits, periods and
+	 * dashes. A name already taken by a column to the left is followed by _2, _3 and so on
+	 *
+	 * @param header Text of the header cell
+	 * @param takenNames Names of the columns to the left
+	 * @return Name of the column
+	 */
+	static String toColumnName(@Nullable String header, @Nonnull Set<String> takenNames) {
+		StringBuilder name = new StringBuilder();
+		if (header != null) {
+			for (char c : header.toLowerCase(Locale.ENGLISH).toCharArray())
+				if (Character.isLetterOrDigit(c) || c == '.' || c == '-') name.append(c);
+		}
+		String baseName = name.toString();
+		String uniqueName = baseName;
+		for (int suffix = 2; takenNames.contains(uniqueName); suffix++)
+			uniqueName = baseName + "_" + suffix;
+		return uniqueName;
+	}
+
+	/**
+	 * Saves the rows as a snapshot. Failing to save is not fatal, we just won't be able to work offline
+	 */
+	private void saveSnapshot() {
+		try {
+			WorksheetSnapshot.save(spreadsheet.getTitle(), getTitle(), getRevision(), rows);
+		}
+		catch (IOException e) {
+			App.logWarn("Unable to save a snapshot of worksheet '" + getTitle() + "': " + e.getMessage());
+		}
+	}
+
 	/**
 	 * @param columnName Name of the column to order by
 	 * @return List of row data for the worksheet, ordered by the specified column. <code>null</code> if the requested
@@ -0,0 +1,178 @@
+package org.wolm.google;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads the rows of a worksheet from its list feed one at a time, as the XML is parsed, instead of building the gdata
+ * object graph of the whole feed. Only the values of the requested columns are kept, so the memory used while reading
+ * does not grow with the number of rows or with the columns nobody reads.
+ * <p>
+ * A reader can be used for one feed at a time.
+ *
+ * @author wolm
+ */
+public class ListFeedReader {
+	/** Namespace of the elements that hold the values of a row, named after the columns */
+	static final String EXTENDED_NAMESPACE = "http://schemas.google.com/spreadsheets/2006/extended";
+	private static final String ATOM_NAMESPACE = "http://www.w3.org/2005/Atom";
+
+	private static final int CONNECT_TIMEOUT_MILLIS = 30000;
+	private static final int READ_TIMEOUT_MILLIS = 120000;
+
+	private static final XMLInputFactory xmlInputFactory = createXmlInputFactory();
+
+	private final List<String> columnNames;
+	private final Map<String, Integer> columnIndexes = new HashMap<>();
+
+	/** Names of all the columns found in the rows, including the ones that are not read */
+	private final Set<String> foundColumnNames = new LinkedHashSet<>();
+
+	/**
+	 * Handles each row as it is read
+	 */
+	public interface RowHandler {
+		/**
+		 * @param values Values of the row, in the order of the columns the reader was created for. <code>null</code>
+		 * for an empty cell. The array belongs to the handler
+		 * @throws IOException if the row cannot be handled, which stops the read
+		 */
+		void handleRow(@Nonnull String[] values) throws IOException;
+	}
+
+	/**
+	 * @param columnNames Names of the columns to read, as the list feed names them
+	 */
+	public ListFeedReader(@Nonnull List<String> columnNames) {
+		super();
+		this.columnNames = Collections.unmodifiableList(new ArrayList<>(columnNames));
+		for (int index = 0; index < columnNames.size(); index++)
+			columnIndexes.put(columnNames.get(index), index);
+	}
+
+	/** @return Names of the columns read, in the order of the values of each row */
+	@Nonnull
+	public List<String> getColumnNames() {
+		return columnNames;
+	}
+
+	/** @return Names of all the columns found in the rows read so far, including the ones that were not read */
+	@Nonnull
+	public Set<String> getFoundColumnNames() {
+		return Collections.unmodifiableSet(foundColumnNames);
+	}
+
+	/**
+	 * Downloads a list feed and reads its rows
+	 *
+	 * @param feedUrl URL of the list feed
+	 * @param accessToken OAuth2 access token to authorize the download with, <code>null</code> for none
+	 * @param handler Handles each row
+	 * @return Number of rows read
+	 * @throws IOException if the feed cannot be downloaded or read, or the handler fails
+	 */
+	public int read(@Nonnull URL feedUrl, @Nullable String accessToken, @Nonnull RowHandler handler)
+			throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) feedUrl.openConnection();
+		connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+		connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+		connection.setRequestProperty("GData-Version", "3.0");
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+		if (accessToken != null) connection.setRequestProperty("Authorization", "Bearer " + accessToken);
+
+		try {
+			int status = connection.getResponseCode();
+			if (status != HttpURLConnection.HTTP_OK) throw new IOException(
+					"Cannot read list feed " + feedUrl + ": " + status + " " + connection.getResponseMessage());
+
+			InputStream in = connection.getInputStream();
+			if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) in = new GZIPInputStream(in);
+			try {
+				return read(in, handler);
+			}
+			finally {
+				in.close();
+			}
+		}
+		finally {
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * Reads the rows of a list feed
+	 *
+	 * @param in XML of the list feed. Not closed
+	 * @param handler Handles each row
+	 * @return Number of rows read
+	 * @throws IOException if the feed cannot be read, or the handler fails
+	 */
+	public int read(@Nonnull InputStream in, @Nonnull RowHandler handler) throws IOException {
+		int rowCount = 0;
+		try {
+			XMLStreamReader xml = xmlInputFactory.createXMLStreamReader(in);
+			try {
+				String[] values = null;
+				while (xml.hasNext()) {
+					int event = xml.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						if (isAtom(xml, "entry")) {
+							values = new String[columnNames.size()];
+						}
+						else if (values != null && EXTENDED_NAMESPACE.equals(xml.getNamespaceURI())) {
+							String name = xml.getLocalName();
+							foundColumnNames.add(name);
+							Integer index = columnIndexes.get(name);
+							String value = xml.getElementText();
+							// empty cells are null, like in the gdata list entries
+							if (index != null && !value.isEmpty()) values[index] = value;
+						}
+					}
+					else if (event == XMLStreamConstants.END_ELEMENT && values != null && isAtom(xml, "entry")) {
+						handler.handleRow(values);
+						rowCount++;
+						values = null;
+					}
+				}
+			}
+			finally {
+				xml.close();
+			}
+		}
+		catch (XMLStreamException e) {
+			throw new IOException("Cannot parse list feed after " + rowCount + " rows: " + e.getMessage(), e);
+		}
+		return rowCount;
+	}
+
+	private static boolean isAtom(XMLStreamReader xml, String localName) {
+		return localName.equals(xml.getLocalName()) && ATOM_NAMESPACE.equals(xml.getNamespaceURI());
+	}
+
+	private static XMLInputFactory createXmlInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		// the feed has no DTD, and must not be able to read local files
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return factory;
+	}
+}
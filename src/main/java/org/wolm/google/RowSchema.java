@@ -0,0 +1,275 @@
+package org.wolm.google;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.math.NumberUtils;
+
+/**
+ * Declares the columns of a worksheet that are read into a model object, like a message or series, and how each one is
+ * set on the object. The schema is declared once, and {@link #bind(GoogleWorksheet, String)} checks that the worksheet
+ * has every column and finds the position of each column once per worksheet. Each row is then bound to an object
+ * without looking its columns up by name (rows read from a snapshot) and without the strings and lists that splitting
+ * and trimming values made for every row.
+ * <p>
+ * Values are converted the same way {@link GoogleRow} converts them. A schema can be shared by several threads once it
+ * is declared.
+ *
+ * @param <T> Type of object the rows are bound to
+ * @author wolm
+ */
+public class RowSchema<T> {
+	private final List<Column<T>> columns = new ArrayList<>();
+
+	/**
+	 * Sets a value read from a row on an object
+	 *
+	 * @param <T> Type of the object
+	 * @param <V> Type of the value
+	 */
+	public interface Setter<T, V> {
+		void set(@Nonnull T target, V value);
+	}
+
+	/**
+	 * Adds a column whose value is set as it is
+	 *
+	 * @param columnName Name of the column
+	 * @param setter Sets the value, which is {@code null} if the cell is empty
+	 * @return This schema
+	 */
+	@Nonnull
+	public RowSchema<T> text(@Nonnull String columnName, @Nonnull final Setter<T, String> setter) {
+		columns.add(new Column<T>(columnName) {
+			void bind(T target, String value) {
+				setter.set(target, value);
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Adds a column of values separated by semicolons, like several speakers, set as a list of trimmed values
+	 *
+	 * @param columnName Name of the column
+	 * @param setter Sets the values. Not called if the cell is empty
+	 * @return This schema
+	 */
+	@Nonnull
+	public RowSchema<T> list(@Nonnull String columnName, @Nonnull final Setter<T, List<String>> setter) {
+		columns.add(new Column<T>(columnName) {
+			void bind(T target, String value) {
+				if (value == null) return;
+
+				List<String> values = new ArrayList<>(countValues(value));
+				for (int start = 0, end = getEnd(value); start <= end; start = nextValue(value, start) + 1)
+					values.add(trim(value, start, nextValue(value, start)));
+				setter.set(target, values);
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Adds a column of numbers separated by semicolons, like track numbers, set as a list. Values that are not numbers
+	 * are set as 0
+	 *
+	 * @param columnName Name of the column
+	 * @param setter Sets the numbers. Not called if the cell is empty
+	 * @return This schema
+	 */
+	@Nonnull
+	public RowSchema<T> integers(@Nonnull String columnName, @Nonnull final Setter<T, List<Integer>> setter) {
+		columns.add(new Column<T>(columnName) {
+			void bind(T target, String value) {
+				if (value == null) return;
+
+				List<Integer> values = new ArrayList<>(countValues(value));
+				for (int start = 0, end = getEnd(value); start <= end; start = nextValue(value, start) + 1)
+					values.add(toInt(value, start, nextValue(value, start)));
+				setter.set(target, values);
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Adds a column of dates, read like {@link GoogleRow#getDateValue(String)}
+	 *
+	 * @param columnName Name of the column
+	 * @param setter Sets the date, which is {@code null} if the cell is not a date
+	 * @return This schema
+	 */
+	@Nonnull
+	public RowSchema<T> date(@Nonnull String columnName, @Nonnull final Setter<T, Date> setter) {
+		columns.add(new Column<T>(columnName) {
+			void bind(T target, String value) {
+				setter.set(target, CellParser.toDate(value));
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Adds a column of numbers, read like {@link GoogleRow#getLongValue(String)}
+	 *
+	 * @param columnName Name of the column
+	 * @param setter Sets the number, which is {@code null} if the cell is not a number
+	 * @return This schema
+	 */
+	@Nonnull
+	public RowSchema<T> number(@Nonnull String columnName, @Nonnull final Setter<T, Long> setter) {
+		columns.add(new Column<T>(columnName) {
+			void bind(T target, String value) {
+				setter.set(target, CellParser.toLong(value));
+			}
+		});
+		return this;
+	}
+
+	/** @return Names of the columns in the schema, in the order they are bound */
+	@Nonnull
+	public List<String> getColumnNames() {
+		List<String> names = new ArrayList<>(columns.size());
+		for (Column<T> column : columns)
+			names.add(column.name);
+		return names;
+	}
+
+	/**
+	 * Finds the columns of the schema in a worksheet
+	 *
+	 * @param worksheet Worksheet whose rows will be bound
+	 * @param spreadsheetName Name of the spreadsheet, for the error if a column is missing
+	 * @return Binder for the rows of the worksheet
+	 * @throws Exception if the worksheet is missing a column of the schema, or its columns cannot be read
+	 */
+	@Nonnull
+	public Binder<T> bind(@Nonnull GoogleWorksheet worksheet, String spreadsheetName) throws Exception {
+		List<String> worksheetColumns = worksheet.getColumnNames();
+		int[] indexes = new int[columns.size()];
+		for (int index = 0; index < indexes.length; index++) {
+			String columnName = columns.get(index).name;
+			indexes[index] = worksheetColumns.indexOf(columnName);
+			if (indexes[index] < 0) throw new Exception(
+					"Cannot find column '" + columnName + "' in the spreadsheet '" + spreadsheetName + "'");
+		}
+		return new Binder<>(columns, indexes);
+	}
+
+	/**
+	 * Binds the rows of one worksheet to objects. Safe to use from several threads
+	 *
+	 * @param <T> Type of object the rows are bound to
+	 */
+	public static class Binder<T> {
+		private final List<Column<T>> columns;
+		private final int[] indexes;
+
+		private Binder(List<Column<T>> columns, int[] indexes) {
+			super();
+			this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+			this.indexes = indexes;
+		}
+
+		/**
+		 * Sets the value of each column of the schema on an object, in the order the columns were declared
+		 *
+		 * @param row Row of the worksheet the binder was made for
+		 * @param target Object to set the values on
+		 */
+		public void bind(@Nonnull GoogleRow row, @Nonnull T target) {
+			for (int index = 0; index < indexes.length; index++) {
+				Column<T> column = columns.get(index);
+				String value = row.getRawValue(indexes[index], column.name);
+				column.bind(target, column.dateColumn ? GoogleRow.convertValue(column.name, value) : value);
+			}
+		}
+	}
+
+	/**
+	 * Column of a schema, which converts its value and sets it on an object
+	 */
+	private static abstract class Column<T> {
+		private final String name;
+
+		/** {@code true} if {@link GoogleRow} converts the dates in the column */
+		private final boolean dateColumn;
+
+		private Column(String name) {
+			super();
+			this.name = name;
+			this.dateColumn = name.indexOf("date") != -1;
+		}
+
+		/**
+		 * @param target Object to set the value on
+		 * @param value Value of the column, with dates already converted. {@code null} if the cell is empty
+		 */
+		abstract void bind(T target, @Nullable String value);
+	}
+
+	/** @return Index after the last value of a list, leaving out empty values at the end like {@link String#split} */
+	private static int getEnd(String value) {
+		if (value.isEmpty()) return 0;
+
+		int end = value.length();
+		while (end > 0 && value.charAt(end - 1) == ';')
+			end--;
+		// a list of nothing but separators has no values
+		return end == 0 ? -1 : end;
+	}
+
+	/** @return Number of values in a list */
+	private static int countValues(String value) {
+		int end = getEnd(value);
+		int count = end < 0 ? 0 : 1;
+		for (int index = 0; index < end; index++)
+			if (value.charAt(index) == ';') count++;
+		return count;
+	}
+
+	/** @return Index of the separator after the value starting at an index, or the end of the text */
+	private static int nextValue(String value, int start) {
+		int separator = value.indexOf(';', start);
+		return separator < 0 ? value.length() : separator;
+	}
+
+	/** @return Part of the text without leading or trailing white space, like {@link String#trim()} */
+	private static String trim(String value, int start, int end) {
+		while (start < end && value.charAt(start) <= ' ')
+			start++;
+		while (end > start && value.charAt(end - 1) <= ' ')
+			end--;
+		return value.substring(start, end);
+	}
+
+	/** @return Trimmed part of the text as an int, or 0 if it is not an int, like {@link NumberUtils#toInt(String)} */
+	private static int toInt(String value, int start, int end) {
+		while (start < end && value.charAt(start) <= ' ')
+			start++;
+		while (end > start && value.charAt(end - 1) <= ' ')
+			end--;
+
+		boolean negative = start < end && value.charAt(start) == '-';
+		int index = negative || (start < end && value.charAt(start) == '+') ? start + 1 : start;
+		if (index == end) return 0;
+
+		// accumulate as a negative number, which has room for Integer.MIN_VALUE
+		int result = 0;
+		for (; index < end; index++) {
+			char c = value.charAt(index);
+			if (c > 0x7f) return NumberUtils.toInt(value.substring(start, end));
+			int digit = c - '0';
+			if (digit < 0 || digit > 9 || result < (Integer.MIN_VALUE + digit) / 10) return 0;
+			result = result * 10 - digit;
+		}
+		if (negative) return result;
+		return result == Integer.MIN_VALUE ? 0 : -result;
+	}
+}
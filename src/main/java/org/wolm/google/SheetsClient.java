@@ -0,0 +1,416 @@
+package org.wolm.google;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.bind.DatatypeConverter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Reads spreadsheets through the Google Sheets API v4, finding them by name through the Drive API v3. The values of
+ * several worksheets of a spreadsheet are read with a single {@code values:batchGet} request, gzipped, and the JSON is
+ * parsed as it is downloaded, keeping only the values of the columns that are read.
+ * <p>
+ * Like the list feed, the rows of a worksheet are named by the header in its first row, and end at the first row
+ * without a value. Safe to use from several threads.
+ *
+ * @author wolm
+ */
+public class SheetsClient {
+	static final String SHEETS_URL = "https://sheets.googleapis.com/v4/spreadsheets";
+	static final String DRIVE_URL = "https://www.googleapis.com/drive/v3/files";
+
+	private static final String SPREADSHEET_TYPE = "application/vnd.google-apps.spreadsheet";
+	private static final int CONNECT_TIMEOUT_MILLIS = 30000;
+	private static final int READ_TIMEOUT_MILLIS = 120000;
+
+	private static final JsonFactory jsonFactory = new JsonFactory();
+
+	private final String applicationName;
+	private final String sheetsUrl;
+	private final String driveUrl;
+
+	public SheetsClient(@Nonnull String applicationName) {
+		this(applicationName, SHEETS_URL, DRIVE_URL);
+	}
+
+	/**
+	 * @param applicationName Name of the application, sent to Google
+	 * @param sheetsUrl URL of the spreadsheets of the Sheets API
+	 * @param driveUrl URL of the files of the Drive API
+	 */
+	SheetsClient(@Nonnull String applicationName, @Nonnull String sheetsUrl, @Nonnull String driveUrl) {
+		super();
+		this.applicationName = applicationName;
+		this.sheetsUrl = sheetsUrl;
+		this.driveUrl = driveUrl;
+	}
+
+	/**
+	 * Spreadsheet found on the Drive
+	 */
+	public static class SpreadsheetFile {
+		private String id;
+		private String name;
+		private Date modifiedTime;
+
+		private SpreadsheetFile() {
+			super();
+		}
+
+		/**
+		 * @param id ID of the spreadsheet
+		 * @param name Name of the spreadsheet
+		 * @param modifiedTime When the spreadsheet was last changed, <code>null</code> if unknown
+		 */
+		SpreadsheetFile(@Nonnull String id, @Nonnull String name, @Nullable Date modifiedTime) {
+			super();
+			this.id = id;
+			this.name = name;
+			this.modifiedTime = modifiedTime;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/** @return When the spreadsheet was last changed, <code>null</code> if unknown */
+		@Nullable
+		public Date getModifiedTime() {
+			return modifiedTime;
+		}
+	}
+
+	/**
+	 * Values read from a worksheet
+	 */
+	public static class Values {
+		private final List<String> columnNames;
+		private final List<String[]> rows = new ArrayList<>();
+		private int columnCount;
+
+		private Values(List<String> columnNames) {
+			super();
+			this.columnNames = columnNames;
+		}
+
+		/** @return Names of the columns read, in the order of the values of each row */
+		@Nonnull
+		public List<String> getColumnNames() {
+			return columnNames;
+		}
+
+		/** @return Rows after the header, with a <code>null</code> value for an empty cell */
+		@Nonnull
+		public List<String[]> getRows() {
+			return rows;
+		}
+
+		/** @return Number of columns in the header of the worksheet, including the ones that were not read */
+		public int getColumnCount() {
+			return columnCount;
+		}
+	}
+
+	/**
+	 * Finds spreadsheets shared with the account
+	 *
+	 * @param name Exact name of the spreadsheets to find, <code>null</code> for all of them
+	 * @param accessToken OAuth2 access token
+	 * @return The spreadsheets
+	 * @throws IOException if the spreadsheets cannot be found
+	 */
+	@Nonnull
+	public List<SpreadsheetFile> findSpreadsheets(@Nullable String name, @Nonnull String accessToken)
+			throws IOException {
+		String query = "mimeType = '" + SPREADSHEET_TYPE + "' and trashed = false";
+		if (name != null) query += " and name = '" + name.replace("\\", "\\\\").replace("'", "\\'") + "'";
+
+		URL url = new URL(driveUrl + "?q=" + encode(query) + "&fields=" + encode("files(id,name,modifiedTime)")
+				+ "&pageSize=1000");
+		return get(url, accessToken, new ResponseParser<List<SpreadsheetFile>>() {
+			public List<SpreadsheetFile> parse(JsonParser json) throws IOException {
+				List<SpreadsheetFile> files = new ArrayList<>();
+				expect(json, JsonToken.START_OBJECT);
+				while (json.nextToken() == JsonToken.FIELD_NAME) {
+					if (!"files".equals(json.getCurrentName())) {
+						skipValue(json);
+						continue;
+					}
+					expect(json, JsonToken.START_ARRAY);
+					while (json.nextToken() == JsonToken.START_OBJECT)
+						files.add(parseFile(json));
+				}
+				return files;
+			}
+		});
+	}
+
+	/**
+	 * Gets the titles of the worksheets of a spreadsheet
+	 *
+	 * @param spreadsheetId ID of the spreadsheet
+	 * @param accessToken OAuth2 access token
+	 * @return Titles of the worksheets, in order
+	 * @throws IOException if the spreadsheet cannot be read
+	 */
+	@Nonnull
+	public List<String> getSheetTitles(@Nonnull String spreadsheetId, @Nonnull String accessToken) throws IOException {
+		URL url = new URL(sheetsUrl + "/" + encode(spreadsheetId) + "?fields=" + encode("sheets.properties.title"));
+		return get(url, accessToken, new ResponseParser<List<String>>() {
+			public List<String> parse(JsonParser json) throws IOException {
+				// {"sheets":[{"properties":{"title":"Media Log"}}]}
+				List<String> titles = new ArrayList<>();
+				expect(json, JsonToken.START_OBJECT);
+				while (json.nextToken() == JsonToken.FIELD_NAME) {
+					if (!"sheets".equals(json.getCurrentName())) {
+						skipValue(json);
+						continue;
+					}
+					expect(json, JsonToken.START_ARRAY);
+					while (json.nextToken() == JsonToken.START_OBJECT) {
+						while (json.nextToken() == JsonToken.FIELD_NAME) {
+							if (!"properties".equals(json.getCurrentName())) {
+								skipValue(json);
+								continue;
+							}
+							expect(json, JsonToken.START_OBJECT);
+							while (json.nextToken() == JsonToken.FIELD_NAME) {
+								json.nextToken();
+								if ("title".equals(json.getCurrentName())) titles.add(json.getText());
+								else json.skipChildren();
+							}
+						}
+					}
+				}
+				return titles;
+			}
+		});
+	}
+
+	/**
+	 * Reads the values of several worksheets of a spreadsheet with one request
+	 *
+	 * @param spreadsheetId ID of the spreadsheet
+	 * @param columnsBySheet Names of the columns to read, as the list feed names them, by title of the worksheet.
+	 * <code>null</code> names to read all the columns of a worksheet
+	 * @param accessToken OAuth2 access token
+	 * @return Values by title of the worksheet, in the order of the worksheets asked for
+	 * @throws IOException if the values cannot be read, or a worksheet is not in the spreadsheet
+	 */
+	@Nonnull
+	public Map<String, Values> batchGet(@Nonnull String spreadsheetId,
+			@Nonnull Map<String, ? extends Collection<String>> columnsBySheet, @Nonnull String accessToken)
+			throws IOException {
+		final List<String> titles = new ArrayList<>(columnsBySheet.keySet());
+		final List<Collection<String>> columns = new ArrayList<>(columnsBySheet.values());
+
+		StringBuilder url = new StringBuilder(sheetsUrl).append('/').append(encode(spreadsheetId))
+				.append("/values:batchGet?majorDimension=ROWS&valueRenderOption=FORMATTED_VALUE&fields=")
+				.append(encode("valueRanges(range,values)"));
+		for (String title : titles)
+			url.append("&ranges=").append(encode("'" + title.replace("'", "''") + "'"));
+
+		return get(new URL(url.toString()), accessToken, new ResponseParser<Map<String, Values>>() {
+			public Map<String, Values> parse(JsonParser json) throws IOException {
+				// {"valueRanges":[{"range":"'Media Log'!A1:Z100","values":[["Name","Date"],["...","..."]]}]}
+				Map<String, Values> values = new LinkedHashMap<>();
+				expect(json, JsonToken.START_OBJECT);
+				while (json.nextToken() == JsonToken.FIELD_NAME) {
+					if (!"valueRanges".equals(json.getCurrentName())) {
+						skipValue(json);
+						continue;
+					}
+					// the value ranges are in the order they were asked for
+					expect(json, JsonToken.START_ARRAY);
+					for (int index = 0; json.nextToken() == JsonToken.START_OBJECT; index++) {
+						if (index >= titles.size()) throw new IOException("More value ranges than asked for");
+						values.put(titles.get(index), parseValueRange(json, columns.get(index)));
+					}
+				}
+				if (values.size() < titles.size()) throw new IOException("Fewer value ranges than asked for");
+				return values;
+			}
+		});
+	}
+
+	/** Parses the next value range of a batch, which starts with the header row */
+	private static Values parseValueRange(JsonParser json, @Nullable Collection<String> columnNames)
+			throws IOException {
+		Values values = null;
+		while (json.nextToken() == JsonToken.FIELD_NAME) {
+			if (!"values".equals(json.getCurrentName())) {
+				skipValue(json);
+				continue;
+			}
+			expect(json, JsonToken.START_ARRAY);
+			if (json.nextToken() != JsonToken.START_ARRAY) break;
+
+			// name the columns from the header, then find the position of each column that is read
+			List<String> headerNames = new ArrayList<>();
+			Set<String> takenNames = new HashSet<>();
+			while (json.nextToken() != JsonToken.END_ARRAY) {
+				// columns without a header are not named, and not read
+				String name = GoogleWorksheet.toColumnName(json.getText(), takenNames);
+				if (!name.isEmpty()) takenNames.add(name);
+				headerNames.add(name);
+			}
+			List<String> readNames = new ArrayList<>();
+			for (String name : columnNames == null ? headerNames : columnNames)
+				if (!name.isEmpty() && headerNames.contains(name) && !readNames.contains(name)) readNames.add(name);
+			int[] indexes = new int[headerNames.size()];
+			for (int column = 0; column < indexes.length; column++)
+				indexes[column] = readNames.indexOf(headerNames.get(column));
+
+			values = new Values(Collections.unmodifiableList(readNames));
+			values.columnCount = headerNames.size();
+			boolean ended = false;
+			while (json.nextToken() == JsonToken.START_ARRAY) {
+				if (ended) {
+					json.skipChildren();
+					continue;
+				}
+
+				// stop at the first row without a value, like the list feed
+				String[] row = new String[readNames.size()];
+				boolean empty = true;
+				for (int column = 0; json.nextToken() != JsonToken.END_ARRAY; column++) {
+					String value = json.getText();
+					if (value.isEmpty()) continue;
+					empty = false;
+					if (column < indexes.length && indexes[column] >= 0) row[indexes[column]] = value;
+				}
+				if (empty) ended = true;
+				else values.rows.add(row);
+			}
+		}
+		if (json.getCurrentToken() != JsonToken.END_OBJECT) skipToEndOfObject(json);
+
+		// a worksheet without even a header has no values at all
+		return values != null ? values : new Values(Collections.<String> emptyList());
+	}
+
+	private static SpreadsheetFile parseFile(JsonParser json) throws IOException {
+		SpreadsheetFile file = new SpreadsheetFile();
+		while (json.nextToken() == JsonToken.FIELD_NAME) {
+			String field = json.getCurrentName();
+			json.nextToken();
+			if ("id".equals(field)) file.id = json.getText();
+			else if ("name".equals(field)) file.name = json.getText();
+			else if ("modifiedTime".equals(field)) file.modifiedTime = parseTime(json.getText());
+			else json.skipChildren();
+		}
+		return file;
+	}
+
+	private static Date parseTime(String time) {
+		try {
+			return DatatypeConverter.parseDateTime(time).getTime();
+		}
+		catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Parses the JSON answered by Google
+	 */
+	private interface ResponseParser<T> {
+		T parse(@Nonnull JsonParser json) throws IOException;
+	}
+
+	/**
+	 * Downloads a JSON response, gzipped, and parses it as it is downloaded
+	 */
+	private <T> T get(URL url, String accessToken, ResponseParser<T> parser) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+		connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+		connection.setRequestProperty("Authorization", "Bearer " + accessToken);
+		connection.setRequestProperty("Accept", "application/json");
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+		// Google only compresses responses to user agents that ask for it
+		connection.setRequestProperty("User-Agent", applicationName + " (gzip)");
+
+		try {
+			int status = connection.getResponseCode();
+			if (status != HttpURLConnection.HTTP_OK) throw new IOException("Google answered " + status + " for "
+					+ url.getPath() + ": " + readErrorMessage(connection));
+
+			try (InputStream in = open(connection, connection.getInputStream());
+					JsonParser json = jsonFactory.createParser(in)) {
+				return parser.parse(json);
+			}
+		}
+		finally {
+			connection.disconnect();
+		}
+	}
+
+	private static InputStream open(HttpURLConnection connection, InputStream in) throws IOException {
+		if (in != null && "gzip".equalsIgnoreCase(connection.getContentEncoding())) return new GZIPInputStream(in);
+		return in;
+	}
+
+	/** @return The message of an error answered by Google, like {"error":{"code":404,"message":"Not found"}} */
+	private static String readErrorMessage(HttpURLConnection connection) {
+		try (InputStream in = open(connection, connection.getErrorStream())) {
+			if (in == null) return connection.getResponseMessage();
+			try (JsonParser json = jsonFactory.createParser(in)) {
+				for (JsonToken token = json.nextToken(); token != null; token = json.nextToken())
+					if (token == JsonToken.FIELD_NAME && "message".equals(json.getCurrentName())) {
+						json.nextToken();
+						return json.getText();
+					}
+			}
+			return connection.getResponseMessage();
+		}
+		catch (IOException e) {
+			return "unreadable error: " + e.getMessage();
+		}
+	}
+
+	private static void expect(JsonParser json, JsonToken expected) throws IOException {
+		JsonToken token = json.nextToken();
+		if (token != expected)
+			throw new IOException("Expected " + expected + " but found " + token + " at " + json.getCurrentLocation());
+	}
+
+	/** Skips the value of the current field */
+	private static void skipValue(JsonParser json) throws IOException {
+		json.nextToken();
+		json.skipChildren();
+	}
+
+	/** Skips the rest of the object the parser is in */
+	private static void skipToEndOfObject(JsonParser json) throws IOException {
+		while (json.nextToken() == JsonToken.FIELD_NAME)
+			skipValue(json);
+	}
+
+	private static String encode(String value) throws IOException {
+		return URLEncoder.encode(value, "UTF-8");
+	}
+}
@@ -0,0 +1,398 @@
+package org.wolm.google;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A compact, columnar copy of a worksheet saved on the local disk so the catalog can be rebuilt without talking to
+ * Google.
+ * <p>
+ * Each column is stored as a dictionary of its distinct values followed by an array of dictionary codes, one per row
+ * (-1 for an empty cell). Snapshots are read through a memory-mapped buffer, and the code arrays are used in place
+ * rather than copied to the heap.
+ * <p>
+ * Snapshots are kept in ~/.wolm/cache, one file per worksheet named after the spreadsheet and worksheet titles.
+ *
+ * @author wolm
+ */
+public class WorksheetSnapshot {
+	private static final int MAGIC = 0x574F4C53; // "WOLS"
+	private static final int VERSION = 1;
+	private static final String EXTENSION = ".snapshot";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** Directory the snapshots are stored in */
+	private static File cacheDirectory = new File(System.getenv("HOME") + "/.wolm/cache");
+
+	private final String spreadsheetTitle;
+	private final String worksheetTitle;
+	private final Date revision;
+	private final Date created;
+	private final List<String> columnNames;
+	private final Map<String, Integer> columnIndexes;
+	private final int rowCount;
+	private final String[][] dictionaries;
+	private final IntBuffer[] codes;
+
+	private WorksheetSnapshot(String spreadsheetTitle, String worksheetTitle, Date revision, Date created,
+			List<String> columnNames, int rowCount, String[][] dictionaries, IntBuffer[] codes) {
+		super();
+		this.spreadsheetTitle = spreadsheetTitle;
+		this.worksheetTitle = worksheetTitle;
+		this.revision = revision;
+		this.created = created;
+		this.columnNames = Collections.unmodifiableList(columnNames);
+		this.rowCount = rowCount;
+		this.dictionaries = dictionaries;
+		this.codes = codes;
+
+		columnIndexes = new HashMap<>();
+		for (int index = 0; index < columnNames.size(); index++)
+			columnIndexes.put(columnNames.get(index), index);
+	}
+
+	public static File getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	public static void setCacheDirectory(File cacheDirectory) {
+		WorksheetSnapshot.cacheDirectory = cacheDirectory;
+	}
+
+	public String getSpreadsheetTitle() {
+		return spreadsheetTitle;
+	}
+
+	public String getWorksheetTitle() {
+		return worksheetTitle;
+	}
+
+	/** @return When the worksheet was last changed on Google, <code>null</code> if unknown */
+	@Nullable
+	public Date getRevision() {
+		return revision;
+	}
+
+	/** @return When the snapshot was taken */
+	public Date getCreated() {
+		return created;
+	}
+
+	/** @return Names of all the columns in the snapshot, in their stored order */
+	public List<String> getColumnNames() {
+		return columnNames;
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @param rowIndex Base-0 index of a row
+	 * @param columnName Name of a column
+	 * @return Value of the cell, <code>null</code> if it is empty or the column does not exist
+	 */
+	@Nullable
+	public String getValue(int rowIndex, String columnName) {
+		Integer columnIndex = columnIndexes.get(columnName);
+		if (columnIndex == null) return null;
+
+		return getValue(rowIndex, columnIndex.intValue());
+	}
+
+	/**
+	 * @param rowIndex Base-0 index of a row
+	 * @param columnIndex Base-0 index of a column in {@link #getColumnNames()}
+	 * @return Value of the cell, <code>null</code> if it is empty
+	 */
+	@Nullable
+	public String getValue(int rowIndex, int columnIndex) {
+		int code = codes[columnIndex].get(rowIndex);
+		return code < 0 ? null : dictionaries[columnIndex][code];
+	}
+
+	/**
+	 * @param rowIndex Base-0 index of a row
+	 * @return Names of the columns that have a value in the row
+	 */
+	public Set<String> getColumnNames(int rowIndex) {
+		Set<String> names = new LinkedHashSet<>();
+		for (int columnIndex = 0; columnIndex < columnNames.size(); columnIndex++)
+			if (codes[columnIndex].get(rowIndex) >= 0) names.add(columnNames.get(columnIndex));
+		return names;
+	}
+
+	/**
+	 * Writes a snapshot of a worksheet's rows. The snapshot is written to a temporary file first, so an interrupted write
+	 * never replaces a good snapshot.
+	 *
+	 * @param spreadsheetTitle Title of the spreadsheet the rows came from
+	 * @param worksheetTitle Title of the worksheet the rows came from
+	 * @param revision When the worksheet was last changed, <code>null</code> if unknown
+	 * @param rows Rows to save
+	 * @return The snapshot file
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public static File save(@Nonnull String spreadsheetTitle, @Nonnull String worksheetTitle, @Nullable Date revision,
+			@Nonnull List<GoogleRow> rows) throws IOException {
+		// gather the columns from every row, as rows only list the cells that have values
+		Set<String> columnSet = new LinkedHashSet<>();
+		for (GoogleRow row : rows)
+			columnSet.addAll(row.getColumnNames());
+		List<String> columns = new ArrayList<>(columnSet);
+
+		File file = getSnapshotFile(spreadsheetTitle, worksheetTitle);
+		File dir = file.getParentFile();
+		if (!dir.exists()) dir.mkdirs();
+		File tmpFile = new File(dir, file.getName() + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(revision == null ? -1L : revision.getTime());
+			out.writeLong(System.currentTimeMillis());
+			writeString(out, spreadsheetTitle);
+			writeString(out, worksheetTitle);
+
+			out.writeInt(columns.size());
+			for (String column : columns)
+				writeString(out, column);
+
+			out.writeInt(rows.size());
+			for (String column : columns) {
+				// build the dictionary of distinct values in this column
+				Map<String, Integer> dictionary = new LinkedHashMap<>();
+				int[] columnCodes = new int[rows.size()];
+				for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
+					String value = rows.get(rowIndex).getRawValue(column);
+					if (value == null) {
+						columnCodes[rowIndex] = -1;
+						continue;
+					}
+					Integer code = dictionary.get(value);
+					if (code == null) {
+						code = dictionary.size();
+						dictionary.put(value, code);
+					}
+					columnCodes[rowIndex] = code;
+				}
+
+				out.writeInt(dictionary.size());
+				for (String value : dictionary.keySet())
+					writeString(out, value);
+				for (int code : columnCodes)
+					out.writeInt(code);
+			}
+		}
+
+		if (file.exists() && !file.delete()) throw new IOException("Cannot replace snapshot '" + file + "'");
+		if (!tmpFile.renameTo(file)) throw new IOException("Cannot rename snapshot '" + tmpFile + "' to '" + file + "'");
+		return file;
+	}
+
+	/**
+	 * Builds a snapshot in memory from the values of some columns of a worksheet, keeping each column as a dictionary
+	 * of its distinct values just like a saved snapshot
+	 *
+	 * @param spreadsheetTitle Title of the spreadsheet the rows came from
+	 * @param worksheetTitle Title of the worksheet the rows came from
+	 * @param revision When the worksheet was last changed, <code>null</code> if unknown
+	 * @param columnNames Names of the columns
+	 * @param rows Values of each row, in the order of the columns. <code>null</code> for an empty cell
+	 * @return The snapshot
+	 */
+	@Nonnull
+	static WorksheetSnapshot create(@Nonnull String spreadsheetTitle, @Nonnull String worksheetTitle,
+			@Nullable Date revision, @Nonnull List<String> columnNames, @Nonnull List<String[]> rows) {
+		String[][] dictionaries = new String[columnNames.size()][];
+		IntBuffer[] codes = new IntBuffer[columnNames.size()];
+		for (int columnIndex = 0; columnIndex < columnNames.size(); columnIndex++) {
+			Map<String, Integer> dictionary = new LinkedHashMap<>();
+			int[] columnCodes = new int[rows.size()];
+			for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
+				String value = rows.get(rowIndex)[columnIndex];
+				if (value == null) {
+					columnCodes[rowIndex] = -1;
+					continue;
+				}
+				Integer code = dictionary.get(value);
+				if (code == null) {
+					code = dictionary.size();
+					dictionary.put(value, code);
+				}
+				columnCodes[rowIndex] = code;
+			}
+			dictionaries[columnIndex] = dictionary.keySet().toArray(new String[dictionary.size()]);
+			codes[columnIndex] = IntBuffer.wrap(columnCodes);
+		}
+
+		return new WorksheetSnapshot(spreadsheetTitle, worksheetTitle, revision, new Date(),
+				new ArrayList<>(columnNames), rows.size(), dictionaries, codes);
+	}
+
+	/**
+	 * Reads the latest snapshot of a worksheet
+	 *
+	 * @param spreadsheetTitle Title of the spreadsheet
+	 * @param worksheetTitle Title of the worksheet
+	 * @return The snapshot, or <code>null</code> if no snapshot has been saved for the worksheet
+	 * @throws IOException if the snapshot exists but cannot be read
+	 */
+	@Nullable
+	public static WorksheetSnapshot load(@Nonnull String spreadsheetTitle, @Nonnull String worksheetTitle)
+			throws IOException {
+		File file = getSnapshotFile(spreadsheetTitle, worksheetTitle);
+		if (!file.isFile()) return null;
+
+		MappedByteBuffer buffer;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			// the mapping stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.getInt() != MAGIC) throw new IOException("'" + file + "' is not a worksheet snapshot");
+		int version = buffer.getInt();
+		if (version != VERSION) throw new IOException("'" + file + "' has unsupported snapshot version " + version);
+
+		long revision = buffer.getLong();
+		long created = buffer.getLong();
+		String storedSpreadsheetTitle = readString(buffer);
+		String storedWorksheetTitle = readString(buffer);
+
+		int columnCount = buffer.getInt();
+		List<String> columns = new ArrayList<>(columnCount);
+		for (int index = 0; index < columnCount; index++)
+			columns.add(readString(buffer));
+
+		int rowCount = buffer.getInt();
+		String[][] dictionaries = new String[columnCount][];
+		IntBuffer[] codes = new IntBuffer[columnCount];
+		for (int columnIndex = 0; columnIndex < columnCount; columnIndex++) {
+			String[] dictionary = new String[buffer.getInt()];
+			for (int code = 0; code < dictionary.length; code++)
+				dictionary[code] = readString(buffer);
+			dictionaries[columnIndex] = dictionary;
+
+			// use the codes in place from the mapped file
+			ByteBuffer slice = buffer.slice();
+			slice.limit(rowCount * 4);
+			codes[columnIndex] = slice.asIntBuffer();
+			buffer.position(buffer.position() + rowCount * 4);
+		}
+
+		return new WorksheetSnapshot(storedSpreadsheetTitle, storedWorksheetTitle,
+				revision < 0 ? null : new Date(revision), new Date(created), columns, rowCount, dictionaries, codes);
+	}
+
+	/**
+	 * @param spreadsheetTitle Title of a spreadsheet
+	 * @return <code>true</code> if there is a snapshot of at least one worksheet in the spreadsheet
+	 */
+	public static boolean hasSnapshot(@Nonnull String spreadsheetTitle) {
+		return !getWorksheetTitles(spreadsheetTitle).isEmpty();
+	}
+
+	/**
+	 * @param spreadsheetTitle Title of a spreadsheet
+	 * @return Titles of all the worksheets with snapshots in the spreadsheet
+	 */
+	@Nonnull
+	public static List<String> getWorksheetTitles(@Nonnull String spreadsheetTitle) {
+		final String prefix = encode(spreadsheetTitle) + "@";
+		File[] files = cacheDirectory.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.startsWith(prefix) && name.endsWith(EXTENSION);
+			}
+		});
+		if (files == null) return Collections.emptyList();
+
+		List<String> titles = new ArrayList<>(files.length);
+		for (File file : files) {
+			String name = file.getName();
+			titles.add(decode(name.substring(prefix.length(), name.length() - EXTENSION.length())));
+		}
+		Collections.sort(titles);
+		return titles;
+	}
+
+	/**
+	 * @return Titles of all the spreadsheets with snapshots
+	 */
+	@Nonnull
+	public static List<String> getSpreadsheetTitles() {
+		File[] files = cacheDirectory.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.contains("@") && name.endsWith(EXTENSION);
+			}
+		});
+		if (files == null) return Collections.emptyList();
+
+		Set<String> titles = new LinkedHashSet<>();
+		for (File file : files)
+			titles.add(decode(file.getName().substring(0, file.getName().indexOf('@'))));
+		List<String> sortedTitles = new ArrayList<>(titles);
+		Collections.sort(sortedTitles);
+		return sortedTitles;
+	}
+
+	static File getSnapshotFile(String spreadsheetTitle, String worksheetTitle) {
+		return new File(cacheDirectory, encode(spreadsheetTitle) + "@" + encode(worksheetTitle) + EXTENSION);
+	}
+
+	private static String encode(String title) {
+		try {
+			return URLEncoder.encode(title, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e) {
+			// impossible - UTF-8 is always supported
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String decode(String fileName) {
+		try {
+			return URLDecoder.decode(fileName, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e) {
+			// impossible - UTF-8 is always supported
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+}
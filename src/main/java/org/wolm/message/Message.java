@@ -194,6 +194,7 @@ public class Message {
 		return audioLink;
 	}
 
+	/** @return Signed link that downloads the audio. It is signed the first time it is asked for and reused after */
 	public URL getAudioLinkForDownload() {
 		return AwsS3Helper.instance().getSignedUrl(audioLink, AwsS3Helper.Disposition.download);
 	}
@@ -0,0 +1,215 @@
+package org.wolm.prophesy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.wolm.catalog.App;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+/**
+ * Local copy of the prophecy documents in S3, so that a prophecy is only downloaded and parsed again when its object
+ * changes. Each prophecy is kept in its own file holding the object key, ETag and last-modified date, and the parsed
+ * prophecy. An entry is only used if the ETag and last-modified date in the bucket listing still match it, and is
+ * deleted once the listing no longer has its object.
+ * <p>
+ * The cache is normally kept in ~/.wolm/cache/prophecies. It is safe to use from several threads at once.
+ *
+ * @author wolm
+ */
+public class ProphecyCache {
+	private static final int MAGIC = 0x574F4C50; // "WOLP"
+	private static final int VERSION = 2;
+	private static final String EXTENSION = ".prophecy";
+
+	public static final File DEFAULT_DIRECTORY = new File(System.getenv("HOME") + "/.wolm/cache/prophecies");
+
+	private final File directory;
+	private final AtomicInteger hitCount = new AtomicInteger();
+	private final AtomicInteger missCount = new AtomicInteger();
+	private final AtomicInteger prunedCount = new AtomicInteger();
+
+	/**
+	 * @param directory Directory to keep the cached prophecies in. It is created when the first prophecy is saved
+	 */
+	public ProphecyCache(@Nonnull File directory) {
+		super();
+		this.directory = directory;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @param summary Listing of the prophecy object
+	 * @return The cached prophecy, or {@code null} if it is not cached or the object has changed since it was cached
+	 */
+	@Nullable
+	public Prophecy get(@Nonnull S3ObjectSummary summary) {
+		Prophecy prophecy = read(summary);
+		if (prophecy == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		return prophecy;
+	}
+
+	/**
+	 * Saves a prophecy in the cache, replacing any older copy of it
+	 *
+	 * @param summary Listing of the prophecy object the prophecy was downloaded from
+	 * @param prophecy Prophecy parsed from the object
+	 * @throws IOException
+	 */
+	public void put(@Nonnull S3ObjectSummary summary, @Nonnull Prophecy prophecy) throws IOException {
+		if (!directory.exists()) directory.mkdirs();
+
+		File file = getFile(summary.getKey());
+		File tmpFile = new File(directory, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				writeString(out, summary.getKey());
+				writeString(out, summary.getETag());
+				out.writeLong(getLastModified(summary));
+				writeString(out, prophecy.getTitle());
+				writeString(out, prophecy.getBy());
+				writeString(out, prophecy.getLocation());
+				writeString(out, prophecy.getDateString());
+				writeString(out, prophecy.getHtmlBody());
+			}
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * Deletes the cached prophecies whose objects are gone. Only call this with a complete listing, since every
+	 * prophecy whose key is not given is deleted
+	 *
+	 * @param keys Keys of every prophecy object in the bucket
+	 * @return Number of cached prophecies deleted
+	 */
+	public int prune(@Nonnull Collection<String> keys) {
+		File[] files = directory.listFiles();
+		if (files == null) return 0;
+
+		Set<String> names = new HashSet<>();
+		for (String key : keys)
+			names.add(getFile(key).getName());
+
+		int count = 0;
+		for (File file : files) {
+			if (!file.getName().endsWith(EXTENSION) || names.contains(file.getName())) continue;
+			if (file.delete()) {
+				count++;
+			}
+			else {
+				App.logWarn("Cannot delete cached prophecy " + file);
+			}
+		}
+		prunedCount.addAndGet(count);
+		return count;
+	}
+
+	/** @return Number of prophecies found in the cache */
+	public int getHitCount() {
+		return hitCount.get();
+	}
+
+	/** @return Number of prophecies that were not cached or had changed */
+	public int getMissCount() {
+		return missCount.get();
+	}
+
+	/** @return Number of cached prophecies deleted because their objects are gone */
+	public int getPrunedCount() {
+		return prunedCount.get();
+	}
+
+	public void logSummary() {
+		App.logInfo("Prophecy cache: " + getHitCount() + " hits, " + getMissCount() + " misses, " + getPrunedCount()
+				+ " pruned");
+	}
+
+	/** @return The cached prophecy for the object, or {@code null} if there is none or it is out of date */
+	private Prophecy read(S3ObjectSummary summary) {
+		File file = getFile(summary.getKey());
+		if (!file.isFile()) return null;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+			if (!summary.getKey().equals(readString(in))) return null;
+			String etag = readString(in);
+			if (etag == null || !etag.equals(summary.getETag())) return null;
+			if (in.readLong() != getLastModified(summary)) return null;
+
+			Prophecy prophecy = new Prophecy();
+			prophecy.setTitle(readString(in));
+			prophecy.setBy(readString(in));
+			prophecy.setLocation(readString(in));
+			prophecy.setDateString(readString(in));
+			prophecy.setHtmlBody(readString(in));
+			return prophecy;
+		}
+		catch (IOException e) {
+			App.logWarn("Ignoring unreadable cached prophecy " + file + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	private File getFile(String key) {
+		try {
+			return new File(directory, URLEncoder.encode(key, "UTF-8") + EXTENSION);
+		}
+		catch (UnsupportedEncodingException e) {
+			// impossible - UTF-8 is always supported
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static long getLastModified(S3ObjectSummary summary) {
+		return summary.getLastModified() == null ? 0 : summary.getLastModified().getTime();
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value == null) return;
+
+		byte[] bytes = value.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		if (!in.readBoolean()) return null;
+
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
@@ -2,9 +2,16 @@ package org.wolm.prophesy;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nonnull;
 
@@ -22,6 +29,10 @@ public class ProphecyCatalog {
 	private final String bucketName;
 	private final String prophecyDirectoryName;
 
+	private AwsS3Helper s3Helper = null;
+	private int downloadConcurrency = 8;
+	private ProphecyCache cache = null;
+
 	public ProphecyCatalog(@Nonnull String bucketName, @Nullable String prophecyDirectoryName) {
 		super();
 
@@ -29,10 +40,72 @@ public class ProphecyCatalog {
 		this.prophecyDirectoryName = prophecyDirectoryName;
 	}
 
-	public void populateFromAwsDocuments(String bucketName, String outputDir) {
-		List<String> prophecyKeys = listPropheciesInBucket();
-		for (String prophecyKey : prophecyKeys) {
-			addProphecy(readProphecy(prophecyKey));
+	/** @return Number of prophecies downloaded and parsed at the same time */
+	public int getDownloadConcurrency() {
+		return downloadConcurrency;
+	}
+
+	public void setDownloadConcurrency(int downloadConcurrency) {
+		if (downloadConcurrency < 1) throw new IllegalArgumentException("Download concurrency must be at least 1");
+		this.downloadConcurrency = downloadConcurrency;
+	}
+
+	/** @return Local copy of the prophecies, or {@code null} to download every prophecy */
+	public ProphecyCache getCache() {
+		return cache;
+	}
+
+	public void setCache(ProphecyCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Reads every prophecy in the bucket. Prophecies are downloaded and parsed on a pool of
+	 * {@link #getDownloadConcurrency()} threads, starting while the bucket is still being listed, but are added to the
+	 * catalog in key order. Prophecies that have not changed since they were cached are taken from the
+	 * {@link #getCache() cache} instead, and the cached prophecies that are no longer in the bucket are deleted
+	 */
+	public void populateFromAwsDocuments(String bucketName, String outputDir) throws Exception {
+		AwsS3Helper helper = getS3Helper();
+		Bucket bucket = helper.getBucket(this.bucketName);
+		if (bucket == null) throw new RuntimeException("Bucket name is not defined");
+
+		ExecutorService pool = Executors.newFixedThreadPool(downloadConcurrency);
+		try {
+			List<Future<Prophecy>> reads = new ArrayList<>();
+			List<String> keys = new ArrayList<>();
+			for (S3ObjectSummary summary : helper.getObjects(bucket, prophecyDirectoryName, null)) {
+				final S3ObjectSummary prophecySummary = summary;
+				if (!isProphecy(summary.getKey())) continue;
+				keys.add(summary.getKey());
+
+				reads.add(pool.submit(new Callable<Prophecy>() {
+					public Prophecy call() throws Exception {
+						return readProphecy(prophecySummary);
+					}
+				}));
+			}
+
+			for (Future<Prophecy> read : reads)
+				addProphecy(waitFor(read));
+
+			// the listing is complete, so whatever else is cached is gone from the bucket
+			if (cache != null) cache.prune(keys);
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		if (cache != null) cache.logSummary();
+	}
+
+	/** Waits for a read to finish, rethrowing whatever the read threw */
+	private static Prophecy waitFor(Future<Prophecy> read) throws Exception {
+		try {
+			return read.get();
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+			throw e;
 		}
 	}
 
@@ -49,35 +122,77 @@ public class ProphecyCatalog {
 		prophecies.add(prophecy);
 	}
 
-	private List<String> listPropheciesInBucket() {
-		AwsS3Helper helper = AwsS3Helper.instance();
+	/** @return Helper to read the prophecies with. Defaults to the singleton */
+	public AwsS3Helper getS3Helper() {
+		return s3Helper == null ? AwsS3Helper.instance() : s3Helper;
+	}
 
-		List<String> prophecyKeys = new ArrayList<>();
-		Bucket bucket = helper.getBucket(bucketName);
+	public void setS3Helper(AwsS3Helper s3Helper) {
+		this.s3Helper = s3Helper;
+	}
 
-		if (bucket == null) throw new RuntimeException("Bucket name is not defined");
-		for (S3ObjectSummary summary : helper.getObjectList(bucket, prophecyDirectoryName, null)) {
-			String key = summary.getKey();
+	/**
+	 * @param key Key of an object in the prophecy bucket
+	 * @return {@code true} if the object is a prophecy
+	 */
+	private boolean isProphecy(@Nonnull String key) {
+		// ignore non-prophesy files
+		if (!key.matches(".*\\.txt") || key.startsWith("template")) {
+			App.logInfo("Ignoring " + key);
+			return false;
+		}
 
-			// ignore non-prophesy files
-			if (!key.matches(".*\\.txt") || key.startsWith("template")) {
-				App.logInfo("Ignoring " + key);
-				continue;
-			}
+		// keep prophecy files
+		App.logInfo("Reading " + key);
+		return true;
+	}
+
+	/** @return The prophecy in the object, from the cache if it has not changed since it was cached */
+	private Prophecy readProphecy(@Nonnull S3ObjectSummary summary) {
+		String key = summary.getKey();
+		if (cache != null) {
+			Prophecy prophecy = cache.get(summary);
+			if (prophecy != null) return prophecy;
+		}
 
-			// keep prophecy files
-			App.logInfo("Reading " + key);
-			prophecyKeys.add(key);
+		String text;
+		try (InputStream in = getS3Helper().getContent(bucketName, key)) {
+			text = readText(in);
+		}
+		catch (IOException e) {
+			System.err.println("ERROR: Cannot read prophecy '" + key + "': " + e.getMessage());
+			return null;
 		}
 
-		return prophecyKeys;
+		Prophecy prophecy = parseProphecy(key, text);
+		if (cache != null) {
+			try {
+				cache.put(summary, prophecy);
+			}
+			catch (IOException e) {
+				App.logWarn("Cannot cache prophecy '" + key + "': " + e.getMessage());
+			}
+		}
+		return prophecy;
 	}
 
-	private Prophecy readProphecy(@Nonnull String key) {
-		AwsS3Helper helper = AwsS3Helper.instance();
+	private static String readText(InputStream in) throws IOException {
+		StringBuilder text = new StringBuilder();
+		char[] buffer = new char[8192];
+		InputStreamReader reader = new InputStreamReader(in, "UTF-8");
+		int count;
+		while ((count = reader.read(buffer)) != -1)
+			text.append(buffer, 0, count);
+		return text.toString();
+	}
 
-		try (BufferedReader reader = new BufferedReader(
-				new InputStreamReader(helper.getContent(bucketName, key), "UTF-8"))) {
+	/**
+	 * @param key Key of the object the text came from, used as the title if the text has none
+	 * @param text Raw text of a prophecy
+	 * @return The parsed prophecy
+	 */
+	private static Prophecy parseProphecy(@Nonnull String key, @Nonnull String text) {
+		try (BufferedReader reader = new BufferedReader(new StringReader(text))) {
 			Prophecy prophecy = new Prophecy();
 			prophecy.setTitle(key); // file name as default, should get replaced later
 
@@ -114,8 +229,8 @@ public class ProphecyCatalog {
 			return prophecy;
 		}
 		catch (IOException e) {
-			System.err.println("ERROR: Cannot read prophecy '" + key + "': " + e.getMessage());
-			return null;
+			// impossible - reading from a string
+			throw new IllegalStateException(e);
 		}
 	}
 }
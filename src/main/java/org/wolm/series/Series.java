@@ -15,6 +15,8 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
 
+import javax.annotation.Nonnull;
+
 import org.apache.commons.lang3.StringUtils;
 import org.wolm.catalog.AccessLevel;
 import org.wolm.catalog.App;
@@ -317,11 +319,10 @@ public class Series {
 	}
 
 	/**
-	 * @return All messages for this series that should be included according to the current filters
+	 * @param env Environment whose filters decide what is visible
+	 * @return All messages for this series that should be included according to the filters of {@code env}
 	 */
-	public List<Message> getFilteredMessages() {
-		RenderEnvironment env = RenderEnvironment.instance();
-
+	public List<Message> getFilteredMessages(@Nonnull RenderEnvironment env) {
 		List<Message> includedMessages = new ArrayList<>();
 		for (Message message : getMessages())
 			if (env.shouldInclude(this, message)) includedMessages.add(message);
@@ -498,6 +499,23 @@ public class Series {
 		return messages.size();
 	}
 
+	/**
+	 * Finds all the messages that are in this series using a pre-built index, and remembers them for future use. This
+	 * gives the same result as {@link #discoverMessages(Collection)} without scanning every message
+	 *
+	 * @param index Index of all messages by series name
+	 * @return Number of messages found for this series
+	 */
+	public int discoverMessages(SeriesMessageIndex index) {
+		// index returns messages already sorted by track number
+		messages = index.getMessages(getTitle());
+
+		for (Message message : messages)
+			App.logDebug("Adding " + message.getVisibility() + " message '" + message.getTitle() + "'");
+
+		return messages.size();
+	}
+
 	@Override
 	public String toString() {
 		DateFormat fmt = SimpleDateFormat.getDateInstance(SimpleDateFormat.MEDIUM);
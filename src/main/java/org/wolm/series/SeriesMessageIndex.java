@@ -0,0 +1,120 @@
+package org.wolm.series;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.wolm.message.Message;
+
+/**
+ * Case-insensitive index from a series name to the messages (and their track numbers) in that series. It is built once
+ * from all the messages in a catalog so that each series can find its messages without scanning every message.
+ * <p>
+ * Matching follows {@link Message#getTrackNumber(String)}: series names are compared ignoring case, and if a message
+ * lists the same series more than once only the first track number counts.
+ *
+ * @author wolm
+ */
+public class SeriesMessageIndex {
+
+	/** Map of lower-cased series name to the messages in that series, in the order they were added */
+	private final Map<String, List<Track>> tracksBySeries = new HashMap<>();
+
+	public SeriesMessageIndex() {
+		super();
+	}
+
+	/**
+	 * Constructs an index of all the messages
+	 *
+	 * @param messages Messages to index
+	 */
+	public SeriesMessageIndex(@Nonnull Collection<Message> messages) {
+		this();
+		for (Message message : messages)
+			add(message);
+	}
+
+	/**
+	 * Adds a message to the index under every series it is part of
+	 *
+	 * @param message Message to add
+	 */
+	public void add(@Nonnull Message message) {
+		List<String> seriesNames = message.getSeries();
+		List<Integer> trackNumbers = message.getTrackNumbers();
+
+		for (int index = 0; index < trackNumbers.size() && index < seriesNames.size(); index++) {
+			String key = toKey(seriesNames.get(index));
+			if (isListedEarlier(seriesNames, index, key)) continue;
+
+			List<Track> tracks = tracksBySeries.get(key);
+			if (tracks == null) {
+				tracks = new ArrayList<>();
+				tracksBySeries.put(key, tracks);
+			}
+			tracks.add(new Track(message, trackNumbers.get(index)));
+		}
+	}
+
+	/**
+	 * @param seriesName Name of a series (case is ignored)
+	 * @return All messages in the series sorted by track number. Empty if there are none
+	 */
+	@Nonnull
+	public List<Message> getMessages(@Nullable String seriesName) {
+		if (seriesName == null) return new ArrayList<>();
+
+		List<Track> tracks = tracksBySeries.get(toKey(seriesName));
+		if (tracks == null) return new ArrayList<>();
+
+		// sort a copy by track number, this is a stable sort so ties stay in catalog order
+		tracks = new ArrayList<>(tracks);
+		Collections.sort(tracks, byTrackNumber);
+
+		List<Message> messages = new ArrayList<>(tracks.size());
+		for (Track track : tracks)
+			messages.add(track.message);
+		return messages;
+	}
+
+	private static String toKey(String seriesName) {
+		return seriesName.toLowerCase(Locale.ENGLISH);
+	}
+
+	/** @return {@code true} if the series at {@code index} was already listed before it in the series names */
+	private static boolean isListedEarlier(List<String> seriesNames, int index, String key) {
+		for (int earlier = 0; earlier < index; earlier++)
+			if (toKey(seriesNames.get(earlier)).equals(key)) return true;
+		return false;
+	}
+
+	/** One message and its track number within a series */
+	private static class Track {
+		final Message message;
+		final Integer trackNumber;
+
+		Track(Message message, Integer trackNumber) {
+			this.message = message;
+			this.trackNumber = trackNumber;
+		}
+	}
+
+	/** Sorts tracks by track number (<code>null</code> at end), same as {@link Message.ByTrackNumber} */
+	private static final Comparator<Track> byTrackNumber = new Comparator<Track>() {
+		public int compare(Track track1, Track track2) {
+			if (track1.trackNumber == null && track2.trackNumber == null) return 0;
+			if (track1.trackNumber == null) return 1;
+			if (track2.trackNumber == null) return -1;
+			return track1.trackNumber - track2.trackNumber;
+		}
+	};
+}
@@ -0,0 +1,88 @@
+package org.wolm.series;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.wolm.catalog.App;
+import org.wolm.catalog.environment.RenderEnvironment;
+
+/**
+ * Remembers which series pages have been rendered during a build, so a series that appears in several catalogs is only
+ * rendered once. Two renders of a series page are the same if they go to the same file and have the same series id,
+ * title, ministry and filtered messages, since those are all that the series template shows.
+ * <p>
+ * A page belongs to the first catalog that claims it. If another catalog needs different content in the same page (for
+ * instance because it is for another ministry, or its filters show different messages), that is a conflict and the
+ * page is left as the first catalog rendered it. The catalogs that render series pages are built one after another in
+ * a fixed order, so the same catalog owns a page on every run.
+ *
+ * @author wolm
+ */
+public class SeriesPageCache {
+	/** Content of the claim that owns each page */
+	private final Map<File, List<Object>> pages = new HashMap<>();
+
+	private int renderCount = 0;
+	private int duplicateCount = 0;
+	private int conflictCount = 0;
+
+	/**
+	 * Claims a series page for rendering
+	 *
+	 * @param pageFile File the page will be written to
+	 * @param series Series on the page
+	 * @param ministry Ministry the page is rendered for
+	 * @param env Environment the page is rendered in
+	 * @return {@code true} if the caller should render the page, {@code false} if it has already been claimed, with
+	 * the same content or not
+	 */
+	public synchronized boolean claim(@Nonnull File pageFile, @Nonnull Series series, String ministry,
+			@Nonnull RenderEnvironment env) {
+		// messages have no equals(), so the message list compares the identity of each message
+		List<Object> content = Arrays.<Object> asList(series.getId(), series.getTitle(), ministry,
+				series.getFilteredMessages(env));
+
+		List<Object> owner = pages.get(pageFile);
+		if (owner == null) {
+			pages.put(pageFile, content);
+			renderCount++;
+			return true;
+		}
+
+		if (owner.equals(content)) {
+			duplicateCount++;
+		}
+		else {
+			App.logDebug("Series page " + pageFile.getName() + " is kept as the " + owner.get(2)
+					+ " catalog rendered it, which differs from the " + ministry + " catalog");
+			conflictCount++;
+		}
+		return false;
+	}
+
+	/** @return Number of series pages rendered */
+	public synchronized int getRenderCount() {
+		return renderCount;
+	}
+
+	/** @return Number of series page renders skipped because the same page was already rendered */
+	public synchronized int getDuplicateCount() {
+		return duplicateCount;
+	}
+
+	/** @return Number of series page renders skipped because another catalog owns the page with different content */
+	public synchronized int getConflictCount() {
+		return conflictCount;
+	}
+
+	/** Logs how many series pages were rendered, and how many renders were skipped as duplicates or conflicts */
+	public synchronized void logSummary() {
+		App.logInfo("Rendered " + renderCount + " series pages, skipped " + duplicateCount + " duplicate renders and "
+				+ conflictCount + " conflicting renders of pages another catalog owns");
+	}
+}
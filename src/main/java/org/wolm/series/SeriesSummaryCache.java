@@ -0,0 +1,112 @@
+package org.wolm.series;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+import org.wolm.catalog.App;
+
+/**
+ * Keeps the rendered summary of each series (the card with its cover art, dates, speakers and description) that the
+ * series indexes list. Every index shows the same card for a series, and each index is written in three orders, so a
+ * card is rendered once per series and ministry theme and the indexes are put together from the cached cards.
+ * <p>
+ * The card shows the series itself rather than messages filtered for a page, so it does not depend on the page. Safe
+ * to use from several threads. Two threads may both render a card that is not cached yet, and the first one cached is
+ * kept.
+ *
+ * @author wolm
+ */
+public class SeriesSummaryCache {
+	/** Rendered card, by series, ministry and base reference */
+	private final ConcurrentMap<List<Object>, String> summaries = new ConcurrentHashMap<>();
+
+	private final AtomicInteger renderCount = new AtomicInteger();
+	private final AtomicInteger reuseCount = new AtomicInteger();
+	private final AtomicLong renderNanos = new AtomicLong();
+
+	/**
+	 * Renders the summaries of several series at once
+	 */
+	public interface Renderer {
+		/**
+		 * @param seriesList Series to summarize
+		 * @return The summary of each series, in the same order
+		 * @throws Exception
+		 */
+		@Nonnull
+		List<String> render(@Nonnull List<Series> seriesList) throws Exception;
+	}
+
+	/**
+	 * Gets the summaries of a list of series, rendering the ones that have not been rendered for the ministry yet. The
+	 * missing summaries are rendered with one call to the renderer, since setting up a render costs more than
+	 * rendering a summary
+	 *
+	 * @param seriesList Series to summarize
+	 * @param ministry Ministry whose theme the summaries are rendered in
+	 * @param baseRef Base reference the summaries link to
+	 * @param renderer Renders the missing summaries
+	 * @return The summary of each series, in the order of the list
+	 * @throws Exception if the summaries cannot be rendered
+	 */
+	@Nonnull
+	public List<String> getSummaries(@Nonnull List<Series> seriesList, String ministry, String baseRef,
+			@Nonnull Renderer renderer) throws Exception {
+		List<String> result = new ArrayList<>(seriesList.size());
+		List<Series> missing = new ArrayList<>();
+		List<Integer> missingIndexes = new ArrayList<>();
+		for (Series series : seriesList) {
+			String summary = summaries.get(getKey(series, ministry, baseRef));
+			if (summary == null) {
+				missing.add(series);
+				missingIndexes.add(result.size());
+			}
+			result.add(summary);
+		}
+		reuseCount.addAndGet(seriesList.size() - missing.size());
+		if (missing.isEmpty()) return result;
+
+		long start = System.nanoTime();
+		List<String> rendered = renderer.render(missing);
+		renderNanos.addAndGet(System.nanoTime() - start);
+		renderCount.addAndGet(missing.size());
+		if (rendered.size() != missing.size())
+			throw new IllegalStateException("Rendered " + rendered.size() + " summaries for " + missing.size()
+					+ " series");
+
+		for (int i = 0; i < missing.size(); i++) {
+			List<Object> key = getKey(missing.get(i), ministry, baseRef);
+			String previous = summaries.putIfAbsent(key, rendered.get(i));
+			result.set(missingIndexes.get(i), previous == null ? rendered.get(i) : previous);
+		}
+		return result;
+	}
+
+	/** @return Number of summaries rendered */
+	public int getRenderCount() {
+		return renderCount.get();
+	}
+
+	/** @return Number of times a summary was taken from the cache instead of rendered */
+	public int getReuseCount() {
+		return reuseCount.get();
+	}
+
+	/** Logs how many summaries were rendered, how long that took and how many were reused */
+	public void logSummary() {
+		App.logInfo(String.format("Rendered %d series summaries in %,d ms, reused %d", getRenderCount(),
+				renderNanos.get() / 1000000, getReuseCount()));
+	}
+
+	private static List<Object> getKey(Series series, String ministry, String baseRef) {
+		// series have no equals(), so each series is its own key
+		return Arrays.<Object> asList(series, ministry, baseRef);
+	}
+}
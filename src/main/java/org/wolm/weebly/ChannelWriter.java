@@ -0,0 +1,193 @@
+package org.wolm.weebly;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Writer that encodes characters as UTF-8 straight into a byte buffer and writes the buffer to a channel whenever it
+ * fills, so a page never exists as one big string or byte array. Already encoded bytes, like the fixed parts of a
+ * {@link CompiledPage}, can be mixed in with {@link #writeBytes(byte[])}.
+ * <p>
+ * The encoder and buffer are expensive to create, so each thread keeps one of each and lends them to the writer it
+ * has open. Closing the writer gives them back. A writer must only be used by the thread that created it.
+ *
+ * @author wolm
+ */
+public class ChannelWriter extends Writer {
+	private static final int BYTE_BUFFER_SIZE = 64 * 1024;
+	private static final int CHAR_BUFFER_SIZE = 8 * 1024;
+
+	/** Encoder and buffers of each thread that are not lent to an open writer */
+	private static final ThreadLocal<Buffers> idleBuffers = new ThreadLocal<>();
+
+	private final WritableByteChannel channel;
+	private Buffers buffers;
+	private CharsetEncoder encoder;
+	/** Encoded bytes waiting to be written to the channel */
+	private ByteBuffer bytes;
+	/** Characters are copied here to be encoded, so that writing a string does not allocate a buffer to wrap it */
+	private CharBuffer chars;
+
+	/** High surrogate at the end of the last write, held back until the low surrogate that completes it arrives */
+	private char pendingHighSurrogate;
+	private boolean hasPendingHighSurrogate;
+
+	public ChannelWriter(@Nonnull WritableByteChannel channel) {
+		super();
+		this.channel = channel;
+
+		buffers = idleBuffers.get();
+		idleBuffers.remove();
+		if (buffers == null) buffers = new Buffers();
+
+		encoder = buffers.encoder;
+		bytes = buffers.bytes;
+		chars = buffers.chars;
+		encoder.reset();
+		bytes.clear();
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		ensureOpen();
+		chars.clear();
+		chars.put((char) c);
+		encodeChars();
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			int count = Math.min(len, CHAR_BUFFER_SIZE - 1);
+			chars.clear();
+			chars.put(cbuf, off, count);
+			encodeChars();
+			off += count;
+			len -= count;
+		}
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			int count = Math.min(len, CHAR_BUFFER_SIZE - 1);
+			chars.clear();
+			str.getChars(off, off + count, chars.array(), 0);
+			chars.position(count);
+			encodeChars();
+			off += count;
+			len -= count;
+		}
+	}
+
+	/**
+	 * Writes bytes that are already encoded
+	 *
+	 * @param encoded UTF-8 bytes to write
+	 * @throws IOException
+	 */
+	public void writeBytes(@Nonnull byte[] encoded) throws IOException {
+		finishCharacters();
+
+		if (encoded.length > bytes.remaining()) drain();
+		if (encoded.length > bytes.remaining()) {
+			// too big to buffer, so write it directly
+			ByteBuffer direct = ByteBuffer.wrap(encoded);
+			while (direct.hasRemaining())
+				channel.write(direct);
+		}
+		else {
+			bytes.put(encoded);
+		}
+	}
+
+	/**
+	 * Encodes the characters put into the character buffer, after any high surrogate held back from the last write.
+	 * The character buffer always has room for the held back character, since writes fill at most all but one of it
+	 */
+	private void encodeChars() throws IOException {
+		chars.flip();
+		if (hasPendingHighSurrogate) {
+			// shift the characters up one to make room for the held back character
+			System.arraycopy(chars.array(), 0, chars.array(), 1, chars.limit());
+			chars.array()[0] = pendingHighSurrogate;
+			chars.limit(chars.limit() + 1);
+			hasPendingHighSurrogate = false;
+		}
+
+		while (encoder.encode(chars, bytes, false).isOverflow())
+			drain();
+
+		// the encoder leaves a high surrogate at the end of the input, since the next write may complete it
+		if (chars.hasRemaining()) {
+			pendingHighSurrogate = chars.get();
+			hasPendingHighSurrogate = true;
+		}
+	}
+
+	/** Ends the current run of characters, writing a replacement for a high surrogate that was never completed */
+	private void finishCharacters() throws IOException {
+		ensureOpen();
+		if (!hasPendingHighSurrogate) return;
+
+		chars.clear();
+		chars.put(pendingHighSurrogate);
+		chars.flip();
+		hasPendingHighSurrogate = false;
+		while (encoder.encode(chars, bytes, true).isOverflow())
+			drain();
+		while (encoder.flush(bytes).isOverflow())
+			drain();
+		encoder.reset();
+	}
+
+	/** Writes the encoded bytes to the channel and empties the byte buffer */
+	private void drain() throws IOException {
+		bytes.flip();
+		while (bytes.hasRemaining())
+			channel.write(bytes);
+		bytes.clear();
+	}
+
+	private void ensureOpen() throws IOException {
+		if (buffers == null) throw new IOException("Writer is closed");
+	}
+
+	@Override
+	public void flush() throws IOException {
+		finishCharacters();
+		drain();
+	}
+
+	/** Flushes the writer, closes the channel, and gives the encoder and buffers back to the thread */
+	@Override
+	public void close() throws IOException {
+		if (buffers == null) return;
+
+		try {
+			flush();
+		}
+		finally {
+			idleBuffers.set(buffers);
+			buffers = null;
+			channel.close();
+		}
+	}
+
+	/** The encoder and buffers a thread lends to its open writer */
+	private static class Buffers {
+		private final CharsetEncoder encoder = CompiledPage.CHARSET.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		private final ByteBuffer bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+		private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+	}
+}
@@ -0,0 +1,151 @@
+package org.wolm.weebly;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A Weebly page that has been turned into fixed blocks of bytes separated by variable slots like {@code ${Title}} and
+ * {@code ${Content}}. All of the line-by-line work of preparing a page is done once when the page is compiled, so
+ * writing a page only copies the fixed blocks and encodes the values of the slots.
+ * <p>
+ * Writing a compiled page gives the same result as {@link WeeblyPage#substituteVariables(Map)} followed by
+ * {@link WeeblyPage#printPage(java.io.PrintStream)}:
+ * <ul>
+ * <li>Variables on a line that has a {@code <meta>} element before the first variable are left alone
+ * <li>{@code $${name}} is written as {@code ${name}}
+ * <li>Variables without a value are written unchanged
+ * </ul>
+ * The one difference is that values are written as-is; variables inside a value are not replaced. Compiled pages are
+ * immutable and can be written by several threads at once.
+ *
+ * @author wolm
+ */
+public class CompiledPage {
+	public static final Charset CHARSET = StandardCharsets.UTF_8;
+
+	/** Fixed text, one more than there are slots. Segment i comes before slot i */
+	private final byte[][] segments;
+
+	/** Variable name of each slot */
+	private final String[] slots;
+
+	/** The original text of each slot, written when the variable has no value */
+	private final byte[][] placeholders;
+
+	/**
+	 * Compiles the lines of a page. The lines should already be prepared, since the page will not change after this
+	 *
+	 * @param lines Lines of the page
+	 */
+	CompiledPage(@Nonnull List<String> lines) {
+		super();
+
+		List<byte[]> segmentList = new ArrayList<>();
+		List<String> slotList = new ArrayList<>();
+		String lineSeparator = System.lineSeparator();
+
+		StringBuilder segment = new StringBuilder();
+		for (String line : lines) {
+			int variable = line.indexOf("${");
+			int meta = line.indexOf("<meta ");
+			if (variable < 0 || (meta >= 0 && meta < variable)) {
+				segment.append(line).append(lineSeparator);
+				continue;
+			}
+
+			int start = 0;
+			while (variable >= 0) {
+				// "$${" is an escaped "${"
+				if (variable > start && line.charAt(variable - 1) == '$') {
+					segment.append(line, start, variable - 1).append("${");
+					start = variable + 2;
+				}
+				else {
+					int end = line.indexOf('}', variable + 2);
+					if (end < 0) break;
+
+					segment.append(line, start, variable);
+					segmentList.add(segment.toString().getBytes(CHARSET));
+					segment.setLength(0);
+					slotList.add(line.substring(variable + 2, end));
+					start = end + 1;
+				}
+				variable = line.indexOf("${", start);
+			}
+			segment.append(line, start, line.length()).append(lineSeparator);
+		}
+		segmentList.add(segment.toString().getBytes(CHARSET));
+
+		segments = segmentList.toArray(new byte[segmentList.size()][]);
+		slots = slotList.toArray(new String[slotList.size()]);
+		placeholders = new byte[slots.length][];
+		for (int s = 0; s < slots.length; s++)
+			placeholders[s] = ("${" + slots[s] + "}").getBytes(CHARSET);
+	}
+
+	/** @return Variable name of each slot, in the order they appear in the page */
+	public List<String> getSlots() {
+		return Collections.unmodifiableList(Arrays.asList(slots));
+	}
+
+	/**
+	 * Content of a slot that is written straight into the page as it is generated, instead of being built as a string
+	 * first
+	 */
+	public interface StreamedValue {
+		/**
+		 * @param out Writer for the page, positioned at the slot
+		 * @throws Exception
+		 */
+		public void writeTo(@Nonnull Writer out) throws Exception;
+	}
+
+	/**
+	 * Writes the page with its variables replaced
+	 * 
+	 * @param out Writer for the page
+	 * @param values Map of variable names to values
+	 * @param streamedValues Map of variable names to content that is written straight into the page. These take
+	 * precedence over {@code values}
+	 * @throws Exception
+	 */
+	public void write(@Nonnull ChannelWriter out, @Nonnull Map<String, String> values,
+			@Nonnull Map<String, StreamedValue> streamedValues) throws Exception {
+		for (int s = 0; s < slots.length; s++) {
+			out.writeBytes(segments[s]);
+
+			StreamedValue streamed = streamedValues.get(slots[s]);
+			String value = values.get(slots[s]);
+			if (streamed != null) streamed.writeTo(out);
+			else if (value != null) out.write(value);
+			else out.writeBytes(placeholders[s]);
+		}
+		out.writeBytes(segments[slots.length]);
+	}
+
+	/**
+	 * @param values Map of variable names to values
+	 * @return The page with its variables replaced
+	 */
+	public String toString(@Nonnull Map<String, String> values) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ChannelWriter out = new ChannelWriter(Channels.newChannel(bytes))) {
+			write(out, values, Collections.<String, StreamedValue> emptyMap());
+		}
+		catch (Exception e) {
+			// impossible, byte array streams do not throw and there is no streamed content
+			throw new IllegalStateException(e);
+		}
+		return new String(bytes.toByteArray(), CHARSET);
+	}
+}
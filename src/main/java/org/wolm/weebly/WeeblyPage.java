@@ -91,15 +91,18 @@ public class WeeblyPage {
 	private void populatePage() throws Exception {
 		if (url == null) throw new NullPointerException("Weebly Page URL must not be null");
 
-		// check the cache
-		if (emptyPageCache.containsKey(url)) {
-			lines = new ArrayList<>(emptyPageCache.get(url));
-			return;
-		}
+		// pages are rendered on several threads, so only let one of them download the page
+		synchronized (emptyPageCache) {
+			// check the cache
+			if (emptyPageCache.containsKey(url)) {
+				lines = new ArrayList<>(emptyPageCache.get(url));
+				return;
+			}
 
-		// no page cached, read from Weebly
-		if (!downloadEmptyPageFromS3()) downloadEmptyPageFromWeebly();
-		emptyPageCache.put(url, new ArrayList<>(lines));
+			// no page cached, read from Weebly
+			if (!downloadEmptyPageFromS3()) downloadEmptyPageFromWeebly();
+			emptyPageCache.put(url, new ArrayList<>(lines));
+		}
 	}
 
 	/**
@@ -274,6 +277,16 @@ public class WeeblyPage {
 			out.println(line);
 	}
 
+	/**
+	 * Compiles the page as it is now, so it can be written many times with different variable values. Prepare the page
+	 * before compiling it, since later changes to this page do not affect the compiled page
+	 * 
+	 * @return The compiled page
+	 */
+	public CompiledPage compile() {
+		return new CompiledPage(lines);
+	}
+
 	/** The policy for handling unresolved variables */
 	public SubstitutePolicy getUnresolvedVariablePolicy() {
 		return unresolvedVariablePolicy;
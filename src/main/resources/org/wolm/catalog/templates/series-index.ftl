@@ -1,25 +1,4 @@
-<#switch ministry>
-	<#case 'TBO'>
-		<#assign defaultCover = 'https://s3-us-west-2.amazonaws.com/wordoflife.mn.catalog/TBOLogo-Small.png' />
-		<#assign defaultColor = '#424242' />
-		<#assign highlightColor = '#d15541' />
-		<#break>
-	<#case 'CORE'>
-		<#assign defaultCover = 'https://s3-us-west-2.amazonaws.com/wordoflife.mn.catalog/CORELogo-Small.jpg' />
-		<#assign defaultColor = '#840' />
-		<#assign highlightColor = '#5b2d00' />
-		<#break>
-	<#case 'Faith-Freedom'>
-		<#assign defaultCover = 'https://s3-us-west-2.amazonaws.com/wordoflife.mn.catalog/CORELogo-Small.jpg' />
-		<#assign defaultColor = '#800' />
-		<#assign highlightColor = '#ff4444' />
-		<#break>
-	<#default>
-		<#assign defaultCover = 'https://s3-us-west-2.amazonaws.com/wordoflife.mn.catalog/WordofLifeLogo-XSmall.png' />
-		<#assign defaultColor = '#5a9e5d' />
-		<#assign highlightColor = '#337e37' />
-		<#break>
-</#switch>
+<#include "series-theme.ftl" />
 
 <style>
 	a { color: ${defaultColor}; }
@@ -95,61 +74,6 @@
 	}
 </style>
 
-<#macro seriesSummaryItem series>
-	<#assign seriesMinistry = series.messages[0].ministry />
-	<div class="seriesItem ${seriesMinistry}" data-date="${series.startDate?date?iso_utc}" data-title="${series.titleSortKey}">
-		<table>
-			<tr>
-				<td class="coverArt">
-					<#switch seriesMinistry>
-						<#case 'CORE'>
-							<#local artLink = series.coverArtLink!'https://s3-us-west-2.amazonaws.com/wordoflife.mn.catalog/CORELogo-Small.jpg' />
-							<#break>
-						<#default>
-							<#local artLink = series.coverArtLink!defaultCover />
-							<#break>
-					</#switch>
-					<div class="coverArt">
-						<a href="${baseRef}/${series.id}.html"><img src="${artLink}" alt="Series cover"/></a>
-					</div>
-				</td>
-				<td class="info">
-					<a class="title" href="${baseRef}/${series.id}.html">${series.title}</a>
-					<br/>
-					<span class="label">Messages:</span> 
-					<span class="text">${series.messageCount}</span>
-					<br/>
-					<span class="label">Date:</span>
-					<#if series.startDate??>
-						<span class="text">
-							<#if !(series.endDate??)>Started</#if> <#-- still in progress -->
-							${series.startDate?date}
-							<#if series.endDate?? && series.endDate?date != series.startDate?date>
-								- ${series.endDate?date}
-							</#if>
-						</span>
-						<#if !(series.endDate??)><span class="inprogress"> -more to come!</span></#if>
-					</#if>
-					<#if series.speakers?size &gt; 0>
-						<br/>
-						<span class="label">Speaker<#if series.speakers?size &gt; 1>s</#if>:</span> 
-						<span class="text">
-							<#list series.speakers as speaker>${speaker}<#if speaker?has_next>, </#if></#list>
-						</span>
-					</#if>
-				</td>
-			</tr>
-		</table>
-
-		<p class="clear">&nbsp;</p>
-		<#if series.description??>
-			<!-- <span class="label">Description:</span> --> 
-			<span class="longtext" title="${series.description?html}">${series.description}</span>
-		</#if>
-
-	</div>
-</#macro>
-
 <#-- -------------------------------------------------------------------------------------- -->
 
 <h1>${title!}</h1>
@@ -218,7 +142,6 @@
 <p></p>
 
 <div class="seriesList">
-	<#list seriesList as series>
-		<@seriesSummaryItem series=series />
-	</#list>
+	<#-- each summary is rendered once by series-summary.ftl -->
+	<#list seriesSummaries as seriesSummary>${seriesSummary}</#list><#t>
 </div>
@@ -0,0 +1,7 @@
+<#-- Renders the summary of each series in seriesList, and hands each one to summaries.add() so the summaries can be
+     reused by every series index they appear in -->
+<#include "series-theme.ftl" />
+<#list seriesList as series>
+	<#assign summary><#include "series-summary.ftl" /></#assign>
+	${summaries.add(summary)}
+</#list>
@@ -0,0 +1,53 @@
+<#-- Summary of one series in a series index. Included by series-summaries.ftl -->
+	<#assign seriesMinistry = series.messages[0].ministry />
+	<div class="seriesItem ${seriesMinistry}" data-date="${series.startDate?date?iso_utc}" data-title="${series.titleSortKey}">
+		<table>
+			<tr>
+				<td class="coverArt">
+					<#switch seriesMinistry>
+						<#case 'CORE'>
+							<#assign artLink = series.coverArtLink!'https://s3-us-west-2.amazonaws.com/wordoflife.mn.catalog/CORELogo-Small.jpg' />
+							<#break>
+						<#default>
+							<#assign artLink = series.coverArtLink!defaultCover />
+							<#break>
+					</#switch>
+					<div class="coverArt">
+						<a href="${baseRef}/${series.id}.html"><img src="${artLink}" alt="Series cover"/></a>
+					</div>
+				</td>
+				<td class="info">
+					<a class="title" href="${baseRef}/${series.id}.html">${series.title}</a>
+					<br/>
+					<span class="label">Messages:</span> 
+					<span class="text">${series.messageCount}</span>
+					<br/>
+					<span class="label">Date:</span>
+					<#if series.startDate??>
+						<span class="text">
+							<#if !(series.endDate??)>Started</#if> <#-- still in progress -->
+							${series.startDate?date}
+							<#if series.endDate?? && series.endDate?date != series.startDate?date>
+								- ${series.endDate?date}
+							</#if>
+						</span>
+						<#if !(series.endDate??)><span class="inprogress"> -more to come!</span></#if>
+					</#if>
+					<#if series.speakers?size &gt; 0>
+						<br/>
+						<span class="label">Speaker<#if series.speakers?size &gt; 1>s</#if>:</span> 
+						<span class="text">
+							<#list series.speakers as speaker>${speaker}<#if speaker?has_next>, </#if></#list>
+						</span>
+					</#if>
+				</td>
+			</tr>
+		</table>
+
+		<p class="clear">&nbsp;</p>
+		<#if series.description??>
+			<!-- <span class="label">Description:</span> --> 
+			<span class="longtext" title="${series.description?html}">${series.description}</span>
+		</#if>
+
+	</div>
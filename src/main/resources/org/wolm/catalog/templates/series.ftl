@@ -121,7 +121,7 @@
 
 <div>	
 	<#-- messages -->
-	<#list series.filteredMessages as message>
+	<#list series.getFilteredMessages(env) as message>
 		<div class="message ${message.ministry}">
 			<div class="title" title="${message.description!}">
 				${message_index + 1}.
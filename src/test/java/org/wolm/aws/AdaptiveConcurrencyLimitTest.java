@@ -0,0 +1,122 @@
+package org.wolm.aws;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.wolm.aws.AdaptiveConcurrencyLimit.Outcome;
+
+@RunWith(Enclosed.class)
+public class AdaptiveConcurrencyLimitTest {
+
+	public static class Adapting {
+		private static final long FAST = 10_000_000L;
+
+		private AdaptiveConcurrencyLimit limitUnderTest;
+
+		@Before
+		public void beforeEachTest() {
+			limitUnderTest = new AdaptiveConcurrencyLimit(1, 4, 16);
+		}
+
+		@Test
+		public void fastRequestsShouldRaiseTheLimitByAboutOnePerRound() throws Exception {
+			complete(4, FAST, Outcome.completed);
+			assertThat(limitUnderTest.getLimit()).isEqualTo(4);
+
+			// 4 + 1/4 + 1/4.25 + ... passes 5 after four more
+			complete(1, FAST, Outcome.completed);
+			assertThat(limitUnderTest.getLimit()).isEqualTo(5);
+		}
+
+		@Test
+		public void limitShouldNotPassTheMaximum() throws Exception {
+			complete(1_000, FAST, Outcome.completed);
+
+			assertThat(limitUnderTest.getLimit()).isEqualTo(16);
+			assertThat(limitUnderTest.getHighestLimit()).isEqualTo(16);
+		}
+
+		@Test
+		public void throttlingShouldHalveTheLimitOncePerRound() throws Exception {
+			complete(200, FAST, Outcome.completed);
+			assertThat(limitUnderTest.getLimit()).isEqualTo(16);
+
+			// a burst of throttling within one round of the new limit only counts once
+			complete(8, FAST, Outcome.throttled);
+			assertThat(limitUnderTest.getLimit()).isEqualTo(8);
+			assertThat(limitUnderTest.getDecreaseCount()).isEqualTo(1);
+		}
+
+		@Test
+		public void slowRequestShouldCutTheLimit() throws Exception {
+			complete(4, FAST, Outcome.completed);
+
+			complete(1, 10 * FAST, Outcome.completed);
+
+			assertThat(limitUnderTest.getLimit()).isEqualTo(2);
+		}
+
+		@Test
+		public void failedRequestsShouldNotChangeTheLimit() throws Exception {
+			complete(100, FAST, Outcome.failed);
+
+			assertThat(limitUnderTest.getLimit()).isEqualTo(4);
+			assertThat(limitUnderTest.getDecreaseCount()).isEqualTo(0);
+		}
+
+		@Test
+		public void largeRequestShouldNotCountAsSlow() throws Exception {
+			complete(4, FAST, Outcome.completed);
+
+			limitUnderTest.acquire();
+			limitUnderTest.release(10 * FAST, 10 * AdaptiveConcurrencyLimit.LATENCY_BLOCK_BYTES, Outcome.completed);
+
+			assertThat(limitUnderTest.getDecreaseCount()).isEqualTo(0);
+		}
+
+		@Test
+		public void limitShouldNotDropBelowTheMinimum() throws Exception {
+			complete(100, FAST, Outcome.throttled);
+
+			assertThat(limitUnderTest.getLimit()).isEqualTo(1);
+		}
+
+		@Test
+		public void acquireShouldWaitForTheLimit() throws Exception {
+			for (int i = 0; i < 4; i++)
+				limitUnderTest.acquire();
+
+			final CountDownLatch acquired = new CountDownLatch(1);
+			Thread waiter = new Thread() {
+				@Override
+				public void run() {
+					try {
+						limitUnderTest.acquire();
+						acquired.countDown();
+					}
+					catch (InterruptedException e) {
+						// test ends
+					}
+				}
+			};
+			waiter.start();
+
+			assertThat(acquired.await(100, TimeUnit.MILLISECONDS)).isFalse();
+			limitUnderTest.release(FAST, 0, Outcome.completed);
+			assertThat(acquired.await(5, TimeUnit.SECONDS)).isTrue();
+		}
+
+		private void complete(int count, long latencyNanos, Outcome outcome) throws InterruptedException {
+			for (int i = 0; i < count; i++) {
+				limitUnderTest.acquire();
+				limitUnderTest.release(latencyNanos, 1_000, outcome);
+			}
+		}
+	}
+}
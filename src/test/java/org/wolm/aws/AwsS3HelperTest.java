@@ -0,0 +1,153 @@
+package org.wolm.aws;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.wolm.aws.AwsS3Helper.Disposition;
+
+import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+@RunWith(Enclosed.class)
+public class AwsS3HelperTest {
+
+	public static class Listing {
+		private FakeAmazonS3 s3;
+		private AwsS3Helper helperUnderTest;
+		private Bucket bucket;
+
+		@Before
+		public void beforeEachTest() {
+			s3 = new FakeAmazonS3("UNIT.TEST");
+			for (int i = 0; i < 2_500; i++)
+				s3.put(String.format("prophecy/%05d.txt", i), new byte[i % 10]);
+			for (int i = 0; i < 20; i++)
+				s3.put(String.format("template/%02d.txt", i), new byte[0]);
+
+			helperUnderTest = new AwsS3Helper(s3);
+			bucket = new Bucket("UNIT.TEST");
+		}
+
+		@Test
+		public void largeListingShouldReadEveryPage() {
+			List<S3ObjectSummary> summaries = helperUnderTest.getObjectList(bucket, "prophecy/", null);
+
+			assertThat(summaries).hasSize(2_500);
+			for (int i = 0; i < summaries.size(); i++)
+				assertThat(summaries.get(i).getKey()).isEqualTo(String.format("prophecy/%05d.txt", i));
+			assertThat(s3.getListCount()).isEqualTo(3);
+		}
+
+		@Test
+		public void wholeBucketShouldBeListed() {
+			assertThat(helperUnderTest.getObjectList(bucket, null, null)).hasSize(2_520);
+		}
+
+		@Test
+		public void regexShouldFilterAcrossPages() {
+			List<S3ObjectSummary> summaries = helperUnderTest.getObjectList(bucket, null, ".*0\\.txt");
+
+			// every tenth prophecy and two templates
+			assertThat(summaries).hasSize(252);
+			assertThat(summaries.get(251).getKey()).isEqualTo("template/10.txt");
+		}
+
+		@Test
+		public void listingShouldBeLazy() {
+			Iterator<S3ObjectSummary> objects = helperUnderTest.getObjects(bucket, "prophecy/", null).iterator();
+			List<String> firstKeys = new ArrayList<>();
+			for (int i = 0; i < 10; i++)
+				firstKeys.add(objects.next().getKey());
+
+			assertThat(firstKeys.get(9)).isEqualTo("prophecy/00009.txt");
+			// the first page and at most the prefetched second page
+			assertThat(s3.getListCount()).isLessThanOrEqualTo(2);
+		}
+
+		@Test
+		public void manyObjectsShouldBeDeletedInBatches() throws Exception {
+			List<String> keys = new ArrayList<>();
+			for (S3ObjectSummary summary : helperUnderTest.getObjects(bucket, "prophecy/", null))
+				keys.add(summary.getKey());
+
+			assertThat(helperUnderTest.deleteObjects(bucket, keys)).isEqualTo(2_500);
+			assertThat(s3.getDeleteRequestCount()).isEqualTo(3);
+			assertThat(helperUnderTest.getObjectList(bucket, null, null)).hasSize(20);
+		}
+
+		@Test
+		public void emptyListingShouldHaveNoObjects() {
+			assertThat(helperUnderTest.getObjects(bucket, "nothing/", null).iterator().hasNext()).isFalse();
+		}
+
+		@Test
+		public void summaryShouldBeFoundAmongManyObjects() {
+			S3ObjectSummary summary = helperUnderTest.getObjectSummary(bucket, "prophecy/02499.txt");
+
+			assertThat(summary).isNotNull();
+			assertThat(summary.getSize()).isEqualTo(9);
+			assertThat(helperUnderTest.getObjectSummary(bucket, "prophecy/0249")).isNull();
+		}
+	}
+
+	public static class Signing {
+		private File root;
+		private AtomicInteger signCount;
+		private AwsS3Helper helperUnderTest;
+
+		@Before
+		public void beforeEachTest() throws Exception {
+			root = Files.createTempDirectory("store").toFile();
+			new File(root, "wordoflife.mn.audio").mkdir();
+			signCount = new AtomicInteger();
+			helperUnderTest = new AwsS3Helper(new LocalObjectStore(root) {
+				@Override
+				public URL sign(String bucketName, String key, Disposition disposition, Date expiration) {
+					signCount.incrementAndGet();
+					return super.sign(bucketName, key, disposition, expiration);
+				}
+			});
+		}
+
+		@After
+		public void afterEachTest() {
+			new File(root, "wordoflife.mn.audio").delete();
+			root.delete();
+		}
+
+		@Test
+		public void sameObjectShouldBeSignedOnce() throws Exception {
+			URL first = helperUnderTest.getSignedUrl(audio("2005/a+b.mp3"), Disposition.download);
+			URL second = helperUnderTest.getSignedUrl(audio("2005/a+b.mp3"), Disposition.download);
+
+			assertThat(second).isSameAs(first);
+			assertThat(first.toString()).endsWith("/wordoflife.mn.audio/2005/a%20b.mp3");
+			assertThat(signCount.get()).isEqualTo(1);
+		}
+
+		@Test
+		public void unknownBucketShouldNotBeSigned() throws Exception {
+			URL url = new URL("https://s3-us-west-2.amazonaws.com/wordoflife.mn.video/a.mp4");
+
+			assertThat(helperUnderTest.getSignedUrl(url, Disposition.download)).isNull();
+			assertThat(signCount.get()).isEqualTo(0);
+		}
+
+		private static URL audio(String key) throws Exception {
+			return new URL("https://s3-us-west-2.amazonaws.com/wordoflife.mn.audio/" + key);
+		}
+	}
+}
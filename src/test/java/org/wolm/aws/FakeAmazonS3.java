@@ -0,0 +1,164 @@
+package org.wolm.aws;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.DeleteObjectsResult.DeletedObject;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+
+/**
+ * In-process stand-in for S3 that holds the objects of one bucket in memory. Listings are paged the way S3 pages them:
+ * at most 1,000 keys (or the request's max keys) per page, in key order, starting after the request's marker. Like S3,
+ * the ETag of an object is the MD5 of its content, and a multi-object delete takes at most 1,000 keys.
+ */
+public class FakeAmazonS3 extends AbstractAmazonS3 {
+	private static final int MAX_KEYS = 1_000;
+
+	private final String bucketName;
+	private final SortedMap<String, byte[]> objects = new TreeMap<>();
+	private final Map<String, Date> lastModified = new HashMap<>();
+
+	/** Number of listObjects() requests made */
+	private final AtomicInteger listCount = new AtomicInteger();
+
+	/** Number of deleteObjects() requests made */
+	private final AtomicInteger deleteRequestCount = new AtomicInteger();
+
+	/** Number of getObject() requests made */
+	private final AtomicInteger readCount = new AtomicInteger();
+
+	/** Longest random delay before getObject() returns, to make concurrent reads finish out of order */
+	private volatile int maxReadDelayMillis = 0;
+	private final Random random = new Random(42);
+
+	public FakeAmazonS3(String bucketName) {
+		super();
+		this.bucketName = bucketName;
+	}
+
+	public synchronized void put(String key, byte[] content) {
+		objects.put(key, content);
+		lastModified.put(key, new Date());
+	}
+
+	public int getListCount() {
+		return listCount.get();
+	}
+
+	public int getReadCount() {
+		return readCount.get();
+	}
+
+	public int getDeleteRequestCount() {
+		return deleteRequestCount.get();
+	}
+
+	public void setMaxReadDelayMillis(int maxReadDelayMillis) {
+		this.maxReadDelayMillis = maxReadDelayMillis;
+	}
+
+	@Override
+	public List<Bucket> listBuckets() {
+		return Arrays.asList(new Bucket(bucketName));
+	}
+
+	@Override
+	public S3Object getObject(GetObjectRequest request) {
+		readCount.incrementAndGet();
+		byte[] content;
+		synchronized (this) {
+			content = objects.get(request.getKey());
+		}
+		if (content == null || !bucketName.equals(request.getBucketName())) {
+			throw new AmazonS3Exception("The specified key does not exist.");
+		}
+
+		if (maxReadDelayMillis > 0) {
+			try {
+				Thread.sleep(random.nextInt(maxReadDelayMillis));
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		S3Object object = new S3Object();
+		object.setBucketName(bucketName);
+		object.setKey(request.getKey());
+		object.getObjectMetadata().setContentLength(content.length);
+		object.setObjectContent(new ByteArrayInputStream(content));
+		return object;
+	}
+
+	@Override
+	public synchronized DeleteObjectsResult deleteObjects(DeleteObjectsRequest request) {
+		deleteRequestCount.incrementAndGet();
+		if (!bucketName.equals(request.getBucketName())) throw new IllegalArgumentException("No such bucket");
+		if (request.getKeys().size() > MAX_KEYS) throw new AmazonS3Exception("Too many keys in one request");
+
+		List<DeletedObject> deleted = new ArrayList<>();
+		for (KeyVersion key : request.getKeys()) {
+			// like S3, deleting an object that does not exist succeeds
+			objects.remove(key.getKey());
+			lastModified.remove(key.getKey());
+			DeletedObject object = new DeletedObject();
+			object.setKey(key.getKey());
+			deleted.add(object);
+		}
+		return new DeleteObjectsResult(deleted);
+	}
+
+	@Override
+	public synchronized ObjectListing listObjects(ListObjectsRequest request) {
+		listCount.incrementAndGet();
+		if (!bucketName.equals(request.getBucketName())) throw new IllegalArgumentException("No such bucket");
+
+		String prefix = request.getPrefix() == null ? "" : request.getPrefix();
+		int maxKeys = request.getMaxKeys() == null ? MAX_KEYS : Math.min(request.getMaxKeys(), MAX_KEYS);
+		SortedMap<String, byte[]> candidates = objects;
+		if (request.getMarker() != null) candidates = objects.tailMap(request.getMarker() + "\0");
+
+		ObjectListing listing = new ObjectListing();
+		listing.setBucketName(bucketName);
+		listing.setPrefix(request.getPrefix());
+		listing.setMarker(request.getMarker());
+		listing.setMaxKeys(maxKeys);
+		for (Map.Entry<String, byte[]> entry : candidates.entrySet()) {
+			if (!entry.getKey().startsWith(prefix)) continue;
+			if (listing.getObjectSummaries().size() == maxKeys) {
+				listing.setTruncated(true);
+				break;
+			}
+
+			S3ObjectSummary summary = new S3ObjectSummary();
+			summary.setBucketName(bucketName);
+			summary.setKey(entry.getKey());
+			summary.setSize(entry.getValue().length);
+			summary.setETag(BinaryUtils.toHex(Md5Utils.computeMD5Hash(entry.getValue())));
+			summary.setLastModified(lastModified.get(entry.getKey()));
+			listing.getObjectSummaries().add(summary);
+		}
+		return listing;
+	}
+}
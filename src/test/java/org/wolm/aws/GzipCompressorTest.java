@@ -0,0 +1,115 @@
+package org.wolm.aws;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+@RunWith(Enclosed.class)
+public class GzipCompressorTest {
+
+	public static class Compressing {
+		private File pages;
+		private GzipCompressor compressorUnderTest;
+
+		@Before
+		public void beforeEachTest() throws Exception {
+			pages = Files.createTempDirectory("pages").toFile();
+			compressorUnderTest = new GzipCompressor();
+		}
+
+		@After
+		public void afterEachTest() {
+			for (File file : pages.listFiles())
+				file.delete();
+			pages.delete();
+		}
+
+		@Test
+		public void compressedCopyShouldDecompressToThePage() throws Exception {
+			String content = page(2000);
+			File page = write("page.html", content);
+
+			File compressed = compressorUnderTest.compress(page, "series");
+
+			assertThat(compressed).isEqualTo(new File(pages, "page.html.gz"));
+			assertThat(compressed.length()).isLessThan(page.length());
+			assertThat(gunzip(compressed)).isEqualTo(content);
+		}
+
+		@Test
+		public void pooledDeflaterShouldCompressEveryPageTheSame() throws Exception {
+			File first = write("first.html", page(500));
+			File second = write("second.html", page(500));
+
+			byte[] firstBytes = Files.readAllBytes(compressorUnderTest.compress(first, "series").toPath());
+			byte[] secondBytes = Files.readAllBytes(compressorUnderTest.compress(second, "series").toPath());
+
+			assertThat(secondBytes).isEqualTo(firstBytes);
+		}
+
+		@Test
+		public void upToDateCopyShouldBeReused() throws Exception {
+			File page = write("page.html", page(100));
+			File compressed = compressorUnderTest.compress(page, "series");
+			Files.write(compressed.toPath(), "reused".getBytes(StandardCharsets.UTF_8));
+			compressed.setLastModified(page.lastModified());
+
+			assertThat(compressorUnderTest.getCompressed(page).length()).isEqualTo(6);
+		}
+
+		@Test
+		public void rewrittenPageShouldBeCompressedAgain() throws Exception {
+			File page = write("page.html", page(100));
+			compressorUnderTest.compress(page, "series");
+			write("page.html", "Changed");
+			page.setLastModified(page.lastModified() - 10000);
+
+			assertThat(gunzip(compressorUnderTest.getCompressed(page))).isEqualTo("Changed");
+		}
+
+		@Test
+		public void ratioShouldBeKeptForEachType() throws Exception {
+			compressorUnderTest.compress(write("a.html", page(1000)), "series");
+			compressorUnderTest.compress(write("b.html", "x"), "prophecy");
+
+			assertThat(compressorUnderTest.getRatio("series")).isLessThan(0.1);
+			assertThat(compressorUnderTest.getRatio("prophecy")).isGreaterThan(1.0);
+			assertThat(compressorUnderTest.getRatio("booklets")).isEqualTo(1.0);
+		}
+
+		private File write(String name, String content) throws Exception {
+			File file = new File(pages, name);
+			Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+			return file;
+		}
+
+		private static String page(int rows) {
+			StringBuilder page = new StringBuilder("<html><body><table>");
+			for (int i = 0; i < rows; i++)
+				page.append("<tr><td class=\"message\">Message ").append(i).append("</td></tr>\n");
+			return page.append("</table></body></html>").toString();
+		}
+
+		private static String gunzip(File file) throws Exception {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try (InputStream in = new GZIPInputStream(Files.newInputStream(file.toPath()))) {
+				byte[] buffer = new byte[1024];
+				int count;
+				while ((count = in.read(buffer)) != -1)
+					out.write(buffer, 0, count);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+}
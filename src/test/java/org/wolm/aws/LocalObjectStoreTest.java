@@ -0,0 +1,167 @@
+package org.wolm.aws;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.wolm.aws.AwsS3Helper.Disposition;
+
+import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+@RunWith(Enclosed.class)
+public class LocalObjectStoreTest {
+
+	public static class Objects {
+		private File root;
+		private File source;
+		private LocalObjectStore storeUnderTest;
+
+		@Before
+		public void beforeEachTest() throws Exception {
+			root = Files.createTempDirectory("store").toFile();
+			new File(root, "UNIT.TEST").mkdir();
+			source = File.createTempFile("source", ".txt");
+			storeUnderTest = new LocalObjectStore(root);
+		}
+
+		@After
+		public void afterEachTest() {
+			delete(root);
+			source.delete();
+		}
+
+		@Test
+		public void bucketsShouldBeDirectories() {
+			new File(root, "OTHER.TEST").mkdir();
+
+			List<Bucket> buckets = storeUnderTest.listBuckets();
+
+			assertThat(buckets).hasSize(2);
+			assertThat(buckets.get(0).getName()).isEqualTo("OTHER.TEST");
+		}
+
+		@Test
+		public void putObjectShouldBeReadBack() throws Exception {
+			put("folder/page.html", "Hello, world");
+
+			assertThat(get("folder/page.html")).isEqualTo("Hello, world");
+			assertThat(new File(root, "UNIT.TEST/folder/page.html").isFile()).isTrue();
+		}
+
+		@Test
+		public void emptyObjectShouldBeReadBack() throws Exception {
+			put("empty.html", "");
+
+			assertThat(get("empty.html")).isEmpty();
+		}
+
+		@Test(expected = FileNotFoundException.class)
+		public void missingObjectShouldNotBeFound() throws Exception {
+			storeUnderTest.get("UNIT.TEST", "missing.html");
+		}
+
+		@Test
+		public void listingShouldBeInKeyOrder() throws Exception {
+			for (String key : Arrays.asList("b.txt", "a/z.txt", "a-b.txt", "a/b/c.txt", "a0.txt"))
+				put(key, key);
+
+			assertThat(keys(storeUnderTest.list("UNIT.TEST", null, null)))
+					.containsExactly("a-b.txt", "a/b/c.txt", "a/z.txt", "a0.txt", "b.txt");
+		}
+
+		@Test
+		public void listingShouldApplyPrefixAndPattern() throws Exception {
+			for (String key : Arrays.asList("p/1.txt", "p/2.doc", "p2/3.txt", "q/4.txt"))
+				put(key, key);
+
+			assertThat(keys(storeUnderTest.list("UNIT.TEST", "p/", null))).containsExactly("p/1.txt", "p/2.doc");
+			assertThat(keys(storeUnderTest.list("UNIT.TEST", "p", Pattern.compile(".*\\.txt"))))
+					.containsExactly("p/1.txt", "p2/3.txt");
+		}
+
+		@Test
+		public void summaryShouldHaveMd5AsEtag() throws Exception {
+			put("page.html", "Hello, world");
+
+			S3ObjectSummary summary = storeUnderTest.getSummary("UNIT.TEST", "page.html");
+
+			assertThat(summary.getSize()).isEqualTo(12);
+			assertThat(summary.getETag()).isEqualTo("bc6e6f16b8a077ef5fbc8d59d0b931b9");
+			assertThat(storeUnderTest.getSummary("UNIT.TEST", "missing.html")).isNull();
+		}
+
+		@Test
+		public void deleteShouldCountDeletedObjects() throws Exception {
+			put("a.html", "a");
+			put("b.html", "b");
+
+			assertThat(storeUnderTest.delete("UNIT.TEST", Arrays.asList("a.html", "missing.html"))).isEqualTo(1);
+			assertThat(keys(storeUnderTest.list("UNIT.TEST", null, null))).containsExactly("b.html");
+		}
+
+		@Test
+		public void signedUrlShouldBeFileUrl() throws Exception {
+			put("a b.mp3", "audio");
+
+			String url = storeUnderTest.sign("UNIT.TEST", "a b.mp3", Disposition.download, new Date()).toString();
+
+			assertThat(url).startsWith("file:").endsWith("/UNIT.TEST/a%20b.mp3");
+		}
+
+		@Test
+		public void publisherShouldWorkAgainstLocalStore() throws Exception {
+			Files.write(source.toPath(), "Page".getBytes(StandardCharsets.UTF_8));
+			S3Publisher publisher = new S3Publisher(new AwsS3Helper(storeUnderTest), new Bucket("UNIT.TEST"), null);
+
+			assertThat(publisher.publish(Arrays.asList(source)).getUploaded()).hasSize(1);
+			assertThat(publisher.publish(Arrays.asList(source)).getUnchanged()).hasSize(1);
+		}
+
+		private void put(String key, String content) throws IOException {
+			Files.write(source.toPath(), content.getBytes(StandardCharsets.UTF_8));
+			storeUnderTest.put("UNIT.TEST", key, source, null);
+		}
+
+		private String get(String key) throws IOException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try (InputStream in = storeUnderTest.get("UNIT.TEST", key)) {
+				byte[] buffer = new byte[5];
+				int count;
+				while ((count = in.read(buffer)) != -1)
+					out.write(buffer, 0, count);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+
+		private static List<String> keys(Iterable<S3ObjectSummary> summaries) {
+			List<String> keys = new ArrayList<>();
+			for (S3ObjectSummary summary : summaries)
+				keys.add(summary.getKey());
+			return keys;
+		}
+
+		private static void delete(File file) {
+			File[] children = file.listFiles();
+			if (children != null) for (File child : children)
+				delete(child);
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package org.wolm.aws;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+@RunWith(Enclosed.class)
+public class ParallelUploaderTest {
+
+	public static class Uploading {
+		private File root;
+		private File pageDir;
+		private List<File> pages;
+		private List<String> keys;
+
+		/** Keys S3 throttles the next time they are uploaded */
+		private final Set<String> throttled = Collections.synchronizedSet(new HashSet<String>());
+		/** Keys S3 refuses to store */
+		private final Set<String> forbidden = Collections.synchronizedSet(new HashSet<String>());
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private final AtomicInteger mostInFlight = new AtomicInteger();
+		/** Headers each object was uploaded with, by key */
+		private final Map<String, ObjectMetadata> headers = new ConcurrentHashMap<>();
+		private ParallelUploader uploaderUnderTest;
+
+		@Before
+		public void beforeEachTest() throws Exception {
+			root = Files.createTempDirectory("store").toFile();
+			new File(root, "UNIT.TEST").mkdir();
+			pageDir = Files.createTempDirectory("pages").toFile();
+			pages = new ArrayList<>();
+			keys = new ArrayList<>();
+			for (int i = 0; i < 40; i++) {
+				File page = new File(pageDir, "page" + i + ".html");
+				Files.write(page.toPath(), ("Page " + i).getBytes(StandardCharsets.UTF_8));
+				pages.add(page);
+				keys.add("site/" + page.getName());
+			}
+
+			ObjectStore store = new LocalObjectStore(root) {
+				@Override
+				public void put(String bucketName, String key, File file, ObjectMetadata metadata)
+						throws IOException {
+					int count = inFlight.incrementAndGet();
+					try {
+						synchronized (mostInFlight) {
+							mostInFlight.set(Math.max(mostInFlight.get(), count));
+						}
+						if (throttled.remove(key)) {
+							AmazonServiceException e = new AmazonServiceException("Slow Down");
+							e.setStatusCode(503);
+							e.setErrorCode("SlowDown");
+							throw e;
+						}
+						if (forbidden.contains(key)) {
+							AmazonServiceException e = new AmazonServiceException("Access Denied");
+							e.setStatusCode(403);
+							e.setErrorCode("AccessDenied");
+							throw e;
+						}
+						if (metadata != null) headers.put(key, metadata);
+						super.put(bucketName, key, file, metadata);
+					}
+					finally {
+						inFlight.decrementAndGet();
+					}
+				}
+			};
+			uploaderUnderTest = new ParallelUploader(new AwsS3Helper(store), new Bucket("UNIT.TEST"), 8);
+		}
+
+		@After
+		public void afterEachTest() {
+			delete(root);
+			delete(pageDir);
+		}
+
+		@Test
+		public void everyFileShouldBeUploadedInOrder() {
+			assertThat(uploaderUnderTest.upload(pages, keys)).isEqualTo(pages);
+			assertThat(new File(root, "UNIT.TEST/site/page39.html").isFile()).isTrue();
+			assertThat(mostInFlight.get()).isLessThanOrEqualTo(8);
+		}
+
+		@Test
+		public void throttledUploadShouldFailAndCutTheLimit() {
+			throttled.add("site/page7.html");
+
+			// the S3 client has already tried a throttled upload again, so it is not tried once more
+			assertThat(uploaderUnderTest.upload(pages, keys)).hasSize(39);
+			assertThat(new File(root, "UNIT.TEST/site/page7.html").exists()).isFalse();
+			assertThat(uploaderUnderTest.getLimit().getDecreaseCount()).isGreaterThanOrEqualTo(1);
+		}
+
+		@Test
+		public void failedUploadsShouldNotRaiseTheLimit() {
+			forbidden.addAll(keys);
+
+			assertThat(uploaderUnderTest.upload(pages, keys)).isEmpty();
+			assertThat(uploaderUnderTest.getLimit().getLimit()).isEqualTo(4);
+			assertThat(uploaderUnderTest.getLimit().getDecreaseCount()).isEqualTo(0);
+		}
+
+		@Test
+		public void compressedCopiesShouldBeUploadedWithHeaders() throws Exception {
+			uploaderUnderTest.setCompressor(new GzipCompressor());
+
+			assertThat(uploaderUnderTest.upload(pages.get(0), keys.get(0)))
+					.isEqualTo(GzipCompressor.getCompressedFile(pages.get(0)).length());
+
+			byte[] uploaded = Files.readAllBytes(new File(root, "UNIT.TEST/site/page0.html").toPath());
+			assertThat(uploaded[0]).isEqualTo((byte) 0x1f);
+			assertThat(uploaded[1]).isEqualTo((byte) 0x8b);
+			ObjectMetadata metadata = headers.get("site/page0.html");
+			assertThat(metadata.getContentEncoding()).isEqualTo("gzip");
+			assertThat(metadata.getContentType()).isEqualTo("text/html; charset=UTF-8");
+			assertThat(metadata.getCacheControl()).isEqualTo(GzipCompressor.DEFAULT_CACHE_CONTROL);
+		}
+
+		@Test
+		public void nothingShouldBeUploadedForNoFiles() {
+			assertThat(uploaderUnderTest.upload(new ArrayList<File>(), new ArrayList<String>())).isEmpty();
+		}
+
+		private static void delete(File file) {
+			File[] children = file.listFiles();
+			if (children != null) for (File child : children)
+				delete(child);
+			file.delete();
+		}
+	}
+}
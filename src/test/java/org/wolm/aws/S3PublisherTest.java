@@ -0,0 +1,189 @@
+package org.wolm.aws;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+@RunWith(Enclosed.class)
+public class S3PublisherTest {
+
+	public static class Publishing {
+		private File root;
+		private File bucketDir;
+		private File pageDir;
+		private AwsS3Helper s3Helper;
+		private S3Publisher publisherUnderTest;
+		private List<File> pages;
+
+		/** Number of objects put in the store */
+		private final AtomicInteger putCount = new AtomicInteger();
+
+		@Before
+		public void beforeEachTest() throws Exception {
+			root = Files.createTempDirectory("store").toFile();
+			bucketDir = new File(root, "UNIT.TEST");
+			bucketDir.mkdir();
+			pageDir = Files.createTempDirectory("pages").toFile();
+			s3Helper = new AwsS3Helper(new LocalObjectStore(root) {
+				@Override
+				public void put(String bucketName, String key, File file, ObjectMetadata metadata)
+						throws IOException {
+					putCount.incrementAndGet();
+					super.put(bucketName, key, file, metadata);
+				}
+			});
+			publisherUnderTest = new S3Publisher(s3Helper, new Bucket("UNIT.TEST"), null);
+
+			pages = new ArrayList<>();
+			for (int i = 0; i < 10; i++)
+				pages.add(write(pageDir, "page" + i + ".html", "Page " + i));
+		}
+
+		@After
+		public void afterEachTest() {
+			delete(root);
+			delete(pageDir);
+		}
+
+		@Test
+		public void firstPublishShouldUploadEverything() throws Exception {
+			S3Publisher.Result result = publisherUnderTest.publish(pages);
+
+			assertThat(result.getUploaded()).hasSize(10);
+			assertThat(result.getUnchanged()).isEmpty();
+			assertThat(result.getBytesUploaded()).isEqualTo(60);
+			assertThat(result.getBytesSaved()).isEqualTo(0);
+			assertThat(read(object("page3.html"))).isEqualTo("Page 3");
+		}
+
+		@Test
+		public void unchangedPagesShouldNotBeUploaded() throws Exception {
+			publisherUnderTest.publish(pages);
+
+			S3Publisher.Result result = publisherUnderTest.publish(pages);
+
+			assertThat(result.getUploaded()).isEmpty();
+			assertThat(result.getUnchanged()).hasSize(10);
+			assertThat(result.getBytesSaved()).isEqualTo(60);
+			assertThat(putCount.get()).isEqualTo(10);
+		}
+
+		@Test
+		public void compressedCopiesShouldBeComparedAndUploaded() throws Exception {
+			publisherUnderTest.setCompressor(new GzipCompressor());
+
+			assertThat(publisherUnderTest.publish(pages).getUploaded()).hasSize(10);
+			S3Publisher.Result result = publisherUnderTest.publish(pages);
+
+			assertThat(result.getUnchanged()).hasSize(10);
+			assertThat(putCount.get()).isEqualTo(10);
+			assertThat(object("page3.html").length())
+					.isEqualTo(GzipCompressor.getCompressedFile(pages.get(3)).length());
+		}
+
+		@Test
+		public void changedPageShouldBeUploaded() throws Exception {
+			publisherUnderTest.publish(pages);
+			write(pageDir, "page4.html", "Page 4 changed");
+
+			S3Publisher.Result result = publisherUnderTest.publish(pages);
+
+			assertThat(result.getUploaded()).containsOnly(pages.get(4));
+			assertThat(result.getBytesSaved()).isEqualTo(54);
+			assertThat(read(object("page4.html"))).isEqualTo("Page 4 changed");
+		}
+
+		@Test
+		public void retiredPagesShouldBeDeleted() throws Exception {
+			write(bucketDir, "old.html", "Old");
+			write(bucketDir, "hand-made.html", "Hand made");
+			write(bucketDir, "remix.jpeg", "image");
+			List<File> retired = Arrays.asList(new File(pageDir, "old.html"), new File(pageDir, "gone.html"));
+
+			S3Publisher.Result result = publisherUnderTest.publish(pages, retired);
+
+			assertThat(result.getDeletedCount()).isEqualTo(1);
+			assertThat(result.getRetired()).isEqualTo(retired);
+			assertThat(object("old.html").exists()).isFalse();
+			// pages this publisher did not put there are never deleted
+			assertThat(object("hand-made.html").exists()).isTrue();
+			assertThat(object("remix.jpeg").exists()).isTrue();
+		}
+
+		@Test
+		public void retiredPageThatIsPublishedAgainShouldBeKept() throws Exception {
+			publisherUnderTest.publish(pages);
+
+			S3Publisher.Result result = publisherUnderTest.publish(pages, Arrays.asList(pages.get(2)));
+
+			assertThat(result.getDeletedCount()).isEqualTo(0);
+			assertThat(result.getRetired()).isEmpty();
+			assertThat(object("page2.html").exists()).isTrue();
+		}
+
+		@Test
+		public void manyRetiredPagesShouldBeDeleted() throws Exception {
+			List<File> retired = new ArrayList<>();
+			for (int i = 0; i < 1_500; i++) {
+				write(bucketDir, "old" + i + ".html", "Old");
+				retired.add(new File(pageDir, "old" + i + ".html"));
+			}
+
+			S3Publisher.Result result = publisherUnderTest.publish(pages, retired);
+
+			assertThat(result.getDeletedCount()).isEqualTo(1_500);
+			assertThat(bucketDir.list()).hasSize(10);
+		}
+
+		@Test
+		public void prefixShouldLimitThePublish() throws Exception {
+			write(bucketDir, "test/old.html", "Old");
+			write(bucketDir, "old.html", "Other");
+			publisherUnderTest = new S3Publisher(s3Helper, new Bucket("UNIT.TEST"), "test");
+
+			publisherUnderTest.publish(pages, Arrays.asList(new File(pageDir, "old.html")));
+
+			assertThat(read(object("test/page0.html"))).isEqualTo("Page 0");
+			assertThat(object("test/old.html").exists()).isFalse();
+			assertThat(object("old.html").exists()).isTrue();
+		}
+
+		private File object(String key) {
+			return new File(bucketDir, key);
+		}
+
+		private static File write(File dir, String name, String content) throws IOException {
+			File file = new File(dir, name);
+			file.getParentFile().mkdirs();
+			Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+			return file;
+		}
+
+		private static String read(File file) throws IOException {
+			return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		}
+
+		private static void delete(File file) {
+			File[] children = file.listFiles();
+			if (children != null) for (File child : children)
+				delete(child);
+			file.delete();
+		}
+	}
+}
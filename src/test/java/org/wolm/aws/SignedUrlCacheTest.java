@@ -0,0 +1,53 @@
+package org.wolm.aws;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.net.URL;
+import java.util.Date;
+
+import org.apache.commons.lang3.time.DateUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.wolm.aws.AwsS3Helper.Disposition;
+
+@RunWith(Enclosed.class)
+public class SignedUrlCacheTest {
+
+	public static class Lookup {
+		private static final long NOW = 1_500_000_000_000L;
+
+		private SignedUrlCache cacheUnderTest;
+		private URL url;
+
+		@Before
+		public void beforeEachTest() throws Exception {
+			cacheUnderTest = new SignedUrlCache();
+			url = new URL("https://example.com/signed");
+			cacheUnderTest.put("bucket", "key", Disposition.download, url,
+					new Date(NOW + 7 * DateUtils.MILLIS_PER_DAY));
+		}
+
+		@Test
+		public void signedUrlShouldBeReused() {
+			assertThat(cacheUnderTest.get("bucket", "key", Disposition.download, NOW)).isSameAs(url);
+			assertThat(cacheUnderTest.getHitCount()).isEqualTo(1);
+		}
+
+		@Test
+		public void dispositionShouldBePartOfTheKey() {
+			assertThat(cacheUnderTest.get("bucket", "key", Disposition.browser, NOW)).isNull();
+			assertThat(cacheUnderTest.get("other", "key", Disposition.download, NOW)).isNull();
+			assertThat(cacheUnderTest.getMissCount()).isEqualTo(2);
+		}
+
+		@Test
+		public void urlShouldBeReusedUntilItIsCloseToExpiring() {
+			long sixDaysLater = NOW + 6 * DateUtils.MILLIS_PER_DAY;
+
+			assertThat(cacheUnderTest.get("bucket", "key", Disposition.download, sixDaysLater)).isSameAs(url);
+			assertThat(cacheUnderTest.get("bucket", "key", Disposition.download, sixDaysLater + 1)).isNull();
+		}
+	}
+}
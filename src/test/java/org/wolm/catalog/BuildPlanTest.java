@@ -0,0 +1,99 @@
+package org.wolm.catalog;
+
+import static org.fest.assertions.Assertions.*;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+@RunWith(Enclosed.class)
+public class BuildPlanTest {
+
+	public static class Running {
+		private final BuildPlan planUnderTest = new BuildPlan(4);
+
+		@Test
+		public void tasksShouldSeeTheResultsOfTheirInputs() throws Exception {
+			BuildPlan.Task<String> first = planUnderTest.add("first", value("A", 20));
+			BuildPlan.Task<String> second = planUnderTest.add("second", value("B", 0));
+			BuildPlan.Task<String> joined = planUnderTest.add("joined", concatenate(first, second), first, second);
+
+			planUnderTest.run();
+
+			assertThat(joined.get()).isEqualTo("AB");
+		}
+
+		@Test
+		public void tasksShouldStartAfterTheirInputsFinish() throws Exception {
+			BuildPlan.Task<String> input = planUnderTest.add("input", value("A", 50));
+			BuildPlan.Task<String> output = planUnderTest.add("output", value("B", 0), input);
+
+			planUnderTest.run();
+
+			assertThat(output.getStartMillis()).isGreaterThanOrEqualTo(input.getEndMillis());
+			assertThat(planUnderTest.getCriticalPath()).containsExactly(input, output);
+		}
+
+		@Test
+		public void failedTaskShouldSkipItsDependents() throws Exception {
+			BuildPlan.Task<String> failed = planUnderTest.add("failed", new Callable<String>() {
+				public String call() throws Exception {
+					throw new IllegalStateException("broken");
+				}
+			});
+			BuildPlan.Task<String> dependent = planUnderTest.add("dependent", value("A", 0), failed);
+			BuildPlan.Task<String> unrelated = planUnderTest.add("unrelated", value("B", 0));
+
+			try {
+				planUnderTest.run();
+				fail("Expected the failure to be rethrown");
+			}
+			catch (IllegalStateException e) {
+				assertThat(e.getMessage()).isEqualTo("broken");
+			}
+
+			assertThat(dependent.hasRun()).isFalse();
+			assertThat(unrelated.get()).isEqualTo("B");
+		}
+
+		@Test
+		public void criticalPathShouldFollowTheSlowestInput() throws Exception {
+			BuildPlan.Task<String> slow = planUnderTest.add("slow", value("A", 100));
+			BuildPlan.Task<String> fast = planUnderTest.add("fast", value("B", 0));
+			BuildPlan.Task<String> joined = planUnderTest.add("joined", concatenate(slow, fast), fast, slow);
+			planUnderTest.add("side", value("C", 0), fast);
+
+			planUnderTest.run();
+
+			List<BuildPlan.Task<?>> path = planUnderTest.getCriticalPath();
+			assertThat(path).containsExactly(slow, joined);
+		}
+
+		@Test(expected = IllegalArgumentException.class)
+		public void inputsShouldBeInThePlan() {
+			BuildPlan.Task<String> foreign = new BuildPlan().add("foreign", value("A", 0));
+			planUnderTest.add("task", value("B", 0), foreign);
+		}
+
+		private Callable<String> value(final String value, final long sleepMillis) {
+			return new Callable<String>() {
+				public String call() throws Exception {
+					Thread.sleep(sleepMillis);
+					return value;
+				}
+			};
+		}
+
+		private Callable<String> concatenate(final BuildPlan.Task<String> first, final BuildPlan.Task<String> second) {
+			return new Callable<String>() {
+				public String call() throws Exception {
+					return first.get() + second.get();
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package org.wolm.catalog;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+@RunWith(Enclosed.class)
+public class PageManifestTest {
+
+	public static class Recording {
+		private File dir;
+		private File page;
+		private PageManifest manifestUnderTest;
+
+		@Before
+		public void beforeEachTest() throws Exception {
+			dir = Files.createTempDirectory("manifest").toFile();
+			page = new File(dir, "page.html");
+			Files.write(page.toPath(), "12345".getBytes(StandardCharsets.UTF_8));
+			manifestUnderTest = new PageManifest(dir);
+		}
+
+		@After
+		public void afterEachTest() {
+			for (File file : dir.listFiles())
+				file.delete();
+			dir.delete();
+		}
+
+		@Test
+		public void newPageShouldBeChanged() {
+			assertThat(manifestUnderTest.recordRender(page, 5, "HASH")).isFalse();
+			assertThat(manifestUnderTest.needsUpload(page)).isTrue();
+		}
+
+		@Test
+		public void samePageShouldBeUnchangedInNextRun() throws Exception {
+			render(manifestUnderTest, page, 5, "HASH");
+			manifestUnderTest.save();
+
+			PageManifest nextRun = PageManifest.load(dir);
+			assertThat(nextRun.recordRender(page, 5, "HASH")).isTrue();
+			assertThat(nextRun.recordRender(page, 5, "OTHER")).isFalse();
+			assertThat(nextRun.getUnchangedCount()).isEqualTo(1);
+		}
+
+		@Test
+		public void pageShouldNotBeRecordedUntilItIsWritten() throws Exception {
+			assertThat(manifestUnderTest.recordRender(page, 5, "HASH")).isFalse();
+
+			assertThat(manifestUnderTest.getHash(page)).isNull();
+			assertThat(manifestUnderTest.recordRender(page, 5, "HASH")).isFalse();
+		}
+
+		@Test
+		public void missingFileShouldBeRewritten() throws Exception {
+			render(manifestUnderTest, page, 5, "HASH");
+			page.delete();
+
+			assertThat(manifestUnderTest.recordRender(page, 5, "HASH")).isFalse();
+		}
+
+		@Test
+		public void uploadedPageShouldOnlyBeUploadedAgainWhenChanged() throws Exception {
+			manifestUnderTest.setDestination("s3://catalog/");
+			render(manifestUnderTest, page, 5, "HASH");
+			manifestUnderTest.recordUpload(page);
+			manifestUnderTest.save();
+
+			PageManifest nextRun = PageManifest.load(dir);
+			nextRun.setDestination("s3://catalog/");
+			nextRun.recordRender(page, 5, "HASH");
+			assertThat(nextRun.needsUpload(page)).isFalse();
+
+			render(nextRun, page, 6, "CHANGED");
+			assertThat(nextRun.needsUpload(page)).isTrue();
+		}
+
+		@Test
+		public void uploadedPageShouldBeUploadedAgainToAnotherDestination() throws Exception {
+			manifestUnderTest.setDestination("s3://catalog/");
+			render(manifestUnderTest, page, 5, "HASH");
+			manifestUnderTest.recordUpload(page);
+			manifestUnderTest.save();
+
+			PageManifest nextRun = PageManifest.load(dir);
+			assertThat(nextRun.getDestination()).isEqualTo("s3://catalog/");
+			nextRun.setDestination("s3://catalog/staging/");
+			nextRun.recordRender(page, 5, "HASH");
+			assertThat(nextRun.needsUpload(page)).isTrue();
+		}
+
+		@Test
+		public void pagesNotRenderedShouldBePruned() throws Exception {
+			File stale = new File(dir, "stale.html");
+			Files.write(stale.toPath(), "old".getBytes(StandardCharsets.UTF_8));
+			render(manifestUnderTest, page, 5, "HASH");
+			render(manifestUnderTest, stale, 3, "OLD");
+			manifestUnderTest.save();
+
+			PageManifest nextRun = PageManifest.load(dir);
+			nextRun.recordRender(page, 5, "HASH");
+
+			assertThat(nextRun.pruneStalePages()).containsExactly(stale);
+			assertThat(stale.exists()).isFalse();
+			assertThat(page.exists()).isTrue();
+			assertThat(nextRun.getRetiredPages()).isEmpty();
+		}
+
+		@Test
+		public void uploadedPagesNotRenderedShouldBeRetiredUntilDeleted() throws Exception {
+			File stale = new File(dir, "stale.html");
+			Files.write(stale.toPath(), "old".getBytes(StandardCharsets.UTF_8));
+			manifestUnderTest.setDestination("s3://catalog/");
+			render(manifestUnderTest, page, 5, "HASH");
+			render(manifestUnderTest, stale, 3, "OLD");
+			manifestUnderTest.recordUpload(stale);
+			manifestUnderTest.save();
+
+			PageManifest nextRun = PageManifest.load(dir);
+			nextRun.setDestination("s3://catalog/");
+			nextRun.recordRender(page, 5, "HASH");
+			nextRun.pruneStalePages();
+			nextRun.save();
+
+			PageManifest lastRun = PageManifest.load(dir);
+			lastRun.setDestination("s3://catalog/");
+			assertThat(lastRun.getRetiredPages()).containsExactly(stale);
+			lastRun.recordDeletion(stale);
+			assertThat(lastRun.getRetiredPages()).isEmpty();
+		}
+
+		@Test
+		public void retiredPagesShouldBeForgottenAtAnotherDestination() throws Exception {
+			File stale = new File(dir, "stale.html");
+			Files.write(stale.toPath(), "old".getBytes(StandardCharsets.UTF_8));
+			manifestUnderTest.setDestination("s3://catalog/");
+			render(manifestUnderTest, stale, 3, "OLD");
+			manifestUnderTest.recordUpload(stale);
+			manifestUnderTest.pruneStalePages();
+
+			manifestUnderTest.setDestination("s3://catalog/staging/");
+
+			assertThat(manifestUnderTest.getRetiredPages()).isEmpty();
+		}
+	}
+
+	/** Records a page the way {@link PageRender} does, writing it if it changed */
+	private static void render(PageManifest manifest, File page, long size, String hash) {
+		if (!manifest.recordRender(page, size, hash)) manifest.recordWrite(page, size, hash);
+	}
+
+	public static class Digesting {
+
+		@Test
+		public void pausedBytesShouldBeWrittenButNotHashed() throws Exception {
+			DigestingChannel first = new DigestingChannel(Channels.newChannel(new ByteArrayOutputStream()));
+			first.write(bytes("before "));
+			first.setPaused(true);
+			first.write(bytes("Monday"));
+			first.setPaused(false);
+			first.write(bytes(" after"));
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			DigestingChannel second = new DigestingChannel(Channels.newChannel(out));
+			second.write(bytes("before "));
+			second.setPaused(true);
+			second.write(bytes("Tuesday"));
+			second.setPaused(false);
+			second.write(bytes(" after"));
+
+			assertThat(second.getHash()).isEqualTo(first.getHash());
+			assertThat(second.getSize()).isEqualTo(20);
+			assertThat(out.toString("UTF-8")).isEqualTo("before Tuesday after");
+		}
+
+		@Test
+		public void differentBytesShouldHashDifferently() throws Exception {
+			DigestingChannel first = new DigestingChannel(Channels.newChannel(new ByteArrayOutputStream()));
+			first.write(bytes("one"));
+			DigestingChannel second = new DigestingChannel(Channels.newChannel(new ByteArrayOutputStream()));
+			second.write(bytes("two"));
+
+			assertThat(first.getHash()).hasSize(64).isNotEqualTo(second.getHash());
+		}
+
+		private ByteBuffer bytes(String text) {
+			return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package org.wolm.catalog;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.wolm.aws.AwsS3Helper;
+import org.wolm.aws.LocalObjectStore;
+import org.wolm.aws.ParallelUploader;
+
+import com.amazonaws.services.s3.model.Bucket;
+
+@RunWith(Enclosed.class)
+public class PageUploadQueueTest {
+
+	public static class Uploading {
+		private File root;
+		private File pages;
+		private PageManifest manifest;
+		private ParallelUploader uploader;
+
+		@Before
+		public void beforeEachTest() throws Exception {
+			root = Files.createTempDirectory("store").toFile();
+			new File(root, "UNIT.TEST").mkdir();
+			pages = Files.createTempDirectory("pages").toFile();
+			manifest = new PageManifest(pages);
+			uploader = new ParallelUploader(new AwsS3Helper(new LocalObjectStore(root)), new Bucket("UNIT.TEST"), 4);
+		}
+
+		@After
+		public void afterEachTest() {
+			delete(root);
+			delete(pages);
+		}
+
+		@Test
+		public void everyPageShouldBeUploadedEvenWhenTheQueueIsFull() throws Exception {
+			PageUploadQueue queueUnderTest = new PageUploadQueue(uploader, "catalog", manifest, 1);
+			List<File> rendered = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				File page = render("page-" + i + ".html", "Page " + i);
+				rendered.add(page);
+				queueUnderTest.submit(page);
+			}
+
+			assertThat(queueUnderTest.finish()).isEmpty();
+			assertThat(queueUnderTest.getUploaded()).hasSize(20);
+			for (File page : rendered) {
+				assertThat(new File(root, "UNIT.TEST/catalog/" + page.getName()).isFile()).isTrue();
+				assertThat(manifest.needsUpload(page)).isFalse();
+			}
+		}
+
+		@Test
+		public void pagesAlreadyUploadedShouldBeSkipped() throws Exception {
+			File page = render("page.html", "Page");
+			manifest.recordUpload(page);
+			PageUploadQueue queueUnderTest = new PageUploadQueue(uploader, null, manifest, 4);
+
+			queueUnderTest.submit(page);
+
+			assertThat(queueUnderTest.finish()).isEmpty();
+			assertThat(queueUnderTest.getUploaded()).isEmpty();
+			assertThat(new File(root, "UNIT.TEST/page.html").exists()).isFalse();
+		}
+
+		@Test
+		public void failedUploadsShouldBeReportedWhenFinished() throws Exception {
+			PageUploadQueue queueUnderTest = new PageUploadQueue(uploader, null, null, 4);
+			File good = render("good.html", "Good");
+			File missing = new File(pages, "missing.html");
+
+			queueUnderTest.submit(good);
+			queueUnderTest.submit(missing);
+
+			assertThat(queueUnderTest.finish()).containsExactly(missing);
+			assertThat(queueUnderTest.getUploaded()).containsExactly(good);
+		}
+
+		@Test(expected = IllegalStateException.class)
+		public void pagesShouldNotBeSubmittedAfterFinishing() throws Exception {
+			PageUploadQueue queueUnderTest = new PageUploadQueue(uploader, null, null, 4);
+			queueUnderTest.finish();
+
+			queueUnderTest.submit(render("late.html", "Late"));
+		}
+
+		private File render(String name, String content) throws Exception {
+			File page = new File(pages, name);
+			byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+			Files.write(page.toPath(), bytes);
+			if (!manifest.recordRender(page, bytes.length, "HASH-" + content))
+				manifest.recordWrite(page, bytes.length, "HASH-" + content);
+			return page;
+		}
+
+		private static void delete(File file) {
+			File[] children = file.listFiles();
+			if (children != null) for (File child : children)
+				delete(child);
+			file.delete();
+		}
+	}
+}
@@ -6,7 +6,6 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
-import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.runners.Enclosed;
@@ -23,24 +22,20 @@ public class MediaCatalogTest {
 
 	public static class TestMessage {
 		MediaCatalog sut;
+		RenderEnvironment env = new RenderEnvironment();
 
 		@Before
 		public void beforeEachTest() {
 			sut = new MediaCatalog();
 		}
 
-		@After
-		public void afterEachTest() {
-			RenderEnvironment.instance().clearFilters();
-		}
-
 		@Test
 		public void messageInSeriesIsNotStandAlone() {
 			Message msg = createMessage();
 			msg.setSeries(Arrays.asList(new String[] { "SERIES" }));
 			sut.add(msg);
 
-			assertThat(sut.getStandAloneMessagesInSeriesByMessage()).isEmpty();
+			assertThat(sut.getStandAloneMessagesInSeriesByMessage(env)).isEmpty();
 		}
 
 		@Test
@@ -48,7 +43,7 @@ public class MediaCatalogTest {
 			Message msg = createMessage();
 			sut.add(msg);
 
-			assertThat(sut.getStandAloneMessagesInSeriesByMessage()).hasSize(1);
+			assertThat(sut.getStandAloneMessagesInSeriesByMessage(env)).hasSize(1);
 		}
 
 		@Test
@@ -57,13 +52,13 @@ public class MediaCatalogTest {
 			sut.add(msg);
 
 			msg.setSeries(Arrays.asList(new String[] { "SAM" }));
-			assertThat(sut.getStandAloneMessagesInSeriesByMessage()).hasSize(1);
+			assertThat(sut.getStandAloneMessagesInSeriesByMessage(env)).hasSize(1);
 
 			msg.setSeries(Arrays.asList(new String[] { "stand alone" }));
-			assertThat(sut.getStandAloneMessagesInSeriesByMessage()).hasSize(1);
+			assertThat(sut.getStandAloneMessagesInSeriesByMessage(env)).hasSize(1);
 
 			msg.setSeries(Arrays.asList(new String[] { "stand alone MESSAGE" }));
-			assertThat(sut.getStandAloneMessagesInSeriesByMessage()).hasSize(1);
+			assertThat(sut.getStandAloneMessagesInSeriesByMessage(env)).hasSize(1);
 		}
 
 		@Test
@@ -72,7 +67,7 @@ public class MediaCatalogTest {
 			sut.add(msg);
 
 			msg.setSeries(Arrays.asList(new String[] { "sam", "SERIES" }));
-			assertThat(sut.getStandAloneMessagesInSeriesByMessage()).hasSize(1);
+			assertThat(sut.getStandAloneMessagesInSeriesByMessage(env)).hasSize(1);
 		}
 
 		private Message createMessage() {
@@ -86,25 +81,21 @@ public class MediaCatalogTest {
 
 	public static class TestSeries {
 		MediaCatalog sut;
+		RenderEnvironment env = new RenderEnvironment();
 
 		@Before
 		public void beforeEachTest() {
 			sut = new MediaCatalog();
 		}
 
-		@After
-		public void afterEachTest() {
-			RenderEnvironment.instance().clearFilters();
-		}
-
 		@Test
 		public void publicSeriesShouldBeIncludedForPublicList() {
 			Series series = createSeries();
 			sut.add(series);
 
-			RenderEnvironment.instance().addFilter(new VisibilityFilter(AccessLevel.PUBLIC));
+			env = new RenderEnvironment(new VisibilityFilter(AccessLevel.PUBLIC));
 
-			assertThat(sut.getFilteredSeries()).containsOnly(series);
+			assertThat(sut.getFilteredSeries(env)).containsOnly(series);
 		}
 
 		@Test
@@ -112,13 +103,13 @@ public class MediaCatalogTest {
 			Series series = createSeries();
 			sut.add(series);
 
-			RenderEnvironment.instance().addFilter(new VisibilityFilter(AccessLevel.PUBLIC));
+			env = new RenderEnvironment(new VisibilityFilter(AccessLevel.PUBLIC));
 
 			series.setVisibility(AccessLevel.PRIVATE);
-			assertThat(sut.getFilteredSeries()).isEmpty();
+			assertThat(sut.getFilteredSeries(env)).isEmpty();
 
 			series.setVisibility(AccessLevel.PROTECTED);
-			assertThat(sut.getFilteredSeries()).isEmpty();
+			assertThat(sut.getFilteredSeries(env)).isEmpty();
 		}
 
 		@Test
@@ -126,8 +117,8 @@ public class MediaCatalogTest {
 			Series series = createSeries();
 			sut.add(series);
 
-			assertThat(sut.getFilteredSeries()).hasSize(1);
-			assertThat(sut.getFilteredSeries().get(0).getTitle()).isEqualTo("SERIES");
+			assertThat(sut.getFilteredSeries(env)).hasSize(1);
+			assertThat(sut.getFilteredSeries(env).get(0).getTitle()).isEqualTo("SERIES");
 		}
 
 		private Series createSeries() {
@@ -141,16 +132,11 @@ public class MediaCatalogTest {
 
 	public static class TestResources {
 		private MediaCatalog sut;
+		private RenderEnvironment env = new RenderEnvironment(new VisibilityFilter(AccessLevel.PUBLIC));
 
 		@Before
 		public void beforeEachTest() {
 			sut = new MediaCatalog();
-			RenderEnvironment.instance().addFilter(new VisibilityFilter(AccessLevel.PUBLIC));
-		}
-
-		@After
-		public void afterEachTest() {
-			RenderEnvironment.instance().clearFilters();
 		}
 
 		@Test
@@ -158,7 +144,7 @@ public class MediaCatalogTest {
 			Series series = createBookletSeries();
 			sut.add(series);
 
-			List<NamedLink> resources = sut.getBooklets();
+			List<NamedLink> resources = sut.getBooklets(env);
 
 			assertThat(resources).containsOnly(series.getBooklets().get(0));
 		}
@@ -168,7 +154,7 @@ public class MediaCatalogTest {
 			Series booklet = createBookletSeries();
 			sut.add(booklet);
 
-			List<NamedLink> resources = sut.getHandoutsAndResources();
+			List<NamedLink> resources = sut.getHandoutsAndResources(env);
 
 			assertThat(resources).isEmpty();
 		}
@@ -178,7 +164,7 @@ public class MediaCatalogTest {
 			Series series = createSeriesWithBooklet();
 			sut.add(series);
 
-			List<NamedLink> booklets = sut.getBooklets();
+			List<NamedLink> booklets = sut.getBooklets(env);
 
 			assertThat(booklets).containsOnly(series.getBooklets().get(0));
 		}
@@ -190,12 +176,12 @@ public class MediaCatalogTest {
 
 			// check private
 			series.setVisibility(AccessLevel.PRIVATE);
-			List<NamedLink> resources = sut.getHandoutsAndResources();
+			List<NamedLink> resources = sut.getHandoutsAndResources(env);
 			assertThat(resources).isEmpty();
 
 			// check protected
 			series.setVisibility(AccessLevel.PROTECTED);
-			resources = sut.getHandoutsAndResources();
+			resources = sut.getHandoutsAndResources(env);
 			assertThat(resources).isEmpty();
 		}
 
@@ -204,7 +190,7 @@ public class MediaCatalogTest {
 			Series series = createSeriesWithResourceAndMessageWithResource();
 			sut.add(series);
 
-			List<NamedLink> resources = sut.getHandoutsAndResources();
+			List<NamedLink> resources = sut.getHandoutsAndResources(env);
 
 			NamedLink seriesResource = series.getResources().get(0);
 			NamedLink messageResource = series.getMessages().get(0).getResources().get(0);
@@ -219,7 +205,7 @@ public class MediaCatalogTest {
 			Message message = createMessageWithResource();
 			sut.add(message);
 
-			List<NamedLink> resources = sut.getHandoutsAndResources();
+			List<NamedLink> resources = sut.getHandoutsAndResources(env);
 
 			NamedLink seriesResource = series.getResources().get(0);
 			NamedLink seriesMessageResource = series.getMessages().get(0).getResources().get(0);
@@ -234,7 +220,7 @@ public class MediaCatalogTest {
 					"https://s3-us-west-2.amazonaws.com/wordoflife.mn.BUCKET/MSG-BOOKLET.PDF;http://youtu.be/blahblah");
 			sut.add(message);
 
-			List<NamedLink> resources = sut.getHandoutsAndResources();
+			List<NamedLink> resources = sut.getHandoutsAndResources(env);
 
 			assertThat(resources).containsOnly(message.getResources().get(0), message.getResources().get(1));
 		}
@@ -245,7 +231,7 @@ public class MediaCatalogTest {
 			series.setVisibility(AccessLevel.PRIVATE);
 			sut.add(series);
 
-			List<NamedLink> booklets = sut.getBooklets();
+			List<NamedLink> booklets = sut.getBooklets(env);
 
 			// the booklet may be present, but it will not be the same object, so built a NamedLink to test agains
 			assertThat(booklets).contains(new NamedLink(series.getBooklets().get(0)));
@@ -0,0 +1,205 @@
+package org.wolm.catalog.environment;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.wolm.catalog.AccessLevel;
+import org.wolm.catalog.catalog.MediaCatalog;
+import org.wolm.message.Message;
+import org.wolm.series.Series;
+
+@RunWith(Enclosed.class)
+public class CatalogIndexTest {
+
+	/** Every indexed filter must agree with its own object-at-a-time evaluation */
+	public static class FilterEquivalence {
+		private List<Message> messages;
+		private List<Series> series;
+		private CatalogIndex index;
+
+		@Before
+		public void beforeEachTest() {
+			Random random = new Random(42);
+			String[] ministries = { "WOL", "CORE", "TBO", "Ask Pastor", null };
+			String[] types = { "message", "song", "testimony", null };
+			AccessLevel[] visibilities = { AccessLevel.PUBLIC, AccessLevel.PROTECTED, AccessLevel.PRIVATE, null };
+
+			messages = new ArrayList<>();
+			for (int m = 0; m < 300; m++) {
+				Message message = new Message();
+				message.setTitle("MESSAGE " + m);
+				message.setMinistry(ministries[random.nextInt(ministries.length)]);
+				message.setType(types[random.nextInt(types.length)]);
+				message.setVisibility(visibilities[random.nextInt(visibilities.length)]);
+				message.setDate(new GregorianCalendar(2010 + random.nextInt(8), random.nextInt(12), 1).getTime());
+				messages.add(message);
+			}
+
+			series = new ArrayList<>();
+			for (int s = 0; s < 40; s++) {
+				Series oneSeries = new Series();
+				oneSeries.setTitle("SERIES " + s);
+				oneSeries.setVisibility(visibilities[random.nextInt(visibilities.length)]);
+				if (s % 10 == 0) {
+					oneSeries.setBookletsAsString("https://s3-us-west-2.amazonaws.com/wordoflife.mn.BUCKET/B.PDF");
+				}
+				else {
+					for (int m = 0; m < 1 + random.nextInt(6); m++)
+						oneSeries.addMessage(messages.get(random.nextInt(messages.size())));
+					oneSeries.setStartDate(oneSeries.getMessages().get(0).getDate());
+					if (random.nextBoolean()) oneSeries.setEndDate(new GregorianCalendar(2011 + s % 6, 5, 1).getTime());
+				}
+				series.add(oneSeries);
+			}
+
+			index = new CatalogIndex(messages, series);
+		}
+
+		@Test
+		public void ministryFilterShouldMatch() {
+			assertEquivalent(new MinistryFilter().with("WOL", "CORE"));
+			assertEquivalent(new MinistryFilter().without("CORE"));
+			assertEquivalent(new MinistryFilter().with("WOL").without("TBO"));
+			assertEquivalent(new MinistryFilter().with());
+		}
+
+		@Test
+		public void typeFilterShouldMatch() {
+			assertEquivalent(new TypeFilter().with("song"));
+			assertEquivalent(new TypeFilter().without("message"));
+		}
+
+		@Test
+		public void visibilityFilterShouldMatch() {
+			for (AccessLevel visibility : AccessLevel.values())
+				assertEquivalent(new VisibilityFilter(visibility));
+		}
+
+		@Test
+		public void bookletFilterShouldMatch() {
+			assertEquivalent(new BookletFilter(true));
+			assertEquivalent(new BookletFilter(false));
+		}
+
+		@Test
+		public void recentFilterShouldMatch() {
+			assertEquivalent(new RecentFilter().withCutoff(new GregorianCalendar(2014, 0, 1).getTime()));
+		}
+
+		@Test
+		public void yearFiltersShouldMatch() {
+			for (int year = 2009; year < 2019; year++) {
+				assertEquivalent(new StartedWithinYearFilter(year));
+				assertEquivalent(new EntirelyWithinYearFilter(year));
+				assertEquivalent(new IntersectingWithYearFilter(year));
+			}
+		}
+
+		private void assertEquivalent(IndexedFilter filter) {
+			BitSet includedMessages = filter.getIncludedMessages(index);
+			for (int id = 0; id < messages.size(); id++)
+				assertThat(includedMessages.get(id)).isEqualTo(filter.shouldInclude(messages.get(id)));
+
+			BitSet includedSeries = filter.getIncludedSeries(index);
+			for (int id = 0; id < series.size(); id++)
+				assertThat(includedSeries.get(id)).isEqualTo(filter.shouldInclude(series.get(id)));
+		}
+	}
+
+	public static class IndexedCatalog {
+		private MediaCatalog catalog;
+		private Message wolMessage;
+		private Message coreMessage;
+		private Series wolSeries;
+
+		@Before
+		public void beforeEachTest() {
+			catalog = new MediaCatalog();
+
+			wolMessage = createMessage("WOL");
+			coreMessage = createMessage("CORE");
+			catalog.add(wolMessage);
+			catalog.add(coreMessage);
+
+			wolSeries = new Series();
+			wolSeries.setTitle("SERIES");
+			wolSeries.setVisibility(AccessLevel.PUBLIC);
+			wolSeries.setStartDate(new Date());
+			wolSeries.addMessage(wolMessage);
+			catalog.add(wolSeries);
+
+			catalog.buildIndex();
+		}
+
+		@Test
+		public void indexedCatalogShouldFilterMessages() {
+			RenderEnvironment env = new RenderEnvironment(new MinistryFilter().with("CORE"));
+
+			assertThat(catalog.getMessages(env)).containsExactly(coreMessage);
+			assertThat(catalog.getFilteredSeries(env)).isEmpty();
+		}
+
+		@Test
+		public void environmentsShouldBeIndependent() {
+			RenderEnvironment coreEnv = new RenderEnvironment(new MinistryFilter().with("CORE"));
+			RenderEnvironment wolEnv = new RenderEnvironment(new MinistryFilter().with("WOL"));
+
+			assertThat(catalog.getMessages(coreEnv)).containsExactly(coreMessage);
+			assertThat(catalog.getMessages(wolEnv)).containsExactly(wolMessage);
+			assertThat(catalog.getFilteredSeries(wolEnv)).containsExactly(wolSeries);
+			assertThat(catalog.getFilteredSeries(coreEnv)).isEmpty();
+		}
+
+		@Test
+		public void addingToCatalogShouldDropIndex() {
+			RenderEnvironment env = new RenderEnvironment(new MinistryFilter().with("CORE"));
+			assertThat(catalog.getMessages(env)).containsExactly(coreMessage);
+
+			Message another = createMessage("CORE");
+			catalog.add(another);
+
+			assertThat(catalog.getMessages(env)).containsExactly(coreMessage, another);
+		}
+
+		@Test
+		public void unindexedFilterShouldFallBackToEachObject() {
+			RenderEnvironment env = new RenderEnvironment(new MediaCatalogFilter() {
+				public boolean shouldInclude(Series series) {
+					return false;
+				}
+
+				public boolean shouldInclude(Message message) {
+					return message == wolMessage;
+				}
+
+				public boolean shouldInclude(Series series, Message message) {
+					return false;
+				}
+			});
+
+			assertThat(catalog.getMessages(env)).containsExactly(wolMessage);
+			assertThat(catalog.getFilteredSeries(env)).isEmpty();
+		}
+
+		private Message createMessage(String ministry) {
+			Message message = new Message();
+			message.setTitle(ministry + " MESSAGE");
+			message.setMinistry(ministry);
+			message.setSeries(Arrays.asList("SERIES"));
+			message.setVisibility(AccessLevel.PUBLIC);
+			message.setDate(new Date());
+			return message;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package org.wolm.google;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.text.SimpleDateFormat;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+@RunWith(Enclosed.class)
+public class CellParserTest {
+
+	public static class Dates {
+		@Test
+		public void gregorianDateShouldBeWrittenAsYearMonthDay() throws Exception {
+			assertThat(CellParser.toYearMonthDay("3/7/2015")).isEqualTo("2015-03-07");
+			assertThat(CellParser.toYearMonthDay("12/31/1999")).isEqualTo("1999-12-31");
+		}
+
+		@Test
+		public void outOfRangeDateShouldRollOverLikeTheFormatter() throws Exception {
+			assertThat(CellParser.toYearMonthDay("2/30/2015")).isEqualTo("2015-03-02");
+			assertThat(CellParser.toYearMonthDay("13/1/2015")).isEqualTo("2016-01-01");
+			assertThat(CellParser.toYearMonthDay("0/0/2016")).isEqualTo("2015-11-30");
+			assertThat(CellParser.toYearMonthDay("1/1/15")).isEqualTo(convert("1/1/15"));
+		}
+
+		@Test
+		public void textThatIsNotAGregorianDateShouldNotBeConverted() throws Exception {
+			assertThat(CellParser.toYearMonthDay(null)).isNull();
+			assertThat(CellParser.toYearMonthDay("2015-03-07")).isNull();
+			assertThat(CellParser.toYearMonthDay("3/7")).isNull();
+			assertThat(CellParser.toYearMonthDay("3//2015")).isNull();
+			assertThat(CellParser.toYearMonthDay("3/7/2015 ")).isNull();
+			assertThat(CellParser.toYearMonthDay("March 7, 2015")).isNull();
+			assertThat(CellParser.toYearMonthDay("1/1/12345678901")).isNull();
+		}
+
+		@Test
+		public void yearMonthDayShouldBeReadAtMidnight() throws Exception {
+			SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd");
+
+			assertThat(CellParser.toDate("2015-03-07")).isEqualTo(formatter.parse("2015-03-07"));
+			assertThat(CellParser.toDate("2015-02-29")).isEqualTo(formatter.parse("2015-03-01"));
+			assertThat(CellParser.toDate("15-3-7")).isEqualTo(formatter.parse("15-3-7"));
+		}
+
+		@Test
+		public void textThatIsNotAYearMonthDayShouldNotBeADate() throws Exception {
+			assertThat(CellParser.toDate(null)).isNull();
+			assertThat(CellParser.toDate("")).isNull();
+			assertThat(CellParser.toDate("3/7/2015")).isNull();
+			assertThat(CellParser.toDate("2015-03")).isNull();
+			assertThat(CellParser.toDate("-2015-03-07")).isNull();
+		}
+
+		private static String convert(String value) throws Exception {
+			return new SimpleDateFormat("yyyy-MM-dd").format(new SimpleDateFormat("MM/dd/yyyy").parse(value));
+		}
+	}
+
+	public static class Numbers {
+		@Test
+		public void integersShouldBeReadAsLongs() throws Exception {
+			assertThat(CellParser.toLong("42")).isEqualTo(42L);
+			assertThat(CellParser.toLong("+42")).isEqualTo(42L);
+			assertThat(CellParser.toLong("-42")).isEqualTo(-42L);
+			assertThat(CellParser.toLong("9223372036854775807")).isEqualTo(Long.MAX_VALUE);
+			assertThat(CellParser.toLong("-9223372036854775808")).isEqualTo(Long.MIN_VALUE);
+		}
+
+		@Test
+		public void floatingPointShouldBeTruncatedToALong() throws Exception {
+			assertThat(CellParser.toLong("3.9")).isEqualTo(3L);
+			assertThat(CellParser.toLong(" 12 ")).isEqualTo(12L);
+			assertThat(CellParser.toLong("9223372036854775808")).isEqualTo(Long.MAX_VALUE);
+		}
+
+		@Test
+		public void numbersShouldBeReadAsDoubles() throws Exception {
+			assertThat(CellParser.toDouble("42")).isEqualTo(42.0);
+			assertThat(CellParser.toDouble("-0")).isEqualTo(0.0);
+			assertThat(CellParser.toDouble(".5")).isEqualTo(0.5);
+			assertThat(CellParser.toDouble("1.")).isEqualTo(1.0);
+			assertThat(CellParser.toDouble("-12.25")).isEqualTo(-12.25);
+		}
+
+		@Test
+		public void textThatIsNotANumberShouldNotBeRead() throws Exception {
+			for (String value : new String[] { null, "", "-", "+", ".", "e5", "1e", "1.2.3", "12abc", "2015-03-07",
+					"3/7/2015", "1e3", "NaN", "1 2", "$5", "\u0661\u0662" }) {
+				assertThat(CellParser.toLong(value)).as(value).isNull();
+				assertThat(CellParser.toDouble(value)).as(value).isNull();
+			}
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package org.wolm.google;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+@RunWith(Enclosed.class)
+public class GoogleWorksheetTest {
+
+	public static class Projection {
+		@Test
+		public void headersShouldBeNamedLikeTheListFeed() throws Exception {
+			Set<String> taken = new HashSet<>();
+
+			assertThat(GoogleWorksheet.toColumnName("Series Name", taken)).isEqualTo("seriesname");
+			assertThat(GoogleWorksheet.toColumnName("Audio Link (mp3)", taken)).isEqualTo("audiolinkmp3");
+			assertThat(GoogleWorksheet.toColumnName("Date-Started", taken)).isEqualTo("date-started");
+			assertThat(GoogleWorksheet.toColumnName(null, taken)).isEqualTo("");
+		}
+
+		@Test
+		public void repeatedHeadersShouldBeNumbered() throws Exception {
+			Set<String> taken = new HashSet<>(Arrays.asList("speaker", "speaker_2"));
+
+			assertThat(GoogleWorksheet.toColumnName("Speaker", taken)).isEqualTo("speaker_3");
+		}
+
+		@Test
+		public void adjacentColumnsShouldBeReadTogether() throws Exception {
+			List<int[]> ranges = GoogleWorksheet.getColumnRanges(new int[] { 7, 1, 2, 3, 9, 8, 12 });
+
+			List<String> described = new ArrayList<>();
+			for (int[] range : ranges)
+				described.add(range[0] + "-" + range[1]);
+			assertThat(described).containsExactly("1-3", "7-9", "12-12");
+		}
+
+		@Test
+		public void cellsShouldOnlyBeReadFromWideWorksheets() throws Exception {
+			assertThat(GoogleWorksheet.shouldReadCells(20, 12)).isFalse();
+			assertThat(GoogleWorksheet.shouldReadCells(200, 12)).isTrue();
+			assertThat(GoogleWorksheet.shouldReadCells(40, 1)).isTrue();
+		}
+	}
+}
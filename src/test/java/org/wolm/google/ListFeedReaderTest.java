@@ -0,0 +1,199 @@
+package org.wolm.google;
+
+import static org.fest.assertions.Assertions.*;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+@RunWith(Enclosed.class)
+public class ListFeedReaderTest {
+	/** Feed recorded from Google, with 3 rows of a media log */
+	private static final String FEED = "ListFeed.xml";
+
+	public static class Parsing {
+		private ListFeedReader readerUnderTest;
+		private List<String[]> rows;
+
+		@Before
+		public void beforeEachTest() throws Exception {
+			readerUnderTest = new ListFeedReader(Arrays.asList("speaker", "name", "seriesname", "resources", "webid"));
+			rows = new ArrayList<>();
+		}
+
+		@Test
+		public void rowsShouldHaveTheValuesOfTheColumnsInOrder() throws Exception {
+			try (InputStream in = ListFeedReaderTest.class.getResourceAsStream(FEED)) {
+				assertThat(readerUnderTest.read(in, collect(rows))).isEqualTo(3);
+			}
+
+			assertThat(rows.get(0)).isEqualTo(new String[] { "Pastor Jim", "Faith & Grace", "Faith", null, null });
+			assertThat(rows.get(1)).isEqualTo(new String[] { "Pastor Jim; Pastor Lyn", "Walking in Love", null,
+					"Notes <pdf> http://wolm.org/notes.pdf", null });
+			assertThat(rows.get(2)).isEqualTo(new String[] { null, null, null, null, null });
+		}
+
+		@Test
+		public void allColumnsOfTheRowsShouldBeFound() throws Exception {
+			try (InputStream in = ListFeedReaderTest.class.getResourceAsStream(FEED)) {
+				readerUnderTest.read(in, collect(rows));
+			}
+
+			assertThat(new ArrayList<>(readerUnderTest.getFoundColumnNames())).isEqualTo(Arrays.asList("name", "date",
+					"seriesname", "track", "speaker", "editor", "resources", "visibility"));
+		}
+
+		@Test
+		public void handlerShouldSeeEachRowBeforeTheNextIsParsed() throws Exception {
+			final List<Integer> foundColumns = new ArrayList<>();
+			try (InputStream in = ListFeedReaderTest.class.getResourceAsStream(FEED)) {
+				readerUnderTest.read(in, new ListFeedReader.RowHandler() {
+					public void handleRow(String[] values) {
+						foundColumns.add(readerUnderTest.getFoundColumnNames().size());
+					}
+				});
+			}
+
+			assertThat(foundColumns).containsExactly(7, 7, 8);
+		}
+
+		@Test
+		public void brokenFeedShouldFail() throws Exception {
+			try (InputStream in = ListFeedReaderTest.class.getResourceAsStream(FEED)) {
+				// cut in the third row
+				byte[] feed = readAll(in);
+				int length = new String(feed, "UTF-8").indexOf("Row: 4");
+				readerUnderTest.read(new ByteArrayInputStream(feed, 0, length), collect(rows));
+				fail("A feed cut short should not be read");
+			}
+			catch (IOException e) {
+				assertThat(e.getMessage()).startsWith("Cannot parse list feed after 2 rows");
+			}
+			assertThat(rows).hasSize(2);
+		}
+	}
+
+	public static class Downloading {
+		private HttpServer server;
+		private ListFeedReader readerUnderTest;
+		private List<String[]> rows;
+
+		/** Status the stand-in answers with */
+		private int status;
+		private boolean gzip;
+		private String authorization;
+		private String version;
+
+		@Before
+		public void beforeEachTest() throws Exception {
+			readerUnderTest = new ListFeedReader(Arrays.asList("name", "date"));
+			rows = new ArrayList<>();
+			status = 200;
+
+			// stands in for Google, answering with the recorded feed
+			server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+			server.createContext("/feeds/list/key/od6/private/full", new HttpHandler() {
+				public void handle(HttpExchange exchange) throws IOException {
+					authorization = exchange.getRequestHeaders().getFirst("Authorization");
+					version = exchange.getRequestHeaders().getFirst("GData-Version");
+
+					byte[] body;
+					try (InputStream in = ListFeedReaderTest.class.getResourceAsStream(FEED)) {
+						body = readAll(in);
+					}
+					if (gzip) {
+						ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+						try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+							out.write(body);
+						}
+						body = compressed.toByteArray();
+						exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+					}
+					exchange.getResponseHeaders().set("Content-Type", "application/atom+xml; charset=UTF-8");
+					exchange.sendResponseHeaders(status, body.length);
+					try (OutputStream out = exchange.getResponseBody()) {
+						out.write(body);
+					}
+				}
+			});
+			server.start();
+		}
+
+		@After
+		public void afterEachTest() {
+			server.stop(0);
+		}
+
+		@Test
+		public void feedShouldBeReadWithTheAccessToken() throws Exception {
+			assertThat(readerUnderTest.read(getFeedUrl(), "token", collect(rows))).isEqualTo(3);
+
+			assertThat(rows.get(1)).isEqualTo(new String[] { "Walking in Love", "1/11/2015" });
+			assertThat(authorization).isEqualTo("Bearer token");
+			assertThat(version).isEqualTo("3.0");
+		}
+
+		@Test
+		public void gzippedFeedShouldBeRead() throws Exception {
+			gzip = true;
+
+			assertThat(readerUnderTest.read(getFeedUrl(), null, collect(rows))).isEqualTo(3);
+
+			assertThat(rows.get(0)).isEqualTo(new String[] { "Faith & Grace", "1/4/2015" });
+			assertThat(authorization).isNull();
+		}
+
+		@Test
+		public void refusedFeedShouldFail() throws Exception {
+			status = 401;
+
+			try {
+				readerUnderTest.read(getFeedUrl(), "expired", collect(rows));
+				fail("A refused feed should not be read");
+			}
+			catch (IOException e) {
+				assertThat(e.getMessage()).contains("401");
+			}
+			assertThat(rows).isEmpty();
+		}
+
+		private URL getFeedUrl() throws Exception {
+			return new URL("http://localhost:" + server.getAddress().getPort() + "/feeds/list/key/od6/private/full");
+		}
+	}
+
+	private static ListFeedReader.RowHandler collect(final List<String[]> rows) {
+		return new ListFeedReader.RowHandler() {
+			public void handleRow(String[] values) {
+				rows.add(values);
+			}
+		};
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		for (int count = in.read(buffer); count >= 0; count = in.read(buffer))
+			bytes.write(buffer, 0, count);
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,180 @@
+package org.wolm.google;
+
+import static org.fest.assertions.Assertions.*;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import com.google.gdata.data.spreadsheet.ListEntry;
+
+@RunWith(Enclosed.class)
+public class RowSchemaTest {
+
+	public static class Binding {
+		private File originalCacheDirectory;
+		private File cacheDirectory;
+		private RowSchema<Target> schemaUnderTest;
+		private WorksheetSnapshot snapshot;
+		private GoogleWorksheet worksheet;
+
+		@Before
+		public void beforeEachTest() throws Exception {
+			originalCacheDirectory = WorksheetSnapshot.getCacheDirectory();
+			cacheDirectory = Files.createTempDirectory("snapshot").toFile();
+			WorksheetSnapshot.setCacheDirectory(cacheDirectory);
+
+			schemaUnderTest = new RowSchema<Target>().text("name", new RowSchema.Setter<Target, String>() {
+				public void set(Target target, String value) {
+					target.name = value;
+				}
+			}).date("date", new RowSchema.Setter<Target, Date>() {
+				public void set(Target target, Date value) {
+					target.date = value;
+				}
+			}).number("count", new RowSchema.Setter<Target, Long>() {
+				public void set(Target target, Long value) {
+					target.count = value;
+				}
+			}).list("speaker", new RowSchema.Setter<Target, List<String>>() {
+				public void set(Target target, List<String> values) {
+					target.speakers = values;
+				}
+			}).integers("track", new RowSchema.Setter<Target, List<Integer>>() {
+				public void set(Target target, List<Integer> values) {
+					target.tracks = values;
+				}
+			});
+
+			List<GoogleRow> rows = new ArrayList<>();
+			rows.add(createRow("name", "First", "date", "1/2/2015", "count", "12", "speaker", "Pastor Jim; Pastor Lyn",
+					"track", "1;2"));
+			rows.add(createRow("name", "Second", "date", "2015-03-04", "count", "x"));
+			WorksheetSnapshot.save("WOL Messages", "Media Log", null, rows);
+			snapshot = WorksheetSnapshot.load("WOL Messages", "Media Log");
+			worksheet = new GoogleWorksheet(null, snapshot);
+		}
+
+		@After
+		public void afterEachTest() {
+			for (File file : cacheDirectory.listFiles())
+				file.delete();
+			cacheDirectory.delete();
+			WorksheetSnapshot.setCacheDirectory(originalCacheDirectory);
+		}
+
+		@Test
+		public void snapshotRowsShouldBeBoundLikeGoogleRows() throws Exception {
+			RowSchema.Binder<Target> binder = schemaUnderTest.bind(worksheet, "WOL Messages");
+
+			for (GoogleRow row : worksheet.getRows()) {
+				Target target = new Target();
+				binder.bind(row, target);
+
+				assertThat(target.name).isEqualTo(row.getValue("name"));
+				assertThat(target.date).isEqualTo(row.getDateValue("date"));
+				assertThat(target.count).isEqualTo(row.getLongValue("count"));
+			}
+		}
+
+		@Test
+		public void valuesShouldBeConverted() throws Exception {
+			Target target = new Target();
+			schemaUnderTest.bind(worksheet, "WOL Messages").bind(worksheet.getRow(0), target);
+
+			assertThat(target.date).isEqualTo(CellParser.toDate("2015-01-02"));
+			assertThat(target.count).isEqualTo(12L);
+			assertThat(target.speakers).containsExactly("Pastor Jim", "Pastor Lyn");
+			assertThat(target.tracks).containsExactly(1, 2);
+		}
+
+		@Test
+		public void emptyListsShouldNotBeSet() throws Exception {
+			Target target = new Target();
+			schemaUnderTest.bind(worksheet, "WOL Messages").bind(worksheet.getRow(1), target);
+
+			assertThat(target.speakers).isNull();
+			assertThat(target.tracks).isNull();
+			assertThat(target.count).isNull();
+		}
+
+		@Test
+		public void listsShouldBeSplitLikeStringSplit() throws Exception {
+			RowSchema.Binder<Target> binder = schemaUnderTest.bind(worksheet, "WOL Messages");
+
+			for (String value : new String[] { "", " ", "a", " a ; b ", "a;;b", "a;;", ";a", ";", ";;", "a; ;",
+					"\ta\t;\nb" }) {
+				Target target = new Target();
+				binder.bind(createRow("speaker", value, "track", value), target);
+
+				List<String> expected = new ArrayList<>();
+				for (String s : value.split(";"))
+					expected.add(s.trim());
+				assertThat(target.speakers).as("'" + value + "'").isEqualTo(expected);
+			}
+		}
+
+		@Test
+		public void numbersInListsShouldBeReadLikeNumberUtils() throws Exception {
+			RowSchema.Binder<Target> binder = schemaUnderTest.bind(worksheet, "WOL Messages");
+
+			String value = "1; +2 ;-3;x;;2147483647;2147483648;-2147483648;1.5; 7\u0662";
+			Target target = new Target();
+			binder.bind(createRow("track", value), target);
+
+			List<Integer> expected = new ArrayList<>();
+			for (String s : value.split(";"))
+				expected.add(NumberUtils.toInt(s.trim()));
+			assertThat(target.tracks).isEqualTo(expected);
+		}
+
+		@Test
+		public void missingColumnShouldFail() throws Exception {
+			schemaUnderTest.text("webid", new RowSchema.Setter<Target, String>() {
+				public void set(Target target, String value) {
+					// not bound
+				}
+			});
+
+			try {
+				schemaUnderTest.bind(worksheet, "WOL Messages");
+				fail("A worksheet without a column of the schema should not be bound");
+			}
+			catch (Exception e) {
+				assertThat(e.getMessage()).isEqualTo("Cannot find column 'webid' in the spreadsheet 'WOL Messages'");
+			}
+		}
+
+		@Test
+		public void columnNamesShouldBeInDeclaredOrder() throws Exception {
+			assertThat(schemaUnderTest.getColumnNames())
+					.isEqualTo(Arrays.asList("name", "date", "count", "speaker", "track"));
+		}
+
+		private GoogleRow createRow(String... namesAndValues) {
+			ListEntry entry = new ListEntry();
+			for (int index = 0; index < namesAndValues.length; index += 2)
+				entry.getCustomElements().setValueLocal(namesAndValues[index], namesAndValues[index + 1]);
+			return new GoogleRow(new GoogleWorksheet(null, (WorksheetSnapshot) null), entry);
+		}
+	}
+
+	private static class Target {
+		String name;
+		Date date;
+		Long count;
+		List<String> speakers;
+		List<Integer> tracks;
+	}
+}
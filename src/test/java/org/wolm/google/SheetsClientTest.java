@@ -0,0 +1,211 @@
+package org.wolm.google;
+
+import static org.fest.assertions.Assertions.*;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+@RunWith(Enclosed.class)
+public class SheetsClientTest {
+	private static final String SPREADSHEET_ID = "1AbCdEfGhIjKlMnOpQrStUvWxYz0123456789_messages";
+
+	/**
+	 * Stands in for the Sheets and Drive APIs, answering every request with a canned response
+	 */
+	public static abstract class StubTest {
+		private HttpServer server;
+		SheetsClient clientUnderTest;
+
+		/** Canned response the stub answers with, and the status it answers with */
+		String response;
+		int status;
+		boolean gzip;
+
+		/** Requests the stub received, as decoded path and query */
+		final List<String> requests = new ArrayList<>();
+		String authorization;
+		String userAgent;
+
+		@Before
+		public void beforeEachTest() throws Exception {
+			status = 200;
+			server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+			server.createContext("/", new HttpHandler() {
+				public void handle(HttpExchange exchange) throws IOException {
+					requests.add(URLDecoder.decode(exchange.getRequestURI().getRawPath() + "?"
+							+ exchange.getRequestURI().getRawQuery(), "UTF-8"));
+					authorization = exchange.getRequestHeaders().getFirst("Authorization");
+					userAgent = exchange.getRequestHeaders().getFirst("User-Agent");
+
+					byte[] body;
+					try (InputStream in = SheetsClientTest.class.getResourceAsStream(response)) {
+						body = readAll(in);
+					}
+					if (gzip) {
+						ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+						try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+							out.write(body);
+						}
+						body = compressed.toByteArray();
+						exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+					}
+					exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+					exchange.sendResponseHeaders(status, body.length);
+					try (OutputStream out = exchange.getResponseBody()) {
+						out.write(body);
+					}
+				}
+			});
+			server.start();
+
+			String url = "http://localhost:" + server.getAddress().getPort();
+			clientUnderTest = new SheetsClient("org-wolm-catalog", url + "/v4/spreadsheets", url + "/drive/v3/files");
+		}
+
+		@After
+		public void afterEachTest() {
+			server.stop(0);
+		}
+	}
+
+	public static class BatchGet extends StubTest {
+		private Map<String, Collection<String>> columnsBySheet;
+
+		@Before
+		public void beforeEachBatchGet() throws Exception {
+			response = "BatchGet.json";
+			columnsBySheet = new LinkedHashMap<>();
+			columnsBySheet.put("Media Log", Arrays.asList("speaker", "name", "seriesname", "visibility", "webid"));
+			columnsBySheet.put("Series Log", null);
+		}
+
+		@Test
+		public void worksheetsShouldBeReadInOneRequest() throws Exception {
+			Map<String, SheetsClient.Values> values = clientUnderTest.batchGet(SPREADSHEET_ID, columnsBySheet, "token");
+
+			assertThat(new ArrayList<>(values.keySet())).isEqualTo(Arrays.asList("Media Log", "Series Log"));
+			assertThat(requests).hasSize(1);
+			assertThat(requests.get(0)).startsWith("/v4/spreadsheets/" + SPREADSHEET_ID + "/values:batchGet?");
+			assertThat(requests.get(0)).contains("&ranges='Media Log'&ranges='Series Log'");
+			assertThat(authorization).isEqualTo("Bearer token");
+			assertThat(userAgent).contains("gzip");
+		}
+
+		@Test
+		public void rowsShouldHaveTheValuesOfTheColumnsInOrder() throws Exception {
+			SheetsClient.Values messages = clientUnderTest.batchGet(SPREADSHEET_ID, columnsBySheet, "token")
+					.get("Media Log");
+
+			assertThat(messages.getColumnNames()).isEqualTo(Arrays.asList("speaker", "name", "seriesname",
+					"visibility"));
+			assertThat(messages.getColumnCount()).isEqualTo(8);
+			assertThat(messages.getRows()).hasSize(2);
+			assertThat(messages.getRows().get(0)).isEqualTo(new String[] { "Pastor Jim", "Faith & Grace", "Faith",
+					"Public" });
+			assertThat(messages.getRows().get(1)).isEqualTo(new String[] { "Pastor Jim; Pastor Lyn",
+					"Walking in \"Love\"", null, null });
+		}
+
+		@Test
+		public void allColumnsShouldBeReadWithoutNames() throws Exception {
+			SheetsClient.Values series = clientUnderTest.batchGet(SPREADSHEET_ID, columnsBySheet, "token")
+					.get("Series Log");
+
+			assertThat(series.getColumnNames()).isEqualTo(Arrays.asList("name", "webid", "name_2"));
+			assertThat(series.getRows().get(0)).isEqualTo(new String[] { "Faith", "faith", "Faith \u2013 2015" });
+		}
+
+		@Test
+		public void gzippedResponseShouldBeRead() throws Exception {
+			gzip = true;
+
+			SheetsClient.Values series = clientUnderTest.batchGet(SPREADSHEET_ID, columnsBySheet, "token")
+					.get("Series Log");
+
+			assertThat(series.getRows()).hasSize(1);
+		}
+
+		@Test
+		public void missingWorksheetShouldFailWithTheMessageOfGoogle() throws Exception {
+			response = "SheetsError.json";
+			status = 400;
+
+			try {
+				clientUnderTest.batchGet(SPREADSHEET_ID, columnsBySheet, "token");
+				fail("A missing worksheet should not be read");
+			}
+			catch (IOException e) {
+				assertThat(e.getMessage()).contains("400").contains("Unable to parse range: 'Media Logs'");
+			}
+		}
+
+		@Test
+		public void fewerRangesThanAskedForShouldFail() throws Exception {
+			columnsBySheet.put("Production", null);
+
+			try {
+				clientUnderTest.batchGet(SPREADSHEET_ID, columnsBySheet, "token");
+				fail("A response without every worksheet should not be read");
+			}
+			catch (IOException e) {
+				assertThat(e.getMessage()).isEqualTo("Fewer value ranges than asked for");
+			}
+		}
+	}
+
+	public static class Spreadsheets extends StubTest {
+		@Test
+		public void spreadsheetShouldBeFoundByName() throws Exception {
+			response = "DriveFiles.json";
+
+			List<SheetsClient.SpreadsheetFile> files = clientUnderTest.findSpreadsheets("WOL Messages", "token");
+
+			assertThat(files).hasSize(1);
+			assertThat(files.get(0).getId()).isEqualTo(SPREADSHEET_ID);
+			assertThat(files.get(0).getName()).isEqualTo("WOL Messages");
+			assertThat(files.get(0).getModifiedTime()).isEqualTo(new Date(1434317589412L));
+			assertThat(requests.get(0)).startsWith("/drive/v3/files?");
+			assertThat(requests.get(0)).contains("name = 'WOL Messages'");
+		}
+
+		@Test
+		public void worksheetTitlesShouldBeRead() throws Exception {
+			response = "Sheets.json";
+
+			assertThat(clientUnderTest.getSheetTitles(SPREADSHEET_ID, "token"))
+					.isEqualTo(Arrays.asList("Media Log", "Production"));
+			assertThat(requests.get(0)).startsWith("/v4/spreadsheets/" + SPREADSHEET_ID + "?");
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		for (int count = in.read(buffer); count >= 0; count = in.read(buffer))
+			bytes.write(buffer, 0, count);
+		return bytes.toByteArray();
+	}
+}
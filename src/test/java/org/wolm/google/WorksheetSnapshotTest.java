@@ -0,0 +1,117 @@
+package org.wolm.google;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import com.google.gdata.data.spreadsheet.ListEntry;
+
+@RunWith(Enclosed.class)
+public class WorksheetSnapshotTest {
+
+	public static class SaveAndLoad {
+		private File originalCacheDirectory;
+		private File cacheDirectory;
+		private List<GoogleRow> rows;
+
+		@Before
+		public void beforeEachTest() throws Exception {
+			originalCacheDirectory = WorksheetSnapshot.getCacheDirectory();
+			cacheDirectory = Files.createTempDirectory("snapshot").toFile();
+			WorksheetSnapshot.setCacheDirectory(cacheDirectory);
+
+			rows = new ArrayList<>();
+			rows.add(createRow("name", "First", "ministry", "WOL", "date", "1/2/2015"));
+			rows.add(createRow("name", "Second", "ministry", "WOL"));
+			rows.add(createRow("name", "Third – é", "ministry", "CORE", "track", "3"));
+		}
+
+		@After
+		public void afterEachTest() {
+			for (File file : cacheDirectory.listFiles())
+				file.delete();
+			cacheDirectory.delete();
+			WorksheetSnapshot.setCacheDirectory(originalCacheDirectory);
+		}
+
+		@Test
+		public void loadShouldReturnSavedValues() throws Exception {
+			Date revision = new Date(1_500_000_000_000L);
+			WorksheetSnapshot.save("WOL Messages", "Media Log", revision, rows);
+
+			WorksheetSnapshot snapshot = WorksheetSnapshot.load("WOL Messages", "Media Log");
+
+			assertThat(snapshot.getSpreadsheetTitle()).isEqualTo("WOL Messages");
+			assertThat(snapshot.getWorksheetTitle()).isEqualTo("Media Log");
+			assertThat(snapshot.getRevision()).isEqualTo(revision);
+			assertThat(snapshot.getRowCount()).isEqualTo(3);
+			assertThat(snapshot.getColumnNames()).containsOnly("name", "ministry", "date", "track");
+			assertThat(snapshot.getValue(0, "date")).isEqualTo("1/2/2015");
+			assertThat(snapshot.getValue(1, "date")).isNull();
+			assertThat(snapshot.getValue(2, "name")).isEqualTo("Third – é");
+			assertThat(snapshot.getValue(2, "ministry")).isEqualTo("CORE");
+			assertThat(snapshot.getValue(2, "unknown")).isNull();
+		}
+
+		@Test
+		public void snapshotRowsShouldConvertLikeGoogleRows() throws Exception {
+			WorksheetSnapshot.save("WOL Messages", "Media Log", null, rows);
+			WorksheetSnapshot snapshot = WorksheetSnapshot.load("WOL Messages", "Media Log");
+
+			GoogleRow row = new GoogleRow(new GoogleWorksheet(null, snapshot), snapshot, 0);
+
+			assertThat(row.getValue("date")).isEqualTo(rows.get(0).getValue("date"));
+			assertThat(row.getDateValue("date")).isEqualTo(rows.get(0).getDateValue("date"));
+			assertThat(row.getColumnNames()).containsOnly("name", "ministry", "date");
+		}
+
+		@Test
+		public void createdSnapshotShouldKeepTheValuesInMemory() throws Exception {
+			List<String[]> values = new ArrayList<>();
+			values.add(new String[] { "First", "1/2/2015" });
+			values.add(new String[] { "Second", null });
+
+			WorksheetSnapshot snapshot = WorksheetSnapshot.create("WOL Messages", "Media Log", null,
+					Arrays.asList("name", "date"), values);
+
+			assertThat(snapshot.getRowCount()).isEqualTo(2);
+			assertThat(snapshot.getValue(0, "date")).isEqualTo("1/2/2015");
+			assertThat(snapshot.getValue(1, 1)).isNull();
+			assertThat(snapshot.getColumnNames(1)).containsOnly("name");
+			assertThat(WorksheetSnapshot.load("WOL Messages", "Media Log")).isNull();
+		}
+
+		@Test
+		public void missingSnapshotShouldLoadAsNull() throws Exception {
+			assertThat(WorksheetSnapshot.load("WOL Messages", "Media Log")).isNull();
+			assertThat(WorksheetSnapshot.hasSnapshot("WOL Messages")).isFalse();
+		}
+
+		@Test
+		public void snapshotsShouldBeListedBySpreadsheet() throws Exception {
+			WorksheetSnapshot.save("WOL Messages", "Media Log", null, rows);
+			WorksheetSnapshot.save("WOL Series", "Series Log", null, rows);
+
+			assertThat(WorksheetSnapshot.getSpreadsheetTitles()).containsExactly("WOL Messages", "WOL Series");
+			assertThat(WorksheetSnapshot.getWorksheetTitles("WOL Series")).containsExactly("Series Log");
+		}
+
+		private GoogleRow createRow(String... namesAndValues) {
+			ListEntry entry = new ListEntry();
+			for (int index = 0; index < namesAndValues.length; index += 2)
+				entry.getCustomElements().setValueLocal(namesAndValues[index], namesAndValues[index + 1]);
+			return new GoogleRow(new GoogleWorksheet(null, (WorksheetSnapshot) null), entry);
+		}
+	}
+}
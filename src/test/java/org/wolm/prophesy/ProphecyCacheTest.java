@@ -0,0 +1,123 @@
+package org.wolm.prophesy;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+@RunWith(Enclosed.class)
+public class ProphecyCacheTest {
+
+	public static class Lookup {
+		private File dir;
+		private ProphecyCache cacheUnderTest;
+		private S3ObjectSummary summary;
+		private Prophecy prophecy;
+
+		@Before
+		public void beforeEachTest() throws Exception {
+			dir = Files.createTempDirectory("prophecies").toFile();
+			cacheUnderTest = new ProphecyCache(dir);
+
+			summary = summary("folder/p\u00e9 1.txt", "etag-1", 1_000L);
+			prophecy = new Prophecy();
+			prophecy.setTitle("Caf\u00e9");
+			prophecy.setDateString("2017-01-01");
+			prophecy.setHtmlBody("<p>Body</p>");
+		}
+
+		@After
+		public void afterEachTest() {
+			for (File file : dir.listFiles())
+				file.delete();
+			dir.delete();
+		}
+
+		@Test
+		public void emptyCacheShouldMiss() {
+			assertThat(cacheUnderTest.get(summary)).isNull();
+			assertThat(cacheUnderTest.getMissCount()).isEqualTo(1);
+			assertThat(cacheUnderTest.getHitCount()).isEqualTo(0);
+		}
+
+		@Test
+		public void unchangedObjectShouldHit() throws Exception {
+			cacheUnderTest.put(summary, prophecy);
+
+			// a new cache, as in the next run
+			ProphecyCache nextRun = new ProphecyCache(dir);
+			Prophecy cached = nextRun.get(summary("folder/p\u00e9 1.txt", "etag-1", 1_000L));
+
+			assertThat(cached).isNotNull();
+			assertThat(cached.getTitle()).isEqualTo("Caf\u00e9");
+			assertThat(cached.getBy()).isNull();
+			assertThat(cached.getDateString()).isEqualTo("2017-01-01");
+			assertThat(cached.getHtmlBody()).isEqualTo("<p>Body</p>");
+			assertThat(nextRun.getHitCount()).isEqualTo(1);
+			assertThat(nextRun.getMissCount()).isEqualTo(0);
+		}
+
+		@Test
+		public void changedEtagShouldMiss() throws Exception {
+			cacheUnderTest.put(summary, prophecy);
+
+			assertThat(cacheUnderTest.get(summary("folder/p\u00e9 1.txt", "etag-2", 1_000L))).isNull();
+		}
+
+		@Test
+		public void changedModificationDateShouldMiss() throws Exception {
+			cacheUnderTest.put(summary, prophecy);
+
+			assertThat(cacheUnderTest.get(summary("folder/p\u00e9 1.txt", "etag-1", 2_000L))).isNull();
+		}
+
+		@Test
+		public void corruptEntryShouldMiss() throws Exception {
+			cacheUnderTest.put(summary, prophecy);
+			for (File file : dir.listFiles())
+				Files.write(file.toPath(), "garbage".getBytes(StandardCharsets.UTF_8));
+
+			assertThat(cacheUnderTest.get(summary)).isNull();
+			assertThat(cacheUnderTest.getMissCount()).isEqualTo(1);
+		}
+
+		@Test
+		public void prophecyNoLongerListedShouldBePruned() throws Exception {
+			S3ObjectSummary other = summary("folder/p2.txt", "etag-2", 1_000L);
+			cacheUnderTest.put(summary, prophecy);
+			cacheUnderTest.put(other, prophecy);
+
+			assertThat(cacheUnderTest.prune(Arrays.asList("folder/p2.txt"))).isEqualTo(1);
+
+			assertThat(cacheUnderTest.get(summary)).isNull();
+			assertThat(cacheUnderTest.get(other)).isNotNull();
+			assertThat(dir.listFiles()).hasSize(1);
+		}
+
+		@Test
+		public void missingDirectoryShouldPruneNothing() {
+			ProphecyCache empty = new ProphecyCache(new File(dir, "missing"));
+
+			assertThat(empty.prune(Arrays.asList("folder/p2.txt"))).isEqualTo(0);
+		}
+
+		private static S3ObjectSummary summary(String key, String etag, long lastModified) {
+			S3ObjectSummary summary = new S3ObjectSummary();
+			summary.setKey(key);
+			summary.setETag(etag);
+			summary.setLastModified(new Date(lastModified));
+			return summary;
+		}
+	}
+}
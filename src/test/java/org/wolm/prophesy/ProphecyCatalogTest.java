@@ -0,0 +1,133 @@
+package org.wolm.prophesy;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.wolm.aws.AwsS3Helper;
+import org.wolm.aws.FakeAmazonS3;
+
+@RunWith(Enclosed.class)
+public class ProphecyCatalogTest {
+
+	public static class Populating {
+		private FakeAmazonS3 s3;
+		private ProphecyCatalog catalogUnderTest;
+
+		@Before
+		public void beforeEachTest() {
+			s3 = new FakeAmazonS3("UNIT.TEST");
+			for (int i = 0; i < 200; i++) {
+				put(String.format("p%03d.txt", i),
+						"Title: Prophecy " + i + "\nDate: 2017-01-01\nBy: Pastor\n\nBody " + i);
+			}
+			put("template.txt", "Title: Template\nDate: 2017-01-01\n\nBody");
+			put("notes.doc", "not a prophecy");
+			put("undated.txt", "Title: Undated\n\nBody");
+
+			catalogUnderTest = new ProphecyCatalog("UNIT.TEST", null);
+			catalogUnderTest.setS3Helper(new AwsS3Helper(s3));
+		}
+
+		@Test
+		public void concurrentReadsShouldKeepKeyOrder() throws Exception {
+			s3.setMaxReadDelayMillis(5);
+			catalogUnderTest.setDownloadConcurrency(8);
+
+			catalogUnderTest.populateFromAwsDocuments("UNIT.TEST", null);
+
+			List<Prophecy> prophecies = catalogUnderTest.getProphecies();
+			assertThat(prophecies).hasSize(200);
+			for (int i = 0; i < prophecies.size(); i++)
+				assertThat(prophecies.get(i).getTitle()).isEqualTo("Prophecy " + i);
+		}
+
+		@Test
+		public void prophecyShouldBeParsed() throws Exception {
+			catalogUnderTest.setDownloadConcurrency(1);
+
+			catalogUnderTest.populateFromAwsDocuments("UNIT.TEST", null);
+
+			Prophecy prophecy = catalogUnderTest.getProphecies().get(7);
+			assertThat(prophecy.getDateString()).isEqualTo("2017-01-01");
+			assertThat(prophecy.getBy()).isEqualTo("Pastor");
+			assertThat(prophecy.getHtmlBody()).isEqualTo("<p>Body 7 </p>");
+		}
+
+		@Test(expected = IllegalArgumentException.class)
+		public void concurrencyShouldBePositive() {
+			catalogUnderTest.setDownloadConcurrency(0);
+		}
+
+		private void put(String key, String content) {
+			s3.put(key, content.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	public static class Caching {
+		private FakeAmazonS3 s3;
+		private File dir;
+
+		@Before
+		public void beforeEachTest() throws Exception {
+			s3 = new FakeAmazonS3("UNIT.TEST");
+			for (int i = 0; i < 20; i++)
+				put(String.format("p%02d.txt", i), "Title: Prophecy " + i + "\nDate: 2017-01-01\n\nBody " + i);
+			dir = Files.createTempDirectory("prophecies").toFile();
+		}
+
+		@After
+		public void afterEachTest() {
+			for (File file : dir.listFiles())
+				file.delete();
+			dir.delete();
+		}
+
+		@Test
+		public void firstRunShouldReadEveryProphecy() throws Exception {
+			ProphecyCatalog catalogUnderTest = populate();
+
+			assertThat(catalogUnderTest.getProphecies()).hasSize(20);
+			assertThat(catalogUnderTest.getCache().getMissCount()).isEqualTo(20);
+			assertThat(s3.getReadCount()).isEqualTo(20);
+		}
+
+		@Test
+		public void nextRunShouldOnlyReadChangedProphecies() throws Exception {
+			populate();
+			put("p05.txt", "Title: Changed\nDate: 2017-02-02\n\nNew body");
+			put("p20.txt", "Title: New\nDate: 2017-03-03\n\nBody");
+
+			ProphecyCatalog catalogUnderTest = populate();
+
+			List<Prophecy> prophecies = catalogUnderTest.getProphecies();
+			assertThat(prophecies).hasSize(21);
+			assertThat(prophecies.get(4).getTitle()).isEqualTo("Prophecy 4");
+			assertThat(prophecies.get(5).getTitle()).isEqualTo("Changed");
+			assertThat(prophecies.get(20).getTitle()).isEqualTo("New");
+			assertThat(catalogUnderTest.getCache().getHitCount()).isEqualTo(19);
+			assertThat(catalogUnderTest.getCache().getMissCount()).isEqualTo(2);
+			assertThat(s3.getReadCount()).isEqualTo(22);
+		}
+
+		private ProphecyCatalog populate() throws Exception {
+			ProphecyCatalog catalog = new ProphecyCatalog("UNIT.TEST", null);
+			catalog.setS3Helper(new AwsS3Helper(s3));
+			catalog.setCache(new ProphecyCache(dir));
+			catalog.populateFromAwsDocuments("UNIT.TEST", null);
+			return catalog;
+		}
+
+		private void put(String key, String content) {
+			s3.put(key, content.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
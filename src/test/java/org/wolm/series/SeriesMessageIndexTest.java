@@ -0,0 +1,77 @@
+package org.wolm.series;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.wolm.message.Message;
+
+@RunWith(Enclosed.class)
+public class SeriesMessageIndexTest {
+
+	public static class Lookup {
+		private SeriesMessageIndex indexUnderTest;
+		private Message first;
+		private Message second;
+		private Message third;
+
+		@Before
+		public void beforeEachTest() {
+			first = createMessage("FIRST", 2, "SERIES");
+			second = createMessage("SECOND", 1, "Series");
+			third = createMessage("THIRD", 1, "OTHER");
+			indexUnderTest = new SeriesMessageIndex(Arrays.asList(first, second, third));
+		}
+
+		@Test
+		public void seriesNameShouldIgnoreCase() {
+			assertThat(indexUnderTest.getMessages("series")).containsOnly(first, second);
+		}
+
+		@Test
+		public void messagesShouldBeSortedByTrackNumber() {
+			assertThat(indexUnderTest.getMessages("SERIES")).containsExactly(second, first);
+		}
+
+		@Test
+		public void unknownSeriesShouldHaveNoMessages() {
+			assertThat(indexUnderTest.getMessages("UNKNOWN")).isEmpty();
+			assertThat(indexUnderTest.getMessages(null)).isEmpty();
+		}
+
+		@Test
+		public void seriesShouldDiscoverSameMessagesAsScan() {
+			Series series = new Series();
+			series.setTitle("series");
+
+			series.discoverMessages(Arrays.asList(first, second, third));
+			Object[] scanned = series.getMessages().toArray();
+
+			series.discoverMessages(indexUnderTest);
+			assertThat(series.getMessages()).containsExactly(scanned);
+		}
+
+		@Test
+		public void repeatedSeriesShouldUseFirstTrack() {
+			Message message = new Message();
+			message.setTitle("REPEATED");
+			message.setSeries(Arrays.asList("SERIES", "series"));
+			message.setTrackNumbers(Arrays.asList(3, 0));
+			indexUnderTest.add(message);
+
+			assertThat(indexUnderTest.getMessages("SERIES")).containsExactly(second, first, message);
+		}
+
+		private Message createMessage(String title, int track, String seriesName) {
+			Message message = new Message();
+			message.setTitle(title);
+			message.setSeries(Arrays.asList(seriesName));
+			message.setTrackNumbers(Arrays.asList(track));
+			return message;
+		}
+	}
+}
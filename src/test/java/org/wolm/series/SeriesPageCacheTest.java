@@ -0,0 +1,92 @@
+package org.wolm.series;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.wolm.catalog.environment.MinistryFilter;
+import org.wolm.catalog.environment.RenderEnvironment;
+import org.wolm.message.Message;
+
+@RunWith(Enclosed.class)
+public class SeriesPageCacheTest {
+
+	public static class Claiming {
+		private SeriesPageCache cacheUnderTest;
+		private Series series;
+		private File pageFile;
+
+		@Before
+		public void beforeEachTest() {
+			cacheUnderTest = new SeriesPageCache();
+
+			series = new Series();
+			series.setId("ID-1");
+			series.setTitle("SERIES");
+			series.addMessage(createMessage("WOL"));
+			series.addMessage(createMessage("CORE"));
+
+			pageFile = new File("ID-1.html");
+		}
+
+		@Test
+		public void samePageShouldOnlyBeRenderedOnce() {
+			assertThat(cacheUnderTest.claim(pageFile, series, "WOL", new RenderEnvironment())).isTrue();
+			assertThat(cacheUnderTest.claim(pageFile, series, "WOL", new RenderEnvironment())).isFalse();
+
+			assertThat(cacheUnderTest.getRenderCount()).isEqualTo(1);
+			assertThat(cacheUnderTest.getDuplicateCount()).isEqualTo(1);
+		}
+
+		@Test
+		public void differentFiltersWithSameMessagesShouldBeDuplicates() {
+			RenderEnvironment everything = new RenderEnvironment();
+			RenderEnvironment bothMinistries = new RenderEnvironment(new MinistryFilter().with("WOL", "CORE"));
+
+			assertThat(cacheUnderTest.claim(pageFile, series, "WOL", everything)).isTrue();
+			assertThat(cacheUnderTest.claim(pageFile, series, "WOL", bothMinistries)).isFalse();
+		}
+
+		@Test
+		public void differentMessagesShouldKeepTheFirstPage() {
+			RenderEnvironment wolOnly = new RenderEnvironment(new MinistryFilter().with("WOL"));
+
+			assertThat(cacheUnderTest.claim(pageFile, series, "WOL", new RenderEnvironment())).isTrue();
+			assertThat(cacheUnderTest.claim(pageFile, series, "WOL", wolOnly)).isFalse();
+
+			assertThat(cacheUnderTest.getRenderCount()).isEqualTo(1);
+			assertThat(cacheUnderTest.getDuplicateCount()).isEqualTo(0);
+			assertThat(cacheUnderTest.getConflictCount()).isEqualTo(1);
+		}
+
+		@Test
+		public void differentMinistryShouldKeepTheFirstPage() {
+			assertThat(cacheUnderTest.claim(pageFile, series, "WOL", new RenderEnvironment())).isTrue();
+			assertThat(cacheUnderTest.claim(pageFile, series, "CORE", new RenderEnvironment())).isFalse();
+			assertThat(cacheUnderTest.claim(pageFile, series, "WOL", new RenderEnvironment())).isFalse();
+
+			assertThat(cacheUnderTest.getConflictCount()).isEqualTo(1);
+			assertThat(cacheUnderTest.getDuplicateCount()).isEqualTo(1);
+		}
+
+		@Test
+		public void differentFileShouldRender() {
+			File otherFile = new File("other", "ID-1.html");
+
+			assertThat(cacheUnderTest.claim(pageFile, series, "WOL", new RenderEnvironment())).isTrue();
+			assertThat(cacheUnderTest.claim(otherFile, series, "WOL", new RenderEnvironment())).isTrue();
+			assertThat(cacheUnderTest.getDuplicateCount()).isEqualTo(0);
+		}
+
+		private Message createMessage(String ministry) {
+			Message message = new Message();
+			message.setTitle(ministry + " MESSAGE");
+			message.setMinistry(ministry);
+			return message;
+		}
+	}
+}
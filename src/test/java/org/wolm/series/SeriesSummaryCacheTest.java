@@ -0,0 +1,104 @@
+package org.wolm.series;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+@RunWith(Enclosed.class)
+public class SeriesSummaryCacheTest {
+
+	public static class Summarizing {
+		private SeriesSummaryCache cacheUnderTest;
+		private Series first;
+		private Series second;
+		private Series third;
+
+		/** Series passed to each call of the renderer */
+		private List<List<Series>> renders;
+		private SeriesSummaryCache.Renderer renderer;
+
+		@Before
+		public void beforeEachTest() {
+			cacheUnderTest = new SeriesSummaryCache();
+			first = createSeries("ID-1");
+			second = createSeries("ID-2");
+			third = createSeries("ID-3");
+
+			renders = new ArrayList<>();
+			renderer = new SeriesSummaryCache.Renderer() {
+				public List<String> render(List<Series> seriesList) {
+					renders.add(seriesList);
+					List<String> summaries = new ArrayList<>();
+					for (Series series : seriesList)
+						summaries.add("<div>" + series.getId() + " #" + renders.size() + "</div>");
+					return summaries;
+				}
+			};
+		}
+
+		@Test
+		public void summariesShouldBeInListOrder() throws Exception {
+			assertThat(cacheUnderTest.getSummaries(Arrays.asList(second, first), "WOL", "BASE", renderer))
+					.containsExactly("<div>ID-2 #1</div>", "<div>ID-1 #1</div>");
+		}
+
+		@Test
+		public void otherOrdersShouldReuseTheSummaries() throws Exception {
+			cacheUnderTest.getSummaries(Arrays.asList(first, second), "WOL", "BASE", renderer);
+
+			assertThat(cacheUnderTest.getSummaries(Arrays.asList(second, first), "WOL", "BASE", renderer))
+					.containsExactly("<div>ID-2 #1</div>", "<div>ID-1 #1</div>");
+			assertThat(renders).hasSize(1);
+			assertThat(cacheUnderTest.getRenderCount()).isEqualTo(2);
+			assertThat(cacheUnderTest.getReuseCount()).isEqualTo(2);
+		}
+
+		@Test
+		public void onlyMissingSummariesShouldBeRenderedTogether() throws Exception {
+			cacheUnderTest.getSummaries(Arrays.asList(second), "WOL", "BASE", renderer);
+
+			assertThat(cacheUnderTest.getSummaries(Arrays.asList(first, second, third), "WOL", "BASE", renderer))
+					.containsExactly("<div>ID-1 #2</div>", "<div>ID-2 #1</div>", "<div>ID-3 #2</div>");
+			assertThat(renders.get(1)).containsExactly(first, third);
+		}
+
+		@Test
+		public void otherMinistryShouldRenderAgain() throws Exception {
+			cacheUnderTest.getSummaries(Arrays.asList(first), "WOL", "BASE", renderer);
+
+			assertThat(cacheUnderTest.getSummaries(Arrays.asList(first), "CORE", "BASE", renderer))
+					.containsExactly("<div>ID-1 #2</div>");
+		}
+
+		@Test
+		public void seriesWithTheSameIdShouldNotShareSummaries() throws Exception {
+			cacheUnderTest.getSummaries(Arrays.asList(first), "WOL", "BASE", renderer);
+
+			assertThat(cacheUnderTest.getSummaries(Arrays.asList(createSeries("ID-1")), "WOL", "BASE", renderer))
+					.containsExactly("<div>ID-1 #2</div>");
+		}
+
+		@Test(expected = IllegalStateException.class)
+		public void rendererShouldReturnOneSummaryForEachSeries() throws Exception {
+			cacheUnderTest.getSummaries(Arrays.asList(first), "WOL", "BASE", new SeriesSummaryCache.Renderer() {
+				public List<String> render(List<Series> seriesList) {
+					return new ArrayList<>();
+				}
+			});
+		}
+
+		private static Series createSeries(String id) {
+			Series series = new Series();
+			series.setId(id);
+			series.setTitle("SERIES " + id);
+			return series;
+		}
+	}
+}
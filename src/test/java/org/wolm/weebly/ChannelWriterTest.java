@@ -0,0 +1,102 @@
+package org.wolm.weebly;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+@RunWith(Enclosed.class)
+public class ChannelWriterTest {
+
+	public static class Writing {
+		private ByteArrayOutputStream bytes;
+		private ChannelWriter writerUnderTest;
+
+		@Before
+		public void beforeEachTest() {
+			bytes = new ByteArrayOutputStream();
+			writerUnderTest = new ChannelWriter(Channels.newChannel(bytes));
+		}
+
+		@Test
+		public void charactersShouldBeUtf8() throws Exception {
+			writerUnderTest.write("Caf\u00e9 \u4e16\u754c");
+			writerUnderTest.write('!');
+			writerUnderTest.close();
+
+			assertThat(written()).isEqualTo("Caf\u00e9 \u4e16\u754c!");
+		}
+
+		@Test
+		public void bytesShouldBeMixedWithCharacters() throws Exception {
+			writerUnderTest.write("<p>");
+			writerUnderTest.writeBytes("\u00e9".getBytes(CompiledPage.CHARSET));
+			writerUnderTest.write("</p>".toCharArray(), 0, 4);
+			writerUnderTest.close();
+
+			assertThat(written()).isEqualTo("<p>\u00e9</p>");
+		}
+
+		@Test
+		public void surrogatePairSplitAcrossWritesShouldBeKept() throws Exception {
+			String emoji = "\ud83d\ude00";
+			writerUnderTest.write(emoji.charAt(0));
+			writerUnderTest.write(emoji.charAt(1));
+			writerUnderTest.close();
+
+			assertThat(written()).isEqualTo(emoji);
+		}
+
+		@Test
+		public void unpairedSurrogateShouldBeReplaced() throws Exception {
+			writerUnderTest.write("A\ud83d");
+			writerUnderTest.writeBytes("B".getBytes(CompiledPage.CHARSET));
+			writerUnderTest.close();
+
+			assertThat(written()).isEqualTo("A?B");
+		}
+
+		@Test
+		public void contentLargerThanBuffersShouldBeWritten() throws Exception {
+			String text = StringUtils.repeat("\u00e9abc\ud83d\ude00", 50_000);
+			byte[] block = StringUtils.repeat("xyz", 40_000).getBytes(CompiledPage.CHARSET);
+
+			writerUnderTest.write(text);
+			writerUnderTest.writeBytes(block);
+			writerUnderTest.write(text);
+			writerUnderTest.close();
+
+			assertThat(written()).isEqualTo(text + StringUtils.repeat("xyz", 40_000) + text);
+		}
+
+		@Test
+		public void nextWriterShouldStartEmpty() throws Exception {
+			writerUnderTest.write("first\ud83d");
+			writerUnderTest.close();
+
+			ByteArrayOutputStream moreBytes = new ByteArrayOutputStream();
+			try (ChannelWriter next = new ChannelWriter(Channels.newChannel(moreBytes))) {
+				next.write("second");
+			}
+
+			assertThat(new String(moreBytes.toByteArray(), CompiledPage.CHARSET)).isEqualTo("second");
+		}
+
+		@Test(expected = IOException.class)
+		public void closedWriterShouldNotWrite() throws Exception {
+			writerUnderTest.close();
+			writerUnderTest.write("too late");
+		}
+
+		private String written() {
+			return new String(bytes.toByteArray(), CompiledPage.CHARSET);
+		}
+	}
+}
@@ -2,9 +2,13 @@ package org.wolm.weebly;
 
 import static org.fest.assertions.Assertions.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -123,6 +127,68 @@ public class WeeblyPageTest {
 		}
 	}
 
+	public static class Compile {
+		private WeeblyPage page;
+		private Map<String, String> values;
+
+		@Before
+		public void beforeEachTest() throws Exception {
+			page = new WeeblyPage(asList(new String[] { //
+					"<html>", //
+					"  <head>", //
+					"    <title>${Title} - Word of Life Ministries</title>", //
+					"    <meta property='og:description' content='${Content}' />", //
+					"    <meta property='og:title' /><title>${Title}</title>", //
+					"  </head>", //
+					"<body>", //
+					"  <div>${Content}</div><p>${Title}:${Title}</p>", //
+					"  <div>$${Content} ${Missing} ${Unclosed</div>", //
+					"  <div>Generated ${Date}</div>", //
+					"</body>" //
+			}));
+
+			values = new HashMap<>();
+			values.put("Title", "Ho");
+			values.put("Content", "<p>Caf\u00e9</p>");
+			values.put("Date", "TODAY");
+		}
+
+		@Test
+		public void slotsShouldBeInPageOrder() {
+			assertThat(page.compile().getSlots()).containsExactly("Title", "Content", "Title", "Title", "Missing",
+					"Date");
+		}
+
+		@Test
+		public void compiledPageShouldMatchSubstitutedPage() throws Exception {
+			String compiled = page.compile().toString(values);
+
+			page.substituteVariables(values);
+			ByteArrayOutputStream printed = new ByteArrayOutputStream();
+			page.printPage(new PrintStream(printed, true, "UTF-8"));
+
+			assertThat(compiled).isEqualTo(printed.toString("UTF-8"));
+			assertThat(compiled).contains("<div>${Content} ${Missing} ${Unclosed</div>");
+			assertThat(compiled).contains("content='${Content}'");
+			assertThat(compiled).contains("<div><p>Caf\u00e9</p></div><p>Ho:Ho</p>");
+		}
+
+		@Test
+		public void variableWithoutValueShouldBeKept() throws Exception {
+			values.put("Title", null);
+
+			assertThat(page.compile().toString(values)).contains("<title>${Title} - Word of Life Ministries</title>");
+		}
+
+		@Test
+		public void compiledPageShouldNotSeeLaterChanges() throws Exception {
+			CompiledPage compiled = page.compile();
+			page.addTitleBreadcrumb("Hi");
+
+			assertThat(compiled.toString(values)).contains("<title>Ho - Word of Life Ministries</title>");
+		}
+	}
+
 	public static class ConvertRelativeLinkHrefToAbsolute {
 		private WeeblyPage page;
 